@@ -54,6 +54,7 @@ import java.net.Socket;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -557,30 +558,43 @@ public class ExopackageInstaller {
         Path destinationDirRelativeToDataRoot) throws Exception {
       try (SimplePerfEvent.Scope ignored1 =
                SimplePerfEvent.scope(eventBus, "multi_install_" + filesType)) {
+        ImmutableMap.Builder<String, Path> filesToInstallBuilder = ImmutableMap.builder();
+        for (Map.Entry<String, Path> entry : filesToInstallByHash.entrySet()) {
+          filesToInstallBuilder.put(
+              String.format(filenameFormat, entry.getKey()),
+              entry.getValue());
+        }
+        ImmutableMap<String, Path> filesToInstall = filesToInstallBuilder.build();
+
+        ImmutableSet<String> copiedFileNames;
+        try (SimplePerfEvent.Scope ignored2 =
+                 SimplePerfEvent.scope(eventBus, "copy_" + filesType + "_from_other_packages")) {
+          copiedFileNames =
+              copyFilesFromOtherPackages(destinationDirRelativeToDataRoot, filesToInstall.keySet());
+        }
+
         device.createForward(agentPort, agentPort);
-        try {
-          for (Map.Entry<String, Path> entry : filesToInstallByHash.entrySet()) {
-            Path destination = destinationDirRelativeToDataRoot.resolve(
-                String.format(filenameFormat, entry.getKey()));
-            Path source = entry.getValue();
-
-            try (SimplePerfEvent.Scope ignored2 =
-                     SimplePerfEvent.scope(eventBus, "install_" + filesType)) {
-              installFile(device, agentPort, destination, source);
-            }
-          }
+        try (NamedTemporaryFile metadata = new NamedTemporaryFile("metadata", "tmp")) {
+          com.google.common.io.Files.write(
+              metadataFileContents.getBytes(Charsets.UTF_8),
+              metadata.get().toFile());
+          ImmutableMap<String, Path> filesToSend = ImmutableMap.<String, Path>builder()
+              .putAll(Maps.filterKeys(filesToInstall, name -> !copiedFileNames.contains(name)))
+              // Sent last, so the metadata never lists files which aren't on the device yet.
+              .put("metadata.txt", metadata.get())
+              .build();
           try (SimplePerfEvent.Scope ignored3 =
-                   SimplePerfEvent.scope(eventBus, "install_" + filesType + "_metadata")) {
-            try (NamedTemporaryFile temp = new NamedTemporaryFile("metadata", "tmp")) {
-              com.google.common.io.Files.write(
-                  metadataFileContents.getBytes(Charsets.UTF_8),
-                  temp.get().toFile());
-              installFile(
-                  device,
-                  agentPort,
-                  destinationDirRelativeToDataRoot.resolve("metadata.txt"),
-                  temp.get());
-            }
+                   SimplePerfEvent.scope(eventBus, "install_" + filesType)) {
+            sendFiles(destinationDirRelativeToDataRoot, filesToSend);
+          }
+          try (SimplePerfEvent.Scope ignored4 =
+                   SimplePerfEvent.scope(eventBus, "chmod_" + filesType)) {
+            makeFilesWorldReadable(
+                destinationDirRelativeToDataRoot,
+                ImmutableList.<String>builder()
+                    .addAll(filesToInstall.keySet())
+                    .add("metadata.txt")
+                    .build());
           }
         } finally {
           try {
@@ -598,12 +612,107 @@ public class ExopackageInstaller {
       }
     }
 
-    private void installFile(
-        IDevice device,
-        final int port,
-        Path pathRelativeToDataRoot,
-        final Path relativeSource) throws Exception {
-      final Path source = projectFilesystem.resolve(relativeSource);
+    /**
+     * Files are named after the hashes of their contents, so a file which another exopackage app
+     * on the device has in the same directory (a native library used by several apps, or a dex
+     * shared by an app and its test apk) is the same file.  Those are copied on the device, which
+     * is much faster than sending them over adb.
+     *
+     * @return the names of the files which were copied.
+     */
+    private ImmutableSet<String> copyFilesFromOtherPackages(
+        Path dirRelativeToDataRoot,
+        ImmutableSet<String> fileNames) throws Exception {
+      if (fileNames.isEmpty()) {
+        return ImmutableSet.of();
+      }
+      Path exopackageRoot = Preconditions.checkNotNull(dataRoot.getParent());
+
+      ImmutableList.Builder<String> patterns = ImmutableList.builder();
+      for (String fileName : fileNames) {
+        patterns.add("*/" + dirRelativeToDataRoot.resolve(fileName));
+      }
+      // Patterns which match nothing are passed to ls as they are, so hide its complaints.
+      String lsPrefix = "cd " + exopackageRoot + " && ls ";
+      String lsSuffix = " 2>/dev/null | cat";
+      // Add a fudge factor for separators and error checking.
+      final int lsOverhead = lsPrefix.length() + lsSuffix.length() + 100;
+      StringBuilder lsOutput = new StringBuilder();
+      for (List<String> lsArgs : chunkArgs(patterns.build(), MAX_ADB_COMMAND_SIZE - lsOverhead)) {
+        String command = lsPrefix + Joiner.on(' ').join(lsArgs) + lsSuffix;
+        LOG.debug("Executing %s", command);
+        lsOutput.append(AdbHelper.executeCommandWithErrorChecking(device, command)).append('\n');
+      }
+      ImmutableMap<String, String> filesInOtherPackages =
+          processOtherPackagesLsOutput(lsOutput.toString(), packageName);
+      if (filesInOtherPackages.isEmpty()) {
+        return ImmutableSet.of();
+      }
+
+      // Copy to a temporary file first, so a copy which fails halfway isn't mistaken for the
+      // real file.  Old devices have no cp, hence cat.
+      Path destinationDir = Paths.get(packageName).resolve(dirRelativeToDataRoot);
+      ImmutableList.Builder<String> copies = ImmutableList.builder();
+      for (Map.Entry<String, String> entry : filesInOtherPackages.entrySet()) {
+        Path temp = destinationDir.resolve(AgentUtil.TEMP_PREFIX + entry.getKey());
+        copies.add(
+            "cat " + entry.getValue() + " > " + temp + " && " +
+                "mv " + temp + " " + destinationDir.resolve(entry.getKey()));
+      }
+      String copyPrefix = "umask 022 && cd " + exopackageRoot + " && ";
+      final int copyOverhead = copyPrefix.length() + 100;
+      for (List<String> copyCommands :
+          chunkArgs(copies.build(), MAX_ADB_COMMAND_SIZE - copyOverhead)) {
+        String command = copyPrefix + Joiner.on(" && ").join(copyCommands);
+        LOG.debug("Executing %s", command);
+        AdbHelper.executeCommandWithErrorChecking(device, command);
+      }
+      LOG.debug(
+          "Copied %d of %d files from other packages to %s",
+          filesInOtherPackages.size(),
+          fileNames.size(),
+          destinationDir);
+      return filesInOtherPackages.keySet();
+    }
+
+    /**
+     * Sends files to a directory on the device.  Starting the agent and connecting to it is a
+     * round trip to the device, so each agent session receives as many files as its command line
+     * has room for.
+     *
+     * @param filesToSend the sources of the files to send, by their names on the device, in the
+     *     order they should be written.
+     */
+    private void sendFiles(
+        Path dirRelativeToDataRoot,
+        ImmutableMap<String, Path> filesToSend) throws Exception {
+      Map<String, Path> sourcesByArg = new LinkedHashMap<>();
+      for (Map.Entry<String, Path> entry : filesToSend.entrySet()) {
+        Path source = projectFilesystem.resolve(entry.getValue());
+        // The native agent wants a directory in the path, even if it is the current one.
+        sourcesByArg.put(Files.size(source) + " ./" + entry.getKey(), source);
+      }
+
+      String commandPrefix =
+          "umask 022 && cd " + dataRoot.resolve(dirRelativeToDataRoot) + " && " +
+              getAgentCommand() + "multi-receive-file " + agentPort + " ";
+      String commandSuffix = " ; echo -n :$?";
+      // Add a fudge factor for separators and error checking.
+      final int overhead = commandPrefix.length() + commandSuffix.length() + 100;
+      for (List<String> receiveArgs :
+          chunkArgs(sourcesByArg.keySet(), MAX_ADB_COMMAND_SIZE - overhead)) {
+        ImmutableList.Builder<Path> sources = ImmutableList.builder();
+        for (String arg : receiveArgs) {
+          sources.add(sourcesByArg.get(arg));
+        }
+        sendFilesToAgent(
+            commandPrefix + Joiner.on(' ').join(receiveArgs) + commandSuffix,
+            sources.build());
+      }
+    }
+
+    private void sendFilesToAgent(String command, final ImmutableList<Path> sources)
+        throws Exception {
       Closer closer = Closer.create();
       CollectingOutputReceiver receiver = new CollectingOutputReceiver() {
 
@@ -619,7 +728,7 @@ public class ExopackageInstaller {
             if (!startedPayload && getOutput().length() >= AgentUtil.TEXT_SECRET_KEY_SIZE) {
               LOG.verbose("Got key: %s", getOutput().split("[\\r\\n]", 1)[0]);
               startedPayload = true;
-              Socket clientSocket = new Socket("localhost", port);
+              Socket clientSocket = new Socket("localhost", agentPort);
               closer.register(clientSocket);
               LOG.verbose("Connected");
               outToDevice = clientSocket.getOutputStream();
@@ -638,9 +747,11 @@ public class ExopackageInstaller {
                       0,
                       AgentUtil.TEXT_SECRET_KEY_SIZE).getBytes());
               LOG.verbose("Wrote key");
-              com.google.common.io.Files.asByteSource(source.toFile()).copyTo(outToDevice);
+              for (Path source : sources) {
+                com.google.common.io.Files.asByteSource(source.toFile()).copyTo(outToDevice);
+              }
               outToDevice.flush();
-              LOG.verbose("Wrote file");
+              LOG.verbose("Wrote %d files", sources.size());
             }
           } catch (IOException e) {
             throw new RuntimeException(e);
@@ -648,14 +759,6 @@ public class ExopackageInstaller {
         }
       };
 
-      String targetFileName = projectFilesystem.resolve(
-          dataRoot.resolve(pathRelativeToDataRoot)).toString();
-      String command =
-          "umask 022 && " +
-              getAgentCommand() +
-              "receive-file " + port + " " + Files.size(source) + " " +
-              targetFileName +
-              " ; echo -n :$?";
       LOG.debug("Executing %s", command);
 
       // If we fail to execute the command, stash the exception.  My experience during development
@@ -682,13 +785,30 @@ public class ExopackageInstaller {
       if (shellException != null) {
         throw shellException;
       }
+    }
 
-      // The standard Java libraries on Android always create new files un-readable by other users.
-      // We use the shell user or root to create these files, so we need to explicitly set the mode
-      // to allow the app to read them.  Ideally, the agent would do this automatically, but
-      // there's no easy way to do this in Java.  We can drop this if we drop support for the
-      // Java agent.
-      AdbHelper.executeCommandWithErrorChecking(device, "chmod 644 " + targetFileName);
+    /**
+     * The standard Java libraries on Android always create new files un-readable by other users.
+     * We use the shell user or root to create these files, so we need to explicitly set the mode
+     * to allow the app to read them.  Ideally, the agent would do this automatically, but
+     * there's no easy way to do this in Java.  We can drop this if we drop support for the
+     * Java agent.
+     * <p>
+     * This is done for a whole directory at once, since every adb shell command is a round trip
+     * to the device.
+     */
+    private void makeFilesWorldReadable(
+        Path dirRelativeToDataRoot,
+        ImmutableList<String> fileNames) throws Exception {
+      String dirPath = dataRoot.resolve(dirRelativeToDataRoot).toString();
+      String commandPrefix = "cd " + dirPath + " && chmod 644 ";
+      // Add a fudge factor for separators and error checking.
+      final int overhead = commandPrefix.length() + 100;
+      for (List<String> chmodArgs : chunkArgs(fileNames, MAX_ADB_COMMAND_SIZE - overhead)) {
+        String command = commandPrefix + Joiner.on(' ').join(chmodArgs);
+        LOG.debug("Executing %s", command);
+        AdbHelper.executeCommandWithErrorChecking(device, command);
+      }
     }
 
     private String getProperty(String property) throws Exception {
@@ -901,6 +1021,28 @@ public class ExopackageInstaller {
     }
   }
 
+  /**
+   * @param output  Output of "ls" run in the directory holding the files of every exopackage app,
+   *     for paths of the form "package/dir/file".
+   * @param packageName  The app being installed, whose own files are ignored.
+   * @return  A map from the name of each file found to its path, as listed by ls.  Files found in
+   *     several apps are listed once.
+   */
+  @VisibleForTesting
+  static ImmutableMap<String, String> processOtherPackagesLsOutput(
+      String output,
+      String packageName) {
+    Map<String, String> paths = new LinkedHashMap<>();
+    for (String line : Splitter.on(LINE_ENDING).omitEmptyStrings().split(output)) {
+      // Lines are copied into shell commands, so anything with a space in it is ignored.
+      if (line.startsWith(packageName + "/") || line.contains(" ")) {
+        continue;
+      }
+      paths.putIfAbsent(line.substring(line.lastIndexOf('/') + 1), line);
+    }
+    return ImmutableMap.copyOf(paths);
+  }
+
   /**
    * Breaks a list of strings into groups whose total size is within some limit.
    * Kind of like the xargs command that groups arguments to avoid maximum argument length limits.
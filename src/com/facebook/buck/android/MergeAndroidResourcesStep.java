@@ -277,13 +277,16 @@ public class MergeAndroidResourcesStep implements Step {
           }
 
           // Write out the resource.
-          // Write as an int.
-          writer.format(
-              "    public static%s%s %s=%s;\n",
-              forceFinalResourceIds ? " final " : " ",
-              res.idType,
-              res.name,
-              res.idValue);
+          // Write as an int. This runs once per resource per package, so avoid Formatter here.
+          writer
+              .append("    public static")
+              .append(forceFinalResourceIds ? " final " : " ")
+              .append(res.idType.toString())
+              .append(' ')
+              .append(res.name)
+              .append('=')
+              .append(res.idValue)
+              .append(";\n");
 
           if (type == RDotTxtEntry.RType.DRAWABLE &&
               res.customType == RDotTxtEntry.CustomDrawableType.CUSTOM) {
@@ -349,12 +352,14 @@ public class MergeAndroidResourcesStep implements Step {
 
     for (Map.Entry<Path, String> entry : symbolsFileToRDotJavaPackage.entrySet()) {
       Path symbolsFile = entry.getKey();
-      // Read the symbols file and parse each line as a Resource.
-      List<String> linesInSymbolsFile;
+      // Read the symbols file and parse each line as a Resource. Styleable lookups scan ahead in
+      // the file, so parse every line once up front rather than on each visit.
+      List<RDotTxtEntry> resourcesInSymbolsFile;
       try {
-        linesInSymbolsFile =
+        resourcesInSymbolsFile =
             FluentIterable.from(filesystem.readLines(symbolsFile))
                 .filter(input -> !Strings.isNullOrEmpty(input))
+                .transform(MergeAndroidResourcesStep::parseResource)
                 .toList();
       } catch (IOException e) {
         throw new RuntimeException(e);
@@ -362,8 +367,8 @@ public class MergeAndroidResourcesStep implements Step {
 
       String packageName = entry.getValue();
 
-      for (int index = 0; index < linesInSymbolsFile.size(); index++) {
-        RDotTxtEntry resource = getResourceAtIndex(linesInSymbolsFile, index);
+      for (int index = 0; index < resourcesInSymbolsFile.size(); index++) {
+        RDotTxtEntry resource = resourcesInSymbolsFile.get(index);
 
         if (uberRDotTxtIds.isPresent()) {
           Preconditions.checkNotNull(finalIds);
@@ -385,7 +390,7 @@ public class MergeAndroidResourcesStep implements Step {
 
         } else if (resource.idType == IdType.INT_ARRAY && resource.type == RType.STYLEABLE) {
           Map<RDotTxtEntry, String> styleableResourcesMap = getStyleableResources(
-              resourceToIdValuesMap, linesInSymbolsFile, resource.name, index + 1
+              resourceToIdValuesMap, resourcesInSymbolsFile, resource.name, index + 1
           );
 
           for (RDotTxtEntry styleableResource : styleableResourcesMap.keySet()) {
@@ -444,18 +449,16 @@ public class MergeAndroidResourcesStep implements Step {
 
   private static Map<RDotTxtEntry, String> getStyleableResources(
       Map<RDotTxtEntry, String> resourceToIdValuesMap,
-      List<String> linesInSymbolsFile,
+      List<RDotTxtEntry> resourcesInSymbolsFile,
       String resourceName,
       int index) {
 
     Map<RDotTxtEntry, String> styleableResourceMap = new LinkedHashMap<>();
 
     for (int styleableIndex = 0;
-         styleableIndex + index < linesInSymbolsFile.size(); styleableIndex++) {
+         styleableIndex + index < resourcesInSymbolsFile.size(); styleableIndex++) {
 
-      RDotTxtEntry styleableResource = getResourceAtIndex(
-          linesInSymbolsFile, styleableIndex + index
-      );
+      RDotTxtEntry styleableResource = resourcesInSymbolsFile.get(styleableIndex + index);
 
       String styleablePrefix = resourceName + "_";
 
@@ -485,9 +488,7 @@ public class MergeAndroidResourcesStep implements Step {
     return styleableResourceMap;
   }
 
-  private static RDotTxtEntry getResourceAtIndex(List<String> linesInSymbolsFile, int index) {
-    String line = linesInSymbolsFile.get(index);
-
+  private static RDotTxtEntry parseResource(String line) {
     Optional<RDotTxtEntry> parsedEntry = RDotTxtEntry.parse(line);
     Preconditions.checkState(parsedEntry.isPresent(), "Should be able to match '%s'.", line);
 
@@ -195,6 +195,7 @@ public class NdkLibraryDescription implements Description<NdkLibraryDescription.
       // NDK library rules.
       NativeLinkableInput nativeLinkableInput =
           NativeLinkables.getTransitiveNativeLinkableInput(
+              resolver,
               cxxPlatform,
               params.getDeps(),
               Linker.LinkableDepType.SHARED,
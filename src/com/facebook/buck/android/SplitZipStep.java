@@ -23,6 +23,7 @@ import com.facebook.buck.dalvik.firstorder.FirstOrderHelper;
 import com.facebook.buck.io.MorePaths;
 import com.facebook.buck.io.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.util.MoreCollectors;
@@ -185,7 +186,8 @@ public class SplitZipStep implements Step {
       ZipSplitterFactory zipSplitterFactory;
       zipSplitterFactory = new DalvikAwareZipSplitterFactory(
           dexSplitMode.getLinearAllocHardLimit(),
-          wantedInPrimaryZip);
+          wantedInPrimaryZip,
+          Optional.of(context.getExecutorService(ExecutorPool.CPU)));
 
       outputFiles = zipSplitterFactory.newInstance(
           filesystem,
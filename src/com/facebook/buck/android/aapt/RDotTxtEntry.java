@@ -135,6 +135,10 @@ public class RDotTxtEntry implements Comparable<RDotTxtEntry> {
   public final String idValue;
   public final CustomDrawableType customType;
 
+  // The name split on underscores, used when ordering entries. This is computed once, since a
+  // merge compares each entry many times.
+  private final String[] nameParts;
+
   public RDotTxtEntry(
       IdType idType,
       RType type,
@@ -154,6 +158,16 @@ public class RDotTxtEntry implements Comparable<RDotTxtEntry> {
     this.name = name;
     this.idValue = idValue;
     this.customType = customType;
+    this.nameParts = name.split("_");
+  }
+
+  private RDotTxtEntry(RDotTxtEntry original, String idValue) {
+    this.idType = original.idType;
+    this.type = original.type;
+    this.name = original.name;
+    this.idValue = idValue;
+    this.customType = original.customType;
+    this.nameParts = original.nameParts;
   }
 
   public int getNumArrayValues() {
@@ -168,7 +182,7 @@ public class RDotTxtEntry implements Comparable<RDotTxtEntry> {
   }
 
   public RDotTxtEntry copyWithNewIdValue(String newIdValue) {
-    return new RDotTxtEntry(idType, type, name, newIdValue, customType);
+    return new RDotTxtEntry(this, newIdValue);
   }
 
   public static Optional<RDotTxtEntry> parse(String rDotTxtLine) {
@@ -218,8 +232,8 @@ public class RDotTxtEntry implements Comparable<RDotTxtEntry> {
 
     ComparisonChain comparisonChain = ComparisonChain.start().compare(this.type, that.type);
 
-    String [] thisNameParts = this.name.split("_");
-    String [] thatNameParts = that.name.split("_");
+    String [] thisNameParts = this.nameParts;
+    String [] thatNameParts = that.nameParts;
 
     int index = 0;
     while (index < thisNameParts.length && index < thatNameParts.length) {
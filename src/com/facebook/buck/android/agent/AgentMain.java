@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -68,6 +69,8 @@ public class AgentMain {
         doMkdirP(userArgs);
       } else if (command.equals("receive-file")) {
         doReceiveFile(userArgs);
+      } else if (command.equals("multi-receive-file")) {
+        doMultiReceiveFile(userArgs);
       } else {
         throw new IllegalArgumentException("Unknown command: " + command);
       }
@@ -132,6 +135,36 @@ public class AgentMain {
     int size = Integer.parseInt(userArgs.get(1));
     File path = new File(userArgs.get(2));
 
+    receiveFiles(port, Collections.singletonList(size), Collections.singletonList(path));
+  }
+
+  /**
+   * Receive several files over a single network connection and write them to disk.
+   *
+   * <p>Arguments are the port to listen on, followed by the size and the path of each file, in
+   * the order they are transmitted.  The protocol is the same as for receive-file, except that
+   * the contents of all the files follow the secret key, one after another.  This saves setting
+   * up a connection, and starting the agent, for every file.
+   */
+  private static void doMultiReceiveFile(List<String> userArgs) throws IOException {
+    if (userArgs.size() < 3 || userArgs.size() % 2 != 1) {
+      throw new IllegalArgumentException(
+          "usage: multi-receive-file PORT SIZE PATH [SIZE PATH]...");
+    }
+
+    int port = Integer.parseInt(userArgs.get(0));
+    List<Integer> sizes = new ArrayList<Integer>();
+    List<File> paths = new ArrayList<File>();
+    for (int i = 1; i < userArgs.size(); i += 2) {
+      sizes.add(Integer.parseInt(userArgs.get(i)));
+      paths.add(new File(userArgs.get(i + 1)));
+    }
+
+    receiveFiles(port, sizes, paths);
+  }
+
+  private static void receiveFiles(int port, List<Integer> sizes, List<File> paths)
+      throws IOException {
     // First make sure we can bind to the port.
     ServerSocket serverSocket = null;
     try {
@@ -151,7 +184,9 @@ public class AgentMain {
 
       receiveAndValidateSessionKey(secretKey, input);
 
-      doRawReceiveFile(path, size, input);
+      for (int i = 0; i < paths.size(); i++) {
+        doRawReceiveFile(paths.get(i), sizes.get(i), input);
+      }
     } finally {
       if (serverSocket != null) {
         serverSocket.close();
@@ -14,31 +14,26 @@
 
 
 // Return 0 on success
-static int parse_args(int num_args, char** args, uint16_t* out_port, int* out_size, const char** out_path) {
-  if (num_args != 3) {
-    fprintf(stderr, "usage: receive-file PORT SIZE PATH\n");
-    return -1;
-  }
-
+static int parse_port(const char* port_str, uint16_t* out_port) {
   char* endptr;
-
-  const char* port_str = args[0];
   long port = strtol(port_str, &endptr, 10);
   if (*port_str == '\0' || *endptr != '\0' || port <= 0 || port > USHRT_MAX) {
     fprintf(stderr, "Invalid port: %s\n", port_str);
     return -1;
   }
+  *out_port = (uint16_t)port;
+  return 0;
+}
 
-  const char* size_str = args[1];
+// Return 0 on success
+static int parse_size(const char* size_str, int* out_size) {
+  char* endptr;
   long size = strtol(size_str, &endptr, 10);
   if (*size_str == '\0' || *endptr != '\0' || size <= 0 || size > INT_MAX) {
     fprintf(stderr, "Invalid size: %s\n", size_str);
     return -1;
   }
-
-  *out_port = (uint16_t)port;
   *out_size = (int)size;
-  *out_path = args[2];
   return 0;
 }
 
@@ -276,14 +271,9 @@ error:
   return -1;
 }
 
-int do_receive_file(int num_args, char** args) {
-  uint16_t port;
-  int size;
-  const char* path;
-  if (parse_args(num_args, args, &port, &size, &path) != 0) {
-    return 1;
-  }
-
+// Receives the files over a single connection, one after another.
+// Returns 0 on success.
+static int receive_files(uint16_t port, int num_files, const int* sizes, char** paths) {
   int listen_socket = -1;
   int client_socket = -1;
 
@@ -310,10 +300,13 @@ int do_receive_file(int num_args, char** args) {
     goto fail1;
   }
 
-  if (raw_receive_file(path, size, client_socket) != 0) {
-    goto fail1;
+  for (int i = 0; i < num_files; i++) {
+    if (raw_receive_file(paths[i], sizes[i], client_socket) != 0) {
+      goto fail1;
+    }
   }
 
+  close(client_socket);
   return 0;
 
 
@@ -324,6 +317,46 @@ fail1:
   if (listen_socket >= 0) {
     close(listen_socket);
   }
-  return 1;
+  return -1;
 }
 
+int do_receive_file(int num_args, char** args) {
+  if (num_args != 3) {
+    fprintf(stderr, "usage: receive-file PORT SIZE PATH\n");
+    return 1;
+  }
+
+  uint16_t port;
+  int size;
+  if (parse_port(args[0], &port) != 0 || parse_size(args[1], &size) != 0) {
+    return 1;
+  }
+
+  return receive_files(port, 1, &size, &args[2]) == 0 ? 0 : 1;
+}
+
+// Like receive-file, but receives the contents of several files, in the order
+// of their arguments, over a single connection.
+int do_multi_receive_file(int num_args, char** args) {
+  if (num_args < 3 || num_args % 2 != 1) {
+    fprintf(stderr, "usage: multi-receive-file PORT SIZE PATH [SIZE PATH]...\n");
+    return 1;
+  }
+
+  uint16_t port;
+  if (parse_port(args[0], &port) != 0) {
+    return 1;
+  }
+
+  int num_files = num_args / 2;
+  int sizes[num_files];
+  char* paths[num_files];
+  for (int i = 0; i < num_files; i++) {
+    if (parse_size(args[1 + 2*i], &sizes[i]) != 0) {
+      return 1;
+    }
+    paths[i] = args[2 + 2*i];
+  }
+
+  return receive_files(port, num_files, sizes, paths) == 0 ? 0 : 1;
+}
@@ -212,6 +212,14 @@ public class ArtifactCacheBuckConfig {
             .withCacheReadMode(getServedLocalCacheReadMode()));
   }
 
+  /**
+   * @return the dir cache configured in the {@code [cache]} section, whether or not {@code dir} is
+   *     one of the enabled cache modes.
+   */
+  public DirCacheEntry getDefaultDirCacheEntry() {
+    return obtainDirEntryForName(Optional.empty());
+  }
+
   /**
    * We return list instead of set to preserve an order of cache names.
    * Buck will be attempting to use dir caches in a listed order.
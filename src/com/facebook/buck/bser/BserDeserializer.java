@@ -44,6 +44,7 @@ import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -56,6 +57,8 @@ import javax.annotation.Nullable;
  * Decoder for the BSER binary JSON format used by the Watchman service:
  *
  * https://facebook.github.io/watchman/docs/bser.html
+ *
+ * Instances reuse their buffers between values, so they must not be shared between threads.
  */
 public class BserDeserializer {
   public enum KeyOrdering {
@@ -78,8 +81,32 @@ public class BserDeserializer {
     }
   }
 
+  // 2 bytes marker, 1 byte int size
+  private static final int INITIAL_SNIFF_LEN = 3;
+
+  // 2 bytes marker, 1 byte int size, up to 8 bytes int64 value
+  private static final int SNIFF_BUFFER_SIZE = 13;
+
+  // Values larger than this get a buffer of their own, so one huge value doesn't pin its memory.
+  private static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+  // Must be a power of two.
+  private static final int STRING_CACHE_SIZE = 4096;
+
+  private static final int MAX_CACHED_STRING_LENGTH = 256;
+
   private final KeyOrdering keyOrdering;
   private final CharsetDecoder utf8Decoder;
+  private final ByteBuffer sniffBuffer;
+  private ByteBuffer bserBuffer;
+
+  /**
+   * Recently decoded short strings, indexed by a hash of their encoded bytes. Values decoded from
+   * build files and Watchman repeat the same keys and many of the same values over and over, so
+   * this lets us skip decoding and interning those again.
+   */
+  private final byte[][] cachedStringBytes;
+  private final String[] cachedStrings;
 
   /**
    * If {@code keyOrdering} is {@code SORTED}, any {@code Map} objects
@@ -92,14 +119,12 @@ public class BserDeserializer {
     this.utf8Decoder = StandardCharsets.UTF_8
         .newDecoder()
         .onMalformedInput(CodingErrorAction.REPORT);
+    this.sniffBuffer = ByteBuffer.allocate(SNIFF_BUFFER_SIZE).order(ByteOrder.nativeOrder());
+    this.bserBuffer = ByteBuffer.allocate(0);
+    this.cachedStringBytes = new byte[STRING_CACHE_SIZE][];
+    this.cachedStrings = new String[STRING_CACHE_SIZE];
   }
 
-  // 2 bytes marker, 1 byte int size
-  private static final int INITIAL_SNIFF_LEN = 3;
-
-  // 2 bytes marker, 1 byte int size, up to 8 bytes int64 value
-  private static final int SNIFF_BUFFER_SIZE = 13;
-
   /**
    * Deserializes the next BSER-encoded value from the stream.
    *
@@ -117,7 +142,7 @@ public class BserDeserializer {
   }
 
   private ByteBuffer readBserBuffer(InputStream inputStream) throws IOException {
-    ByteBuffer sniffBuffer = ByteBuffer.allocate(SNIFF_BUFFER_SIZE).order(ByteOrder.nativeOrder());
+    sniffBuffer.clear();
     Preconditions.checkState(sniffBuffer.hasArray());
 
     int sniffBytesRead = ByteStreams.read(inputStream, sniffBuffer.array(), 0, INITIAL_SNIFF_LEN);
@@ -166,14 +191,13 @@ public class BserDeserializer {
     }
     int bytesRemaining = deserializeIntLen(sniffBuffer, lengthType);
 
-    ByteBuffer bserBuffer = ByteBuffer.allocate(bytesRemaining)
-        .order(ByteOrder.nativeOrder());
-    Preconditions.checkState(bserBuffer.hasArray());
+    ByteBuffer buffer = getBserBuffer(bytesRemaining);
+    Preconditions.checkState(buffer.hasArray());
 
     int remainingBytesRead = ByteStreams.read(
         inputStream,
-        bserBuffer.array(),
-        0,
+        buffer.array(),
+        buffer.arrayOffset(),
         bytesRemaining);
 
     if (remainingBytesRead < bytesRemaining) {
@@ -184,6 +208,25 @@ public class BserDeserializer {
               remainingBytesRead));
     }
 
+    return buffer;
+  }
+
+  /**
+   * @return a buffer limited to {@code size} bytes, reusing the one from the previous value if it
+   *     is big enough.
+   */
+  private ByteBuffer getBserBuffer(int size) {
+    if (size > MAX_RETAINED_BUFFER_SIZE) {
+      return ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+    }
+    if (bserBuffer.capacity() < size) {
+      int capacity = Math.min(
+          MAX_RETAINED_BUFFER_SIZE,
+          Math.max(size, bserBuffer.capacity() * 2));
+      bserBuffer = ByteBuffer.allocate(capacity).order(ByteOrder.nativeOrder());
+    }
+    bserBuffer.clear();
+    bserBuffer.limit(size);
     return bserBuffer;
   }
 
@@ -222,21 +265,62 @@ public class BserDeserializer {
   private String deserializeString(ByteBuffer buffer) throws IOException {
     byte intType = buffer.get();
     int len = deserializeIntLen(buffer, intType);
+    int limit = buffer.limit();
+    if (len > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+
+    int cacheIndex = -1;
+    if (len <= MAX_CACHED_STRING_LENGTH) {
+      byte[] array = buffer.array();
+      int start = buffer.arrayOffset() + buffer.position();
+      int hash = 1;
+      for (int i = start; i < start + len; i++) {
+        hash = 31 * hash + array[i];
+      }
+      cacheIndex = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+      byte[] cachedBytes = cachedStringBytes[cacheIndex];
+      if (cachedBytes != null && rangeEquals(cachedBytes, array, start, len)) {
+        buffer.position(buffer.position() + len);
+        return cachedStrings[cacheIndex];
+      }
+    }
 
     // We use a CharsetDecoder here instead of String(byte[], Charset)
     // because we want it to throw an exception for any non-UTF-8 input.
-    buffer.limit(buffer.position() + len);
+    int start = buffer.position();
+    buffer.limit(start + len);
 
+    String result;
     try {
       // We'll likely have many duplicates of this string. Java 7 and
       // up have not-insane behavior of String.intern(), so we'll use
       // it to deduplicate the String instances.
       //
       // See: http://java-performance.info/string-intern-in-java-6-7-8/
-      return utf8Decoder.decode(buffer).toString().intern();
+      result = utf8Decoder.decode(buffer).toString().intern();
     } finally {
-      buffer.limit(buffer.capacity());
+      buffer.limit(limit);
+    }
+    if (cacheIndex != -1) {
+      int arrayStart = buffer.arrayOffset() + start;
+      cachedStringBytes[cacheIndex] =
+          Arrays.copyOfRange(buffer.array(), arrayStart, arrayStart + len);
+      cachedStrings[cacheIndex] = result;
+    }
+    return result;
+  }
+
+  private static boolean rangeEquals(byte[] bytes, byte[] array, int start, int len) {
+    if (bytes.length != len) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (bytes[i] != array[start + i]) {
+        return false;
+      }
     }
+    return true;
   }
 
   private List<Object> deserializeArray(ByteBuffer buffer) throws IOException {
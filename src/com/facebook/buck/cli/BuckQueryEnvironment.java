@@ -16,6 +16,8 @@
 
 package com.facebook.buck.cli;
 
+import com.facebook.buck.graph.AcyclicDepthFirstPostOrderTraversal;
+import com.facebook.buck.graph.MutableDirectedGraph;
 import com.facebook.buck.io.MorePaths;
 import com.facebook.buck.io.ProjectFilesystem;
 import com.facebook.buck.json.BuildFileParseException;
@@ -24,6 +26,7 @@ import com.facebook.buck.model.BuildFileTree;
 import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.model.BuildTargetException;
 import com.facebook.buck.model.FilesystemBackedBuildFileTree;
+import com.facebook.buck.parser.Parser;
 import com.facebook.buck.parser.PerBuildState;
 import com.facebook.buck.query.QueryBuildTarget;
 import com.facebook.buck.query.QueryEnvironment;
@@ -35,32 +38,48 @@ import com.facebook.buck.query.QueryTargetAccessor;
 import com.facebook.buck.rules.Cell;
 import com.facebook.buck.rules.Description;
 import com.facebook.buck.rules.TargetGraph;
+import com.facebook.buck.rules.TargetGroup;
 import com.facebook.buck.rules.TargetNode;
 import com.facebook.buck.rules.TargetNodes;
+import com.facebook.buck.util.HumanReadableException;
 import com.facebook.buck.util.MoreCollectors;
-import com.facebook.buck.util.concurrent.MostExecutors;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
 
 /**
  * The environment of a Buck query that can evaluate queries to produce a result.
  *
  * The query language is documented at docs/command/query.soy
+ *
+ * The target graph is built up lazily: nodes are only loaded as far from the targets of the query
+ * as the query's functions look, and the edges of a node are only added once something asks for
+ * them.
  */
 public class BuckQueryEnvironment implements QueryEnvironment {
 
@@ -74,7 +93,13 @@ public class BuckQueryEnvironment implements QueryEnvironment {
   private final Map<Cell, BuildFileTree> buildFileTrees =  new HashMap<>();
   private final Map<BuildTarget, QueryTarget> buildTargetToQueryTarget = new HashMap<>();
 
-  private TargetGraph graph = TargetGraph.EMPTY;
+  private final MutableDirectedGraph<TargetNode<?, ?>> graph = new MutableDirectedGraph<>();
+  private final Map<BuildTarget, TargetNode<?, ?>> targetsToNodes = new HashMap<>();
+  /** Targets whose nodes are in {@link #graph} along with the edges to their deps. */
+  private final Set<BuildTarget> expandedTargets = new HashSet<>();
+  /** Expanded targets whose edges have not been checked for cycles and visibility yet. */
+  private final Set<BuildTarget> uncheckedTargets = new LinkedHashSet<>();
+  @Nullable private ImmutableSet<TargetGroup> targetGroups;
 
   private BuckQueryEnvironment(
       Cell rootCell,
@@ -123,8 +148,74 @@ public class BuckQueryEnvironment implements QueryEnvironment {
     );
   }
 
-  public TargetGraph getTargetGraph() {
-    return graph;
+  /**
+   * @return the part of the target graph that evaluating queries has loaded so far.
+   * @throws HumanReadableException if the loaded graph has a cycle, or a dep which is not visible
+   *     to the target that depends on it.
+   */
+  public TargetGraph getTargetGraph() throws QueryException {
+    checkNewEdges();
+    return new TargetGraph(graph, ImmutableMap.copyOf(targetsToNodes), getTargetGroups());
+  }
+
+  /**
+   * The groups are declared in the build files at the roots of the cells, so they are the same
+   * for every query evaluated in this environment.
+   */
+  private ImmutableSet<TargetGroup> getTargetGroups() throws QueryException {
+    if (targetGroups == null) {
+      try {
+        targetGroups = Parser.expandTargetGroups(parserState.getAllGroups());
+      } catch (AcyclicDepthFirstPostOrderTraversal.CycleException e) {
+        throw new HumanReadableException(e.getMessage());
+      } catch (BuildFileParseException e) {
+        throw new QueryException(e, "Error in building dependency graph");
+      }
+    }
+    return targetGroups;
+  }
+
+  /**
+   * Throws the error that building the target graph would if the edges added since the last check
+   * form a cycle or point at a dep which is not visible. The earlier edges were checked already,
+   * so any cycle goes through one of the new edges.
+   */
+  private void checkNewEdges() throws QueryException {
+    if (uncheckedTargets.isEmpty()) {
+      return;
+    }
+
+    AcyclicDepthFirstPostOrderTraversal<BuildTarget> traversal =
+        new AcyclicDepthFirstPostOrderTraversal<>(
+            target -> expandedTargets.contains(target) ?
+                getLoadedNode(target).getDeps().iterator() :
+                Collections.emptyIterator());
+    try {
+      traversal.traverse(uncheckedTargets);
+    } catch (AcyclicDepthFirstPostOrderTraversal.CycleException e) {
+      throw new HumanReadableException(e.getMessage());
+    }
+
+    // Visibility only looks up the groups of the two ends of an edge, so a graph holding just
+    // those nodes is enough context.
+    Map<BuildTarget, TargetNode<?, ?>> endpoints = new HashMap<>();
+    for (BuildTarget target : uncheckedTargets) {
+      endpoints.put(target, getLoadedNode(target));
+      for (BuildTarget dep : getLoadedNode(target).getDeps()) {
+        endpoints.put(dep, getLoadedNode(dep));
+      }
+    }
+    TargetGraph visibilityContext = new TargetGraph(
+        new MutableDirectedGraph<>(),
+        ImmutableMap.copyOf(endpoints),
+        getTargetGroups());
+    for (BuildTarget target : uncheckedTargets) {
+      TargetNode<?, ?> node = getLoadedNode(target);
+      for (BuildTarget dep : node.getDeps()) {
+        getLoadedNode(dep).isVisibleToOrThrow(visibilityContext, node);
+      }
+    }
+    uncheckedTargets.clear();
   }
 
   public PerBuildState getParserState() {
@@ -189,17 +280,15 @@ public class BuckQueryEnvironment implements QueryEnvironment {
           target,
           target.getClass().getName()));
     }
-    ListeningExecutorService executor = null;
+    BuildTarget buildTarget = ((QueryBuildTarget) target).getBuildTarget();
+    TargetNode<?, ?> node = targetsToNodes.get(buildTarget);
+    if (node != null) {
+      return node;
+    }
     try {
-      executor = com.google.common.util.concurrent.MoreExecutors.listeningDecorator(
-          MostExecutors.newSingleThreadExecutor("buck query.getNode"));
-      return parserState.getTargetNode(((QueryBuildTarget) target).getBuildTarget());
+      return parserState.getTargetNode(buildTarget);
     } catch (BuildTargetException | BuildFileParseException e) {
       throw new QueryException(e, "Error getting target node for %s\n%s", target, e.getMessage());
-    } finally {
-      if (executor != null) {
-        executor.shutdown();
-      }
     }
   }
 
@@ -239,18 +328,132 @@ public class BuckQueryEnvironment implements QueryEnvironment {
     return builder.build();
   }
 
-  /** Given a set of target nodes, returns the build targets. */
-  private static Set<BuildTarget> getTargetsFromNodes(Iterable<TargetNode<?, ?>> input) {
+  /** Given a set of query targets, returns those which are build targets. */
+  private static Set<BuildTarget> getBuildTargets(Iterable<QueryTarget> input) {
     Set<BuildTarget> result = new LinkedHashSet<>();
-    for (TargetNode<?, ?> node : input) {
-      result.add(node.getBuildTarget());
+    for (QueryTarget target : input) {
+      if (target instanceof QueryBuildTarget) {
+        result.add(((QueryBuildTarget) target).getBuildTarget());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Adds the nodes of {@code targets} to the graph. All the nodes that are not loaded yet are
+   * requested from the parser before waiting on any of them, so that they are parsed concurrently.
+   *
+   * @param targets the targets to load, each mapped to a target that depends on it, if any, which
+   *     is named in the error if the target cannot be loaded.
+   */
+  private void loadNodes(Map<BuildTarget, Optional<BuildTarget>> targets)
+      throws QueryException, InterruptedException {
+    List<BuildTarget> toLoad = new ArrayList<>();
+    List<ListenableFuture<TargetNode<?, ?>>> jobs = new ArrayList<>();
+    for (Map.Entry<BuildTarget, Optional<BuildTarget>> entry : targets.entrySet()) {
+      BuildTarget target = entry.getKey();
+      if (targetsToNodes.containsKey(target)) {
+        continue;
+      }
+      try {
+        jobs.add(parserState.getTargetNodeJob(target));
+      } catch (BuildTargetException | RuntimeException e) {
+        throw convertLoadFailure(target, entry.getValue(), e);
+      }
+      toLoad.add(target);
+    }
+
+    for (int i = 0; i < toLoad.size(); i++) {
+      BuildTarget target = toLoad.get(i);
+      TargetNode<?, ?> node;
+      try {
+        node = jobs.get(i).get();
+      } catch (ExecutionException e) {
+        throw convertLoadFailure(target, targets.get(target), e.getCause());
+      }
+      targetsToNodes.put(target, node);
+      graph.addNode(node);
+    }
+  }
+
+  private static Map<BuildTarget, Optional<BuildTarget>> withoutDependents(
+      Iterable<BuildTarget> targets) {
+    Map<BuildTarget, Optional<BuildTarget>> result = new LinkedHashMap<>();
+    for (BuildTarget target : targets) {
+      result.put(target, Optional.empty());
     }
     return result;
   }
 
+  private static RuntimeException convertLoadFailure(
+      BuildTarget target,
+      Optional<BuildTarget> dependent,
+      Throwable t) throws QueryException {
+    if (t instanceof BuildFileParseException ||
+        t instanceof BuildTargetException ||
+        t instanceof HumanReadableException) {
+      if (dependent.isPresent()) {
+        throw new HumanReadableException(
+            t,
+            "Couldn't get dependency '%s' of target '%s':\n%s",
+            target,
+            dependent.get(),
+            t.getMessage());
+      }
+      if (!(t instanceof HumanReadableException)) {
+        throw new QueryException(
+            t,
+            "Error getting target node for %s\n%s",
+            target,
+            t.getMessage());
+      }
+    }
+    Throwables.throwIfUnchecked(t);
+    throw new RuntimeException(t);
+  }
+
+  /**
+   * Adds the edges from the nodes of {@code targets} to their deps, loading the deps as needed.
+   * The nodes of {@code targets} must already be loaded.
+   */
+  private void expand(Iterable<BuildTarget> targets) throws QueryException, InterruptedException {
+    Map<BuildTarget, Optional<BuildTarget>> deps = new LinkedHashMap<>();
+    List<BuildTarget> toExpand = new ArrayList<>();
+    for (BuildTarget target : targets) {
+      if (expandedTargets.contains(target)) {
+        continue;
+      }
+      for (BuildTarget dep : getLoadedNode(target).getDeps()) {
+        deps.putIfAbsent(dep, Optional.of(target));
+      }
+      toExpand.add(target);
+    }
+    loadNodes(deps);
+
+    for (BuildTarget target : toExpand) {
+      TargetNode<?, ?> node = getLoadedNode(target);
+      for (BuildTarget dep : node.getDeps()) {
+        graph.addEdge(node, getLoadedNode(dep));
+      }
+      expandedTargets.add(target);
+      uncheckedTargets.add(target);
+    }
+  }
+
+  private TargetNode<?, ?> getLoadedNode(BuildTarget target) {
+    return Preconditions.checkNotNull(
+        targetsToNodes.get(target),
+        "No target node loaded for %s",
+        target);
+  }
+
   @Override
   public ImmutableSet<QueryTarget> getFwdDeps(Iterable<QueryTarget> targets)
       throws QueryException, InterruptedException {
+    Set<BuildTarget> buildTargets = getBuildTargets(targets);
+    loadNodes(withoutDependents(buildTargets));
+    expand(buildTargets);
+
     ImmutableSet.Builder<QueryTarget> result = new ImmutableSet.Builder<>();
     for (QueryTarget target : targets) {
       TargetNode<?, ?> node = getNode(target);
@@ -281,22 +484,25 @@ public class BuckQueryEnvironment implements QueryEnvironment {
   @Override
   public ImmutableSet<QueryTarget> getTransitiveClosure(Set<QueryTarget> targets)
       throws QueryException, InterruptedException {
+    Set<BuildTarget> roots = getBuildTargets(targets);
+    buildTransitiveClosure(roots, Integer.MAX_VALUE);
+
     Set<TargetNode<?, ?>> nodes = new LinkedHashSet<>();
-    for (QueryTarget target : targets) {
-      nodes.add(getNode(target));
+    Queue<TargetNode<?, ?>> toVisit = new ArrayDeque<>();
+    for (BuildTarget root : roots) {
+      TargetNode<?, ?> node = getLoadedNode(root);
+      if (nodes.add(node)) {
+        toVisit.add(node);
+      }
     }
-    // Reusing the existing getSubgraph() for simplicity. It builds the graph when we only need the
-    // nodes. The impact of creating the edges in terms of time and space should be minimal.
-    return getTargetsFromTargetNodes(graph.getSubgraph(nodes).getNodes());
-  }
-
-  private void buildGraphForBuildTargets(Set<BuildTarget> targets)
-      throws QueryException, InterruptedException {
-    try {
-      graph = parserState.buildTargetGraph(targets);
-    } catch (BuildFileParseException | BuildTargetException | IOException e) {
-      throw new QueryException(e, "Error in building dependency graph");
+    while (!toVisit.isEmpty()) {
+      for (TargetNode<?, ?> dep : graph.getOutgoingNodesFor(toVisit.remove())) {
+        if (nodes.add(dep)) {
+          toVisit.add(dep);
+        }
+      }
     }
+    return getTargetsFromTargetNodes(nodes);
   }
 
   @Override
@@ -305,25 +511,37 @@ public class BuckQueryEnvironment implements QueryEnvironment {
       int maxDepth,
       ListeningExecutorService executor)
       throws QueryException, InterruptedException {
-    // Filter QueryTargets that are build targets and not yet present in the build target graph.
-    Set<BuildTarget> graphTargets = getTargetsFromNodes(graph.getNodes());
-    Set<BuildTarget> newBuildTargets = new HashSet<>();
-    for (QueryTarget target : targets) {
-      if (target instanceof QueryBuildTarget) {
-        BuildTarget buildTarget = ((QueryBuildTarget) target).getBuildTarget();
-        if (!graphTargets.contains(buildTarget)) {
-          newBuildTargets.add(buildTarget);
-        }
-      }
-    }
-    if (!newBuildTargets.isEmpty()) {
-      buildGraphForBuildTargets(Sets.union(newBuildTargets, graphTargets));
-      for (BuildTarget buildTarget : getTargetsFromNodes(graph.getNodes())) {
-        if (!buildTargetToQueryTarget.containsKey(buildTarget)) {
-          buildTargetToQueryTarget.put(buildTarget, QueryBuildTarget.of(buildTarget));
+    buildTransitiveClosure(getBuildTargets(targets), maxDepth);
+  }
+
+  /**
+   * Loads the nodes up to {@code maxDepth} edges away from {@code targets}, and the edges between
+   * them, one level at a time. Nodes and edges loaded by earlier calls are reused. Dependency
+   * cycles and visibility violations among the new edges, and missing files among the loaded
+   * nodes, are reported just like building the target graph reports them.
+   */
+  private void buildTransitiveClosure(Set<BuildTarget> targets, int maxDepth)
+      throws QueryException, InterruptedException {
+    Map<BuildTarget, Optional<BuildTarget>> level = withoutDependents(targets);
+    loadNodes(level);
+
+    Set<BuildTarget> visited = new HashSet<>(level.keySet());
+    for (int depth = 0; depth < maxDepth && !level.isEmpty(); depth++) {
+      expand(level.keySet());
+      Map<BuildTarget, Optional<BuildTarget>> next = new LinkedHashMap<>();
+      for (BuildTarget target : level.keySet()) {
+        for (BuildTarget dep : getLoadedNode(target).getDeps()) {
+          if (visited.add(dep)) {
+            next.put(dep, Optional.of(target));
+          }
         }
       }
+      level = next;
     }
+
+    // Report the same errors as building the target graph of the closure would.
+    checkNewEdges();
+    parserState.ensureConcreteFilesExist();
   }
 
   @Override
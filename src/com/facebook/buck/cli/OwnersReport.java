@@ -179,30 +179,20 @@ final class OwnersReport {
             .resolve(rootCell.getBuildFileName());
         Preconditions.checkState(cellFilesystem.exists(buckFile));
 
-        // Parse buck files and load target nodes.
-        if (!targetNodes.containsKey(buckFile)) {
-          try {
-            targetNodes.put(
-                buckFile,
-                parser.getAllTargetNodes(
-                    eventBus,
-                    rootCell,
-                  /* enable profiling */ false,
-                    executor,
-                    buckFile));
-          } catch (BuildFileParseException e) {
-            Path targetBasePath = MorePaths.relativize(rootPath, rootPath.resolve(basePath.get()));
-            String targetBaseName = "//" + MorePaths.pathWithUnixSeparators(targetBasePath);
-
-            console
-                .getStdErr()
-                .format("Could not parse build targets for %s: %s%n", targetBaseName,
-                    e.getHumanReadableErrorMessage());
-            throw e;
-          }
+        // The owners of a file are indexed as the nodes of its build file are cached, so the
+        // build file only has to be parsed if some of its nodes aren't. Directories and missing
+        // files are reported by every node, so those always go through the build file.
+        Optional<ImmutableSet<TargetNode<?, ?>>> cachedOwners = Optional.empty();
+        if (cellFilesystem.isFile(filePath)) {
+          cachedOwners = parser.getCachedTargetNodesWithInput(rootCell, buckFile, filePath);
         }
-
-        for (TargetNode<?, ?> targetNode : targetNodes.get(buckFile)) {
+        Iterable<TargetNode<?, ?>> candidates;
+        if (cachedOwners.isPresent()) {
+          candidates = cachedOwners.get();
+        } else {
+          candidates = getAllTargetNodes(executor, targetNodes, rootPath, basePath.get(), buckFile);
+        }
+        for (TargetNode<?, ?> targetNode : candidates) {
           report = report.updatedWith(
               generateOwnersReport(
                   rootCell,
@@ -212,5 +202,36 @@ final class OwnersReport {
       }
       return report;
     }
+
+    private ImmutableSet<TargetNode<?, ?>> getAllTargetNodes(
+        ListeningExecutorService executor,
+        Map<Path, ImmutableSet<TargetNode<?, ?>>> targetNodes,
+        Path rootPath,
+        Path basePath,
+        Path buckFile) throws BuildFileParseException {
+      ImmutableSet<TargetNode<?, ?>> nodes = targetNodes.get(buckFile);
+      if (nodes != null) {
+        return nodes;
+      }
+      try {
+        nodes = parser.getAllTargetNodes(
+            eventBus,
+            rootCell,
+            /* enable profiling */ false,
+            executor,
+            buckFile);
+      } catch (BuildFileParseException e) {
+        Path targetBasePath = MorePaths.relativize(rootPath, rootPath.resolve(basePath));
+        String targetBaseName = "//" + MorePaths.pathWithUnixSeparators(targetBasePath);
+
+        console
+            .getStdErr()
+            .format("Could not parse build targets for %s: %s%n", targetBaseName,
+                e.getHumanReadableErrorMessage());
+        throw e;
+      }
+      targetNodes.put(buckFile, nodes);
+      return nodes;
+    }
   }
 }
@@ -108,4 +108,14 @@ interface AbstractCxxPlatform extends FlavorConvertible {
 
   Optional<String> getBinaryExtension();
 
+  /**
+   * @return whether rules should create header symlink trees by default. When disabled, rules on
+   *     toolchains which support header maps only get a header map which references headers where
+   *     they live, rather than a symlink per header.
+   */
+  @Value.Default
+  default boolean getHeadersSymlinksEnabled() {
+    return true;
+  }
+
 }
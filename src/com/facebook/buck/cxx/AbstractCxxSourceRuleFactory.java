@@ -532,7 +532,8 @@ abstract class AbstractCxxSourceRuleFactory {
         precompiledHeaderRule,
         getCxxPlatform().getCompilerDebugPathSanitizer(),
         getCxxPlatform().getAssemblerDebugPathSanitizer(),
-        getSandboxTree());
+        getSandboxTree(),
+        getCxxBuckConfig().getPreprocessedOutputCache());
     getResolver().addToIndex(result);
     return result;
   }
@@ -16,8 +16,6 @@
 
 package com.facebook.buck.cxx;
 
-import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
-
 import com.facebook.buck.cxx.elf.Elf;
 import com.facebook.buck.io.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
@@ -25,45 +23,41 @@ import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.util.immutables.BuckStyleTuple;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 
 import org.immutables.value.Value;
 
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 
 /**
  * A step which zeros out the program headers of an ELF file.
  */
 @Value.Immutable
 @BuckStyleTuple
-abstract class AbstractElfClearProgramHeadersStep implements Step {
+abstract class AbstractElfClearProgramHeadersStep implements Step, ElfScrubber {
 
   abstract ProjectFilesystem getFilesystem();
   abstract Path getPath();
 
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
-    try (FileChannel channel =
-             FileChannel.open(
-                 getFilesystem().resolve(getPath()),
-                 StandardOpenOption.READ,
-                 StandardOpenOption.WRITE)) {
-      MappedByteBuffer buffer = channel.map(READ_WRITE, 0, channel.size());
-      Elf elf = new Elf(buffer);
-      Preconditions.checkState(
-          elf.header.e_phoff == (int) elf.header.e_phoff,
-          "program headers are expected to be within 4GB of beginning of file");
-      buffer.position((int) elf.header.e_phoff);
-      for (int index = 0; index < elf.header.e_phnum * elf.header.e_phentsize; index++) {
-        buffer.put((byte) 0);
-      }
-    }
+    ElfScrubberStep.scrub(getFilesystem().resolve(getPath()), ImmutableList.of(this));
     return StepExecutionResult.SUCCESS;
   }
 
+  @Override
+  public void scrub(ByteBuffer buffer, Elf elf) {
+    Preconditions.checkState(
+        elf.header.e_phoff == (int) elf.header.e_phoff,
+        "program headers are expected to be within 4GB of beginning of file");
+    buffer.position((int) elf.header.e_phoff);
+    for (int index = 0; index < elf.header.e_phnum * elf.header.e_phentsize; index++) {
+      buffer.put((byte) 0);
+    }
+  }
+
   @Override
   public final String getShortName() {
     return "clear_program_headers";
@@ -16,8 +16,6 @@
 
 package com.facebook.buck.cxx;
 
-import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
-
 import com.facebook.buck.cxx.elf.Elf;
 import com.facebook.buck.cxx.elf.ElfDynamicSection;
 import com.facebook.buck.cxx.elf.ElfHeader;
@@ -28,15 +26,13 @@ import com.facebook.buck.step.ExecutionContext;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.util.immutables.BuckStyleTuple;
+import com.google.common.collect.ImmutableList;
 
 import org.immutables.value.Value;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.EnumSet;
 import java.util.Optional;
 
@@ -46,7 +42,7 @@ import java.util.Optional;
  */
 @Value.Immutable
 @BuckStyleTuple
-abstract class AbstractElfDynamicSectionScrubberStep implements Step {
+abstract class AbstractElfDynamicSectionScrubberStep implements Step, ElfScrubber {
 
   static final String SECTION = ".dynamic";
 
@@ -61,43 +57,43 @@ abstract class AbstractElfDynamicSectionScrubberStep implements Step {
 
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
-    try (FileChannel channel =
-             FileChannel.open(
-                 getFilesystem().resolve(getPath()),
-                 StandardOpenOption.READ,
-                 StandardOpenOption.WRITE)) {
-      MappedByteBuffer buffer = channel.map(READ_WRITE, 0, channel.size());
-      Elf elf = new Elf(buffer);
-      Optional<ElfSection> section = elf.getSectionByName(SECTION).map(Pair::getSecond);
-      if (!section.isPresent()) {
-        throw new IOException(
-            String.format(
-                "Error parsing ELF file %s: no such section \"%s\"",
-                getPath(),
-                SECTION));
-      }
-      for (ByteBuffer body = section.get().body; body.hasRemaining(); ) {
-        ElfDynamicSection.DTag dTag =
-            ElfDynamicSection.DTag.valueOf(
-                elf.header.ei_class == ElfHeader.EIClass.ELFCLASS32 ?
-                    Elf.Elf32.getElf32Sword(body) :
-                    (int) Elf.Elf64.getElf64Sxword(body));
-        if (!WHITELISTED_TAGS.contains(dTag)) {
-          if (elf.header.ei_class == ElfHeader.EIClass.ELFCLASS32) {
-            Elf.Elf32.putElf32Addr(body, 0);  // d_ptr
-          } else {
-            Elf.Elf64.putElf64Addr(body, 0);  // d_ptr
-          }
+    ElfScrubberStep.scrub(getFilesystem().resolve(getPath()), ImmutableList.of(this));
+    return StepExecutionResult.SUCCESS;
+  }
+
+  @Override
+  public void scrub(ByteBuffer buffer, Elf elf) throws IOException {
+    Optional<ElfSection> section = elf.getSectionByName(SECTION).map(Pair::getSecond);
+    if (!section.isPresent()) {
+      throw new IOException(
+          String.format(
+              "Error parsing ELF file %s: no such section \"%s\"",
+              getPath(),
+              SECTION));
+    }
+    // Section bodies are shared by all scrubbers of the file, so start from the beginning.
+    ByteBuffer body = section.get().body;
+    body.rewind();
+    while (body.hasRemaining()) {
+      ElfDynamicSection.DTag dTag =
+          ElfDynamicSection.DTag.valueOf(
+              elf.header.ei_class == ElfHeader.EIClass.ELFCLASS32 ?
+                  Elf.Elf32.getElf32Sword(body) :
+                  (int) Elf.Elf64.getElf64Sxword(body));
+      if (!WHITELISTED_TAGS.contains(dTag)) {
+        if (elf.header.ei_class == ElfHeader.EIClass.ELFCLASS32) {
+          Elf.Elf32.putElf32Addr(body, 0);  // d_ptr
         } else {
-          if (elf.header.ei_class == ElfHeader.EIClass.ELFCLASS32) {
-            Elf.Elf32.getElf32Addr(body);  // d_ptr
-          } else {
-            Elf.Elf64.getElf64Addr(body);  // d_ptr
-          }
+          Elf.Elf64.putElf64Addr(body, 0);  // d_ptr
+        }
+      } else {
+        if (elf.header.ei_class == ElfHeader.EIClass.ELFCLASS32) {
+          Elf.Elf32.getElf32Addr(body);  // d_ptr
+        } else {
+          Elf.Elf64.getElf64Addr(body);  // d_ptr
         }
       }
     }
-    return StepExecutionResult.SUCCESS;
   }
 
   @Override
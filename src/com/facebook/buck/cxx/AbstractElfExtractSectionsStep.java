@@ -17,99 +17,186 @@
 package com.facebook.buck.cxx;
 
 import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
 
 import com.facebook.buck.cxx.elf.Elf;
-import com.facebook.buck.cxx.elf.ElfSection;
+import com.facebook.buck.cxx.elf.ElfHeader;
+import com.facebook.buck.cxx.elf.ElfSectionHeader;
 import com.facebook.buck.io.ProjectFilesystem;
-import com.facebook.buck.shell.DefaultShellStep;
 import com.facebook.buck.step.ExecutionContext;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.util.immutables.BuckStyleTuple;
 import com.google.common.base.Joiner;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 
 import org.immutables.value.Value;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A step which extracts specific sections from an ELF file and compacts them into a new ELF file.
+ *
+ * The output is written directly from a mapping of the input: it keeps the ELF header and a zeroed
+ * copy of the program headers, followed by the extracted sections, a new section name string table
+ * and the section headers.  Sections are laid out in their original order, each at an address
+ * matching its (aligned) file offset.
  */
 @Value.Immutable
 @BuckStyleTuple
 abstract class AbstractElfExtractSectionsStep implements Step {
 
+  // Section header flag marking `sh_info` as holding a section index.
+  private static final long SHF_INFO_LINK = 0x40;
+  private static final int SHT_STRTAB = 3;
+  private static final String SHSTRTAB = ".shstrtab";
+
   abstract ProjectFilesystem getFilesystem();
-  abstract ImmutableList<String> getObjcopyPrefix();
   abstract Path getInput();
   abstract Path getOutput();
   abstract ImmutableSet<String> getSections();
 
-  // We want to compact the sections into the new ELF file, so find out the new addresses of each
-  // section.
-  private ImmutableMap<String, Long> getNewSectionAddresses() throws IOException {
-    ImmutableMap.Builder<String, Long> addresses = ImmutableMap.builder();
-    try (FileChannel channel =
+  @Override
+  public StepExecutionResult execute(ExecutionContext context) throws IOException {
+    try (FileChannel input =
+             FileChannel.open(getFilesystem().resolve(getInput()), StandardOpenOption.READ);
+         FileChannel output =
              FileChannel.open(
-                 getFilesystem().resolve(getInput()),
-                 StandardOpenOption.READ)) {
-      MappedByteBuffer buffer = channel.map(READ_ONLY, 0, channel.size());
+                 getFilesystem().resolve(getOutput()),
+                 StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING,
+                 StandardOpenOption.READ,
+                 StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = input.map(READ_ONLY, 0, input.size());
       Elf elf = new Elf(buffer);
+      ElfHeader header = elf.header;
+      boolean is64Bit = header.ei_class == ElfHeader.EIClass.ELFCLASS64;
 
-      // We start placing sections right after the program headers.
-      long end = elf.header.e_phoff + elf.header.e_phnum * elf.header.e_phentsize;
-      for (int index = 0; index < elf.getNumberOfSections(); index++) {
-        ElfSection section = elf.getSectionByIndex(index);
-        String name = elf.getSectionName(section.header);
-        // If this is a target section, assign it the current address, then increment the next
-        // address by this sections size.
+      // Find the sections we're keeping, and the index each will have in the new file.  Index 0 is
+      // reserved for the null section.
+      List<Integer> kept = new ArrayList<>();
+      Map<Integer, Integer> newIndices = new HashMap<>();
+      ByteArrayOutputStream names = new ByteArrayOutputStream();
+      names.write(0);
+      List<Integer> nameOffsets = new ArrayList<>();
+      for (int index = 1; index < elf.getNumberOfSections(); index++) {
+        String name = elf.getSectionName(elf.getSectionByIndex(index).header);
         if (getSections().contains(name)) {
-          addresses.put(name, end);
-          end += section.header.sh_size;
+          kept.add(index);
+          newIndices.put(index, kept.size());
+          nameOffsets.add(names.size());
+          names.write(name.getBytes(StandardCharsets.US_ASCII));
+          names.write(0);
         }
       }
-    }
-    return addresses.build();
-  }
+      int shstrtabNameOffset = names.size();
+      names.write(SHSTRTAB.getBytes(StandardCharsets.US_ASCII));
+      names.write(0);
+      int shnum = kept.size() + 2;
+
+      // Lay out the new file.
+      long phoff = header.e_phnum == 0 ? 0 : header.e_ehsize;
+      long end = header.e_ehsize + header.e_phnum * header.e_phentsize;
+      List<Long> offsets = new ArrayList<>();
+      for (int index : kept) {
+        ElfSectionHeader section = elf.getSectionByIndex(index).header;
+        end = align(end, section.sh_addralign);
+        offsets.add(end);
+        end += section.sh_type == ElfSectionHeader.SHType.SHT_NOBITS ? 0 : section.sh_size;
+      }
+      long shstrtabOffset = end;
+      end += names.size();
+      long shoff = align(end, is64Bit ? 8 : 4);
+      end = shoff + shnum * header.e_shentsize;
+      Preconditions.checkState(
+          end == (int) end,
+          "extracted sections of %s are expected to fit in 2GB",
+          getInput());
+
+      MappedByteBuffer out = output.map(READ_WRITE, 0, end);
+      out.order(buffer.order());
+
+      // Copy the ELF header, pointing it at the new program and section headers.  The entry point
+      // doesn't matter when linking against the result, so clear it to keep it stable.
+      copy(buffer, 0, out, 0, header.e_ehsize);
+      putAddr(out, 24, is64Bit, 0);
+      putAddr(out, is64Bit ? 32 : 28, is64Bit, phoff);
+      putAddr(out, is64Bit ? 40 : 32, is64Bit, shoff);
+      out.putShort(is64Bit ? 60 : 48, (short) shnum);
+      out.putShort(is64Bit ? 62 : 50, (short) (shnum - 1));
 
-  private ImmutableList<String> getObjcopyCommand(ImmutableMap<String, Long> addresses) {
-    ImmutableList.Builder<String> args = ImmutableList.builder();
-    args.addAll(getObjcopyPrefix());
-    for (String section : getSections()) {
-      Long address = addresses.get(section);
-      if (address != null) {
-        args.add(
-            "--only-section", section,
-            "--change-section-address", String.format("%s=0x%x", section, address));
+      // Copy the section contents and their headers, remapping section indices.
+      for (int i = 0; i < kept.size(); i++) {
+        int index = kept.get(i);
+        ElfSectionHeader section = elf.getSectionByIndex(index).header;
+        if (section.sh_type != ElfSectionHeader.SHType.SHT_NOBITS) {
+          copy(buffer, section.sh_off, out, offsets.get(i), section.sh_size);
+        }
+        int entry = (int) (shoff + (i + 1) * header.e_shentsize);
+        copy(buffer, header.e_shoff + index * header.e_shentsize, out, entry, header.e_shentsize);
+        out.putInt(entry, nameOffsets.get(i));
+        putAddr(out, entry + (is64Bit ? 16 : 12), is64Bit, offsets.get(i));
+        putAddr(out, entry + (is64Bit ? 24 : 16), is64Bit, offsets.get(i));
+        out.putInt(
+            entry + (is64Bit ? 40 : 24),
+            newIndices.getOrDefault((int) section.sh_link, 0));
+        if ((section.sh_flags & SHF_INFO_LINK) != 0) {
+          out.putInt(
+              entry + (is64Bit ? 44 : 28),
+              newIndices.getOrDefault((int) section.sh_info, 0));
+        }
       }
+
+      // Write out the section name string table and its header.
+      out.position((int) shstrtabOffset);
+      out.put(names.toByteArray());
+      int entry = (int) (shoff + (shnum - 1) * header.e_shentsize);
+      out.putInt(entry, shstrtabNameOffset);
+      out.putInt(entry + 4, SHT_STRTAB);
+      putAddr(out, entry + (is64Bit ? 24 : 16), is64Bit, shstrtabOffset);
+      putAddr(out, entry + (is64Bit ? 32 : 20), is64Bit, names.size());
+      putAddr(out, entry + (is64Bit ? 48 : 32), is64Bit, 1);
     }
-    args.add(getInput().toString());
-    args.add(getOutput().toString());
-    return args.build();
+    return StepExecutionResult.SUCCESS;
   }
 
-  @Override
-  public StepExecutionResult execute(ExecutionContext context)
-      throws IOException, InterruptedException {
-    ImmutableMap<String, Long> addresses = getNewSectionAddresses();
-    Step objcopy =
-        new DefaultShellStep(
-            getFilesystem().getRootPath(),
-            /* args */ getObjcopyCommand(addresses),
-            /* env */ ImmutableMap.of());
-    return objcopy.execute(context);
+  private static long align(long offset, long alignment) {
+    return alignment <= 1 ? offset : (offset + alignment - 1) / alignment * alignment;
+  }
+
+  private static void copy(ByteBuffer from, long offset, ByteBuffer to, long position, long size) {
+    ByteBuffer source = from.duplicate();
+    source.position((int) offset);
+    source.limit((int) (offset + size));
+    ByteBuffer destination = to.duplicate();
+    destination.position((int) position);
+    destination.put(source);
+  }
+
+  // Writes an address, offset or size field, which is 4 bytes in 32-bit files and 8 in 64-bit.
+  private static void putAddr(ByteBuffer buffer, int position, boolean is64Bit, long value) {
+    if (is64Bit) {
+      buffer.putLong(position, value);
+    } else {
+      buffer.putInt(position, (int) value);
+    }
   }
 
   @Override
   public final String getShortName() {
-    return "scrub_symbol_table";
+    return "extract_sections";
   }
 
   @Override
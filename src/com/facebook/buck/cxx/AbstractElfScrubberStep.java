@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+
+import com.facebook.buck.cxx.elf.Elf;
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.StepExecutionResult;
+import com.facebook.buck.util.immutables.BuckStyleTuple;
+import com.google.common.collect.ImmutableList;
+
+import org.immutables.value.Value;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A step which runs several {@link ElfScrubber}s over an ELF file, mapping and parsing it once
+ * rather than once per scrubber.
+ */
+@Value.Immutable
+@BuckStyleTuple
+abstract class AbstractElfScrubberStep implements Step {
+
+  abstract ProjectFilesystem getFilesystem();
+  abstract Path getPath();
+  abstract ImmutableList<ElfScrubber> getScrubbers();
+
+  @Override
+  public StepExecutionResult execute(ExecutionContext context) throws IOException {
+    scrub(getFilesystem().resolve(getPath()), getScrubbers());
+    return StepExecutionResult.SUCCESS;
+  }
+
+  static void scrub(Path path, Iterable<? extends ElfScrubber> scrubbers) throws IOException {
+    try (FileChannel channel =
+             FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(READ_WRITE, 0, channel.size());
+      Elf elf = new Elf(buffer);
+      for (ElfScrubber scrubber : scrubbers) {
+        scrubber.scrub(buffer, elf);
+      }
+    }
+  }
+
+  @Override
+  public final String getShortName() {
+    return "scrub_elf";
+  }
+
+  @Override
+  public String getDescription(ExecutionContext context) {
+    return "Scrub ELF file " + getPath();
+  }
+
+}
@@ -16,8 +16,6 @@
 
 package com.facebook.buck.cxx;
 
-import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
-
 import com.facebook.buck.cxx.elf.Elf;
 import com.facebook.buck.cxx.elf.ElfSection;
 import com.facebook.buck.cxx.elf.ElfSymbolTable;
@@ -36,10 +34,8 @@ import com.google.common.collect.ImmutableList;
 import org.immutables.value.Value;
 
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 
 /**
@@ -47,7 +43,7 @@ import java.util.Optional;
  */
 @Value.Immutable
 @BuckStyleTuple
-abstract class AbstractElfSymbolTableScrubberStep implements Step {
+abstract class AbstractElfSymbolTableScrubberStep implements Step, ElfScrubber {
 
   @VisibleForTesting
   static final int STABLE_SECTION = 1;
@@ -93,37 +89,36 @@ abstract class AbstractElfSymbolTableScrubberStep implements Step {
 
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
-    try (FileChannel channel =
-             FileChannel.open(
-                 getFilesystem().resolve(getPath()),
-                 StandardOpenOption.READ,
-                 StandardOpenOption.WRITE)) {
-      MappedByteBuffer buffer = channel.map(READ_WRITE, 0, channel.size());
-      Elf elf = new Elf(buffer);
-
-      // Locate the symbol table section.
-      Optional<ElfSection> section = elf.getSectionByName(getSection()).map(Pair::getSecond);
-      if (!section.isPresent()) {
-        if (isAllowMissing()) {
-          return StepExecutionResult.SUCCESS;
-        } else {
-          throw new IOException(
-              String.format(
-                  "Error parsing ELF file %s: no such section \"%s\"",
-                  getPath(),
-                  getSection()));
-        }
-      }
+    ElfScrubberStep.scrub(getFilesystem().resolve(getPath()), ImmutableList.of(this));
+    return StepExecutionResult.SUCCESS;
+  }
 
-      // Read in and fixup the symbol table then write it back out.
-      ElfSymbolTable table = ElfSymbolTable.parse(elf.header.ei_class, section.get().body);
-      ElfSymbolTable fixedUpTable = fixUpSymbolTable(table);
-      Preconditions.checkState(table.entries.size() == fixedUpTable.entries.size());
-      section.get().body.rewind();
-      fixedUpTable.write(elf.header.ei_class, section.get().body);
+  @Override
+  public void scrub(ByteBuffer buffer, Elf elf) throws IOException {
+
+    // Locate the symbol table section.
+    Optional<ElfSection> section = elf.getSectionByName(getSection()).map(Pair::getSecond);
+    if (!section.isPresent()) {
+      if (isAllowMissing()) {
+        return;
+      } else {
+        throw new IOException(
+            String.format(
+                "Error parsing ELF file %s: no such section \"%s\"",
+                getPath(),
+                getSection()));
+      }
     }
 
-    return StepExecutionResult.SUCCESS;
+    // Read in and fixup the symbol table then write it back out.  Section bodies are shared by all
+    // scrubbers of the file, so start from the beginning.
+    ByteBuffer body = section.get().body;
+    body.rewind();
+    ElfSymbolTable table = ElfSymbolTable.parse(elf.header.ei_class, body);
+    ElfSymbolTable fixedUpTable = fixUpSymbolTable(table);
+    Preconditions.checkState(table.entries.size() == fixedUpTable.entries.size());
+    body.rewind();
+    fixedUpTable.write(elf.header.ei_class, body);
   }
 
   @Override
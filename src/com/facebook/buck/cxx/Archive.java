@@ -227,6 +227,10 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
     return contents;
   }
 
+  public ImmutableList<SourcePath> getInputs() {
+    return inputs;
+  }
+
   /**
    * How this archive packages its contents.
    */
@@ -16,6 +16,8 @@
 
 package com.facebook.buck.cxx;
 
+import com.facebook.buck.artifact_cache.ArtifactCacheBuckConfig;
+import com.facebook.buck.artifact_cache.DirCacheEntry;
 import com.facebook.buck.cli.BuckConfig;
 import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.model.Flavor;
@@ -268,6 +270,33 @@ public class CxxBuckConfig {
     return delegate.getBooleanValue(cxxSection, "cache_links", true);
   }
 
+  /**
+   * @return whether links using a linker with ThinLTO support are split into an indexing link,
+   *     separately cached backend compiles of each object, and a final native link.
+   */
+  public boolean shouldUseDistributedThinLto() {
+    return delegate.getBooleanValue(cxxSection, "distributed_thin_lto", false);
+  }
+
+  /**
+   * @return the flags to pass to the compiler when running the ThinLTO backend for an object.
+   */
+  public ImmutableList<String> getThinLtoBackendFlags() {
+    return getFlags("thin_lto_backend_flags").orElse(ImmutableList.of("-O2"));
+  }
+
+  /**
+   * @return the dir cache in which compiles which preprocess their input look up the object file
+   *     by a hash of the preprocessed source, before running the compiler, if that is enabled. This
+   *     is the {@code [cache]} section's dir cache, with its location, size limit and mode.
+   */
+  public Optional<DirCacheEntry> getPreprocessedOutputCache() {
+    if (!delegate.getBooleanValue(cxxSection, "cache_preprocessed_output", false)) {
+      return Optional.empty();
+    }
+    return Optional.of(new ArtifactCacheBuckConfig(delegate).getDefaultDirCacheEntry());
+  }
+
   public boolean isPCHEnabled() {
     return delegate.getBooleanValue(cxxSection, "pch_enabled", true);
   }
@@ -276,6 +305,14 @@ public class CxxBuckConfig {
     return delegate.getBooleanValue(cxxSection, "sandbox_sources", false);
   }
 
+  /**
+   * @return whether to create header symlink trees for rules which don't explicitly choose, when
+   *     the toolchain could use header maps instead.
+   */
+  public boolean shouldCreateHeadersSymlinks() {
+    return delegate.getBooleanValue(cxxSection, "headers_symlinks_enabled", true);
+  }
+
   public Archive.Contents getArchiveContents() {
     return delegate.getEnum(
         cxxSection,
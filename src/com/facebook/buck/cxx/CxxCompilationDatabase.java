@@ -37,7 +37,10 @@ import com.facebook.buck.step.ExecutionContext;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.fs.MkdirStep;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
@@ -149,8 +152,7 @@ public class CxxCompilationDatabase extends AbstractBuildRule implements HasRunt
 
     @Override
     public StepExecutionResult execute(ExecutionContext context) {
-      Iterable<CxxCompilationDatabaseEntry> entries = createEntries();
-      return StepExecutionResult.of(writeOutput(entries, context));
+      return StepExecutionResult.of(writeOutput(context));
     }
 
     @VisibleForTesting
@@ -177,13 +179,19 @@ public class CxxCompilationDatabase extends AbstractBuildRule implements HasRunt
           arguments);
     }
 
-    private int writeOutput(
-        Iterable<CxxCompilationDatabaseEntry> entries,
-        ExecutionContext context) {
+    private int writeOutput(ExecutionContext context) {
+      ObjectMapper mapper = context.getObjectMapper();
+      ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
       try (OutputStream outputStream =
-               getProjectFilesystem().newFileOutputStream(outputRelativePath)) {
-        ObjectMapper mapper = context.getObjectMapper();
-        mapper.writeValue(outputStream, entries);
+               getProjectFilesystem().newFileOutputStream(outputRelativePath);
+           JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+        // Write each entry as soon as it's created rather than collecting them all first, as
+        // entries have full command lines and there can be many thousands of them.
+        generator.writeStartArray();
+        for (CxxPreprocessAndCompile compileRule : compileRules) {
+          writer.writeValue(generator, createEntry(compileRule));
+        }
+        generator.writeEndArray();
       } catch (IOException e) {
         logError(e, context);
         return 1;
@@ -880,7 +880,8 @@ public class CxxDescriptionEnhancer {
 
     // Setup the header symlink tree and combine all the preprocessor input from this rule
     // and all dependencies.
-    boolean shouldCreatePrivateHeadersSymlinks = xcodePrivateHeadersSymlinks.orElse(true);
+    boolean shouldCreatePrivateHeadersSymlinks =
+        xcodePrivateHeadersSymlinks.orElse(cxxPlatform.getHeadersSymlinksEnabled());
     HeaderSymlinkTree headerSymlinkTree = requireHeaderSymlinkTree(
         params,
         resolver,
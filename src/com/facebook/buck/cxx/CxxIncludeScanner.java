@@ -0,0 +1,311 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.io.MorePaths;
+import com.facebook.buck.rules.SourcePath;
+import com.facebook.buck.rules.SourcePathResolver;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Predicts the headers a C/C++ source will include without running the preprocessor.
+ *
+ * This follows {@code #include} and {@code #import} directives through the header symlink trees
+ * and header directories that would be passed to the preprocessor, resolving names against the
+ * symlink trees' name-to-path maps rather than the trees on disk, so it works before the trees
+ * have been built. Conditional compilation is ignored, so the result is an over-approximation of
+ * what the dep file would list after a build. It is meant for warming caches ahead of a manifest
+ * lookup, not for correctness decisions.
+ *
+ * The directives found in each file are cached in memory across builds in the daemon, keyed by
+ * path and invalidated when the file's size or modification time changes. They aren't written to
+ * disk: the cold machines this is meant for wouldn't have such a cache yet, and re-reading a
+ * header's directives costs about as much as validating a persisted entry for it.
+ */
+final class CxxIncludeScanner {
+
+  private static final Cache<Path, ScannedFile> SCANNED_FILES =
+      CacheBuilder.newBuilder()
+          .maximumSize(200_000)
+          .build();
+
+  private CxxIncludeScanner() {}
+
+  /**
+   * @return the {@link SourcePath}s of headers from {@code includes} which are transitively
+   *     included by {@code sources}, in the order they were first reached.
+   */
+  public static ImmutableSet<SourcePath> scan(
+      SourcePathResolver resolver,
+      Iterable<Path> sources,
+      Iterable<CxxHeaders> includes) throws IOException {
+
+    // Names of headers exposed by symlink trees (and header maps), which we resolve directly
+    // against the sources they will link to.
+    Map<Path, SourcePath> namedHeaders = new LinkedHashMap<>();
+    ImmutableList.Builder<Path> headerDirs = ImmutableList.builder();
+    for (CxxHeaders header : includes) {
+      if (header instanceof CxxSymlinkTreeHeaders) {
+        for (Map.Entry<Path, SourcePath> entry :
+            ((CxxSymlinkTreeHeaders) header).getNameToPathMap().entrySet()) {
+          namedHeaders.putIfAbsent(MorePaths.normalize(entry.getKey()), entry.getValue());
+        }
+      } else {
+        headerDirs.add(resolver.getAbsolutePath(header.getIncludeRoot()));
+      }
+    }
+    return new Walk(resolver, namedHeaders, headerDirs.build()).run(sources);
+  }
+
+  @VisibleForTesting
+  static void invalidateAll() {
+    SCANNED_FILES.invalidateAll();
+  }
+
+  /**
+   * @return the include directives in the given file, encoded as the spelled name prefixed by
+   *     {@code "} or {@code <} depending on the delimiters used.
+   */
+  @VisibleForTesting
+  static ImmutableList<String> getIncludeDirectives(Path file) throws IOException {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      return ImmutableList.of();
+    }
+    if (!attributes.isRegularFile()) {
+      return ImmutableList.of();
+    }
+
+    ScannedFile cached = SCANNED_FILES.getIfPresent(file);
+    if (cached != null &&
+        cached.size == attributes.size() &&
+        cached.lastModifiedTime.equals(attributes.lastModifiedTime())) {
+      return cached.includes;
+    }
+
+    ImmutableList.Builder<String> includes = ImmutableList.builder();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String include = parseIncludeDirective(line);
+        if (include != null) {
+          includes.add(include);
+        }
+      }
+    }
+    ScannedFile scanned =
+        new ScannedFile(attributes.size(), attributes.lastModifiedTime(), includes.build());
+    SCANNED_FILES.put(file, scanned);
+    return scanned.includes;
+  }
+
+  /**
+   * @return the include in {@code line} in the form described by
+   *     {@link #getIncludeDirectives(Path)}, or {@code null} if it isn't an include of a literal
+   *     name.
+   */
+  @VisibleForTesting
+  static String parseIncludeDirective(String line) {
+    int length = line.length();
+    int i = skipWhitespace(line, 0);
+    if (i >= length || line.charAt(i) != '#') {
+      return null;
+    }
+    i = skipWhitespace(line, i + 1);
+
+    int start = i;
+    while (i < length && Character.isLetter(line.charAt(i))) {
+      i++;
+    }
+    String directive = line.substring(start, i);
+    if (line.startsWith("_next", i)) {
+      i += "_next".length();
+      directive += "_next";
+    }
+    if (!directive.equals("include") &&
+        !directive.equals("import") &&
+        !directive.equals("include_next")) {
+      return null;
+    }
+
+    i = skipWhitespace(line, i);
+    if (i >= length) {
+      return null;
+    }
+    char open = line.charAt(i);
+    char close;
+    if (open == '"') {
+      close = '"';
+    } else if (open == '<') {
+      close = '>';
+    } else {
+      // Computed includes (e.g. `#include FOO_H`) can't be resolved without preprocessing.
+      return null;
+    }
+    int end = line.indexOf(close, i + 1);
+    if (end <= i + 1) {
+      return null;
+    }
+    return open + line.substring(i + 1, end);
+  }
+
+  private static int skipWhitespace(String line, int i) {
+    while (i < line.length() && (line.charAt(i) == ' ' || line.charAt(i) == '\t')) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * A file queued for scanning. Headers reached through a symlink tree remember the name they were
+   * reached by, since quoted includes in them are resolved relative to their location in the tree.
+   */
+  private static class Node {
+    private final Path file;
+    private final Optional<Path> name;
+
+    Node(Path file, Optional<Path> name) {
+      this.file = file;
+      this.name = name;
+    }
+  }
+
+  private static class Walk {
+    private final SourcePathResolver resolver;
+    private final Map<Path, SourcePath> namedHeaders;
+    private final ImmutableList<Path> headerDirs;
+
+    private final Set<Path> visited = new HashSet<>();
+    private final Deque<Node> queue = new ArrayDeque<>();
+    private final ImmutableSet.Builder<SourcePath> found = ImmutableSet.builder();
+
+    Walk(
+        SourcePathResolver resolver,
+        Map<Path, SourcePath> namedHeaders,
+        ImmutableList<Path> headerDirs) {
+      this.resolver = resolver;
+      this.namedHeaders = namedHeaders;
+      this.headerDirs = headerDirs;
+    }
+
+    ImmutableSet<SourcePath> run(Iterable<Path> sources) throws IOException {
+      for (Path source : sources) {
+        enqueue(source, Optional.empty());
+      }
+      while (!queue.isEmpty()) {
+        Node node = queue.removeFirst();
+        for (String include : getIncludeDirectives(node.file)) {
+          resolve(node, include.charAt(0) == '"', include.substring(1));
+        }
+      }
+      return found.build();
+    }
+
+    private void enqueue(Path file, Optional<Path> name) {
+      if (visited.add(file)) {
+        queue.addLast(new Node(file, name));
+      }
+    }
+
+    private boolean enqueueNamed(Path name) {
+      SourcePath header = namedHeaders.get(name);
+      if (header == null) {
+        return false;
+      }
+      Path file = resolver.getAbsolutePath(header);
+      if (!visited.contains(file) && Files.isRegularFile(file)) {
+        found.add(header);
+        enqueue(file, Optional.of(name));
+      }
+      return true;
+    }
+
+    private boolean enqueueFile(Path file) {
+      if (!Files.isRegularFile(file)) {
+        return false;
+      }
+      enqueue(file, Optional.empty());
+      return true;
+    }
+
+    private void resolve(Node from, boolean quoted, String spelled) {
+      Path name = MorePaths.normalize(from.file.getFileSystem().getPath(spelled));
+      if (name.isAbsolute()) {
+        enqueueFile(name);
+        return;
+      }
+
+      // Quoted includes are first looked up next to the including file.
+      if (quoted) {
+        if (from.name.isPresent()) {
+          Path parent = from.name.get().getParent();
+          if (enqueueNamed(parent == null ? name : MorePaths.normalize(parent.resolve(name)))) {
+            return;
+          }
+        }
+        Path sibling = from.file.resolveSibling(name);
+        if (enqueueFile(sibling)) {
+          return;
+        }
+      }
+
+      if (enqueueNamed(name)) {
+        return;
+      }
+      for (Path dir : headerDirs) {
+        if (enqueueFile(dir.resolve(name))) {
+          return;
+        }
+      }
+    }
+  }
+
+  private static class ScannedFile {
+    private final long size;
+    private final FileTime lastModifiedTime;
+    private final ImmutableList<String> includes;
+
+    ScannedFile(long size, FileTime lastModifiedTime, ImmutableList<String> includes) {
+      this.size = size;
+      this.lastModifiedTime = lastModifiedTime;
+      this.includes = includes;
+    }
+  }
+
+}
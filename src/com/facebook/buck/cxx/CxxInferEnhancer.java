@@ -392,7 +392,8 @@ public final class CxxInferEnhancer {
     boolean shouldCreateHeadersSymlinks = true;
     if (args instanceof CxxLibraryDescription.Arg) {
       shouldCreateHeadersSymlinks =
-          ((CxxLibraryDescription.Arg) args).xcodePrivateHeadersSymlinks.orElse(true);
+          ((CxxLibraryDescription.Arg) args).xcodePrivateHeadersSymlinks.orElse(
+              cxxPlatform.getHeadersSymlinksEnabled());
     }
     HeaderSymlinkTree headerSymlinkTree = CxxDescriptionEnhancer.requireHeaderSymlinkTree(
         params,
@@ -187,7 +187,8 @@ public class CxxLibraryDescription implements
       CxxSourceRuleFactory.PicType pic,
       CxxLibraryDescription.Arg args) throws NoSuchBuildTargetException {
 
-    boolean shouldCreatePrivateHeadersSymlinks = args.xcodePrivateHeadersSymlinks.orElse(true);
+    boolean shouldCreatePrivateHeadersSymlinks =
+        args.xcodePrivateHeadersSymlinks.orElse(cxxPlatform.getHeadersSymlinksEnabled());
 
     HeaderSymlinkTree headerSymlinkTree =
         CxxDescriptionEnhancer.requireHeaderSymlinkTree(
@@ -489,7 +490,8 @@ public class CxxLibraryDescription implements
       CxxPlatform cxxPlatform,
       A args)
       throws NoSuchBuildTargetException {
-    boolean shouldCreatePrivateHeaderSymlinks = args.xcodePrivateHeadersSymlinks.orElse(true);
+    boolean shouldCreatePrivateHeaderSymlinks =
+        args.xcodePrivateHeadersSymlinks.orElse(cxxPlatform.getHeadersSymlinksEnabled());
     SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(resolver);
     SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
     return CxxDescriptionEnhancer.createHeaderSymlinkTree(
@@ -541,7 +543,8 @@ public class CxxLibraryDescription implements
       CxxPlatform cxxPlatform,
       A args)
       throws NoSuchBuildTargetException {
-    boolean shouldCreatePublicHeaderSymlinks = args.xcodePublicHeadersSymlinks.orElse(true);
+    boolean shouldCreatePublicHeaderSymlinks =
+        args.xcodePublicHeadersSymlinks.orElse(cxxPlatform.getHeadersSymlinksEnabled());
     SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(resolver);
     SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
     return CxxDescriptionEnhancer.createHeaderSymlinkTree(
@@ -1077,7 +1080,9 @@ public class CxxLibraryDescription implements
         if (visibility.getValue() == HeaderVisibility.PUBLIC) {
 
           // Add platform-agnostic headers.
-          boolean shouldCreatePublicHeaderSymlinks = args.xcodePublicHeadersSymlinks.orElse(true);
+          boolean shouldCreatePublicHeaderSymlinks =
+              args.xcodePublicHeadersSymlinks.orElse(
+                  platform.getValue().getHeadersSymlinksEnabled());
           CxxPreprocessables.HeaderMode mode =
               CxxDescriptionEnhancer.getHeaderModeForPlatform(
                   resolver,
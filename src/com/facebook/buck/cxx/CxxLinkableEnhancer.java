@@ -19,18 +19,26 @@ package com.facebook.buck.cxx;
 import com.facebook.buck.io.MorePaths;
 import com.facebook.buck.log.Logger;
 import com.facebook.buck.model.BuildTarget;
+import com.facebook.buck.model.BuildTargets;
+import com.facebook.buck.model.Flavor;
+import com.facebook.buck.model.ImmutableFlavor;
 import com.facebook.buck.parser.NoSuchBuildTargetException;
+import com.facebook.buck.rules.BuildRule;
 import com.facebook.buck.rules.BuildRuleParams;
 import com.facebook.buck.rules.BuildRuleResolver;
+import com.facebook.buck.rules.BuildTargetSourcePath;
 import com.facebook.buck.rules.RuleKeyObjectSink;
 import com.facebook.buck.rules.SourcePath;
 import com.facebook.buck.rules.SourcePathResolver;
 import com.facebook.buck.rules.SourcePathRuleFinder;
 import com.facebook.buck.rules.args.Arg;
+import com.facebook.buck.rules.args.FileListableLinkerInputArg;
+import com.facebook.buck.rules.args.HasSourcePath;
 import com.facebook.buck.rules.args.SanitizedArg;
 import com.facebook.buck.rules.args.SourcePathArg;
 import com.facebook.buck.rules.args.StringArg;
 import com.facebook.buck.rules.coercer.FrameworkPath;
+import com.facebook.buck.util.MoreCollectors;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
@@ -39,15 +47,22 @@ import com.google.common.base.Suppliers;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
+import com.google.common.hash.Hashing;
 
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 public class CxxLinkableEnhancer {
   private static final Logger LOG = Logger.get(CxxLinkableEnhancer.class);
@@ -57,6 +72,8 @@ public class CxxLinkableEnhancer {
       Linker.LinkType.MACH_O_BUNDLE
   );
 
+  private static final Flavor THIN_LTO_INDEX_FLAVOR = ImmutableFlavor.of("thinlto-index");
+
   // Utility class doesn't instantiate.
   private CxxLinkableEnhancer() {}
 
@@ -100,7 +117,18 @@ public class CxxLinkableEnhancer {
     }
     argsBuilder.addAll(StringArg.from(cxxPlatform.getRuntimeLdflags().get(runtimeDepType)));
 
-    final ImmutableList<Arg> allArgs = argsBuilder.build();
+    final ImmutableList<Arg> allArgs =
+        cxxBuckConfig.shouldUseDistributedThinLto() && linker instanceof HasThinLTO ?
+            createThinLtoBackendRules(
+                cxxBuckConfig,
+                cxxPlatform,
+                params,
+                ruleResolver,
+                ruleFinder,
+                target,
+                linker,
+                argsBuilder.build()) :
+            argsBuilder.build();
 
     // Build the C/C++ link step.
     return new CxxLink(
@@ -121,6 +149,185 @@ public class CxxLinkableEnhancer {
         cxxBuckConfig.shouldCacheLinks());
   }
 
+  /**
+   * Splits a ThinLTO link into a {@link CxxThinLtoIndex} rule which runs the thin link, and a
+   * {@link CxxThinLtoBackend} rule for each object compiled by this build, so that the backend
+   * compiles run in parallel and are cached individually.  Archives whose members are all compiled
+   * by this build are linked as their members instead, so their objects get backends too.
+   *
+   * @return the arguments for the final link, in which each object is replaced by the output of its
+   *     backend compile.
+   */
+  private static ImmutableList<Arg> createThinLtoBackendRules(
+      CxxBuckConfig cxxBuckConfig,
+      CxxPlatform cxxPlatform,
+      BuildRuleParams params,
+      BuildRuleResolver ruleResolver,
+      SourcePathRuleFinder ruleFinder,
+      BuildTarget target,
+      Linker linker,
+      ImmutableList<Arg> args) {
+    SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
+
+    // Collect the objects passed to the link, and the arguments for the indexing link.
+    Set<SourcePath> objects = new LinkedHashSet<>();
+    ImmutableList<Arg> indexArgs =
+        replaceThinLtoObjects(
+            ruleFinder,
+            target,
+            linker,
+            args,
+            object -> {
+              objects.add(object);
+              return object;
+            });
+    if (objects.isEmpty()) {
+      return args;
+    }
+    ImmutableMap<SourcePath, Path> modules =
+        objects.stream()
+            .collect(MoreCollectors.toImmutableMap(o -> o, pathResolver::getRelativePath));
+
+    BuildTarget indexTarget = target.withAppendedFlavors(THIN_LTO_INDEX_FLAVOR);
+    Path indexDir = BuildTargets.getGenPath(params.getProjectFilesystem(), indexTarget, "%s");
+    ImmutableList<Arg> allIndexArgs =
+        ImmutableList.<Arg>builder()
+            .addAll(indexArgs)
+            .addAll(((HasThinLTO) linker).thinLtoIndexOnly(indexDir))
+            .build();
+    CxxThinLtoIndex index =
+        (CxxThinLtoIndex) ruleResolver.getRuleOptional(indexTarget).orElseGet(
+            () -> ruleResolver.addToIndex(
+                new CxxThinLtoIndex(
+                    params.copyWithChanges(
+                        indexTarget,
+                        () -> FluentIterable.from(allIndexArgs)
+                            .transformAndConcat(arg -> arg.getDeps(ruleFinder))
+                            .append(linker.getDeps(ruleFinder))
+                            .toSortedSet(Ordering.natural()),
+                        Suppliers.ofInstance(ImmutableSortedSet.of())),
+                    linker,
+                    allIndexArgs,
+                    indexDir,
+                    ImmutableList.copyOf(modules.values()),
+                    cxxBuckConfig.getLinkScheduleInfo(),
+                    cxxBuckConfig.shouldCacheLinks())));
+
+    // Create a backend compile for each object, which may import from any other object.
+    Compiler compiler = cxxPlatform.getCxx().resolve(ruleResolver);
+    ImmutableSortedSet<BuildRule> objectDeps =
+        ImmutableSortedSet.copyOf(ruleFinder.filterBuildRuleInputs(objects));
+    Map<SourcePath, SourcePath> nativeObjects = new HashMap<>();
+    for (Map.Entry<SourcePath, Path> module : modules.entrySet()) {
+      BuildTarget backendTarget =
+          target.withAppendedFlavors(
+              ImmutableFlavor.of(
+                  String.format(
+                      "thinlto-%s-%s",
+                      Flavor.replaceInvalidCharacters(module.getValue().getFileName().toString()),
+                      Hashing.murmur3_32()
+                          .hashString(module.getValue().toString(), StandardCharsets.UTF_8))));
+      CxxThinLtoBackend backend =
+          (CxxThinLtoBackend) ruleResolver.getRuleOptional(backendTarget).orElseGet(
+              () -> ruleResolver.addToIndex(
+                  new CxxThinLtoBackend(
+                      params.copyWithChanges(
+                          backendTarget,
+                          () -> ImmutableSortedSet.<BuildRule>naturalOrder()
+                              .add(index)
+                              .addAll(objectDeps)
+                              .addAll(compiler.getDeps(ruleFinder))
+                              .build(),
+                          Suppliers.ofInstance(ImmutableSortedSet.of())),
+                      compiler,
+                      cxxBuckConfig.getThinLtoBackendFlags(),
+                      module.getKey(),
+                      index.getSourcePathToIndex(module.getValue()),
+                      BuildTargets.getGenPath(
+                          params.getProjectFilesystem(),
+                          backendTarget,
+                          "%s/" + module.getValue().getFileName()))));
+      nativeObjects.put(module.getKey(), backend.getSourcePathToOutput());
+    }
+
+    return replaceThinLtoObjects(ruleFinder, target, linker, args, nativeObjects::get);
+  }
+
+  /**
+   * @return {@code args} with each object which could be passed to a ThinLTO backend replaced using
+   *     {@code replacer}, and each archive whose members all could be replaced by its replaced
+   *     members.
+   */
+  private static ImmutableList<Arg> replaceThinLtoObjects(
+      SourcePathRuleFinder ruleFinder,
+      BuildTarget target,
+      Linker linker,
+      ImmutableList<Arg> args,
+      Function<SourcePath, SourcePath> replacer) {
+    ImmutableList.Builder<Arg> replaced = ImmutableList.builder();
+    for (int i = 0; i < args.size(); i++) {
+      Arg arg = args.get(i);
+      Optional<Archive> archive = getThinLtoArchive(ruleFinder, target, arg);
+      if (archive.isPresent()) {
+        ImmutableList.Builder<Arg> members = ImmutableList.builder();
+        for (SourcePath member : archive.get().getInputs()) {
+          members.add(SourcePathArg.of(replacer.apply(member)));
+        }
+        // Members of archives linked whole are linked eagerly.  The flags around them only affect
+        // archives, so can be left as they are.
+        ImmutableList<Arg> whole = ImmutableList.copyOf(linker.linkWhole(arg));
+        int start = i - whole.indexOf(arg);
+        if (start >= 0 &&
+            start + whole.size() <= args.size() &&
+            args.subList(start, start + whole.size()).equals(whole)) {
+          replaced.addAll(members.build());
+        } else {
+          replaced.addAll(((HasThinLTO) linker).lazyObjects(members.build()));
+        }
+      } else if (arg instanceof FileListableLinkerInputArg &&
+          isThinLtoObject(ruleFinder, target, ((FileListableLinkerInputArg) arg).getPath())) {
+        replaced.add(
+            FileListableLinkerInputArg.withSourcePathArg(
+                SourcePathArg.of(
+                    replacer.apply(((FileListableLinkerInputArg) arg).getPath()))));
+      } else if (arg instanceof SourcePathArg &&
+          isThinLtoObject(ruleFinder, target, ((SourcePathArg) arg).getPath())) {
+        replaced.add(SourcePathArg.of(replacer.apply(((SourcePathArg) arg).getPath())));
+      } else {
+        replaced.add(arg);
+      }
+    }
+    return replaced.build();
+  }
+
+  /**
+   * @return whether {@code path} is an object compiled by this build in the same cell as the link,
+   *     which is passed to the linker relative to the cell root.
+   */
+  private static boolean isThinLtoObject(
+      SourcePathRuleFinder ruleFinder,
+      BuildTarget target,
+      SourcePath path) {
+    return path instanceof BuildTargetSourcePath &&
+        ((BuildTargetSourcePath<?>) path).getTarget().getCellPath().equals(target.getCellPath()) &&
+        ruleFinder.getRule(path).map(CxxPreprocessAndCompile.class::isInstance).orElse(false);
+  }
+
+  private static Optional<Archive> getThinLtoArchive(
+      SourcePathRuleFinder ruleFinder,
+      BuildTarget target,
+      Arg arg) {
+    if (!(arg instanceof SourcePathArg) && !(arg instanceof ThinArchiveArg)) {
+      return Optional.empty();
+    }
+    return ruleFinder.getRule(((HasSourcePath) arg).getPath())
+        .filter(Archive.class::isInstance)
+        .map(Archive.class::cast)
+        .filter(
+            archive -> archive.getInputs().stream()
+                .allMatch(input -> isThinLtoObject(ruleFinder, target, input)));
+  }
+
   /**
    * Construct a {@link CxxLink} rule that builds a native linkable from top-level input objects
    * and a dependency tree of {@link NativeLinkable} dependencies.
@@ -159,7 +366,11 @@ public class CxxLinkableEnhancer {
     ImmutableList.Builder<NativeLinkableInput> nativeLinkableInputs = ImmutableList.builder();
     nativeLinkableInputs.add(immediateLinkableInput);
     for (NativeLinkable nativeLinkable : Maps.filterKeys(
-        NativeLinkables.getNativeLinkables(cxxPlatform, nativeLinkableDeps, depType),
+        NativeLinkables.getNativeLinkables(
+            ruleResolver,
+            cxxPlatform,
+            nativeLinkableDeps,
+            depType),
         Predicates.not(blacklist::contains)).values()) {
       NativeLinkableInput input = NativeLinkables.getNativeLinkableInput(
           cxxPlatform, depType, nativeLinkable);
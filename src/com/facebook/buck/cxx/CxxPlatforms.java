@@ -58,7 +58,7 @@ public class CxxPlatforms {
         case LINUX:
           sharedLibraryInterfaceFactory =
               Optional.of(
-                  ElfSharedLibraryInterfaceFactory.of(config.getToolProvider("objcopy").get()));
+                  ElfSharedLibraryInterfaceFactory.of());
           break;
         // $CASES-OMITTED$
         default:
@@ -143,6 +143,7 @@ public class CxxPlatforms {
     }));
 
     builder.setSharedLibraryInterfaceFactory(getSharedLibraryInterfaceFactory(config, platform));
+    builder.setHeadersSymlinksEnabled(config.shouldCreateHeadersSymlinks());
 
     builder.addAllCflags(cflags);
     builder.addAllCxxflags(cflags);
@@ -260,7 +260,8 @@ public class CxxPrecompiledHeader
         assemblerSanitizer,
         scratchDir,
         /* useArgFile*/ true,
-        compilerDelegate.getCompiler());
+        compilerDelegate.getCompiler(),
+        /* preprocessedOutputCache */ Optional.empty());
   }
 
   /**
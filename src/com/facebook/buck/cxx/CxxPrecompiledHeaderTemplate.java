@@ -126,6 +126,7 @@ public class CxxPrecompiledHeaderTemplate
       CxxPlatform cxxPlatform,
       Linker.LinkableDepType type) throws NoSuchBuildTargetException {
     return NativeLinkables.getTransitiveNativeLinkableInput(
+        ruleResolver,
         cxxPlatform,
         getDeps(),
         Linker.LinkableDepType.SHARED,
@@ -16,6 +16,7 @@
 
 package com.facebook.buck.cxx;
 
+import com.facebook.buck.artifact_cache.DirCacheEntry;
 import com.facebook.buck.model.BuildTargets;
 import com.facebook.buck.rules.AbstractBuildRule;
 import com.facebook.buck.rules.AddToRuleKey;
@@ -27,8 +28,8 @@ import com.facebook.buck.rules.RuleKeyObjectSink;
 import com.facebook.buck.rules.SourcePath;
 import com.facebook.buck.rules.SourcePathResolver;
 import com.facebook.buck.rules.SymlinkTree;
-import com.facebook.buck.rules.keys.SupportsDependencyFileRuleKey;
 import com.facebook.buck.rules.keys.SupportsInputBasedRuleKey;
+import com.facebook.buck.rules.keys.SupportsInputPrediction;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.fs.MakeCleanDirectoryStep;
 import com.facebook.buck.step.fs.MkdirStep;
@@ -49,7 +50,7 @@ import java.util.function.Predicate;
  */
 public class CxxPreprocessAndCompile
     extends AbstractBuildRule
-    implements SupportsInputBasedRuleKey, SupportsDependencyFileRuleKey {
+    implements SupportsInputBasedRuleKey, SupportsInputPrediction {
 
   @AddToRuleKey
   private final CxxPreprocessAndCompileStep.Operation operation;
@@ -66,6 +67,7 @@ public class CxxPreprocessAndCompile
   private final DebugPathSanitizer compilerSanitizer;
   private final DebugPathSanitizer assemblerSanitizer;
   private final Optional<SymlinkTree> sandboxTree;
+  private final Optional<DirCacheEntry> preprocessedOutputCache;
 
   @VisibleForTesting
   public CxxPreprocessAndCompile(
@@ -79,7 +81,8 @@ public class CxxPreprocessAndCompile
       Optional<CxxPrecompiledHeader> precompiledHeaderRule,
       DebugPathSanitizer compilerSanitizer,
       DebugPathSanitizer assemblerSanitizer,
-      Optional<SymlinkTree> sandboxTree) {
+      Optional<SymlinkTree> sandboxTree,
+      Optional<DirCacheEntry> preprocessedOutputCache) {
     super(params);
     this.sandboxTree = sandboxTree;
     Preconditions.checkState(operation.isPreprocess() == preprocessDelegate.isPresent());
@@ -97,6 +100,7 @@ public class CxxPreprocessAndCompile
     this.precompiledHeaderRule = precompiledHeaderRule;
     this.compilerSanitizer = compilerSanitizer;
     this.assemblerSanitizer = assemblerSanitizer;
+    this.preprocessedOutputCache = preprocessedOutputCache;
     performChecks(params);
   }
 
@@ -135,11 +139,14 @@ public class CxxPreprocessAndCompile
         Optional.empty(),
         compilerSanitizer,
         assemblerSanitizer,
-        sandboxTree);
+        sandboxTree,
+        Optional.empty());
   }
 
   /**
    * @return a {@link CxxPreprocessAndCompile} step that preprocesses and compiles the given source.
+   * @param preprocessedOutputCache the dir cache in which to look up the object by a hash of the
+   *     preprocessed source before compiling it, if any.
    */
   public static CxxPreprocessAndCompile preprocessAndCompile(
       BuildRuleParams params,
@@ -151,7 +158,8 @@ public class CxxPreprocessAndCompile
       Optional<CxxPrecompiledHeader> precompiledHeaderRule,
       DebugPathSanitizer compilerSanitizer,
       DebugPathSanitizer assemblerSanitizer,
-      Optional<SymlinkTree> sandboxTree) {
+      Optional<SymlinkTree> sandboxTree,
+      Optional<DirCacheEntry> preprocessedOutputCache) {
     return new CxxPreprocessAndCompile(
         params,
         CxxPreprocessAndCompileStep.Operation.PREPROCESS_AND_COMPILE,
@@ -163,7 +171,8 @@ public class CxxPreprocessAndCompile
         precompiledHeaderRule,
         compilerSanitizer,
         assemblerSanitizer,
-        sandboxTree);
+        sandboxTree,
+        preprocessedOutputCache);
   }
 
   @Override
@@ -248,7 +257,10 @@ public class CxxPreprocessAndCompile
         assemblerSanitizer,
         scratchDir,
         useArgfile,
-        compilerDelegate.getCompiler());
+        compilerDelegate.getCompiler(),
+        // The preprocessed source doesn't include the contents of a precompiled header, so it
+        // can't identify the object when one is used.
+        precompiledHeaderRule.isPresent() ? Optional.empty() : preprocessedOutputCache);
   }
 
   public Path getRelativeInputPathIfPossible(SourcePathResolver resolver) {
@@ -336,6 +348,18 @@ public class CxxPreprocessAndCompile
     return (SourcePath path) -> false;
   }
 
+  @Override
+  public ImmutableList<SourcePath> getLikelyInputsBeforeBuilding(SourcePathResolver resolver)
+      throws IOException {
+    ImmutableList.Builder<SourcePath> inputs = ImmutableList.builder();
+    if (preprocessDelegate.isPresent()) {
+      inputs.addAll(
+          preprocessDelegate.get().getLikelyInputsBeforeBuilding(resolver.getAbsolutePath(input)));
+    }
+    inputs.add(input);
+    return inputs.build();
+  }
+
   @Override
   public ImmutableList<SourcePath> getInputsAfterBuildingLocally(BuildContext context)
       throws IOException {
@@ -16,9 +16,18 @@
 
 package com.facebook.buck.cxx;
 
+import com.facebook.buck.artifact_cache.ArtifactCache;
+import com.facebook.buck.artifact_cache.ArtifactInfo;
+import com.facebook.buck.artifact_cache.CacheResult;
+import com.facebook.buck.artifact_cache.DirArtifactCache;
+import com.facebook.buck.artifact_cache.DirCacheEntry;
 import com.facebook.buck.event.ConsoleEvent;
+import com.facebook.buck.io.BorrowablePath;
+import com.facebook.buck.io.ExecutableFinder;
+import com.facebook.buck.io.LazyPath;
 import com.facebook.buck.io.ProjectFilesystem;
 import com.facebook.buck.log.Logger;
+import com.facebook.buck.rules.RuleKey;
 import com.facebook.buck.step.ExecutionContext;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
@@ -30,20 +39,30 @@ import com.facebook.buck.util.MoreThrowables;
 import com.facebook.buck.util.ProcessExecutor;
 import com.facebook.buck.util.ProcessExecutorParams;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 
 /**
@@ -72,6 +91,31 @@ public class CxxPreprocessAndCompileStep implements Step {
   private final Path scratchDir;
   private final boolean useArgfile;
 
+  /**
+   * The dir cache in which to look up the object file by a hash of the preprocessed source before
+   * compiling it, and to store it after compiling, if any.
+   */
+  private final Optional<DirCacheEntry> preprocessedOutputCache;
+
+  /**
+   * The dir caches opened for {@link #preprocessedOutputCache}, shared by all steps, so that the
+   * bytes they store are counted together against the cache's size limit.
+   */
+  private static final Cache<DirCacheEntry, ArtifactCache> PREPROCESSED_OUTPUT_CACHES =
+      CacheBuilder.newBuilder().build();
+
+  /**
+   * Mixed into the keys of objects cached by their preprocessed source, so that they can't collide
+   * with rule keys in the dir cache, and so that the scheme can be changed later.
+   */
+  private static final String PREPROCESSED_OUTPUT_KEY_SALT = "cxx-preprocessed-output-v1";
+
+  /**
+   * Metadata key under which the diagnostics of the compilation that produced a cached object are
+   * stored, so that they can be replayed on a hit.
+   */
+  private static final String DIAGNOSTICS_METADATA_KEY = "diagnostics";
+
   private static final FileLastModifiedDateContentsScrubber FILE_LAST_MODIFIED_DATE_SCRUBBER =
       new FileLastModifiedDateContentsScrubber();
 
@@ -89,7 +133,8 @@ public class CxxPreprocessAndCompileStep implements Step {
       DebugPathSanitizer assemblerSanitizer,
       Path scratchDir,
       boolean useArgfile,
-      Compiler compiler) {
+      Compiler compiler,
+      Optional<DirCacheEntry> preprocessedOutputCache) {
     Preconditions.checkState(operation.isPreprocess() == preprocessorCommand.isPresent());
     Preconditions.checkState(operation.isCompile() == compilerCommand.isPresent());
 
@@ -107,6 +152,7 @@ public class CxxPreprocessAndCompileStep implements Step {
     this.scratchDir = scratchDir;
     this.useArgfile = useArgfile;
     this.compiler = compiler;
+    this.preprocessedOutputCache = preprocessedOutputCache;
   }
 
   @Override
@@ -178,6 +224,23 @@ public class CxxPreprocessAndCompileStep implements Step {
         .build();
   }
 
+  /**
+   * @return the arguments which run only the preprocessor part of the compilation, writing the
+   *     preprocessed source to {@code preprocessedOutput} and the dep file to its usual location.
+   */
+  @VisibleForTesting
+  ImmutableList<String> makePreprocessArguments(Path preprocessedOutput) {
+    return ImmutableList.<String>builder()
+        .addAll(compilerCommand.get().getArguments(false))
+        .addAll(getLanguageArgs(inputType.getLanguage()))
+        .addAll(getSanitizer().getCompilationFlags())
+        .add("-E")
+        .addAll(getDepFileArgs(depFile))
+        .add(input.toString())
+        .addAll(compiler.outputArgs(preprocessedOutput.toString()))
+        .build();
+  }
+
   private ImmutableList<String> makeGeneratePchArguments(boolean allowColorInDiagnostics) {
     return ImmutableList.<String>builder()
         .addAll(preprocessorCommand.get().getArguments(allowColorInDiagnostics))
@@ -190,9 +253,10 @@ public class CxxPreprocessAndCompileStep implements Step {
         .build();
   }
 
-  private int executeCompilation(ExecutionContext context) throws Exception {
-    ProcessExecutorParams.Builder builder =
-        makeSubprocessBuilder(context, ImmutableMap.of());
+  private int executeCompilation(ExecutionContext context, ByteArrayOutputStream error)
+      throws Exception {
+    ImmutableList.Builder<String> command =
+        ImmutableList.<String>builder().addAll(getCommandPrefix());
 
     if (useArgfile) {
       filesystem.writeLinesToPath(
@@ -200,33 +264,37 @@ public class CxxPreprocessAndCompileStep implements Step {
               getArguments(context.getAnsi().isAnsiTerminal()),
               Escaper.ARGFILE_ESCAPER),
           getArgfile());
-      builder.setCommand(
-          ImmutableList.<String>builder()
-              .addAll(getCommandPrefix())
-              .add("@" + getArgfile())
-              .build());
+      command.add("@" + getArgfile());
     } else {
-      builder.setCommand(
-          ImmutableList.<String>builder()
-              .addAll(getCommandPrefix())
-              .addAll(getArguments(context.getAnsi().isAnsiTerminal()))
-              .build());
+      command.addAll(getArguments(context.getAnsi().isAnsiTerminal()));
     }
 
-    ProcessExecutorParams params = builder.build();
-
     LOG.debug(
         "Running command (pwd=%s): %s",
-        params.getDirectory(),
+        filesystem.getRootPath().toAbsolutePath(),
         getDescription(context));
 
+    return executeCommand(context, command.build(), error);
+  }
+
+  /**
+   * Runs the given command, collecting its transformed error output into {@code error}.
+   *
+   * @return the exit code of the command.
+   */
+  private int executeCommand(
+      ExecutionContext context,
+      ImmutableList<String> command,
+      ByteArrayOutputStream error) throws Exception {
+    ProcessExecutorParams params =
+        makeSubprocessBuilder(context, ImmutableMap.of())
+            .setCommand(command)
+            .build();
+
     // Start the process.
     ProcessExecutor executor = new DefaultProcessExecutor(Console.createNullConsole());
     ProcessExecutor.LaunchedProcess process = executor.launchProcess(params);
 
-    // We buffer error messages in memory, as these are typically small.
-    ByteArrayOutputStream error = new ByteArrayOutputStream();
-
     // Fire up managed threads to process the stdout and stderr lines.
     int exitCode;
     try {
@@ -245,19 +313,106 @@ public class CxxPreprocessAndCompileStep implements Step {
       executor.waitForLaunchedProcess(process);
     }
 
-    // If we generated any error output, print that to the console.
-    String err = new String(error.toByteArray());
-    if (!err.isEmpty()) {
+    return exitCode;
+  }
+
+  /**
+   * Prints any error output of the compilation to the console.
+   */
+  private void reportDiagnostics(ExecutionContext context, int exitCode, String diagnostics) {
+    if (!diagnostics.isEmpty()) {
       context.getBuckEventBus().post(
           createConsoleEvent(
               context,
               preprocessorCommand.map(Optional::of).orElse(compilerCommand).get()
                   .supportsColorsInDiagnostics(),
               exitCode == 0 ? Level.WARNING : Level.SEVERE,
-              err));
+              diagnostics));
     }
+  }
 
-    return exitCode;
+  private boolean shouldCachePreprocessedOutput() {
+    return preprocessedOutputCache.isPresent() &&
+        operation == Operation.PREPROCESS_AND_COMPILE &&
+        inputType.isPreprocessable();
+  }
+
+  private ArtifactCache getPreprocessedOutputCache() throws ExecutionException {
+    DirCacheEntry entry = preprocessedOutputCache.get();
+    return PREPROCESSED_OUTPUT_CACHES.get(
+        entry,
+        () -> new DirArtifactCache(
+            "cxx_preprocessed_output",
+            filesystem,
+            entry.getCacheDir(),
+            entry.getCacheReadMode().isDoStore(),
+            entry.getMaxSizeBytes()));
+  }
+
+  /**
+   * Runs the preprocessor alone and hashes its output, along with everything else which goes into
+   * the compilation, into a key identifying the object file. Absolute paths to the project root
+   * are sanitized out of the preprocessed source first, so that checkouts in different
+   * directories share objects.
+   *
+   * @return the key, or nothing if the preprocessor failed, in which case the compilation reports
+   *     the errors.
+   */
+  @VisibleForTesting
+  Optional<RuleKey> computePreprocessedOutputKey(ExecutionContext context) throws Exception {
+    Path preprocessedOutput = scratchDir.resolve("preprocessed");
+    int exitCode =
+        executeCommand(
+            context,
+            ImmutableList.<String>builder()
+                .addAll(getCommandPrefix())
+                .addAll(makePreprocessArguments(preprocessedOutput))
+                .build(),
+            new ByteArrayOutputStream());
+    if (exitCode != 0) {
+      LOG.debug("error %d preprocessing %s for the preprocessed output cache", exitCode, input);
+      return Optional.empty();
+    }
+
+    Optional<Path> workingDir = Optional.of(filesystem.getRootPath().toAbsolutePath());
+    Hasher hasher = Hashing.sha1().newHasher();
+    hasher.putString(PREPROCESSED_OUTPUT_KEY_SALT, StandardCharsets.UTF_8);
+    putCompilerIdentity(context, hasher);
+    for (String argument : Iterables.concat(getCommandPrefix(), getArguments(false))) {
+      hasher.putString(getSanitizer().sanitize(workingDir, argument), StandardCharsets.UTF_8);
+      hasher.putByte((byte) 0);
+    }
+    // Preprocessed sources needn't be valid UTF-8, so use a charset which maps every byte.
+    Function<String, String> sanitize = getSanitizer().sanitize(workingDir);
+    try (BufferedReader reader =
+             new BufferedReader(
+                 new InputStreamReader(
+                     filesystem.newFileInputStream(preprocessedOutput),
+                     StandardCharsets.ISO_8859_1))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        hasher.putString(sanitize.apply(line), StandardCharsets.ISO_8859_1);
+        hasher.putByte((byte) '\n');
+      }
+    }
+    filesystem.deleteFileAtPathIfExists(preprocessedOutput);
+    return Optional.of(new RuleKey(hasher.hash()));
+  }
+
+  /**
+   * Identifies the compiler binary by its size and modification time, so that a compiler upgraded
+   * in place doesn't pick up objects built by its predecessor.
+   */
+  private void putCompilerIdentity(ExecutionContext context, Hasher hasher) throws IOException {
+    Path executable = Paths.get(getCommandPrefix().get(0));
+    Optional<Path> resolved =
+        filesystem.isFile(executable) ?
+            Optional.of(filesystem.resolve(executable)) :
+            new ExecutableFinder().getOptionalExecutable(executable, context.getEnvironment());
+    if (resolved.isPresent()) {
+      hasher.putLong(filesystem.getFileSize(resolved.get()));
+      hasher.putLong(filesystem.getLastModifiedTime(resolved.get()));
+    }
   }
 
   private ConsoleEvent createConsoleEvent(
@@ -284,7 +439,31 @@ public class CxxPreprocessAndCompileStep implements Step {
     try {
       LOG.debug("%s %s -> %s", operation.toString().toLowerCase(), input, output);
 
-      int exitCode = executeCompilation(context);
+      Optional<RuleKey> preprocessedOutputKey = Optional.empty();
+      if (shouldCachePreprocessedOutput()) {
+        preprocessedOutputKey = computePreprocessedOutputKey(context);
+        if (preprocessedOutputKey.isPresent()) {
+          // The preprocessor has already written the dep file, so the object is all we need.
+          CacheResult result =
+              getPreprocessedOutputCache().fetch(
+                  preprocessedOutputKey.get(),
+                  LazyPath.ofInstance(filesystem.resolve(output)));
+          if (result.getType().isSuccess()) {
+            LOG.debug("preprocessed output cache hit for %s", input);
+            reportDiagnostics(
+                context,
+                0,
+                result.getMetadata().getOrDefault(DIAGNOSTICS_METADATA_KEY, ""));
+            return StepExecutionResult.SUCCESS;
+          }
+        }
+      }
+
+      // We buffer error messages in memory, as these are typically small.
+      ByteArrayOutputStream error = new ByteArrayOutputStream();
+      int exitCode = executeCompilation(context, error);
+      String diagnostics = new String(error.toByteArray());
+      reportDiagnostics(context, exitCode, diagnostics);
 
       // If the compilation completed successfully and we didn't effect debug-info normalization
       // through #line directive modification, perform the in-place update of the compilation per
@@ -305,6 +484,13 @@ public class CxxPreprocessAndCompileStep implements Step {
 
       if (exitCode != 0) {
         LOG.warn("error %d %s %s", exitCode, operation.toString().toLowerCase(), input);
+      } else if (preprocessedOutputKey.isPresent()) {
+        getPreprocessedOutputCache().store(
+            ArtifactInfo.builder()
+                .addRuleKeys(preprocessedOutputKey.get())
+                .putMetadata(DIAGNOSTICS_METADATA_KEY, diagnostics)
+                .build(),
+            BorrowablePath.notBorrowablePath(filesystem.resolve(output)));
       }
 
       return StepExecutionResult.of(exitCode);
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.rules.AbstractBuildRule;
+import com.facebook.buck.rules.AddToRuleKey;
+import com.facebook.buck.rules.BuildContext;
+import com.facebook.buck.rules.BuildRuleParams;
+import com.facebook.buck.rules.BuildableContext;
+import com.facebook.buck.rules.ExplicitBuildTargetSourcePath;
+import com.facebook.buck.rules.SourcePath;
+import com.facebook.buck.rules.SourcePathResolver;
+import com.facebook.buck.rules.Tool;
+import com.facebook.buck.rules.keys.SupportsInputBasedRuleKey;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.fs.MkdirStep;
+import com.facebook.buck.step.fs.RmStep;
+import com.google.common.collect.ImmutableList;
+
+import java.nio.file.Path;
+
+/**
+ * The backend compile of a single object in a distributed ThinLTO link (see
+ * {@link CxxThinLtoIndex}).
+ *
+ * This depends on every object in the link, as the index may import from any of them, but it uses
+ * input-based rule keys over just its object and index.  The index records the modules it imports
+ * from, so the compile is only redone when this object or what it imports changes.
+ */
+public class CxxThinLtoBackend extends AbstractBuildRule implements SupportsInputBasedRuleKey {
+
+  @AddToRuleKey
+  private final Tool compiler;
+  @AddToRuleKey
+  private final ImmutableList<String> flags;
+  @AddToRuleKey
+  private final SourcePath input;
+  @AddToRuleKey
+  private final SourcePath index;
+  @AddToRuleKey(stringify = true)
+  private final Path output;
+
+  public CxxThinLtoBackend(
+      BuildRuleParams params,
+      Tool compiler,
+      ImmutableList<String> flags,
+      SourcePath input,
+      SourcePath index,
+      Path output) {
+    super(params);
+    this.compiler = compiler;
+    this.flags = flags;
+    this.input = input;
+    this.index = index;
+    this.output = output;
+  }
+
+  @Override
+  public ImmutableList<Step> getBuildSteps(
+      BuildContext context,
+      BuildableContext buildableContext) {
+    buildableContext.recordArtifact(output);
+    SourcePathResolver resolver = context.getSourcePathResolver();
+    return ImmutableList.of(
+        new MkdirStep(getProjectFilesystem(), output.getParent()),
+        new RmStep(getProjectFilesystem(), output),
+        new CxxThinLtoBackendStep(
+            getProjectFilesystem(),
+            compiler.getEnvironment(resolver),
+            compiler.getCommandPrefix(resolver),
+            flags,
+            resolver.getRelativePath(input),
+            resolver.getRelativePath(index),
+            output));
+  }
+
+  @Override
+  public SourcePath getSourcePathToOutput() {
+    return new ExplicitBuildTargetSourcePath(getBuildTarget(), output);
+  }
+
+}
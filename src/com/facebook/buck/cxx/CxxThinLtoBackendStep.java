@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.shell.ShellStep;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.StepExecutionResult;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Compiles a bitcode object into a native one using its ThinLTO index, importing what the index
+ * lists from the other modules of the link.
+ *
+ * Objects which aren't bitcode are copied through unchanged, and bitcode objects with an empty
+ * index (i.e. which weren't part of the thin link) are compiled on their own.
+ */
+public class CxxThinLtoBackendStep extends ShellStep {
+
+  private static final byte[] BITCODE_MAGIC = {'B', 'C', (byte) 0xc0, (byte) 0xde};
+  private static final byte[] BITCODE_WRAPPER_MAGIC = {(byte) 0xde, (byte) 0xc0, 0x17, 0x0b};
+
+  private final ProjectFilesystem filesystem;
+  private final ImmutableMap<String, String> environment;
+  private final ImmutableList<String> compiler;
+  private final ImmutableList<String> flags;
+  private final Path input;
+  private final Path index;
+  private final Path output;
+
+  private boolean useIndex = true;
+
+  public CxxThinLtoBackendStep(
+      ProjectFilesystem filesystem,
+      ImmutableMap<String, String> environment,
+      ImmutableList<String> compiler,
+      ImmutableList<String> flags,
+      Path input,
+      Path index,
+      Path output) {
+    super(filesystem.getRootPath());
+    this.filesystem = filesystem;
+    this.environment = environment;
+    this.compiler = compiler;
+    this.flags = flags;
+    this.input = input;
+    this.index = index;
+    this.output = output;
+  }
+
+  @Override
+  public StepExecutionResult execute(ExecutionContext context)
+      throws InterruptedException, IOException {
+    if (!isBitcode(filesystem, input)) {
+      filesystem.copyFile(input, output);
+      return StepExecutionResult.SUCCESS;
+    }
+    useIndex = filesystem.getFileSize(index) > 0;
+    return super.execute(context);
+  }
+
+  @Override
+  protected ImmutableList<String> getShellCommandInternal(ExecutionContext context) {
+    ImmutableList.Builder<String> command = ImmutableList.builder();
+    command.addAll(compiler);
+    command.addAll(flags);
+    command.add("-x", "ir", input.toString());
+    if (useIndex) {
+      command.add("-fthinlto-index=" + index);
+    }
+    command.add("-c", "-o", output.toString());
+    return command.build();
+  }
+
+  @Override
+  public ImmutableMap<String, String> getEnvironmentVariables(ExecutionContext context) {
+    return environment;
+  }
+
+  @Override
+  public String getShortName() {
+    return "thinlto backend";
+  }
+
+  @VisibleForTesting
+  static boolean isBitcode(ProjectFilesystem filesystem, Path path) throws IOException {
+    byte[] magic = new byte[BITCODE_MAGIC.length];
+    try (InputStream stream = filesystem.newFileInputStream(path)) {
+      if (ByteStreams.read(stream, magic, 0, magic.length) < magic.length) {
+        return false;
+      }
+    }
+    return Arrays.equals(magic, BITCODE_MAGIC) ||
+        Arrays.equals(magic, BITCODE_WRAPPER_MAGIC);
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.model.BuildTargets;
+import com.facebook.buck.rules.AbstractBuildRule;
+import com.facebook.buck.rules.AddToRuleKey;
+import com.facebook.buck.rules.BuildContext;
+import com.facebook.buck.rules.BuildRuleParams;
+import com.facebook.buck.rules.BuildableContext;
+import com.facebook.buck.rules.ExplicitBuildTargetSourcePath;
+import com.facebook.buck.rules.OverrideScheduleRule;
+import com.facebook.buck.rules.RuleScheduleInfo;
+import com.facebook.buck.rules.SourcePath;
+import com.facebook.buck.rules.args.Arg;
+import com.facebook.buck.step.AbstractExecutionStep;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.StepExecutionResult;
+import com.facebook.buck.step.fs.LogContentsOfFileStep;
+import com.facebook.buck.step.fs.MakeCleanDirectoryStep;
+import com.facebook.buck.step.fs.RmStep;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.logging.Level;
+
+/**
+ * The indexing link of a distributed ThinLTO link, which runs the thin link over the bitcode
+ * objects and writes a ThinLTO index for each of them rather than linking a binary.
+ *
+ * Each object's index records the summaries it needs from the rest of the link, so the backend
+ * compile of that object (see {@link CxxThinLtoBackend}) can be keyed on its index alone and reused
+ * from the cache when a change elsewhere in the binary doesn't affect it.
+ */
+public class CxxThinLtoIndex extends AbstractBuildRule implements OverrideScheduleRule {
+
+  static final String INDEX_SUFFIX = ".thinlto.bc";
+
+  @AddToRuleKey
+  private final Linker linker;
+  @AddToRuleKey
+  private final ImmutableList<Arg> args;
+  @AddToRuleKey(stringify = true)
+  private final Path output;
+
+  // The objects passed to the link, relative to the cell root, whose backend compiles expect an
+  // index to exist.  These are derived from the args, so needn't be added to the rule key.
+  private final ImmutableList<Path> modules;
+
+  private final Optional<RuleScheduleInfo> ruleScheduleInfo;
+  private final boolean cacheable;
+
+  public CxxThinLtoIndex(
+      BuildRuleParams params,
+      Linker linker,
+      ImmutableList<Arg> args,
+      Path output,
+      ImmutableList<Path> modules,
+      Optional<RuleScheduleInfo> ruleScheduleInfo,
+      boolean cacheable) {
+    super(params);
+    this.linker = linker;
+    this.args = args;
+    this.output = output;
+    this.modules = modules;
+    this.ruleScheduleInfo = ruleScheduleInfo;
+    this.cacheable = cacheable;
+  }
+
+  @Override
+  public ImmutableList<Step> getBuildSteps(
+      BuildContext context,
+      BuildableContext buildableContext) {
+    buildableContext.recordArtifact(output);
+    Path scratchDir =
+        BuildTargets.getScratchPath(getProjectFilesystem(), getBuildTarget(), "%s-tmp");
+    Path argFilePath = getProjectFilesystem().getRootPath().resolve(
+        BuildTargets.getScratchPath(getProjectFilesystem(), getBuildTarget(), "%s.argsfile"));
+    Path fileListPath = getProjectFilesystem().getRootPath().resolve(
+        BuildTargets.getScratchPath(getProjectFilesystem(), getBuildTarget(), "%s__filelist.txt"));
+
+    return ImmutableList.of(
+        new MakeCleanDirectoryStep(getProjectFilesystem(), output),
+        new MakeCleanDirectoryStep(getProjectFilesystem(), scratchDir),
+        new RmStep(getProjectFilesystem(), argFilePath),
+        new RmStep(getProjectFilesystem(), fileListPath),
+        CxxPrepareForLinkStep.create(
+            argFilePath,
+            fileListPath,
+            linker.fileList(fileListPath),
+            // The linker doesn't write its output when only indexing.
+            scratchDir.resolve("index-only.out"),
+            args,
+            linker,
+            getBuildTarget().getCellPath(),
+            context.getSourcePathResolver()),
+        new CxxLinkStep(
+            getProjectFilesystem().getRootPath(),
+            linker.getEnvironment(context.getSourcePathResolver()),
+            linker.getCommandPrefix(context.getSourcePathResolver()),
+            argFilePath,
+            getProjectFilesystem().getRootPath().resolve(scratchDir)),
+        new AbstractExecutionStep("thinlto_index_placeholders") {
+          @Override
+          public StepExecutionResult execute(ExecutionContext executionContext)
+              throws IOException {
+            // Objects which aren't bitcode get no index, and some linkers don't write one for
+            // bitcode objects left out of the link.  Write empty ones so every backend compile
+            // has an input to key on.
+            for (Path module : modules) {
+              Path index = getIndexPath(output, module);
+              if (!getProjectFilesystem().exists(index)) {
+                getProjectFilesystem().createParentDirs(index);
+                getProjectFilesystem().writeContentsToPath("", index);
+              }
+            }
+            return StepExecutionResult.SUCCESS;
+          }
+        },
+        new LogContentsOfFileStep(getProjectFilesystem().resolve(argFilePath), Level.FINEST),
+        new RmStep(getProjectFilesystem(), argFilePath),
+        new RmStep(getProjectFilesystem(), fileListPath),
+        new RmStep(getProjectFilesystem(), scratchDir, RmStep.Mode.RECURSIVE));
+  }
+
+  /**
+   * @return the path of the index written for {@code module}, passed to the link relative to the
+   *     cell root, when indexing into {@code indexDir}.
+   */
+  static Path getIndexPath(Path indexDir, Path module) {
+    return indexDir.resolve(module + INDEX_SUFFIX);
+  }
+
+  @Override
+  public SourcePath getSourcePathToOutput() {
+    return new ExplicitBuildTargetSourcePath(getBuildTarget(), output);
+  }
+
+  /**
+   * @return the {@link SourcePath} to the index written for {@code module}.
+   */
+  public SourcePath getSourcePathToIndex(Path module) {
+    return new ExplicitBuildTargetSourcePath(getBuildTarget(), getIndexPath(output, module));
+  }
+
+  @Override
+  public RuleScheduleInfo getRuleScheduleInfo() {
+    return ruleScheduleInfo.orElse(RuleScheduleInfo.DEFAULT);
+  }
+
+  @Override
+  public boolean isCacheable() {
+    return cacheable;
+  }
+
+}
@@ -29,16 +29,17 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.logging.Level;
 
+import javax.annotation.Nullable;
+
 /**
  * Specialized parser for .d Makefiles emitted by {@code gcc -MD}.
  */
@@ -58,117 +59,166 @@ public class Depfiles {
       ADD_PREREQ
   }
 
-  private static final String WHITESPACE_CHARS = " \n\r\t";
-  private static final String ESCAPED_TARGET_CHARS = ": #";
-  private static final String ESCAPED_PREREQ_CHARS = " #";
-
   /**
    * Parses the input as a .d Makefile as emitted by {@code gcc -MD}
    * and returns the (target, [dep, dep2, ...]) inside.
    */
   public static Depfile parseDepfile(Readable readable) throws IOException {
-    String target = null;
-    ImmutableList.Builder<String> prereqsBuilder = ImmutableList.builder();
-    State state = State.LOOKING_FOR_TARGET;
-    StringBuilder identifierBuilder = new StringBuilder();
-
+    Parser parser = new Parser(/* decodeUtf8 */ false);
     CharBuffer buffer = CharBuffer.allocate(4096);
-    int numBackslashes = 0;
-
     while (readable.read(buffer) != -1) {
       buffer.flip();
-
       while (buffer.hasRemaining()) {
-        char c = buffer.get();
-        Action action = Action.NONE;
-        boolean isBackslash = c == '\\';
-        boolean isCarriageReturn = c == '\r';
-        boolean isNewline = c == '\n';
-        boolean isWhitespace = WHITESPACE_CHARS.indexOf(c) != -1;
-        boolean inIdentifier = identifierBuilder.length() > 0;
-        boolean isEscaped;
-        if (state == State.LOOKING_FOR_TARGET) {
-          isEscaped = ESCAPED_TARGET_CHARS.indexOf(c) != -1;
-        } else {
-          isEscaped = ESCAPED_PREREQ_CHARS.indexOf(c) != -1;
-        }
+        parser.accept(buffer.get());
+      }
+      buffer.clear();
+    }
+    return parser.finish();
+  }
 
-        if (isBackslash) {
-          // We need to count the number of backslashes in case the
-          // first non-backslash is an escaped character.
-          numBackslashes++;
-        } else if (numBackslashes > 0 && isEscaped) {
-          // Consume one backslash to escape the special char.
-          numBackslashes--;
-          if (inIdentifier) {
-            action = Action.APPEND_TO_IDENTIFIER;
+  /**
+   * Parses the raw bytes of a .d Makefile as emitted by {@code gcc -MD}, which avoids decoding the
+   * whole file when only the (usually ASCII) paths in it are needed.
+   *
+   * @see #parseDepfile(Readable)
+   */
+  public static Depfile parseDepfile(InputStream input) throws IOException {
+    Parser parser = new Parser(/* decodeUtf8 */ true);
+    byte[] buffer = new byte[16 * 1024];
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        // All the characters with a special meaning are ASCII, so pass bytes through as Latin-1
+        // chars and decode the identifiers containing anything else as UTF-8 later.
+        parser.accept((char) (buffer[i] & 0xff));
+      }
+    }
+    return parser.finish();
+  }
+
+  private static class Parser {
+
+    private final boolean decodeUtf8;
+
+    @Nullable
+    private String target = null;
+    private final ImmutableList.Builder<String> prereqsBuilder = ImmutableList.builder();
+    private State state = State.LOOKING_FOR_TARGET;
+    private final StringBuilder identifierBuilder = new StringBuilder();
+    private boolean identifierIsAscii = true;
+    private int numBackslashes = 0;
+
+    Parser(boolean decodeUtf8) {
+      this.decodeUtf8 = decodeUtf8;
+    }
+
+    private static boolean isWhitespace(char c) {
+      return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private boolean isEscaped(char c) {
+      if (c == ' ' || c == '#') {
+        return true;
+      }
+      return c == ':' && state == State.LOOKING_FOR_TARGET;
+    }
+
+    void accept(char c) {
+      Action action = Action.NONE;
+      boolean isBackslash = c == '\\';
+      boolean isCarriageReturn = c == '\r';
+      boolean isNewline = c == '\n';
+      boolean isWhitespace = isWhitespace(c);
+      boolean inIdentifier = identifierBuilder.length() > 0;
+      boolean isEscaped = isEscaped(c);
+
+      if (isBackslash) {
+        // We need to count the number of backslashes in case the
+        // first non-backslash is an escaped character.
+        numBackslashes++;
+      } else if (numBackslashes > 0 && isEscaped) {
+        // Consume one backslash to escape the special char.
+        numBackslashes--;
+        if (inIdentifier) {
+          action = Action.APPEND_TO_IDENTIFIER;
+        }
+      } else if (isWhitespace) {
+        if (numBackslashes == 0) {
+          if (state == State.FOUND_TARGET && inIdentifier) {
+            action = Action.ADD_PREREQ;
           }
-        } else if (isWhitespace) {
-          if (numBackslashes == 0) {
-            if (state == State.FOUND_TARGET && inIdentifier) {
-              action = Action.ADD_PREREQ;
-            }
-            if (state == State.FOUND_TARGET && (isNewline || isCarriageReturn)) {
-              state = State.LOOKING_FOR_TARGET;
-            }
-          } else if (isNewline) {
-            // Consume one backslash to escape \n or \r\n.
-            numBackslashes--;
-          } else if (!isCarriageReturn) {
-            action = Action.APPEND_TO_IDENTIFIER;
+          if (state == State.FOUND_TARGET && (isNewline || isCarriageReturn)) {
+            state = State.LOOKING_FOR_TARGET;
           }
-        } else if (c == ':' && state == State.LOOKING_FOR_TARGET) {
-          state = State.FOUND_TARGET;
-          action = Action.SET_TARGET;
-        } else {
+        } else if (isNewline) {
+          // Consume one backslash to escape \n or \r\n.
+          numBackslashes--;
+        } else if (!isCarriageReturn) {
           action = Action.APPEND_TO_IDENTIFIER;
         }
+      } else if (c == ':' && state == State.LOOKING_FOR_TARGET) {
+        state = State.FOUND_TARGET;
+        action = Action.SET_TARGET;
+      } else {
+        action = Action.APPEND_TO_IDENTIFIER;
+      }
 
-        if (!isBackslash && numBackslashes > 0 && !isCarriageReturn) {
-          int numBackslashesToAppend;
-          if (isEscaped || isWhitespace) {
-            // Backslashes escape themselves before an escaped character or whitespace.
-            numBackslashesToAppend = numBackslashes / 2;
-          } else {
-            // Backslashes are literal before a non-escaped character.
-            numBackslashesToAppend = numBackslashes;
-          }
-
-          for (int i = 0; i < numBackslashesToAppend; i++) {
-            identifierBuilder.append('\\');
-          }
-          numBackslashes = 0;
+      if (!isBackslash && numBackslashes > 0 && !isCarriageReturn) {
+        int numBackslashesToAppend;
+        if (isEscaped || isWhitespace) {
+          // Backslashes escape themselves before an escaped character or whitespace.
+          numBackslashesToAppend = numBackslashes / 2;
+        } else {
+          // Backslashes are literal before a non-escaped character.
+          numBackslashesToAppend = numBackslashes;
         }
 
-        switch (action) {
-          case NONE:
-            break;
-          case APPEND_TO_IDENTIFIER:
-            identifierBuilder.append(c);
-            break;
-          case SET_TARGET:
-            if (target != null) {
-              throw new HumanReadableException(
-                  "Depfile parser cannot handle .d file with multiple targets");
-            }
-            target = identifierBuilder.toString();
-            identifierBuilder.setLength(0);
-            break;
-          case ADD_PREREQ:
-            prereqsBuilder.add(identifierBuilder.toString());
-            identifierBuilder.setLength(0);
-            break;
+        for (int i = 0; i < numBackslashesToAppend; i++) {
+          identifierBuilder.append('\\');
         }
+        numBackslashes = 0;
       }
 
-      buffer.clear();
+      switch (action) {
+        case NONE:
+          break;
+        case APPEND_TO_IDENTIFIER:
+          identifierBuilder.append(c);
+          identifierIsAscii &= c < 0x80;
+          break;
+        case SET_TARGET:
+          if (target != null) {
+            throw new HumanReadableException(
+                "Depfile parser cannot handle .d file with multiple targets");
+          }
+          target = takeIdentifier();
+          break;
+        case ADD_PREREQ:
+          prereqsBuilder.add(takeIdentifier());
+          break;
+      }
+    }
+
+    private String takeIdentifier() {
+      String identifier = identifierBuilder.toString();
+      if (decodeUtf8 && !identifierIsAscii) {
+        identifier =
+            new String(
+                identifier.getBytes(StandardCharsets.ISO_8859_1),
+                StandardCharsets.UTF_8);
+      }
+      identifierBuilder.setLength(0);
+      identifierIsAscii = true;
+      return identifier;
     }
 
-    ImmutableList<String> prereqs = prereqsBuilder.build();
-    if (target == null || prereqs.isEmpty()) {
-      throw new IOException("Could not find target or prereqs parsing depfile");
-    } else {
-      return new Depfile(target, prereqs);
+    Depfile finish() throws IOException {
+      ImmutableList<String> prereqs = prereqsBuilder.build();
+      if (target == null || prereqs.isEmpty()) {
+        throw new IOException("Could not find target or prereqs parsing depfile");
+      } else {
+        return new Depfile(target, prereqs);
+      }
     }
   }
 
@@ -208,13 +258,12 @@ public class Depfiles {
     Logger.get(Depfiles.class).debug("Processing dependency file %s as Makefile", sourceDepFile);
     ImmutableList.Builder<Path> resultBuilder = ImmutableList.builder();
     try (InputStream input = filesystem.newFileInputStream(sourceDepFile);
-         BufferedReader reader = new BufferedReader(new InputStreamReader(input));
          SimplePerfEvent.Scope perfEvent = SimplePerfEvent.scope(
              eventBus,
              PerfEventId.of("depfile-parse"),
              ImmutableMap.of(
                  "input", inputPath, "output", outputPath))) {
-      ImmutableList<String> prereqs = Depfiles.parseDepfile(reader).getPrereqs();
+      ImmutableList<String> prereqs = Depfiles.parseDepfile(input).getPrereqs();
 
       // Additional files passed in via command-line flags (e.g. `-fsanitize-blacklist=<file>`)
       // appear first in the dep file, followed by the input source file.  So, just skip over
@@ -236,15 +285,18 @@ public class Depfiles {
         Path header = filesystem.resolve(rawHeader).normalize();
         Optional<Path> absolutePath =
             headerPathNormalizer.getAbsolutePathForUnnormalizedPath(header);
-        Optional<Path> repoRelativePath = filesystem.getPathRelativeToProjectRoot(header);
         if (absolutePath.isPresent()) {
           Preconditions.checkState(absolutePath.get().isAbsolute());
           resultBuilder.add(absolutePath.get());
-        } else if (
-            headerVerification.getMode() != HeaderVerification.Mode.IGNORE &&
-                !(headerVerification.isWhitelisted(header.toString()) ||
-                    repoRelativePath.map(path -> headerVerification.isWhitelisted(path.toString()))
-                        .orElse(false))) {
+          continue;
+        }
+        if (headerVerification.getMode() == HeaderVerification.Mode.IGNORE ||
+            headerVerification.isWhitelisted(header.toString())) {
+          continue;
+        }
+        Optional<Path> repoRelativePath = filesystem.getPathRelativeToProjectRoot(header);
+        if (!repoRelativePath.map(path -> headerVerification.isWhitelisted(path.toString()))
+            .orElse(false)) {
           String errorMessage = String.format(
               "%s: included an untracked header \"%s\"",
               inputPath,
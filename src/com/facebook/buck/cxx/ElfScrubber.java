@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.cxx.elf.Elf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Rewrites parts of a memory-mapped ELF file in place.  Scrubbers never change the size or layout
+ * of the file, so several of them can share a single mapping and parse of the file.
+ */
+interface ElfScrubber {
+
+  /**
+   * @param buffer the mapped contents of the whole file.
+   * @param elf the parsed file, backed by {@code buffer}.
+   */
+  void scrub(ByteBuffer buffer, Elf elf) throws IOException;
+
+}
@@ -21,14 +21,12 @@ import com.facebook.buck.model.BuildTargets;
 import com.facebook.buck.rules.AbstractBuildRuleWithResolver;
 import com.facebook.buck.rules.AddToRuleKey;
 import com.facebook.buck.rules.BuildContext;
-import com.facebook.buck.rules.BuildRule;
 import com.facebook.buck.rules.BuildRuleParams;
 import com.facebook.buck.rules.BuildableContext;
 import com.facebook.buck.rules.ExplicitBuildTargetSourcePath;
 import com.facebook.buck.rules.SourcePath;
 import com.facebook.buck.rules.SourcePathResolver;
 import com.facebook.buck.rules.SourcePathRuleFinder;
-import com.facebook.buck.rules.Tool;
 import com.facebook.buck.rules.keys.SupportsInputBasedRuleKey;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.fs.MakeCleanDirectoryStep;
@@ -57,8 +55,6 @@ class ElfSharedLibraryInterface
           ".gnu.version_r");
 
   private final SourcePathResolver pathResolver;
-  @AddToRuleKey
-  private final Tool objcopy;
 
   @AddToRuleKey
   private final SourcePath input;
@@ -66,11 +62,9 @@ class ElfSharedLibraryInterface
   private ElfSharedLibraryInterface(
       BuildRuleParams buildRuleParams,
       SourcePathResolver resolver,
-      Tool objcopy,
       SourcePath input) {
     super(buildRuleParams, resolver);
     this.pathResolver = resolver;
-    this.objcopy = objcopy;
     this.input = input;
   }
 
@@ -79,19 +73,14 @@ class ElfSharedLibraryInterface
       BuildRuleParams baseParams,
       SourcePathResolver resolver,
       SourcePathRuleFinder ruleFinder,
-      Tool objcopy,
       SourcePath input) {
     return new ElfSharedLibraryInterface(
         baseParams.copyWithChanges(
             target,
             Suppliers.ofInstance(
-                ImmutableSortedSet.<BuildRule>naturalOrder()
-                    .addAll(objcopy.getDeps(ruleFinder))
-                    .addAll(ruleFinder.filterBuildRuleInputs(input))
-                    .build()),
+                ImmutableSortedSet.copyOf(ruleFinder.filterBuildRuleInputs(input))),
             Suppliers.ofInstance(ImmutableSortedSet.of())),
         resolver,
-        objcopy,
         input);
   }
 
@@ -113,22 +102,26 @@ class ElfSharedLibraryInterface
         new MakeCleanDirectoryStep(getProjectFilesystem(), getOutputDir()),
         ElfExtractSectionsStep.of(
             getProjectFilesystem(),
-            objcopy.getCommandPrefix(context.getSourcePathResolver()),
             context.getSourcePathResolver().getAbsolutePath(input),
             output,
             SECTIONS),
-        ElfClearProgramHeadersStep.of(getProjectFilesystem(), output),
-        ElfSymbolTableScrubberStep.of(
-            getProjectFilesystem(),
-            output,
-            /* section */ ".dynsym",
-            /* allowMissing */ false),
-        ElfSymbolTableScrubberStep.of(
+        // Run all the scrubbers over a single mapping and parse of the extracted library.
+        ElfScrubberStep.of(
             getProjectFilesystem(),
             output,
-            /* section */ ".symtab",
-            /* allowMissing */ true),
-        ElfDynamicSectionScrubberStep.of(getProjectFilesystem(), output));
+            ImmutableList.of(
+                ElfClearProgramHeadersStep.of(getProjectFilesystem(), output),
+                ElfSymbolTableScrubberStep.of(
+                    getProjectFilesystem(),
+                    output,
+                    /* section */ ".dynsym",
+                    /* allowMissing */ false),
+                ElfSymbolTableScrubberStep.of(
+                    getProjectFilesystem(),
+                    output,
+                    /* section */ ".symtab",
+                    /* allowMissing */ true),
+                ElfDynamicSectionScrubberStep.of(getProjectFilesystem(), output))));
   }
 
   @Override
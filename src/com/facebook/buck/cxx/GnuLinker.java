@@ -57,7 +57,7 @@ import java.util.Set;
 /**
  * A specialization of {@link Linker} containing information specific to the GNU implementation.
  */
-public class GnuLinker implements Linker {
+public class GnuLinker implements Linker, HasThinLTO {
 
   private final Tool tool;
 
@@ -98,6 +98,30 @@ public class GnuLinker implements Linker {
         StringArg.of("-Wl,--no-whole-archive"));
   }
 
+  @Override
+  public Iterable<Arg> thinLtoIndexOnly(Path indexDir) {
+    return ImmutableList.<Arg>builder()
+        .add(StringArg.of("-flto=thin"))
+        .addAll(
+            StringArg.from(
+                Linkers.iXlinker(
+                    "-plugin-opt=thinlto-index-only",
+                    "-plugin-opt=thinlto-emit-imports-files",
+                    // Inputs are passed relative to the cell root, so prefixing them places their
+                    // index files under the index directory.
+                    "-plugin-opt=thinlto-prefix-replace=;" + indexDir + "/")))
+        .build();
+  }
+
+  @Override
+  public Iterable<Arg> lazyObjects(Iterable<? extends Arg> objects) {
+    return ImmutableList.<Arg>builder()
+        .add(StringArg.of("-Wl,--start-lib"))
+        .addAll(objects)
+        .add(StringArg.of("-Wl,--end-lib"))
+        .build();
+  }
+
   @Override
   public Iterable<String> soname(String arg) {
     return Linkers.iXlinker("-soname", arg);
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.rules.args.Arg;
+
+import java.nio.file.Path;
+
+/**
+ * A {@link Linker} which can split a ThinLTO link into an indexing link, separate backend compiles
+ * of each bitcode module, and a final link of the resulting native objects.
+ */
+public interface HasThinLTO {
+
+  /**
+   * @return the platform-specific way to have the link only write a ThinLTO index file for each of
+   *     its bitcode inputs instead of linking.  The index for an input passed as {@code path} is
+   *     written to {@code indexDir/path.thinlto.bc}.
+   *
+   * @param indexDir the directory to write the index files to
+   */
+  Iterable<Arg> thinLtoIndexOnly(Path indexDir);
+
+  /**
+   * @return the platform-specific way to link the given object files lazily, so that each is only
+   *     pulled into the link if it resolves an undefined symbol, as members of an archive would be.
+   */
+  Iterable<Arg> lazyObjects(Iterable<? extends Arg> objects);
+
+}
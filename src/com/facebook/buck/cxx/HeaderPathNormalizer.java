@@ -20,14 +20,18 @@ import com.facebook.buck.io.MorePaths;
 import com.facebook.buck.rules.SourcePath;
 import com.facebook.buck.rules.SourcePathResolver;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
 
 import java.nio.file.Path;
 import java.util.AbstractMap;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 
+import javax.annotation.Nullable;
+
 public class HeaderPathNormalizer {
 
   private final SourcePathResolver pathResolver;
@@ -36,18 +40,18 @@ public class HeaderPathNormalizer {
    * A mapping from absolute path of a header path (file or directory) to it's corresponding source
    * path.
    */
-  private final ImmutableMap<Path, SourcePath> headers;
+  private final PathTrie<SourcePath> headers;
 
   /**
    * A mapping of unnormalized header paths that are used by the tooling to the absolute path
    * representation of the corresponding source path.
    */
-  private final ImmutableMap<Path, SourcePath> normalized;
+  private final PathTrie<SourcePath> normalized;
 
-  protected HeaderPathNormalizer(
+  private HeaderPathNormalizer(
       SourcePathResolver pathResolver,
-      ImmutableMap<Path, SourcePath> headers,
-      ImmutableMap<Path, SourcePath> normalized) {
+      PathTrie<SourcePath> headers,
+      PathTrie<SourcePath> normalized) {
     this.pathResolver = pathResolver;
     this.headers = headers;
     this.normalized = normalized;
@@ -56,24 +60,13 @@ public class HeaderPathNormalizer {
   public static HeaderPathNormalizer empty(SourcePathResolver pathResolver) {
     return new HeaderPathNormalizer(
         pathResolver,
-        ImmutableMap.of(),
-        ImmutableMap.of());
-  }
-
-  private static <T> Optional<Map.Entry<Path, T>> pathLookup(Path path, Map<Path, T> map) {
-    while (path != null) {
-      T res = map.get(path);
-      if (res != null) {
-        return Optional.of(new AbstractMap.SimpleEntry<>(path, res));
-      }
-      path = path.getParent();
-    }
-    return Optional.empty();
+        new PathTrie<>(),
+        new PathTrie<>());
   }
 
   public Optional<Path> getAbsolutePathForUnnormalizedPath(Path unnormalizedPath) {
     Preconditions.checkArgument(unnormalizedPath.isAbsolute());
-    Optional<Map.Entry<Path, SourcePath>> result = pathLookup(unnormalizedPath, normalized);
+    Optional<Map.Entry<Path, SourcePath>> result = normalized.lookup(unnormalizedPath);
     if (!result.isPresent()) {
       return Optional.empty();
     }
@@ -87,7 +80,7 @@ public class HeaderPathNormalizer {
    */
   public SourcePath getSourcePathForAbsolutePath(Path absolutePath) {
     Preconditions.checkArgument(absolutePath.isAbsolute());
-    Optional<Map.Entry<Path, SourcePath>> path = pathLookup(absolutePath, headers);
+    Optional<Map.Entry<Path, SourcePath>> path = headers.lookup(absolutePath);
     Preconditions.checkState(
         path.isPresent(),
         "no headers mapped to %s",
@@ -161,8 +154,72 @@ public class HeaderPathNormalizer {
     public HeaderPathNormalizer build() {
       return new HeaderPathNormalizer(
           pathResolver,
-          ImmutableMap.copyOf(headers),
-          ImmutableMap.copyOf(normalized));
+          PathTrie.copyOf(headers),
+          PathTrie.copyOf(normalized));
+    }
+
+  }
+
+  /**
+   * Maps absolute paths to values, and looks up the value of the longest mapped prefix of a path.
+   *
+   * Dep files list thousands of headers, many of them from system directories which aren't mapped
+   * at all. Walking down from the root and stopping at the first unmapped component is much
+   * cheaper for those than probing a map with every parent of the path.
+   */
+  private static final class PathTrie<T> {
+
+    private final Map<String, PathTrie<T>> children = new HashMap<>();
+    @Nullable
+    private Path key;
+    @Nullable
+    private T value;
+
+    public static <T> PathTrie<T> copyOf(Map<Path, T> map) {
+      PathTrie<T> trie = new PathTrie<>();
+      for (Map.Entry<Path, T> entry : map.entrySet()) {
+        PathTrie<T> node = trie;
+        for (String component : components(entry.getKey())) {
+          node = node.children.computeIfAbsent(component, c -> new PathTrie<>());
+        }
+        // Splitting the path caches its string form, so drop it again (see Builder#put).
+        node.key = MorePaths.dropInternalCaches(entry.getKey());
+        node.value = entry.getValue();
+      }
+      return trie;
+    }
+
+    public Optional<Map.Entry<Path, T>> lookup(Path path) {
+      String string = path.toString();
+      String separator = path.getFileSystem().getSeparator();
+      PathTrie<T> node = this;
+      PathTrie<T> match = null;
+      int start = 0;
+      while (start <= string.length()) {
+        int end = string.indexOf(separator, start);
+        if (end == -1) {
+          end = string.length();
+        }
+        node = node.children.get(string.substring(start, end));
+        if (node == null) {
+          break;
+        }
+        if (node.value != null) {
+          match = node;
+        }
+        start = end + separator.length();
+      }
+      if (match == null) {
+        return Optional.empty();
+      }
+      return Optional.of(new AbstractMap.SimpleEntry<>(match.key, match.value));
+    }
+
+    /**
+     * @return the components of {@code path} split the same way {@link #lookup(Path)} does.
+     */
+    private static Iterable<String> components(Path path) {
+      return Splitter.on(path.getFileSystem().getSeparator()).split(path.toString());
     }
 
   }
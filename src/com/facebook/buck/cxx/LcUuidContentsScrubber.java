@@ -28,6 +28,7 @@ import java.util.Arrays;
 public class LcUuidContentsScrubber implements FileContentsScrubber {
 
   private static final byte[] ZERO_UUID = new byte[16];
+  private static final int HASH_CHUNK_SIZE = 64 * 1024;
 
   @Override
   public void scrubFile(FileChannel file) throws IOException, ScrubException {
@@ -45,9 +46,14 @@ public class LcUuidContentsScrubber implements FileContentsScrubber {
     }
     map.rewind();
 
+    // Hash the mapped file in chunks, as feeding the hasher a byte at a time dominates the cost of
+    // scrubbing large binaries.
     Hasher hasher = Hashing.sha1().newHasher();
+    byte[] chunk = new byte[HASH_CHUNK_SIZE];
     while (map.hasRemaining()) {
-      hasher.putByte(map.get());
+      int length = Math.min(chunk.length, map.remaining());
+      map.get(chunk, 0, length);
+      hasher.putBytes(chunk, 0, length);
     }
 
     map.rewind();
@@ -20,10 +20,13 @@ import com.facebook.buck.graph.AbstractBreadthFirstTraversal;
 import com.facebook.buck.graph.MutableDirectedGraph;
 import com.facebook.buck.graph.TopologicalSort;
 import com.facebook.buck.model.BuildTarget;
+import com.facebook.buck.model.Pair;
 import com.facebook.buck.parser.NoSuchBuildTargetException;
 import com.facebook.buck.rules.BuildRule;
+import com.facebook.buck.rules.BuildRuleResolver;
 import com.facebook.buck.rules.SourcePath;
 import com.facebook.buck.util.HumanReadableException;
+import com.facebook.buck.util.MoreCollectors;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
@@ -33,9 +36,18 @@ import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NativeLinkables {
 
@@ -176,11 +188,207 @@ public class NativeLinkables {
     return result.build();
   }
 
+  /**
+   * Like {@link #getNativeLinkables(CxxPlatform, Iterable, Linker.LinkableDepType, Predicate)},
+   * traversing all dependencies.
+   *
+   * The ordered linkables reachable from each root, and from each set of roots, are memoized in
+   * {@code ruleResolver} for every platform and link style, so the many link rules sharing parts
+   * of a dependency graph neither walk each part through the linkables again nor sort it again.
+   */
   public static ImmutableMap<BuildTarget, NativeLinkable> getNativeLinkables(
+      BuildRuleResolver ruleResolver,
       final CxxPlatform cxxPlatform,
       Iterable<? extends NativeLinkable> inputs,
       final Linker.LinkableDepType linkStyle) {
-    return getNativeLinkables(cxxPlatform, inputs, linkStyle, x -> true);
+    Traversal traversal =
+        linkStyle == Linker.LinkableDepType.SHARED ?
+            Traversal.SHARED_LINK :
+            Traversal.STATIC_LINK;
+    TraversalMemo memo =
+        ruleResolver.getMemo(Memo.class, Memo::new).getTraversalMemo(cxxPlatform, traversal);
+    return getOrderedTransitiveNativeLinkables(
+        cxxPlatform,
+        ImmutableList.copyOf(inputs),
+        traversal,
+        memo);
+  }
+
+  /**
+   * @return the {@link NativeLinkable}s transitively reachable from {@code roots}, ordered in the
+   *     same way as the reverse of a {@link TopologicalSort} of the graph they form.
+   */
+  private static ImmutableMap<BuildTarget, NativeLinkable> getOrderedTransitiveNativeLinkables(
+      CxxPlatform cxxPlatform,
+      ImmutableList<NativeLinkable> roots,
+      Traversal traversal,
+      TraversalMemo memo) {
+    ImmutableSet<BuildTarget> rootTargets = roots.stream()
+        .map(NativeLinkable::getBuildTarget)
+        .collect(MoreCollectors.toImmutableSet());
+    ImmutableMap<BuildTarget, NativeLinkable> memoized = memo.orderedLinkables.get(rootTargets);
+    if (memoized != null) {
+      return memoized;
+    }
+
+    // Sets of roots are made up from the memoized linkables of each root, which are shared by all
+    // the sets a root appears in.
+    Map<BuildTarget, NativeLinkable> nativeLinkables;
+    if (roots.size() == 1) {
+      nativeLinkables = collectTransitiveNativeLinkables(cxxPlatform, roots, traversal, memo);
+    } else {
+      nativeLinkables = new HashMap<>();
+      for (NativeLinkable root : roots) {
+        nativeLinkables.putAll(
+            getOrderedTransitiveNativeLinkables(
+                cxxPlatform,
+                ImmutableList.of(root),
+                traversal,
+                memo));
+      }
+    }
+
+    // `TopologicalSort` emits nodes in levels of increasing height (the length of the longest path
+    // to a leaf), sorting the nodes within each level.  The height of a node only depends on what
+    // it reaches, so we can reproduce the reverse of that order from memoized heights without
+    // building and sorting a graph for every caller.
+    Map<BuildTarget, Integer> heights = new HashMap<>();
+    for (NativeLinkable nativeLinkable : nativeLinkables.values()) {
+      heights.put(
+          nativeLinkable.getBuildTarget(),
+          getHeight(cxxPlatform, nativeLinkable, traversal, memo));
+    }
+    List<BuildTarget> ordered = new ArrayList<>(nativeLinkables.keySet());
+    ordered.sort(
+        Comparator.<BuildTarget, Integer>comparing(heights::get)
+            .thenComparing(Comparator.naturalOrder())
+            .reversed());
+
+    ImmutableMap.Builder<BuildTarget, NativeLinkable> result = ImmutableMap.builder();
+    for (BuildTarget target : ordered) {
+      result.put(target, nativeLinkables.get(target));
+    }
+    ImmutableMap<BuildTarget, NativeLinkable> orderedLinkables = result.build();
+    memo.orderedLinkables.put(rootTargets, orderedLinkables);
+    return orderedLinkables;
+  }
+
+  private static Map<BuildTarget, NativeLinkable> collectTransitiveNativeLinkables(
+      CxxPlatform cxxPlatform,
+      Iterable<? extends NativeLinkable> roots,
+      Traversal traversal,
+      TraversalMemo memo) {
+    Map<BuildTarget, NativeLinkable> nativeLinkables = Maps.newHashMap();
+    Deque<NativeLinkable> work = new ArrayDeque<>();
+    Set<BuildTarget> visited = new HashSet<>();
+    for (NativeLinkable nativeLinkable : roots) {
+      nativeLinkables.put(nativeLinkable.getBuildTarget(), nativeLinkable);
+      work.add(nativeLinkable);
+    }
+    while (!work.isEmpty()) {
+      NativeLinkable nativeLinkable = work.remove();
+      if (!visited.add(nativeLinkable.getBuildTarget())) {
+        continue;
+      }
+      for (NativeLinkable dep : getDeps(cxxPlatform, nativeLinkable, traversal, memo)) {
+        nativeLinkables.put(dep.getBuildTarget(), dep);
+        if (!visited.contains(dep.getBuildTarget())) {
+          work.add(dep);
+        }
+      }
+    }
+    return nativeLinkables;
+  }
+
+  private static ImmutableList<NativeLinkable> getDeps(
+      CxxPlatform cxxPlatform,
+      NativeLinkable nativeLinkable,
+      Traversal traversal,
+      TraversalMemo memo) {
+    ImmutableList<NativeLinkable> memoized = memo.deps.get(nativeLinkable.getBuildTarget());
+    if (memoized != null) {
+      return memoized;
+    }
+
+    // We always traverse a rule's exported native linkables.
+    Iterable<? extends NativeLinkable> nativeLinkableDeps =
+        nativeLinkable.getNativeLinkableExportedDepsForPlatform(cxxPlatform);
+
+    boolean shouldTraverse = true;
+    if (traversal != Traversal.ALL) {
+      switch (nativeLinkable.getPreferredLinkage(cxxPlatform)) {
+        case ANY:
+          shouldTraverse = traversal != Traversal.SHARED_LINK;
+          break;
+        case SHARED:
+          shouldTraverse = false;
+          break;
+        case STATIC:
+          shouldTraverse = true;
+          break;
+      }
+    }
+
+    // If we're linking this dependency statically, we also need to traverse its deps.
+    if (shouldTraverse) {
+      nativeLinkableDeps =
+          Iterables.concat(
+              nativeLinkableDeps,
+              nativeLinkable.getNativeLinkableDepsForPlatform(cxxPlatform));
+    }
+
+    ImmutableList<NativeLinkable> deps = ImmutableList.copyOf(nativeLinkableDeps);
+    memo.deps.put(nativeLinkable.getBuildTarget(), deps);
+    return deps;
+  }
+
+  /**
+   * @return the length of the longest path from {@code nativeLinkable} to a leaf.  The graph is
+   *     walked with an explicit stack, as dependency chains can be deeper than the thread's stack.
+   */
+  private static int getHeight(
+      CxxPlatform cxxPlatform,
+      NativeLinkable nativeLinkable,
+      Traversal traversal,
+      TraversalMemo memo) {
+    Map<BuildTarget, Integer> heights = memo.heights;
+    Integer height = heights.get(nativeLinkable.getBuildTarget());
+    if (height != null) {
+      return height;
+    }
+
+    Deque<NativeLinkable> stack = new ArrayDeque<>();
+    Set<BuildTarget> expanded = new HashSet<>();
+    stack.push(nativeLinkable);
+    while (!stack.isEmpty()) {
+      NativeLinkable current = stack.peek();
+      if (heights.containsKey(current.getBuildTarget())) {
+        stack.pop();
+        continue;
+      }
+      int currentHeight = 0;
+      boolean depsKnown = true;
+      for (NativeLinkable dep : getDeps(cxxPlatform, current, traversal, memo)) {
+        Integer depHeight = heights.get(dep.getBuildTarget());
+        if (depHeight == null) {
+          depsKnown = false;
+          stack.push(dep);
+        } else {
+          currentHeight = Math.max(currentHeight, depHeight + 1);
+        }
+      }
+      if (depsKnown) {
+        heights.put(current.getBuildTarget(), currentHeight);
+        stack.pop();
+      } else if (!expanded.add(current.getBuildTarget())) {
+        // The deps pushed when this linkable was first seen have all been handled since, unless
+        // one of them depends on it.
+        throw new HumanReadableException(
+            "Cycle found in the native dependencies of %s",
+            current.getBuildTarget());
+      }
+    }
+    return heights.get(nativeLinkable.getBuildTarget());
   }
 
   public static Linker.LinkableDepType getLinkStyle(
@@ -221,6 +429,7 @@ public class NativeLinkables {
    * {@link com.facebook.buck.rules.BuildRule} roots.
    */
   public static NativeLinkableInput getTransitiveNativeLinkableInput(
+      BuildRuleResolver ruleResolver,
       CxxPlatform cxxPlatform,
       Iterable<? extends BuildRule> inputs,
       Linker.LinkableDepType depType,
@@ -231,7 +440,7 @@ public class NativeLinkables {
     ImmutableMap<BuildTarget, NativeLinkable> roots =
         getNativeLinkableRoots(inputs, traverse, skip);
     ImmutableMap<BuildTarget, NativeLinkable> nativeLinkables =
-        getNativeLinkables(cxxPlatform, roots.values(), depType);
+        getNativeLinkables(ruleResolver, cxxPlatform, roots.values(), depType);
     ImmutableList.Builder<NativeLinkableInput> nativeLinkableInputs = ImmutableList.builder();
     for (NativeLinkable nativeLinkable : nativeLinkables.values()) {
       nativeLinkableInputs.add(getNativeLinkableInput(cxxPlatform, depType, nativeLinkable));
@@ -242,35 +451,12 @@ public class NativeLinkables {
   public static ImmutableMap<BuildTarget, NativeLinkable> getTransitiveNativeLinkables(
       final CxxPlatform cxxPlatform,
       Iterable<? extends NativeLinkable> inputs) {
-
-    final Map<BuildTarget, NativeLinkable> nativeLinkables = Maps.newHashMap();
-    for (NativeLinkable nativeLinkable : inputs) {
-      nativeLinkables.put(nativeLinkable.getBuildTarget(), nativeLinkable);
-    }
-
-    final MutableDirectedGraph<BuildTarget> graph = new MutableDirectedGraph<>();
-    AbstractBreadthFirstTraversal<BuildTarget> visitor =
-        new AbstractBreadthFirstTraversal<BuildTarget>(nativeLinkables.keySet()) {
-          @Override
-          public ImmutableSet<BuildTarget> visit(BuildTarget target) {
-            NativeLinkable nativeLinkable = Preconditions.checkNotNull(nativeLinkables.get(target));
-            graph.addNode(target);
-            ImmutableSet.Builder<BuildTarget> deps = ImmutableSet.builder();
-            for (NativeLinkable dep :
-                 Iterables.concat(
-                     nativeLinkable.getNativeLinkableDepsForPlatform(cxxPlatform),
-                     nativeLinkable.getNativeLinkableExportedDepsForPlatform(cxxPlatform))) {
-              BuildTarget depTarget = dep.getBuildTarget();
-              graph.addEdge(target, depTarget);
-              deps.add(depTarget);
-              nativeLinkables.put(depTarget, dep);
-            }
-            return deps.build();
-          }
-        };
-    visitor.start();
-
-    return ImmutableMap.copyOf(nativeLinkables);
+    return ImmutableMap.copyOf(
+        collectTransitiveNativeLinkables(
+            cxxPlatform,
+            inputs,
+            Traversal.ALL,
+            new TraversalMemo()));
   }
 
   /**
@@ -280,11 +466,18 @@ public class NativeLinkables {
    * {@link com.facebook.buck.rules.BuildRule} roots.
    */
   public static NativeLinkableInput getTransitiveNativeLinkableInput(
+      BuildRuleResolver ruleResolver,
       CxxPlatform cxxPlatform,
       Iterable<? extends BuildRule> inputs,
       Linker.LinkableDepType depType,
       Predicate<Object> traverse) throws NoSuchBuildTargetException {
-    return getTransitiveNativeLinkableInput(cxxPlatform, inputs, depType, traverse, x -> false);
+    return getTransitiveNativeLinkableInput(
+        ruleResolver,
+        cxxPlatform,
+        inputs,
+        depType,
+        traverse,
+        x -> false);
   }
 
     /**
@@ -354,4 +547,44 @@ public class NativeLinkables {
     return Optional.empty();
   }
 
+  /**
+   * The dependencies followed when walking the native dependency graph.
+   */
+  private enum Traversal {
+    /** Exported deps, plus the deps of linkables with static preferred linkage. */
+    SHARED_LINK,
+    /** Exported deps, plus the deps of linkables which aren't only linked as shared libraries. */
+    STATIC_LINK,
+    /** All deps, regardless of preferred linkage. */
+    ALL,
+  }
+
+  /**
+   * Native linkable traversals memoized for one action graph.  It is owned by the action graph's
+   * {@link BuildRuleResolver}, so it can hold the linkables strongly and still be dropped along
+   * with them.
+   */
+  private static class Memo {
+    private final Map<Pair<CxxPlatform, Traversal>, TraversalMemo> traversals =
+        new ConcurrentHashMap<>();
+
+    private TraversalMemo getTraversalMemo(CxxPlatform cxxPlatform, Traversal traversal) {
+      return traversals.computeIfAbsent(
+          new Pair<>(cxxPlatform, traversal),
+          key -> new TraversalMemo());
+    }
+  }
+
+  /**
+   * The results of walking the native dependency graph for one platform and {@link Traversal}.
+   * Linkables are identified by their build targets, which are unique within an action graph.
+   */
+  private static class TraversalMemo {
+    private final Map<BuildTarget, ImmutableList<NativeLinkable>> deps = new ConcurrentHashMap<>();
+    private final Map<BuildTarget, Integer> heights = new ConcurrentHashMap<>();
+    /** The ordered linkables reachable from each set of roots. */
+    private final Map<ImmutableSet<BuildTarget>, ImmutableMap<BuildTarget, NativeLinkable>>
+        orderedLinkables = new ConcurrentHashMap<>();
+  }
+
 }
@@ -28,10 +28,13 @@ import com.google.common.primitives.Shorts;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.ReadOnlyBufferException;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
+import javax.annotation.Nullable;
+
 public class ObjectFileScrubbers {
 
   private static final int GLOBAL_HEADER_SIZE = 8;
@@ -40,6 +43,17 @@ public class ObjectFileScrubbers {
   public static final byte[] GLOBAL_THIN_HEADER = "!<thin>\n".getBytes(Charsets.US_ASCII);
   public static final byte[] END_OF_FILE_HEADER_MARKER = {0x60, 0x0A};
 
+  private static final int ENTRY_SIZE =
+      16 /* fileName */ +
+      12 /* file modification time */ +
+      6 /* owner ID */ +
+      6 /* group ID */ +
+      8 /* file mode */ +
+      10 /* file size */ +
+      2 /* file magic */;
+  // The size of the timestamp, owner ID, group ID and file mode fields which follow the file name.
+  private static final int ENTRY_SCRUBBED_FIELDS_SIZE = 12 + 6 + 6 + 8;
+
   public enum PaddingStyle {
     LEFT,
     RIGHT,
@@ -54,19 +68,44 @@ public class ObjectFileScrubbers {
     return Arrays.equals(GLOBAL_THIN_HEADER, header);
   }
 
+  @SuppressWarnings("PMD.AvoidUsingOctalValues")
   public static FileContentsScrubber createDateUidGidScrubber(final PaddingStyle paddingStyle) {
+    // The scrubbed timestamp, UID, GID and mode fields are the same for every entry, so build them
+    // once up front.
+    ByteBuffer scrubbedFields = ByteBuffer.allocate(ENTRY_SCRUBBED_FIELDS_SIZE);
+    /* File modification timestamp */ putIntAsDecimalString(
+        scrubbedFields,
+        12,
+        ObjectFileCommonModificationDate.COMMON_MODIFICATION_TIME_STAMP,
+        paddingStyle);
+    /* Owner ID */ putIntAsDecimalString(scrubbedFields, 6, 0, paddingStyle);
+    /* Group ID */ putIntAsDecimalString(scrubbedFields, 6, 0, paddingStyle);
+    /* File mode */ putIntAsOctalString(scrubbedFields, 8, 0100644, paddingStyle);
+    final byte[] scrubbed = scrubbedFields.array();
+
     return new FileContentsScrubber() {
 
       /**
        * Efficiently modifies the archive backed by the given buffer to remove any non-deterministic
        * meta-data such as timestamps, UIDs, and GIDs.
+       *
+       * Archives are mapped and updated in place where possible, and entries which are already
+       * scrubbed (e.g. those of archives produced by a deterministic archiver, or an archive being
+       * scrubbed again) are left untouched, so their pages are never dirtied.
        */
-      @SuppressWarnings("PMD.AvoidUsingOctalValues")
       @Override
       public void scrubFile(FileChannel file) throws IOException, ScrubException {
         try {
+          long size = file.size();
+          // Mapped buffers are limited to 2GB, so fall back to reading and writing each entry
+          // through the channel for larger archives.
+          MappedByteBuffer map =
+              size <= Integer.MAX_VALUE ?
+                  file.map(FileChannel.MapMode.READ_WRITE, 0, size) :
+                  null;
+
           ByteBuffer header = ByteBuffer.allocate(GLOBAL_HEADER_SIZE);
-          file.read(header);
+          readAt(file, map, 0, header);
           // Grab the global header chunk and verify it's accurate.
           header.position(0);
           byte[] globalHeader = getBytes(header, GLOBAL_HEADER_SIZE);
@@ -74,38 +113,19 @@ public class ObjectFileScrubbers {
 
           // Iterate over all the file meta-data entries, injecting zero's for timestamp,
           // UID, and GID.
-          final int entrySize =
-              16 /* fileName */ +
-              12 /* file modification time */ +
-              6 /* owner ID */ +
-              6 /* group ID */ +
-              8 /* file mode */ +
-              10 /* file size */ +
-              2 /* file magic */;
-
           long start = GLOBAL_HEADER_SIZE;
-          ByteBuffer buffer = ByteBuffer.allocate(entrySize);
-          while (start < file.size()) {
-            checkArchive(file.size() - start >= entrySize, "Invalid entry metadata format");
+          ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+          byte[] fields = new byte[ENTRY_SCRUBBED_FIELDS_SIZE];
+          while (start < size) {
+            checkArchive(size - start >= ENTRY_SIZE, "Invalid entry metadata format");
 
             buffer.clear();
-            file.position(start);
-            int read = file.read(buffer);
-            checkArchive(read == entrySize, "Not all bytes have been read");
+            int read = readAt(file, map, start, buffer);
+            checkArchive(read == ENTRY_SIZE, "Not all bytes have been read");
 
             buffer.position(0); // position points just past the last byte read, so need to reset
             String fileName = new String(getBytes(buffer, 16), Charsets.US_ASCII).trim();
-
-            // Inject 0's for the non-deterministic meta-data entries.
-            /* File modification timestamp */ putIntAsDecimalString(
-                buffer,
-                12,
-                ObjectFileCommonModificationDate.COMMON_MODIFICATION_TIME_STAMP,
-                paddingStyle);
-            /* Owner ID */ putIntAsDecimalString(buffer, 6, 0, paddingStyle);
-            /* Group ID */ putIntAsDecimalString(buffer, 6, 0, paddingStyle);
-
-            /* File mode */ putIntAsOctalString(buffer, 8, 0100644, paddingStyle);
+            buffer.get(fields);
             long fileSize = getDecimalStringAsLong(buffer, 10);
 
             // Lastly, grab the file magic entry and verify it's accurate.
@@ -114,14 +134,17 @@ public class ObjectFileScrubbers {
                 Arrays.equals(END_OF_FILE_HEADER_MARKER, fileMagic),
                 "invalid file magic");
 
-            // write the changes
-            buffer.position(0); // position points just past the last byte accessed, need to reset
-            file.position(start);
-            int written = file.write(buffer);
-            checkArchive(written == entrySize, "Not all bytes have been written");
+            // Inject 0's for the non-deterministic meta-data entries, if they aren't already.
+            if (!Arrays.equals(scrubbed, fields)) {
+              buffer.position(16);
+              buffer.put(scrubbed);
+              buffer.position(0);
+              int written = writeAt(file, map, start, buffer);
+              checkArchive(written == ENTRY_SIZE, "Not all bytes have been written");
+            }
 
             // Skip the file data.
-            start += entrySize;
+            start += ENTRY_SIZE;
             if (!thin || SPECIAL_ENTRIES.contains(fileName)) {
               start += fileSize + fileSize % 2;
             }
@@ -135,6 +158,39 @@ public class ObjectFileScrubbers {
     };
   }
 
+  private static int readAt(
+      FileChannel file,
+      @Nullable ByteBuffer map,
+      long position,
+      ByteBuffer buffer) throws IOException {
+    if (map == null) {
+      file.position(position);
+      return file.read(buffer);
+    }
+    int length = Math.min(buffer.remaining(), (int) Math.max(0, map.limit() - position));
+    ByteBuffer source = map.duplicate();
+    source.position((int) position);
+    source.limit((int) position + length);
+    buffer.put(source);
+    return length;
+  }
+
+  private static int writeAt(
+      FileChannel file,
+      @Nullable ByteBuffer map,
+      long position,
+      ByteBuffer buffer) throws IOException {
+    if (map == null) {
+      file.position(position);
+      return file.write(buffer);
+    }
+    int length = buffer.remaining();
+    ByteBuffer destination = map.duplicate();
+    destination.position((int) position);
+    destination.put(buffer);
+    return length;
+  }
+
   public static byte[] getBytes(ByteBuffer buffer, int len) {
     byte[] bytes = new byte[len];
     buffer.get(bytes);
@@ -109,6 +109,7 @@ public class Omnibus {
   // Build the data structure containing bookkeeping which describing the omnibus link for the
   // given included and excluded roots.
   protected static OmnibusSpec buildSpec(
+      BuildRuleResolver ruleResolver,
       final CxxPlatform cxxPlatform,
       final Iterable<? extends NativeLinkTarget> includedRoots,
       final Iterable<? extends NativeLinkable> excludedRoots) {
@@ -128,6 +129,7 @@ public class Omnibus {
       roots.put(root.getBuildTarget(), root);
       for (NativeLinkable dep :
            NativeLinkables.getNativeLinkables(
+               ruleResolver,
                cxxPlatform,
                root.getNativeLinkTargetDeps(cxxPlatform),
                Linker.LinkableDepType.SHARED).values()) {
@@ -294,6 +296,7 @@ public class Omnibus {
     // Grab a topologically sorted mapping of all the root's deps.
     ImmutableMap<BuildTarget, NativeLinkable> deps =
         NativeLinkables.getNativeLinkables(
+            ruleResolver,
             cxxPlatform,
             root.getNativeLinkTargetDeps(cxxPlatform),
             Linker.LinkableDepType.SHARED);
@@ -554,6 +557,7 @@ public class Omnibus {
     // normal shared link.
     ImmutableMap<BuildTarget, NativeLinkable> deps =
         NativeLinkables.getNativeLinkables(
+            ruleResolver,
             cxxPlatform,
             spec.getDeps().values(),
             Linker.LinkableDepType.SHARED);
@@ -610,7 +614,8 @@ public class Omnibus {
 
     OmnibusLibraries.Builder libs = OmnibusLibraries.builder();
 
-    OmnibusSpec spec = buildSpec(cxxPlatform, nativeLinkTargetRoots, nativeLinkableRoots);
+    OmnibusSpec spec =
+        buildSpec(ruleResolver, cxxPlatform, nativeLinkTargetRoots, nativeLinkableRoots);
 
     // Create an empty dummy omnibus library, to give the roots something to link against before
     // we have the actual omnibus library available.  Note that this requires that the linker
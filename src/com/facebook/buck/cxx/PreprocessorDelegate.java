@@ -37,6 +37,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
@@ -277,6 +278,31 @@ final class PreprocessorDelegate implements RuleKeyAppendable {
     return inputs.build();
   }
 
+  /**
+   * @return the inputs we expect the preprocessor to read for {@code source}, predicted by scanning
+   *     include directives instead of running the preprocessor.
+   * @see com.facebook.buck.rules.keys.SupportsDependencyFileRuleKey
+   */
+  public ImmutableList<SourcePath> getLikelyInputsBeforeBuilding(Path source) throws IOException {
+    ImmutableList.Builder<SourcePath> inputs = ImmutableList.builder();
+    inputs.addAll(preprocessor.getInputs());
+
+    ImmutableList.Builder<Path> roots = ImmutableList.builder();
+    if (preprocessorFlags.getPrefixHeader().isPresent()) {
+      inputs.add(preprocessorFlags.getPrefixHeader().get());
+      roots.add(resolver.getAbsolutePath(preprocessorFlags.getPrefixHeader().get()));
+    }
+    roots.add(source);
+
+    Iterable<CxxHeaders> includes = preprocessorFlags.getIncludes();
+    if (leadingIncludePaths.isPresent()) {
+      includes = Iterables.concat(leadingIncludePaths.get().getIPaths(), includes);
+    }
+    inputs.addAll(CxxIncludeScanner.scan(resolver, roots.build(), includes));
+
+    return inputs.build();
+  }
+
   public Predicate<SourcePath> getCoveredByDepFilePredicate() {
     // TODO(jkeljo): I didn't know how to implement this, and didn't have time to figure it out.
     return (SourcePath path) -> true;
@@ -33,6 +33,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListeningExecutorService;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -43,6 +44,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -68,6 +70,8 @@ import javax.annotation.Nullable;
  *     to zips as space allows. This is a simple, greedy algorithm.
  *   </li>
  * </ul>
+ * When an executor is supplied, the classes are weighed up front in parallel so that the passes
+ * above only consult the {@link DalvikStatsCache}.
  */
 public class DalvikAwareZipSplitter implements ZipSplitter {
   private static final Logger LOG = Logger.get(DalvikAwareZipSplitter.class);
@@ -83,6 +87,7 @@ public class DalvikAwareZipSplitter implements ZipSplitter {
   private final DexSplitStrategy dexSplitStrategy;
   private final ImmutableSet<String> secondaryHeadSet;
   private final ImmutableSet<String> secondaryTailSet;
+  private final Optional<ListeningExecutorService> executorService;
   @Nullable
   private final ImmutableMultimap<String, APKModule> classPathToDexStore;
 
@@ -115,7 +120,8 @@ public class DalvikAwareZipSplitter implements ZipSplitter {
       APKModuleGraph apkModuleGraph,
       DexSplitStrategy dexSplitStrategy,
       ZipSplitter.CanaryStrategy canaryStrategy,
-      Path reportDir) {
+      Path reportDir,
+      Optional<ListeningExecutorService> executorService) {
     if (linearAllocLimit <= 0) {
       throw new HumanReadableException("linear_alloc_hard_limit must be greater than zero.");
     }
@@ -146,6 +152,7 @@ public class DalvikAwareZipSplitter implements ZipSplitter {
     this.dexSplitStrategy = dexSplitStrategy;
     this.linearAllocLimit = linearAllocLimit;
     this.dalvikStatsCache = new DalvikStatsCache();
+    this.executorService = executorService;
   }
 
   public static DalvikAwareZipSplitter splitZip(
@@ -164,7 +171,8 @@ public class DalvikAwareZipSplitter implements ZipSplitter {
       APKModuleGraph apkModuleGraph,
       DexSplitStrategy dexSplitStrategy,
       ZipSplitter.CanaryStrategy canaryStrategy,
-      Path reportDir) {
+      Path reportDir,
+      Optional<ListeningExecutorService> executorService) {
     return new DalvikAwareZipSplitter(
         filesystem,
         inFiles,
@@ -181,7 +189,8 @@ public class DalvikAwareZipSplitter implements ZipSplitter {
         apkModuleGraph,
         dexSplitStrategy,
         canaryStrategy,
-        reportDir);
+        reportDir,
+        executorService);
   }
 
   @Override
@@ -189,6 +198,15 @@ public class DalvikAwareZipSplitter implements ZipSplitter {
     ClasspathTraverser classpathTraverser = new DefaultClasspathTraverser();
     final Set<String> secondaryTail = new HashSet<String>();
 
+    if (executorService.isPresent()) {
+      LOG.debug("Weighing classes in parallel");
+      dalvikStatsCache.precomputeStats(
+          filesystem,
+          inFiles,
+          executorService.get(),
+          Runtime.getRuntime().availableProcessors());
+    }
+
     // Start out by writing the primary zip and recording which entries were added to it.
     primaryOut = newZipOutput(outPrimary);
     secondaryDexWriter.reset();
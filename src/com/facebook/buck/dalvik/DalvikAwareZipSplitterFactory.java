@@ -22,20 +22,34 @@ import com.facebook.buck.io.ProjectFilesystem;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListeningExecutorService;
 
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.Set;
 
 public class DalvikAwareZipSplitterFactory implements ZipSplitterFactory {
 
   private final long linearAllocLimit;
   private final Set<String> wantedInPrimaryZip;
+  private final Optional<ListeningExecutorService> executorService;
 
   public DalvikAwareZipSplitterFactory(
       long linearAllocLimit,
       Set<String> wantedInPrimaryZip) {
+    this(linearAllocLimit, wantedInPrimaryZip, Optional.empty());
+  }
+
+  /**
+   * @param executorService if present, used to weigh classes in parallel before splitting.
+   */
+  public DalvikAwareZipSplitterFactory(
+      long linearAllocLimit,
+      Set<String> wantedInPrimaryZip,
+      Optional<ListeningExecutorService> executorService) {
     this.linearAllocLimit = linearAllocLimit;
     this.wantedInPrimaryZip = wantedInPrimaryZip;
+    this.executorService = executorService;
   }
 
   @Override
@@ -70,6 +84,7 @@ public class DalvikAwareZipSplitterFactory implements ZipSplitterFactory {
         apkModuleGraph,
         dexSplitStrategy,
         canaryStrategy,
-        reportDir);
+        reportDir,
+        executorService);
   }
 }
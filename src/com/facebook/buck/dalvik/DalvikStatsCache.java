@@ -16,22 +16,60 @@
 
 package com.facebook.buck.dalvik;
 
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.jvm.java.classes.ClasspathTraversal;
+import com.facebook.buck.jvm.java.classes.DefaultClasspathTraverser;
 import com.facebook.buck.jvm.java.classes.FileLike;
-import com.google.common.collect.MapMaker;
+import com.facebook.buck.log.Logger;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
- * Cache to memoize results from DalvikStatsTool.
+ * Caches {@link DalvikStatsTool.Stats} for the class files seen by a single zip splitter.
+ * <p>
+ * Entries are looked up by their location on the classpath, since the splitter traverses the
+ * classpath several times and gets a fresh {@link FileLike} on every pass. Behind that, estimates
+ * are shared across all splitters in the process, keyed by a hash of the class file contents, so
+ * that a daemon only re-weighs the classes that actually changed between builds.
  */
 class DalvikStatsCache {
 
-  private final ConcurrentMap<FileLike, DalvikStatsTool.Stats> cache;
+  private static final Logger LOG = Logger.get(DalvikStatsCache.class);
+
+  /** Upper bound on the number of estimates retained between builds. */
+  private static final long MAX_SHARED_ENTRIES = 250_000;
+
+  /** Number of class files handed to a single weighing task. */
+  private static final int CLASSES_PER_BATCH = 256;
+
+  private static final Cache<HashCode, DalvikStatsTool.Stats> STATS_BY_CONTENTS =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_SHARED_ENTRIES)
+          .softValues()
+          .build();
+
+  private final ConcurrentMap<String, DalvikStatsTool.Stats> cache;
 
   DalvikStatsCache() {
-    cache = new MapMaker().weakKeys().makeMap();
+    cache = new ConcurrentHashMap<>();
   }
 
   DalvikStatsTool.Stats getStats(FileLike entry) {
@@ -42,14 +80,15 @@ class DalvikStatsCache {
       return DalvikStatsTool.Stats.ZERO;
     }
 
-    DalvikStatsTool.Stats stats = cache.get(entry);
+    String key = getKey(entry);
+    DalvikStatsTool.Stats stats = cache.get(key);
     if (stats != null) {
       return stats;
     }
 
     try (InputStream is = entry.getInput()) {
-      stats = DalvikStatsTool.getEstimate(is);
-      cache.put(entry, stats);
+      stats = getStats(ByteStreams.toByteArray(is));
+      cache.put(key, stats);
       return stats;
     } catch (IOException e) {
       throw new RuntimeException(String.format("Error calculating size for %s.", name), e);
@@ -57,4 +96,113 @@ class DalvikStatsCache {
       throw new RuntimeException(String.format("Error calculating size for %s.", name), e);
     }
   }
+
+  /**
+   * Weighs every class file in {@code inFiles} using {@code executorService}, so that subsequent
+   * calls to {@link #getStats(FileLike)} are cache hits.
+   * <p>
+   * The classpath itself is read on the calling thread. At most {@code parallelism} batches of
+   * class file contents are held in memory at any time.
+   */
+  void precomputeStats(
+      ProjectFilesystem filesystem,
+      Set<Path> inFiles,
+      ListeningExecutorService executorService,
+      int parallelism) throws IOException {
+    final Semaphore inFlight = new Semaphore(parallelism);
+    final List<ListenableFuture<?>> futures = new ArrayList<>();
+    final List<BufferedClass> batch = new ArrayList<>();
+
+    new DefaultClasspathTraverser().traverse(
+        new ClasspathTraversal(inFiles, filesystem) {
+          @Override
+          public void visit(FileLike entry) throws IOException {
+            if (!entry.getRelativePath().endsWith(".class")) {
+              return;
+            }
+            String key = getKey(entry);
+            if (cache.containsKey(key)) {
+              return;
+            }
+            try (InputStream is = entry.getInput()) {
+              batch.add(new BufferedClass(key, ByteStreams.toByteArray(is)));
+            }
+            if (batch.size() >= CLASSES_PER_BATCH) {
+              futures.add(submitBatch(batch, executorService, inFlight));
+              batch.clear();
+            }
+          }
+        });
+    if (!batch.isEmpty()) {
+      futures.add(submitBatch(batch, executorService, inFlight));
+    }
+
+    try {
+      Futures.allAsList(futures).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while estimating class sizes.", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Error estimating class sizes.", e.getCause());
+    }
+    LOG.debug("Precomputed stats for %d classes.", cache.size());
+  }
+
+  private ListenableFuture<?> submitBatch(
+      List<BufferedClass> batch,
+      ListeningExecutorService executorService,
+      final Semaphore inFlight) throws IOException {
+    final List<BufferedClass> classes = new ArrayList<>(batch);
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while estimating class sizes.", e);
+    }
+    try {
+      return executorService.submit(
+          () -> {
+            try {
+              for (BufferedClass bufferedClass : classes) {
+                try {
+                  cache.put(bufferedClass.key, getStats(bufferedClass.contents));
+                } catch (IOException | RuntimeException e) {
+                  throw new RuntimeException(
+                      String.format("Error calculating size for %s.", bufferedClass.key),
+                      e);
+                }
+              }
+            } finally {
+              inFlight.release();
+            }
+          });
+    } catch (RuntimeException e) {
+      inFlight.release();
+      throw e;
+    }
+  }
+
+  private static DalvikStatsTool.Stats getStats(byte[] contents) throws IOException {
+    HashCode hash = Hashing.sha1().hashBytes(contents);
+    DalvikStatsTool.Stats stats = STATS_BY_CONTENTS.getIfPresent(hash);
+    if (stats == null) {
+      stats = DalvikStatsTool.getEstimate(new ByteArrayInputStream(contents));
+      STATS_BY_CONTENTS.put(hash, stats);
+    }
+    return stats;
+  }
+
+  private static String getKey(FileLike entry) {
+    return entry.getContainer() + "!" + entry.getRelativePath();
+  }
+
+  private static class BufferedClass {
+    private final String key;
+    private final byte[] contents;
+
+    BufferedClass(String key, byte[] contents) {
+      this.key = key;
+      this.contents = contents;
+    }
+  }
 }
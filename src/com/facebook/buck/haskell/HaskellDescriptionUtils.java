@@ -261,7 +261,7 @@ public class HaskellDescriptionUtils {
     // the args go straight to the linker, and preserve their order.
     linkerArgsBuilder.addAll(linkerInputs);
     for (NativeLinkable nativeLinkable :
-         NativeLinkables.getNativeLinkables(cxxPlatform, deps, depType).values()) {
+         NativeLinkables.getNativeLinkables(resolver, cxxPlatform, deps, depType).values()) {
       linkerArgsBuilder.addAll(
           NativeLinkables.getNativeLinkableInput(cxxPlatform, depType, nativeLinkable).getArgs());
     }
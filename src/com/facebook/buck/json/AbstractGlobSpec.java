@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.json;
+
+import com.facebook.buck.util.immutables.BuckStyleTuple;
+import com.google.common.collect.ImmutableList;
+
+import org.immutables.value.Value;
+
+import java.nio.file.Path;
+
+/**
+ * The arguments of a {@code glob()} call made by a build file, which together determine its
+ * results.
+ */
+@Value.Immutable
+@BuckStyleTuple
+interface AbstractGlobSpec {
+  /**
+   * @return the absolute path of the directory the patterns are matched against.
+   */
+  Path getSearchBase();
+  ImmutableList<String> getIncludes();
+  ImmutableList<String> getExcludes();
+  boolean getIncludeDotfiles();
+}
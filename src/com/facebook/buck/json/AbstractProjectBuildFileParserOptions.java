@@ -73,6 +73,24 @@ abstract class AbstractProjectBuildFileParserOptions {
     return false;
   }
 
+  /**
+   * Whether build files are evaluated by {@link JvmBuildFileEvaluator} where possible, rather than
+   * by buck.py.
+   */
+  @Value.Default
+  public boolean getUseJvmEvaluator() {
+    return false;
+  }
+
+  /**
+   * Whether build files evaluated by {@link JvmBuildFileEvaluator} are evaluated by buck.py as
+   * well, warning about any differences in the results. The results of buck.py are used.
+   */
+  @Value.Default
+  public boolean getVerifyJvmEvaluator() {
+    return false;
+  }
+
   abstract Optional<Long> getWatchmanQueryTimeoutMs();
   abstract List<String> getBuildFileImportWhitelist();
 }
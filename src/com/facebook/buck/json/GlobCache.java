@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.json;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Optional;
+
+/**
+ * Results of {@code glob()} calls made by build files, which buck.py looks up before evaluating
+ * a glob itself. Implementations must be thread-safe, as they are shared by all the parser
+ * processes of a cell.
+ */
+public interface GlobCache {
+
+  /**
+   * @return the cached results of the glob described by {@code spec}, if any.
+   */
+  Optional<ImmutableList<String>> lookup(GlobSpec spec);
+
+  /**
+   * Records the results of evaluating the glob described by {@code spec}.
+   */
+  void put(GlobSpec spec, ImmutableList<String> results);
+}
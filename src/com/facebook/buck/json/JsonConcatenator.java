@@ -20,11 +20,12 @@ import com.facebook.buck.io.ProjectFilesystem;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSortedSet;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
-import java.util.Optional;
 
 @VisibleForTesting
 class JsonConcatenator {
@@ -32,13 +33,14 @@ class JsonConcatenator {
   private final ProjectFilesystem filesystem;
   private ImmutableSortedSet<Path> inputs;
 
-  private BufferedWriter destinationBufferedWriter;
+  private OutputStream destinationOutputStream;
   private boolean stillEmpty;
 
-
   @VisibleForTesting
   static final String JSON_ENCODING = "UTF-8";
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+
   public JsonConcatenator(
       ImmutableSortedSet<Path> inputs,
       Path destination,
@@ -46,8 +48,8 @@ class JsonConcatenator {
     this.inputs = inputs;
     this.stillEmpty = true;
     try {
-      this.destinationBufferedWriter = new BufferedWriter(
-          new OutputStreamWriter(filesystem.newFileOutputStream(destination), JSON_ENCODING));
+      this.destinationOutputStream =
+          new BufferedOutputStream(filesystem.newFileOutputStream(destination), BUFFER_SIZE);
     } catch (IOException e) {
       closeAll();
       throw e;
@@ -56,8 +58,8 @@ class JsonConcatenator {
   }
 
   public void closeAll() throws IOException {
-    if (destinationBufferedWriter != null) {
-      destinationBufferedWriter.close();
+    if (destinationOutputStream != null) {
+      destinationOutputStream.close();
     }
   }
 
@@ -65,7 +67,7 @@ class JsonConcatenator {
     try {
       initializeArray();
       for (Path input : inputs) {
-        appendArray(loadJsonArrayFromFile(input));
+        appendArrayFromFile(input);
       }
     } finally {
       finalizeArray();
@@ -74,7 +76,7 @@ class JsonConcatenator {
 
   @VisibleForTesting
   void initializeArray() throws IOException {
-    destinationBufferedWriter.write("[");
+    destinationOutputStream.write('[');
   }
 
   @VisibleForTesting
@@ -83,30 +85,90 @@ class JsonConcatenator {
       return;
     }
     if (!stillEmpty) {
-      destinationBufferedWriter.write(",");
+      destinationOutputStream.write(',');
     }
-    destinationBufferedWriter.write(stripArrayTokens(array));
+    destinationOutputStream.write(stripArrayTokens(array).getBytes(JSON_ENCODING));
     stillEmpty = false;
   }
 
+  /**
+   * Appends the elements of the array in {@code input}, streaming them through rather than loading
+   * the file, which may be large (e.g. a compilation database).
+   *
+   * Bytes which could be the end of the array (whitespace and closing brackets) are held back until
+   * more of the array's contents follow, so that the last closing bracket and anything after it can
+   * be dropped.
+   */
+  private void appendArrayFromFile(Path input) throws IOException {
+    try (InputStream inputStream = filesystem.newFileInputStream(input)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      ByteArrayOutputStream pending = new ByteArrayOutputStream();
+      boolean opened = false;
+      boolean hasElements = false;
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        int from = 0;
+        if (!opened) {
+          while (from < read && isWhitespace(buffer[from])) {
+            from++;
+          }
+          if (from == read) {
+            continue;
+          }
+          if (buffer[from] != '[') {
+            throw new IOException("Error loading " + input.toString());
+          }
+          opened = true;
+          from++;
+        }
+        int last = read - 1;
+        while (last >= from && (isWhitespace(buffer[last]) || buffer[last] == ']')) {
+          last--;
+        }
+        if (last < from) {
+          pending.write(buffer, from, read - from);
+          continue;
+        }
+        if (!hasElements) {
+          if (!stillEmpty) {
+            destinationOutputStream.write(',');
+          }
+          hasElements = true;
+          stillEmpty = false;
+        }
+        pending.writeTo(destinationOutputStream);
+        pending.reset();
+        destinationOutputStream.write(buffer, from, last + 1 - from);
+        pending.write(buffer, last + 1, read - last - 1);
+      }
+
+      byte[] tail = pending.toByteArray();
+      int close = tail.length - 1;
+      while (close >= 0 && tail[close] != ']') {
+        close--;
+      }
+      if (!opened || close < 0) {
+        throw new IOException("Error loading " + input.toString());
+      }
+      if (hasElements) {
+        destinationOutputStream.write(tail, 0, close);
+      }
+    }
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+
   @VisibleForTesting
   void finalizeArray() throws IOException {
     try {
-      destinationBufferedWriter.write("]");
+      destinationOutputStream.write(']');
     } finally {
       closeAll();
     }
   }
 
-  private String loadJsonArrayFromFile(Path input) throws IOException {
-    Optional<String> result = filesystem.readFileIfItExists(input);
-    if (result.isPresent()) {
-      return result.get();
-    } else {
-      throw new IOException("Error loading " + input.toString());
-    }
-  }
-
   @VisibleForTesting
   boolean isArrayEmpty(String array) {
     return array.matches("(\\s)*\\[(\\s)*\\](\\s)*");
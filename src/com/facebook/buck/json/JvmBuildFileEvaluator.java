@@ -0,0 +1,847 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.json;
+
+import com.facebook.buck.io.PathOrGlobMatcher;
+import com.facebook.buck.io.MorePaths;
+import com.facebook.buck.log.Logger;
+import com.facebook.buck.rules.BuckPyFunction;
+import com.facebook.buck.rules.ConstructorArgMarshaller;
+import com.facebook.buck.rules.Description;
+import com.facebook.buck.rules.ParamInfo;
+import com.facebook.buck.rules.TargetName;
+import com.facebook.buck.util.MoreCollectors;
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Evaluates build files in the JVM, without going through buck.py.
+ * <p>
+ * Only build files written in a small, deterministic subset of Python are supported: top-level
+ * assignments to variables, and calls to rules, {@code glob()} and {@code get_base_path()}, with
+ * arguments made of literals, variables and {@code +}. Anything else, as well as build files which
+ * depend on implicit includes or {@code .autodeps} files, is left to buck.py. The results are
+ * shaped exactly like those buck.py produces, so callers can't tell where they came from.
+ */
+class JvmBuildFileEvaluator {
+
+  private static final Logger LOG = Logger.get(JvmBuildFileEvaluator.class);
+
+  private static final ImmutableSet<String> PYTHON_KEYWORDS = ImmutableSet.of(
+      "and", "as", "assert", "break", "class", "continue", "def", "del", "elif", "else", "except",
+      "exec", "finally", "for", "from", "global", "if", "import", "in", "is", "lambda", "not", "or",
+      "pass", "print", "raise", "return", "try", "while", "with", "yield");
+
+  private final ProjectBuildFileParserOptions options;
+  private final boolean ignoreBuckAutodepsFiles;
+  private final Optional<GlobCache> globCache;
+  private final ImmutableMap<String, RuleFunction> ruleFunctions;
+  private final ImmutableList<String> projectRootRelativeGlobExcludes;
+
+  JvmBuildFileEvaluator(
+      ProjectBuildFileParserOptions options,
+      ConstructorArgMarshaller marshaller,
+      boolean ignoreBuckAutodepsFiles,
+      Optional<GlobCache> globCache) {
+    this.options = options;
+    this.ignoreBuckAutodepsFiles = ignoreBuckAutodepsFiles;
+    this.globCache = globCache;
+    ImmutableMap.Builder<String, RuleFunction> ruleFunctions = ImmutableMap.builder();
+    for (Description<?> description : options.getDescriptions()) {
+      RuleFunction function = RuleFunction.of(marshaller, description);
+      ruleFunctions.put(function.type, function);
+    }
+    this.ruleFunctions = ruleFunctions.build();
+    // buck.py turns ignored paths into globs the same way.
+    this.projectRootRelativeGlobExcludes = options.getIgnorePaths().stream()
+        .map(PathOrGlobMatcher::getPathOrGlob)
+        .map(path -> PythonGlob.isSpecial(path) ? path : path + "/**")
+        .collect(MoreCollectors.toImmutableList());
+  }
+
+  /**
+   * @param buildFile the absolute path of the build file.
+   * @return the rules defined by {@code buildFile}, followed by the meta rules buck.py adds, or
+   *     nothing if the build file has to be evaluated by buck.py.
+   */
+  public Optional<ImmutableList<Map<String, Object>>> evaluate(Path buildFile)
+      throws IOException {
+    try {
+      return Optional.of(new Evaluation(buildFile).run());
+    } catch (UnsupportedBuildFileException e) {
+      LOG.debug("Leaving %s to buck.py: %s", buildFile, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * The parameters of the function buck.py generates for a rule (see
+   * {@link com.facebook.buck.rules.BuckPyFunction}).
+   */
+  private static class RuleFunction {
+    private final String type;
+    private final Optional<String> defaultName;
+    /** Maps the names of the function's parameters to the keys they're stored under. */
+    private final ImmutableMap<String, String> parameters;
+    private final ImmutableSet<String> mandatoryParameters;
+
+    private RuleFunction(
+        String type,
+        Optional<String> defaultName,
+        ImmutableMap<String, String> parameters,
+        ImmutableSet<String> mandatoryParameters) {
+      this.type = type;
+      this.defaultName = defaultName;
+      this.parameters = parameters;
+      this.mandatoryParameters = mandatoryParameters;
+    }
+
+    public static RuleFunction of(ConstructorArgMarshaller marshaller, Description<?> description) {
+      Object dto = description.createUnpopulatedConstructorArg();
+      @Nullable TargetName targetName = dto.getClass().getAnnotation(TargetName.class);
+      Optional<String> defaultName = Optional.ofNullable(targetName).map(TargetName::name);
+
+      ImmutableMap.Builder<String, String> parameters = ImmutableMap.builder();
+      ImmutableSet.Builder<String> mandatoryParameters = ImmutableSet.builder();
+      if (!defaultName.isPresent()) {
+        parameters.put("name", "name");
+        mandatoryParameters.add("name");
+      }
+      for (ParamInfo param : marshaller.getAllParamInfo(dto)) {
+        if (param.getName().equals("name") || param.getName().equals("autodeps")) {
+          continue;
+        }
+        parameters.put(param.getPythonName(), param.getName());
+        if (!param.isOptional()) {
+          mandatoryParameters.add(param.getPythonName());
+        }
+      }
+      parameters.put("autodeps", "autodeps");
+      parameters.put("visibility", "visibility");
+      return new RuleFunction(
+          Description.getBuildRuleType(description).getName(),
+          defaultName,
+          parameters.build(),
+          mandatoryParameters.build());
+    }
+  }
+
+  /**
+   * Thrown when a build file does something outside the subset of Python we evaluate, including
+   * anything that would fail in buck.py, which reports errors much better.
+   */
+  private static class UnsupportedBuildFileException extends Exception {
+    public UnsupportedBuildFileException(String message, Object... args) {
+      super(String.format(message, args));
+    }
+  }
+
+  private enum TokenType {
+    NAME,
+    INT,
+    STRING,
+    OPERATOR,
+    NEWLINE,
+    END,
+  }
+
+  private static class Token {
+    private final TokenType type;
+    private final String text;
+    @Nullable private final Object value;
+
+    private Token(TokenType type, String text, @Nullable Object value) {
+      this.type = type;
+      this.text = text;
+      this.value = value;
+    }
+
+    @Override
+    public String toString() {
+      return type == TokenType.NEWLINE ? "newline" : type == TokenType.END ? "end of file" : text;
+    }
+  }
+
+  /**
+   * A Python tuple. Lists are represented by {@link ArrayList}s, which are never modified once
+   * built, and dicts by {@link LinkedHashMap}s with string keys.
+   */
+  private static class Tuple {
+    private final List<Object> elements;
+
+    private Tuple(List<Object> elements) {
+      this.elements = elements;
+    }
+  }
+
+  /**
+   * The evaluation of a single build file, which interprets it while parsing it, as the subset we
+   * support has no control flow.
+   */
+  private class Evaluation {
+    private final Path buildFile;
+    private final String basePath;
+    private final Map<String, Object> variables = new LinkedHashMap<>();
+    private final Map<String, Map<String, Object>> rules = new LinkedHashMap<>();
+    private List<Token> tokens = ImmutableList.of();
+    private int position;
+
+    private Evaluation(Path buildFile) {
+      this.buildFile = buildFile;
+      Path relativePath = options.getProjectRoot().toAbsolutePath().relativize(buildFile);
+      Path baseDirectory = relativePath.getParent();
+      this.basePath =
+          baseDirectory == null ? "" : MorePaths.pathWithUnixSeparators(baseDirectory);
+    }
+
+    public ImmutableList<Map<String, Object>> run()
+        throws IOException, UnsupportedBuildFileException {
+      if (!options.getDefaultIncludes().isEmpty()) {
+        throw new UnsupportedBuildFileException("implicit includes are configured");
+      }
+      if (!ignoreBuckAutodepsFiles &&
+          Files.isRegularFile(
+              buildFile.resolveSibling(options.getBuildFileName() + ".autodeps"))) {
+        throw new UnsupportedBuildFileException("it has an .autodeps file");
+      }
+      byte[] bytes = Files.readAllBytes(buildFile);
+      String source = new String(bytes, StandardCharsets.ISO_8859_1);
+      if (!CharMatcher.ascii().matchesAllOf(source) || source.indexOf('\r') != -1) {
+        throw new UnsupportedBuildFileException("it has non-ASCII characters or CR line endings");
+      }
+      tokens = tokenize(source);
+
+      while (peek().type != TokenType.END) {
+        if (peek().type == TokenType.NAME && isOperator(peek(1), "=")) {
+          String name = next().text;
+          next();
+          if (name.equals("True") || name.equals("False") || name.equals("None")) {
+            throw new UnsupportedBuildFileException("it assigns to %s", name);
+          }
+          variables.put(name, evaluateExpression());
+        } else {
+          evaluateExpression();
+        }
+        expect(TokenType.NEWLINE);
+      }
+
+      ImmutableList.Builder<Map<String, Object>> values = ImmutableList.builder();
+      for (Map<String, Object> rule : rules.values()) {
+        values.add(toParserRule(rule));
+      }
+      values.add(
+          toParserRule(ImmutableMap.of("__includes", ImmutableList.of(buildFile.toString()))));
+      values.add(toParserRule(ImmutableMap.of("__configs", ImmutableMap.of())));
+      values.add(toParserRule(ImmutableMap.of("__env", ImmutableMap.of())));
+      return values.build();
+    }
+
+    private Token peek() {
+      return peek(0);
+    }
+
+    private Token peek(int offset) {
+      return tokens.get(Math.min(position + offset, tokens.size() - 1));
+    }
+
+    private Token next() {
+      Token token = peek();
+      position = Math.min(position + 1, tokens.size() - 1);
+      return token;
+    }
+
+    private boolean isOperator(Token token, String operator) {
+      return token.type == TokenType.OPERATOR && token.text.equals(operator);
+    }
+
+    private Token expect(TokenType type) throws UnsupportedBuildFileException {
+      Token token = next();
+      if (token.type != type) {
+        throw new UnsupportedBuildFileException("unexpected %s", token);
+      }
+      return token;
+    }
+
+    private void expectOperator(String operator) throws UnsupportedBuildFileException {
+      Token token = next();
+      if (!isOperator(token, operator)) {
+        throw new UnsupportedBuildFileException("unexpected %s", token);
+      }
+    }
+
+    @Nullable
+    private Object evaluateExpression() throws UnsupportedBuildFileException, IOException {
+      Object value = evaluateUnary();
+      while (isOperator(peek(), "+")) {
+        next();
+        value = add(value, evaluateUnary());
+      }
+      return value;
+    }
+
+    @Nullable
+    private Object evaluateUnary() throws UnsupportedBuildFileException, IOException {
+      if (!isOperator(peek(), "-")) {
+        return evaluatePrimary();
+      }
+      next();
+      Object value = evaluateUnary();
+      if (!(value instanceof Long) || (Long) value == Long.MIN_VALUE) {
+        throw new UnsupportedBuildFileException("unsupported operand for unary -");
+      }
+      return -(Long) value;
+    }
+
+    @Nullable
+    private Object evaluatePrimary() throws UnsupportedBuildFileException, IOException {
+      Token token = next();
+      if (token.type == TokenType.INT) {
+        return token.value;
+      } else if (token.type == TokenType.STRING) {
+        StringBuilder value = new StringBuilder((String) token.value);
+        while (peek().type == TokenType.STRING) {
+          value.append((String) next().value);
+        }
+        return value.toString();
+      } else if (token.type == TokenType.NAME) {
+        if (isOperator(peek(), "(")) {
+          return call(token.text);
+        }
+        return lookUp(token.text);
+      } else if (isOperator(token, "(")) {
+        List<Object> elements = new ArrayList<>();
+        boolean isTuple = evaluateElements(")", elements);
+        return isTuple ? new Tuple(elements) : elements.get(0);
+      } else if (isOperator(token, "[")) {
+        List<Object> elements = new ArrayList<>();
+        evaluateElements("]", elements);
+        return elements;
+      } else if (isOperator(token, "{")) {
+        return evaluateDict();
+      }
+      throw new UnsupportedBuildFileException("unexpected %s", token);
+    }
+
+    /**
+     * Evaluates comma separated expressions up to {@code close}.
+     *
+     * @return whether the elements make up a tuple if they're parenthesized.
+     */
+    private boolean evaluateElements(String close, List<Object> elements)
+        throws UnsupportedBuildFileException, IOException {
+      boolean sawComma = false;
+      while (!isOperator(peek(), close)) {
+        elements.add(evaluateExpression());
+        if (!isOperator(peek(), ",")) {
+          break;
+        }
+        next();
+        sawComma = true;
+      }
+      expectOperator(close);
+      return sawComma || elements.isEmpty();
+    }
+
+    private Map<String, Object> evaluateDict() throws UnsupportedBuildFileException, IOException {
+      Map<String, Object> dict = new LinkedHashMap<>();
+      while (!isOperator(peek(), "}")) {
+        Object key = evaluateExpression();
+        if (!(key instanceof String)) {
+          throw new UnsupportedBuildFileException("dict keys must be strings");
+        }
+        expectOperator(":");
+        dict.put((String) key, evaluateExpression());
+        if (!isOperator(peek(), ",")) {
+          break;
+        }
+        next();
+      }
+      expectOperator("}");
+      return dict;
+    }
+
+    @Nullable
+    private Object lookUp(String name) throws UnsupportedBuildFileException {
+      if (variables.containsKey(name)) {
+        return variables.get(name);
+      }
+      switch (name) {
+        case "True":
+          return true;
+        case "False":
+          return false;
+        case "None":
+          return null;
+        default:
+          throw new UnsupportedBuildFileException("unknown name %s", name);
+      }
+    }
+
+    private Object add(@Nullable Object left, @Nullable Object right)
+        throws UnsupportedBuildFileException {
+      if (left instanceof String && right instanceof String) {
+        return (String) left + right;
+      } else if (left instanceof Long && right instanceof Long) {
+        try {
+          return Math.addExact((Long) left, (Long) right);
+        } catch (ArithmeticException e) {
+          throw new UnsupportedBuildFileException("integer overflow");
+        }
+      } else if (left instanceof ArrayList && right instanceof ArrayList) {
+        List<Object> result = new ArrayList<>((ArrayList<?>) left);
+        result.addAll((ArrayList<?>) right);
+        return result;
+      } else if (left instanceof Tuple && right instanceof Tuple) {
+        List<Object> result = new ArrayList<>(((Tuple) left).elements);
+        result.addAll(((Tuple) right).elements);
+        return new Tuple(result);
+      }
+      throw new UnsupportedBuildFileException("unsupported operands for +");
+    }
+
+    @Nullable
+    private Object call(String function) throws UnsupportedBuildFileException, IOException {
+      expectOperator("(");
+      List<Object> arguments = new ArrayList<>();
+      Map<String, Object> keywordArguments = new LinkedHashMap<>();
+      while (!isOperator(peek(), ")")) {
+        if (peek().type == TokenType.NAME && isOperator(peek(1), "=")) {
+          String keyword = next().text;
+          next();
+          if (keywordArguments.containsKey(keyword)) {
+            throw new UnsupportedBuildFileException("repeated keyword argument %s", keyword);
+          }
+          keywordArguments.put(keyword, evaluateExpression());
+        } else if (keywordArguments.isEmpty()) {
+          arguments.add(evaluateExpression());
+        } else {
+          throw new UnsupportedBuildFileException("positional argument follows keyword argument");
+        }
+        if (!isOperator(peek(), ",")) {
+          break;
+        }
+        next();
+      }
+      expectOperator(")");
+
+      if (variables.containsKey(function)) {
+        throw new UnsupportedBuildFileException("it calls the variable %s", function);
+      }
+      if (function.equals("glob")) {
+        return glob(arguments, keywordArguments);
+      } else if (function.equals("get_base_path") &&
+          arguments.isEmpty() &&
+          keywordArguments.isEmpty()) {
+        return basePath;
+      }
+      RuleFunction rule = ruleFunctions.get(function);
+      if (rule == null) {
+        throw new UnsupportedBuildFileException("unsupported call to %s", function);
+      }
+      addRule(rule, arguments, keywordArguments);
+      return null;
+    }
+
+    private void addRule(
+        RuleFunction function,
+        List<Object> arguments,
+        Map<String, Object> keywordArguments) throws UnsupportedBuildFileException {
+      if (!arguments.isEmpty()) {
+        throw new UnsupportedBuildFileException("positional arguments to %s", function.type);
+      }
+      for (String keyword : keywordArguments.keySet()) {
+        if (!function.parameters.containsKey(keyword)) {
+          throw new UnsupportedBuildFileException(
+              "unknown argument %s to %s",
+              keyword,
+              function.type);
+        }
+      }
+      for (String parameter : function.mandatoryParameters) {
+        if (!keywordArguments.containsKey(parameter)) {
+          throw new UnsupportedBuildFileException(
+              "missing argument %s to %s",
+              parameter,
+              function.type);
+        }
+      }
+
+      Map<String, Object> rule = new LinkedHashMap<>();
+      rule.put(BuckPyFunction.TYPE_PROPERTY_NAME, function.type);
+      for (Map.Entry<String, String> parameter : function.parameters.entrySet()) {
+        rule.put(parameter.getValue(), keywordArguments.get(parameter.getKey()));
+      }
+      if (function.defaultName.isPresent()) {
+        rule.put("name", function.defaultName.get());
+      }
+      Object name = rule.get("name");
+      if (!(name instanceof String)) {
+        throw new UnsupportedBuildFileException("rule names must be strings");
+      }
+      if (rules.containsKey(name)) {
+        throw new UnsupportedBuildFileException("duplicate rule %s", name);
+      }
+      rule.put("buck.base_path", basePath);
+      rules.put((String) name, rule);
+    }
+
+    private List<Object> glob(
+        List<Object> arguments,
+        Map<String, Object> keywordArguments) throws UnsupportedBuildFileException, IOException {
+      ImmutableList<String> parameters =
+          ImmutableList.of("includes", "excludes", "include_dotfiles");
+      if (arguments.size() > parameters.size()) {
+        throw new UnsupportedBuildFileException("too many arguments to glob()");
+      }
+      Map<String, Object> values = new LinkedHashMap<>();
+      for (int i = 0; i < arguments.size(); i++) {
+        values.put(parameters.get(i), arguments.get(i));
+      }
+      for (Map.Entry<String, Object> argument : keywordArguments.entrySet()) {
+        if (!parameters.contains(argument.getKey()) || values.containsKey(argument.getKey())) {
+          throw new UnsupportedBuildFileException("bad argument %s to glob()", argument.getKey());
+        }
+        values.put(argument.getKey(), argument.getValue());
+      }
+      if (!values.containsKey("includes")) {
+        throw new UnsupportedBuildFileException("glob() needs includes");
+      }
+      ImmutableList<String> includes = toStringList(values.get("includes"));
+      ImmutableList<String> excludes =
+          values.get("excludes") == null ?
+              ImmutableList.of() :
+              toStringList(values.get("excludes"));
+      Object includeDotfiles = values.getOrDefault("include_dotfiles", false);
+      if (!(includeDotfiles instanceof Boolean)) {
+        throw new UnsupportedBuildFileException("include_dotfiles must be a bool");
+      }
+      if (options.getUseMercurialGlob()) {
+        throw new UnsupportedBuildFileException("globs are evaluated by Mercurial");
+      }
+
+      Path searchBase = buildFile.getParent();
+      GlobSpec spec = GlobSpec.of(searchBase, includes, excludes, (Boolean) includeDotfiles);
+      boolean useGlobCache = globCache.isPresent() && !includes.isEmpty() &&
+          includes.stream().allMatch(JvmBuildFileEvaluator::isConfinedToSearchBase) &&
+          excludes.stream().allMatch(JvmBuildFileEvaluator::isConfinedToSearchBase);
+      if (useGlobCache) {
+        // Cached results were checked against allow_empty_globs when they were evaluated.
+        Optional<ImmutableList<String>> results = globCache.get().lookup(spec);
+        if (results.isPresent()) {
+          return new ArrayList<>(results.get());
+        }
+      }
+
+      ImmutableList<String> results;
+      try {
+        results = includes.isEmpty() ?
+            ImmutableList.of() :
+            PythonGlob.glob(
+                searchBase,
+                options.getProjectRoot().toAbsolutePath(),
+                includes,
+                excludes,
+                (Boolean) includeDotfiles,
+                projectRootRelativeGlobExcludes);
+      } catch (IllegalArgumentException e) {
+        throw new UnsupportedBuildFileException(e.getMessage());
+      }
+      if (useGlobCache) {
+        globCache.get().put(spec, results);
+      }
+      if (results.isEmpty() && !options.getAllowEmptyGlobs()) {
+        throw new UnsupportedBuildFileException("glob() returned no results");
+      }
+      return new ArrayList<>(results);
+    }
+  }
+
+  private static boolean isConfinedToSearchBase(String pattern) {
+    return !pattern.startsWith("/") && !PythonGlob.parsePattern(pattern).contains("..");
+  }
+
+  private static ImmutableList<String> toStringList(@Nullable Object value)
+      throws UnsupportedBuildFileException {
+    List<?> elements;
+    if (value instanceof ArrayList) {
+      elements = (List<?>) value;
+    } else if (value instanceof Tuple) {
+      elements = ((Tuple) value).elements;
+    } else {
+      throw new UnsupportedBuildFileException("expected a list of strings");
+    }
+    ImmutableList.Builder<String> strings = ImmutableList.builder();
+    for (Object element : elements) {
+      if (!(element instanceof String)) {
+        throw new UnsupportedBuildFileException("expected a list of strings");
+      }
+      strings.add((String) element);
+    }
+    return strings.build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> toParserRule(Map<String, ?> rule) {
+    return (Map<String, Object>) toParserValue(rule);
+  }
+
+  /**
+   * Converts an evaluated value into what {@link com.facebook.buck.bser.BserDeserializer} makes of
+   * the same value sent by buck.py.
+   */
+  @Nullable
+  private static Object toParserValue(@Nullable Object value) {
+    Object result;
+    if (value instanceof String) {
+      result = ((String) value).intern();
+    } else if (value instanceof Long) {
+      long longValue = (Long) value;
+      if (longValue == (byte) longValue) {
+        result = (byte) longValue;
+      } else if (longValue == (short) longValue) {
+        result = (short) longValue;
+      } else if (longValue == (int) longValue) {
+        result = (int) longValue;
+      } else {
+        result = longValue;
+      }
+    } else if (value instanceof List || value instanceof Tuple) {
+      List<?> elements = value instanceof Tuple ? ((Tuple) value).elements : (List<?>) value;
+      if (elements.isEmpty()) {
+        result = Collections.emptyList();
+      } else {
+        List<Object> list = new ArrayList<>(elements.size());
+        for (Object element : elements) {
+          list.add(toParserValue(element));
+        }
+        result = list;
+      }
+    } else if (value instanceof Map) {
+      if (((Map<?, ?>) value).isEmpty()) {
+        result = Collections.emptyMap();
+      } else {
+        Map<String, Object> map = new TreeMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+          map.put(((String) entry.getKey()).intern(), toParserValue(entry.getValue()));
+        }
+        result = map;
+      }
+    } else {
+      result = value;
+    }
+    return result;
+  }
+
+  private static List<Token> tokenize(String source) throws UnsupportedBuildFileException {
+    List<Token> tokens = new ArrayList<>();
+    int depth = 0;
+    boolean atLineStart = true;
+    int i = 0;
+    int length = source.length();
+    while (i < length) {
+      char c = source.charAt(i);
+      if (atLineStart && depth == 0) {
+        int start = i;
+        while (i < length && (source.charAt(i) == ' ' || source.charAt(i) == '\t')) {
+          i++;
+        }
+        if (i == length) {
+          break;
+        }
+        c = source.charAt(i);
+        if (c != '\n' && c != '#') {
+          if (i > start) {
+            throw new UnsupportedBuildFileException("indented statement");
+          }
+          atLineStart = false;
+        }
+      }
+
+      if (c == '\n') {
+        if (depth == 0) {
+          if (!tokens.isEmpty() && tokens.get(tokens.size() - 1).type != TokenType.NEWLINE) {
+            tokens.add(new Token(TokenType.NEWLINE, "\n", null));
+          }
+          atLineStart = true;
+        }
+        i++;
+      } else if (c == ' ' || c == '\t') {
+        i++;
+      } else if (c == '#') {
+        while (i < length && source.charAt(i) != '\n') {
+          i++;
+        }
+      } else if (c == '\\' && i + 1 < length && source.charAt(i + 1) == '\n') {
+        i += 2;
+      } else if (Character.isLetter(c) || c == '_') {
+        int start = i;
+        while (i < length &&
+            (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_')) {
+          i++;
+        }
+        String name = source.substring(start, i);
+        if (i < length && (source.charAt(i) == '\'' || source.charAt(i) == '"')) {
+          String prefix = name.toLowerCase();
+          if (!prefix.equals("r") && !prefix.equals("b") && !prefix.equals("br")) {
+            throw new UnsupportedBuildFileException("unsupported string prefix %s", name);
+          }
+          i = readString(source, i, prefix.contains("r"), tokens);
+        } else if (PYTHON_KEYWORDS.contains(name)) {
+          throw new UnsupportedBuildFileException("unsupported keyword %s", name);
+        } else {
+          tokens.add(new Token(TokenType.NAME, name, null));
+        }
+      } else if (c >= '0' && c <= '9') {
+        int start = i;
+        while (i < length && source.charAt(i) >= '0' && source.charAt(i) <= '9') {
+          i++;
+        }
+        String digits = source.substring(start, i);
+        if ((digits.length() > 1 && digits.startsWith("0")) ||
+            (i < length &&
+                (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '.' ||
+                    source.charAt(i) == '_'))) {
+          throw new UnsupportedBuildFileException("unsupported number %s", digits);
+        }
+        try {
+          tokens.add(new Token(TokenType.INT, digits, Long.parseLong(digits)));
+        } catch (NumberFormatException e) {
+          throw new UnsupportedBuildFileException("unsupported number %s", digits);
+        }
+      } else if (c == '\'' || c == '"') {
+        i = readString(source, i, false, tokens);
+      } else if ("()[]{},:=+-".indexOf(c) != -1) {
+        if (i + 1 < length && source.charAt(i + 1) == '=') {
+          throw new UnsupportedBuildFileException("unsupported operator %s=", c);
+        }
+        if ("([{".indexOf(c) != -1) {
+          depth++;
+        } else if (")]}".indexOf(c) != -1 && --depth < 0) {
+          throw new UnsupportedBuildFileException("unbalanced %s", c);
+        }
+        tokens.add(new Token(TokenType.OPERATOR, String.valueOf(c), null));
+        i++;
+      } else {
+        throw new UnsupportedBuildFileException("unsupported character %s", c);
+      }
+    }
+    if (depth != 0) {
+      throw new UnsupportedBuildFileException("unbalanced brackets");
+    }
+    if (!tokens.isEmpty() && tokens.get(tokens.size() - 1).type != TokenType.NEWLINE) {
+      tokens.add(new Token(TokenType.NEWLINE, "\n", null));
+    }
+    tokens.add(new Token(TokenType.END, "", null));
+    return tokens;
+  }
+
+  /**
+   * Reads the Python 2 string literal starting with the quote at {@code start} into a token.
+   *
+   * @return the index just past the literal.
+   */
+  private static int readString(String source, int start, boolean raw, List<Token> tokens)
+      throws UnsupportedBuildFileException {
+    char quote = source.charAt(start);
+    String tripleQuote = String.valueOf(new char[] {quote, quote, quote});
+    boolean triple = source.startsWith(tripleQuote, start);
+    int i = start + (triple ? 3 : 1);
+    StringBuilder value = new StringBuilder();
+    while (true) {
+      if (i >= source.length()) {
+        throw new UnsupportedBuildFileException("unterminated string");
+      }
+      char c = source.charAt(i);
+      if (triple ? source.startsWith(tripleQuote, i) : c == quote) {
+        i += triple ? 3 : 1;
+        break;
+      }
+      if (c == '\n' && !triple) {
+        throw new UnsupportedBuildFileException("unterminated string");
+      }
+      if (c != '\\') {
+        value.append(c);
+        i++;
+        continue;
+      }
+      if (i + 1 >= source.length()) {
+        throw new UnsupportedBuildFileException("unterminated string");
+      }
+      char escaped = source.charAt(i + 1);
+      i += 2;
+      if (raw) {
+        value.append(c).append(escaped);
+        continue;
+      }
+      switch (escaped) {
+        case '\n':
+          break;
+        case '\\':
+        case '\'':
+        case '"':
+          value.append(escaped);
+          break;
+        case 'a':
+          value.append('\u0007');
+          break;
+        case 'b':
+          value.append('\b');
+          break;
+        case 'f':
+          value.append('\f');
+          break;
+        case 'n':
+          value.append('\n');
+          break;
+        case 'r':
+          value.append('\r');
+          break;
+        case 't':
+          value.append('\t');
+          break;
+        case 'v':
+          value.append('\u000b');
+          break;
+        default:
+          if (escaped == 'x' || (escaped >= '0' && escaped <= '7')) {
+            // Byte escapes could produce strings which aren't valid UTF-8.
+            throw new UnsupportedBuildFileException("unsupported escape \\%s", escaped);
+          }
+          value.append(c).append(escaped);
+          break;
+      }
+    }
+    tokens.add(new Token(TokenType.STRING, source.substring(start, i), value.toString()));
+    return i;
+  }
+}
@@ -97,6 +97,8 @@ public class ProjectBuildFileParser implements AutoCloseable {
   private boolean isClosed;
 
   private boolean enableProfiling;
+  private Optional<GlobCache> globCache = Optional.empty();
+  @Nullable private JvmBuildFileEvaluator jvmBuildFileEvaluator;
   @Nullable private FutureTask<Void> stderrConsumerTerminationFuture;
   @Nullable private Thread stderrConsumerThread;
   @Nullable private ProjectBuildFileParseEvents.Started projectBuildFileParseEventStarted;
@@ -161,6 +163,16 @@ public class ProjectBuildFileParser implements AutoCloseable {
     this.enableProfiling = enableProfiling;
   }
 
+  /**
+   * Makes buck.py look up the results of globs in {@code globCache} before evaluating them, and
+   * record the results of those it had to evaluate there.
+   */
+  public void setGlobCache(GlobCache globCache) {
+    ensureNotClosed();
+    ensureNotInitialized();
+    this.globCache = Optional.of(globCache);
+  }
+
   @VisibleForTesting
   public boolean isClosed() {
     return isClosed;
@@ -295,6 +307,10 @@ public class ProjectBuildFileParser implements AutoCloseable {
       argBuilder.add("--use_mercurial_glob");
     }
 
+    if (globCache.isPresent()) {
+      argBuilder.add("--use_daemon_glob_cache");
+    }
+
     // Add the --build_file_import_whitelist flags.
     for (String module : options.getBuildFileImportWhitelist()) {
       argBuilder.add("--build_file_import_whitelist");
@@ -353,6 +369,12 @@ public class ProjectBuildFileParser implements AutoCloseable {
   public ImmutableList<Map<String, Object>> getAllRulesAndMetaRules(Path buildFile)
       throws BuildFileParseException, InterruptedException {
     try {
+      if (options.getUseJvmEvaluator()) {
+        Optional<ImmutableList<Map<String, Object>>> result = evaluateInJvm(buildFile);
+        if (result.isPresent()) {
+          return result.get();
+        }
+      }
       return getAllRulesInternal(buildFile);
     } catch (IOException e) {
       MoreThrowables.propagateIfInterrupt(e);
@@ -360,6 +382,53 @@ public class ProjectBuildFileParser implements AutoCloseable {
     }
   }
 
+  /**
+   * @return the rules and meta rules of {@code buildFile} if {@link JvmBuildFileEvaluator} could
+   *     evaluate it.
+   */
+  private Optional<ImmutableList<Map<String, Object>>> evaluateInJvm(Path buildFile)
+      throws IOException, BuildFileParseException {
+    ensureNotClosed();
+    if (jvmBuildFileEvaluator == null) {
+      jvmBuildFileEvaluator =
+          new JvmBuildFileEvaluator(options, marshaller, ignoreBuckAutodepsFiles, globCache);
+    }
+
+    Optional<ImmutableList<Map<String, Object>>> result;
+    try (AssertScopeExclusiveAccess.Scope scope = assertSingleThreadedParsing.scope();
+         SimplePerfEvent.Scope perfScope = SimplePerfEvent.scope(
+             buckEventBus,
+             PerfEventId.of("JvmBuildFileEvaluation"),
+             "buildFile",
+             buildFile)) {
+      result = jvmBuildFileEvaluator.evaluate(buildFile);
+    }
+    if (!result.isPresent()) {
+      return result;
+    }
+
+    if (options.getVerifyJvmEvaluator()) {
+      ImmutableList<Map<String, Object>> pythonResult = getAllRulesInternal(buildFile);
+      if (!ImmutableSet.copyOf(result.get()).equals(ImmutableSet.copyOf(pythonResult))) {
+        LOG.warn(
+            "Evaluating %s in the JVM produced %s, but buck.py produced %s",
+            buildFile,
+            result.get(),
+            pythonResult);
+        buckEventBus.post(
+            ConsoleEvent.warning(
+                "Evaluating %s in the JVM produced different rules than buck.py.",
+                buildFile));
+      }
+      return Optional.of(pythonResult);
+    }
+
+    ParseBuckFileEvent.Started parseBuckFileStarted = ParseBuckFileEvent.started(buildFile);
+    buckEventBus.post(parseBuckFileStarted);
+    buckEventBus.post(ParseBuckFileEvent.finished(parseBuckFileStarted, result.get(), ""));
+    return result;
+  }
+
   @VisibleForTesting
   protected ImmutableList<Map<String, Object>> getAllRulesInternal(Path buildFile)
       throws IOException, BuildFileParseException {
@@ -395,15 +464,21 @@ public class ProjectBuildFileParser implements AutoCloseable {
       buckPyStdinWriter.flush();
 
       LOG.verbose("Parsing output of process %s...", buckPyProcess);
-      Object deserializedValue;
-      try {
-        deserializedValue = bserDeserializer.deserializeBserValue(
-            buckPyProcess.getInputStream());
-      } catch (BserDeserializer.BserEofException e) {
-        LOG.warn(e, "Parser exited while decoding BSER data");
-        throw new IOException("Parser exited unexpectedly", e);
+      Object deserializedValue = readValueFromBuckPy();
+      // While evaluating the build file, buck.py asks us for the results of each glob it hits.
+      while (isGlobRequest(deserializedValue)) {
+        bserSerializer.serializeToStream(
+            handleGlobRequest(deserializedValue),
+            buckPyStdinWriter);
+        buckPyStdinWriter.flush();
+        deserializedValue = readValueFromBuckPy();
       }
       BuildFilePythonResult resultObject = handleDeserializedValue(deserializedValue);
+      if (globCache.isPresent()) {
+        for (Map<String, Object> glob : resultObject.getGlobs()) {
+          globCache.get().put(parseGlobSpec(glob), parseStringList(glob.get("results")));
+        }
+      }
       Path buckPyPath = getPathToBuckPy(options.getDescriptions());
       handleDiagnostics(
           buildFile,
@@ -424,6 +499,68 @@ public class ProjectBuildFileParser implements AutoCloseable {
     }
   }
 
+  private Object readValueFromBuckPy() throws IOException {
+    Preconditions.checkNotNull(buckPyProcess);
+    try {
+      return bserDeserializer.deserializeBserValue(buckPyProcess.getInputStream());
+    } catch (BserDeserializer.BserEofException e) {
+      LOG.warn(e, "Parser exited while decoding BSER data");
+      throw new IOException("Parser exited unexpectedly", e);
+    }
+  }
+
+  private static boolean isGlobRequest(@Nullable Object deserializedValue) {
+    return deserializedValue instanceof Map<?, ?> &&
+        ((Map<?, ?>) deserializedValue).containsKey("globRequest");
+  }
+
+  /**
+   * @return the response to a glob request from buck.py, which holds the cached results of the
+   *     glob under {@code results} if there are any.
+   */
+  @SuppressWarnings("unchecked")
+  private ImmutableMap<String, Object> handleGlobRequest(Object deserializedValue)
+      throws IOException {
+    Object request = ((Map<String, Object>) deserializedValue).get("globRequest");
+    if (!(request instanceof Map<?, ?>)) {
+      throw new IOException(String.format("Invalid glob request %s", request));
+    }
+    Optional<ImmutableList<String>> results = Optional.empty();
+    if (globCache.isPresent()) {
+      results = globCache.get().lookup(parseGlobSpec((Map<String, Object>) request));
+    }
+    return results.isPresent() ?
+        ImmutableMap.of("results", results.get()) :
+        ImmutableMap.of();
+  }
+
+  private static GlobSpec parseGlobSpec(Map<String, Object> glob) throws IOException {
+    try {
+      return GlobSpec.of(
+          Paths.get((String) Preconditions.checkNotNull(glob.get("searchBase"))),
+          parseStringList(glob.get("includes")),
+          parseStringList(glob.get("excludes")),
+          (Boolean) Preconditions.checkNotNull(glob.get("includeDotfiles")));
+    } catch (ClassCastException | NullPointerException e) {
+      throw new IOException(String.format("Invalid glob %s", glob), e);
+    }
+  }
+
+  private static ImmutableList<String> parseStringList(@Nullable Object value)
+      throws IOException {
+    if (!(value instanceof List<?>)) {
+      throw new IOException(String.format("Expected a list of strings, got %s", value));
+    }
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    for (Object element : (List<?>) value) {
+      if (!(element instanceof String)) {
+        throw new IOException(String.format("Expected a list of strings, got %s", value));
+      }
+      builder.add((String) element);
+    }
+    return builder.build();
+  }
+
   @SuppressWarnings("unchecked")
   private static BuildFilePythonResult handleDeserializedValue(@Nullable Object deserializedValue)
       throws IOException {
@@ -450,10 +587,17 @@ public class ProjectBuildFileParser implements AutoCloseable {
     } catch (ClassCastException e) {
       throw new IOException("Invalid parser profile", e);
     }
+    List<Map<String, Object>> globs;
+    try {
+      globs = (List<Map<String, Object>>) decodedResult.get("globs");
+    } catch (ClassCastException e) {
+      throw new IOException("Invalid parser globs", e);
+    }
     return BuildFilePythonResult.of(
         values,
         diagnostics == null ? ImmutableList.of() : diagnostics,
-        profile == null ? "" : profile);
+        profile == null ? "" : profile,
+        globs == null ? ImmutableList.of() : globs);
   }
 
   private static void handleDiagnostics(
@@ -762,5 +906,9 @@ public class ProjectBuildFileParser implements AutoCloseable {
     List<Map<String, Object>> getValues();
     List<Map<String, String>> getDiagnostics();
     String getProfile();
+    /**
+     * @return the globs buck.py had to evaluate, with their arguments and results.
+     */
+    List<Map<String, Object>> getGlobs();
   }
 }
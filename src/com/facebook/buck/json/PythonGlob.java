@@ -0,0 +1,324 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.json;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A port of the {@code glob()} implementation buck.py uses when neither Watchman nor Mercurial
+ * globbing is enabled ({@code glob_internal.py}), along with the parts of pathlib it relies on, so
+ * build files evaluated in the JVM list exactly the same files.
+ */
+final class PythonGlob {
+
+  private PythonGlob() {}
+
+  /**
+   * @param projectRootRelativeExcludes patterns matched against paths relative to the project
+   *     root, as buck.py makes them out of the ignored paths.
+   * @return the files under {@code searchBase} matched by {@code includes} and not by
+   *     {@code excludes}, relative to {@code searchBase} and sorted.
+   * @throws IllegalArgumentException for patterns buck.py would reject, or whose results we can't
+   *     reproduce.
+   */
+  public static ImmutableList<String> glob(
+      Path searchBase,
+      Path projectRoot,
+      List<String> includes,
+      List<String> excludes,
+      boolean includeDotfiles,
+      List<String> projectRootRelativeExcludes) throws IOException {
+    Set<String> nonSpecialExcludes = new LinkedHashSet<>();
+    List<List<String>> matchExcludes = new ArrayList<>();
+    for (String pattern : excludes) {
+      if (isSpecial(pattern)) {
+        matchExcludes.add(parsePattern(pattern));
+      } else {
+        nonSpecialExcludes.add(pattern);
+      }
+    }
+    List<List<String>> rootRelativeExcludes = new ArrayList<>();
+    for (String pattern : projectRootRelativeExcludes) {
+      rootRelativeExcludes.add(parsePattern(pattern));
+    }
+
+    ImmutableSortedSet.Builder<String> results = ImmutableSortedSet.naturalOrder();
+    for (String pattern : includes) {
+      List<String> patternParts = parsePattern(pattern);
+      if (patternParts.isEmpty() || pattern.startsWith("/") || patternParts.contains("..")) {
+        throw new IllegalArgumentException("Unsupported glob pattern " + pattern);
+      }
+      Set<Path> selected = new LinkedHashSet<>();
+      select(searchBase, patternParts, 0, selected);
+      for (Path path : selected) {
+        if (!Files.isRegularFile(path)) {
+          continue;
+        }
+        Path relativePath = searchBase.relativize(path);
+        List<String> parts = parts(relativePath);
+        if (!includeDotfiles && parts.stream().anyMatch(part -> part.startsWith("."))) {
+          continue;
+        }
+        if (isExcluded(
+            parts,
+            parts(projectRoot.relativize(path)),
+            nonSpecialExcludes,
+            matchExcludes,
+            rootRelativeExcludes)) {
+          continue;
+        }
+        results.add(relativePath.toString());
+      }
+    }
+    return ImmutableList.copyOf(results.build());
+  }
+
+  private static boolean isExcluded(
+      List<String> parts,
+      List<String> projectRootRelativeParts,
+      Set<String> nonSpecialExcludes,
+      List<List<String>> matchExcludes,
+      List<List<String>> projectRootRelativeExcludes) {
+    if (nonSpecialExcludes.contains(String.join("/", parts))) {
+      return true;
+    }
+    for (List<String> pattern : matchExcludes) {
+      if (matchEntire(parts, pattern)) {
+        return true;
+      }
+    }
+    for (List<String> pattern : projectRootRelativeExcludes) {
+      if (matchEntire(projectRootRelativeParts, pattern)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Mirrors pathlib's selectors: adds the paths under {@code parent} matched by the pattern parts
+   * from {@code index} on to {@code selected}.
+   */
+  private static void select(
+      Path parent,
+      List<String> patternParts,
+      int index,
+      Set<Path> selected) throws IOException {
+    if (index == patternParts.size()) {
+      selected.add(parent);
+      return;
+    }
+    if (!Files.isDirectory(parent)) {
+      return;
+    }
+    String part = patternParts.get(index);
+    if (part.equals("**")) {
+      List<Path> directories = new ArrayList<>();
+      collectDirectories(parent, directories);
+      for (Path directory : directories) {
+        if (index + 1 == patternParts.size()) {
+          // A trailing "**" matches everything in every directory below the parent.
+          selected.addAll(list(directory));
+        } else {
+          select(directory, patternParts, index + 1, selected);
+        }
+      }
+    } else if (part.contains("**")) {
+      throw new IllegalArgumentException("'**' can only be an entire path component");
+    } else if (isSpecial(part)) {
+      Pattern pattern = translate(part);
+      for (Path child : list(parent)) {
+        if (pattern.matcher(child.getFileName().toString()).matches()) {
+          select(child, patternParts, index + 1, selected);
+        }
+      }
+    } else {
+      Path child = parent.resolve(part);
+      if (Files.exists(child)) {
+        select(child, patternParts, index + 1, selected);
+      }
+    }
+  }
+
+  private static void collectDirectories(Path directory, List<Path> directories)
+      throws IOException {
+    directories.add(directory);
+    for (Path child : list(directory)) {
+      if (Files.isDirectory(child)) {
+        collectDirectories(child, directories);
+      }
+    }
+  }
+
+  private static List<Path> list(Path directory) throws IOException {
+    List<Path> children = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path child : stream) {
+        children.add(child);
+      }
+    }
+    return children;
+  }
+
+  /**
+   * pathlib's {@code PurePath.match(pattern, match_entire=True)} for a relative path, where
+   * {@code "**"} matches any number of path components.
+   */
+  static boolean matchEntire(List<String> parts, List<String> patternParts) {
+    if (patternParts.isEmpty()) {
+      throw new IllegalArgumentException("empty pattern");
+    }
+    if (patternParts.get(0).equals("/")) {
+      // Absolute patterns never match relative paths.
+      return false;
+    }
+    if (patternParts.stream().filter(part -> !part.equals("**")).count() > parts.size()) {
+      return false;
+    }
+    return applyMatch(parts, parts.size(), patternParts, patternParts.size());
+  }
+
+  /**
+   * Matches the first {@code partsCount} path components against the first
+   * {@code patternPartsCount} pattern parts, working backwards from the end like pathlib does.
+   */
+  private static boolean applyMatch(
+      List<String> parts,
+      int partsCount,
+      List<String> patternParts,
+      int patternPartsCount) {
+    int partsMatched = 0;
+    int patternPartsMatched = 0;
+    while (partsMatched < partsCount && patternPartsMatched < patternPartsCount) {
+      String pattern = patternParts.get(patternPartsCount - patternPartsMatched - 1);
+      if (pattern.equals("**")) {
+        // "**" can match nothing, or it can consume any number of components.
+        if (applyMatch(
+            parts,
+            partsCount - partsMatched,
+            patternParts,
+            patternPartsCount - patternPartsMatched - 1)) {
+          return true;
+        }
+        partsMatched++;
+      } else if (translate(pattern)
+          .matcher(parts.get(partsCount - partsMatched - 1))
+          .matches()) {
+        partsMatched++;
+        patternPartsMatched++;
+      } else {
+        return false;
+      }
+    }
+    // Any remaining "**" pattern parts match nothing.
+    while (patternPartsMatched < patternPartsCount &&
+        patternParts.get(patternPartsCount - patternPartsMatched - 1).equals("**")) {
+      patternPartsMatched++;
+    }
+    return patternPartsMatched == patternPartsCount && partsMatched == partsCount;
+  }
+
+  /**
+   * @return the components of {@code pattern} the way pathlib parses them: empty and {@code "."}
+   *     components are dropped, and a leading {@code "/"} is kept as a component of its own.
+   */
+  static List<String> parsePattern(String pattern) {
+    List<String> parts = new ArrayList<>();
+    if (pattern.startsWith("/")) {
+      parts.add("/");
+    }
+    for (String part : Splitter.on('/').split(pattern)) {
+      if (!part.isEmpty() && !part.equals(".")) {
+        parts.add(part);
+      }
+    }
+    return parts;
+  }
+
+  private static List<String> parts(Path relativePath) {
+    List<String> parts = new ArrayList<>();
+    for (Path part : relativePath) {
+      if (!part.toString().isEmpty()) {
+        parts.add(part.toString());
+      }
+    }
+    return parts;
+  }
+
+  static boolean isSpecial(String pattern) {
+    return pattern.contains("*") || pattern.contains("?") || pattern.contains("[");
+  }
+
+  /**
+   * A port of Python 2's {@code fnmatch.translate}.
+   */
+  static Pattern translate(String pattern) {
+    StringBuilder regex = new StringBuilder();
+    int i = 0;
+    int n = pattern.length();
+    while (i < n) {
+      char c = pattern.charAt(i++);
+      if (c == '*') {
+        regex.append(".*");
+      } else if (c == '?') {
+        regex.append('.');
+      } else if (c == '[') {
+        int j = i;
+        if (j < n && pattern.charAt(j) == '!') {
+          j++;
+        }
+        if (j < n && pattern.charAt(j) == ']') {
+          j++;
+        }
+        while (j < n && pattern.charAt(j) != ']') {
+          j++;
+        }
+        if (j >= n) {
+          regex.append("\\[");
+        } else {
+          String stuff = pattern.substring(i, j);
+          i = j + 1;
+          if (stuff.contains("[") || stuff.contains("&") || stuff.contains("\\")) {
+            // Java character classes treat these specially, Python's don't.
+            throw new IllegalArgumentException("Unsupported glob pattern " + pattern);
+          }
+          if (stuff.startsWith("!")) {
+            stuff = "^" + stuff.substring(1);
+          } else if (stuff.startsWith("^")) {
+            stuff = "\\" + stuff;
+          }
+          regex.append('[').append(stuff).append(']');
+        }
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString(), Pattern.DOTALL);
+  }
+}
@@ -10,6 +10,7 @@ import contextlib
 from pathlib import Path, PurePath
 from pywatchman import bser, WatchmanError
 from contextlib import contextmanager, nested
+from .glob_daemon_cache import DaemonGlobCache
 from .glob_internal import glob_internal
 from .glob_mercurial import glob_mercurial_manifest, load_mercurial_repo_info
 from .glob_watchman import SyncCookieState, glob_watchman
@@ -112,7 +113,7 @@ class BuildFileContext(AbstractContext):
     def __init__(self, project_root, base_path, dirname, autodeps, allow_empty_globs, ignore_paths,
                  watchman_client, watchman_watch_root, watchman_project_prefix,
                  sync_cookie_state, watchman_glob_stat_results,
-                 watchman_use_glob_generator, use_mercurial_glob):
+                 watchman_use_glob_generator, use_mercurial_glob, glob_cache=None):
         self.globals = {}
         self._includes = set()
         self._used_configs = {}
@@ -133,6 +134,7 @@ class BuildFileContext(AbstractContext):
         self.watchman_glob_stat_results = watchman_glob_stat_results
         self.watchman_use_glob_generator = watchman_use_glob_generator
         self.use_mercurial_glob = use_mercurial_glob
+        self.glob_cache = glob_cache
 
     @property
     def includes(self):
@@ -345,6 +347,15 @@ def glob(includes, excludes=None, include_dotfiles=False, build_env=None, search
         search_base = Path(build_env.dirname)
     mercurial_repo_info = load_mercurial_repo_info(build_env, search_base, allow_safe_import)
 
+    glob_cache = build_env.glob_cache
+    use_glob_cache = (includes and mercurial_repo_info is None and glob_cache is not None and
+                      glob_cache.can_cache(includes, excludes))
+    if use_glob_cache:
+        # Cached results were checked against allow_empty_globs when they were evaluated.
+        results = glob_cache.lookup(search_base, includes, excludes, include_dotfiles)
+        if results is not None:
+            return results
+
     results = None
     if not includes:
         results = []
@@ -374,6 +385,8 @@ def glob(includes, excludes=None, include_dotfiles=False, build_env=None, search
             include_dotfiles,
             search_base,
             build_env.project_root)
+    if use_glob_cache:
+        glob_cache.store(search_base, includes, excludes, include_dotfiles, results)
     assert build_env.allow_empty_globs or results, (
         "glob(includes={includes}, excludes={excludes}, include_dotfiles={include_dotfiles}) " +
         "returned no results.  (allow_empty_globs is set to false in the Buck " +
@@ -518,7 +531,7 @@ class BuildFileProcessor(object):
                  watchman_use_glob_generator, use_mercurial_glob,
                  project_import_whitelist=None, implicit_includes=None,
                  extra_funcs=None, configs=None, env_vars=None,
-                 ignore_paths=None):
+                 ignore_paths=None, glob_cache=None):
         if project_import_whitelist is None:
             project_import_whitelist = []
         if implicit_includes is None:
@@ -549,6 +562,7 @@ class BuildFileProcessor(object):
         self._configs = configs
         self._env_vars = env_vars
         self._ignore_paths = ignore_paths
+        self._glob_cache = glob_cache
 
         lazy_functions = {}
         for func in BUILD_FUNCTIONS + extra_funcs:
@@ -995,7 +1009,8 @@ class BuildFileProcessor(object):
             self._sync_cookie_state,
             self._watchman_glob_stat_results,
             self._watchman_use_glob_generator,
-            self._use_mercurial_glob)
+            self._use_mercurial_glob,
+            self._glob_cache)
 
         # If the .autodeps file has been successfully parsed, then treat it as if it were
         # a file loaded via include_defs() in that a change to the .autodeps file should
@@ -1098,6 +1113,14 @@ class BuildFileProcessor(object):
         return values
 
 
+    def take_evaluated_globs(self):
+        # type: () -> List[Dict[str, Any]]
+        """Returns the globs evaluated since the last call, for the parent to cache."""
+        if self._glob_cache is None:
+            return []
+        return self._glob_cache.take_evaluated_globs()
+
+
 class InvalidSignatureError(Exception):
     pass
 
@@ -1130,8 +1153,10 @@ def format_exception_info(exception_info):
     return formatted
 
 
-def encode_result(values, diagnostics, profile):
+def encode_result(values, diagnostics, profile, globs=None):
     result = {'values': values}
+    if globs:
+        result['globs'] = globs
     if diagnostics:
         encoded_diagnostics = []
         for d in diagnostics:
@@ -1209,7 +1234,8 @@ def process_with_diagnostics(build_file_query, build_file_processor, to_parent,
         else:
             profile_result = None
 
-        to_parent.write(encode_result(values, diagnostics, profile_result))
+        to_parent.write(encode_result(
+            values, diagnostics, profile_result, build_file_processor.take_evaluated_globs()))
         to_parent.flush()
 
 
@@ -1327,6 +1353,11 @@ def main():
         action='store_true',
         dest='use_mercurial_glob',
         help='Use the mercurial manifest to get lists of files instead of globbing from disk.')
+    parser.add_option(
+        '--use_daemon_glob_cache',
+        action='store_true',
+        dest='use_daemon_glob_cache',
+        help='Looks up the results of globs in a cache kept by the parent process.')
     parser.add_option(
         '--include',
         action='append',
@@ -1415,6 +1446,10 @@ def main():
         with open(options.ignore_paths, 'rb') as f:
             ignore_paths = [make_glob(i) for i in bser.loads(f.read())]
 
+    glob_cache = None
+    if options.use_daemon_glob_cache:
+        glob_cache = DaemonGlobCache(to_parent, sys.stdin)
+
     buildFileProcessor = BuildFileProcessor(
         project_root,
         cell_roots,
@@ -1429,7 +1464,8 @@ def main():
         project_import_whitelist=options.build_file_import_whitelist or [],
         implicit_includes=options.include or [],
         configs=configs,
-        ignore_paths=ignore_paths)
+        ignore_paths=ignore_paths,
+        glob_cache=glob_cache)
 
     # While processing, we'll write exceptions as diagnostic messages
     # to the parent then re-raise them to crash the process. While
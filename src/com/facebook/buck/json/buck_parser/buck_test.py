@@ -3,8 +3,10 @@ from .buck import (
     LazyBuildEnvPartial,
     flatten_dicts,
     get_mismatched_args,
+    glob,
     subdir_glob,
 )
+from .glob_daemon_cache import DaemonGlobCache
 from .glob_mercurial import _load_manifest_trie, glob_mercurial_manifest
 from .glob_watchman import format_watchman_query_params
 from .glob_internal import path_component_contains_dot, glob_internal
@@ -514,6 +516,42 @@ class TestBuck(unittest.TestCase):
         finally:
             shutil.rmtree(d)
 
+    def test_glob_uses_daemon_glob_cache(self):
+        class FakeGlobCache(object):
+            can_cache = staticmethod(DaemonGlobCache.can_cache)
+
+            def __init__(self):
+                self.cached = {}
+                self.stored = []
+
+            def lookup(self, search_base, includes, excludes, include_dotfiles):
+                return self.cached.get(tuple(includes))
+
+            def store(self, search_base, includes, excludes, include_dotfiles, results):
+                self.stored.append((tuple(includes), results))
+
+        d = tempfile.mkdtemp()
+        try:
+            open(os.path.join(d, 'A.java'), 'w').close()
+            glob_cache = FakeGlobCache()
+            glob_cache.cached[('Cached.java',)] = ['Cached.java']
+            build_env = BuildFileContext(
+                Path(d), '', d, None, True, [], None, None, None, None, False, False, False,
+                glob_cache)
+
+            self.assertEquals(['Cached.java'], glob(['Cached.java'], build_env=build_env))
+            self.assertEquals([], glob_cache.stored)
+
+            self.assertEquals(['A.java'], glob(['*.java'], build_env=build_env))
+            self.assertEquals([(('*.java',), ['A.java'])], glob_cache.stored)
+        finally:
+            shutil.rmtree(d)
+
+    def test_daemon_glob_cache_only_caches_globs_under_search_base(self):
+        self.assertTrue(DaemonGlobCache.can_cache(['**/*.java'], ['foo/..bar']))
+        self.assertFalse(DaemonGlobCache.can_cache(['../*.java'], []))
+        self.assertFalse(DaemonGlobCache.can_cache(['*.java'], ['/abs/*.java']))
+
     def test_watchman_query_params_includes(self):
         query_params = format_watchman_query_params(
             ['**/*.java'],
@@ -0,0 +1,53 @@
+"""Glob results cache kept by the Buck process which launched the parser."""
+from pywatchman import bser
+import os.path
+
+
+class DaemonGlobCache(object):
+    """Looks up the results of globs in a cache kept by Buck, which outlives this parser process.
+
+    While a build file is being processed, Buck answers each lookup written to it before sending
+    the next build file. The results of globs which missed the cache are collected, and sent back
+    along with the build file's rules so that Buck can cache them.
+    """
+
+    def __init__(self, to_parent, from_parent):
+        self._to_parent = to_parent
+        self._from_parent = from_parent
+        self._evaluated = []
+
+    @staticmethod
+    def can_cache(includes, excludes):
+        """Only globs confined to their search base are cached, as Buck invalidates results
+        when files are added or removed under it."""
+        for pattern in list(includes) + list(excludes):
+            if os.path.isabs(pattern) or '..' in pattern.replace('\\', '/').split('/'):
+                return False
+        return True
+
+    @staticmethod
+    def _make_spec(search_base, includes, excludes, include_dotfiles):
+        return {
+            'searchBase': os.path.abspath(str(search_base)),
+            'includes': list(includes),
+            'excludes': list(excludes),
+            'includeDotfiles': bool(include_dotfiles),
+        }
+
+    def lookup(self, search_base, includes, excludes, include_dotfiles):
+        """Returns the cached results of the glob, or None if there aren't any."""
+        spec = self._make_spec(search_base, includes, excludes, include_dotfiles)
+        self._to_parent.write(bser.dumps({'globRequest': spec}))
+        self._to_parent.flush()
+        return bser.load(self._from_parent).get('results')
+
+    def store(self, search_base, includes, excludes, include_dotfiles, results):
+        spec = self._make_spec(search_base, includes, excludes, include_dotfiles)
+        spec['results'] = list(results)
+        self._evaluated.append(spec)
+
+    def take_evaluated_globs(self):
+        """Returns the globs stored since the last call, to be sent to Buck."""
+        evaluated = self._evaluated
+        self._evaluated = []
+        return evaluated
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.jvm.java;
+
+import com.facebook.buck.model.BuildTarget;
+import com.facebook.buck.model.BuildTargets;
+import com.facebook.buck.rules.AbstractBuildRule;
+import com.facebook.buck.rules.AddToRuleKey;
+import com.facebook.buck.rules.BuildContext;
+import com.facebook.buck.rules.BuildRule;
+import com.facebook.buck.rules.BuildRuleParams;
+import com.facebook.buck.rules.BuildableContext;
+import com.facebook.buck.rules.ExplicitBuildTargetSourcePath;
+import com.facebook.buck.rules.SourcePath;
+import com.facebook.buck.rules.SourcePathResolver;
+import com.facebook.buck.rules.SourcePathRuleFinder;
+import com.facebook.buck.rules.keys.SupportsInputBasedRuleKey;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.fs.MkdirStep;
+import com.facebook.buck.step.fs.RmStep;
+import com.facebook.buck.util.MoreCollectors;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.nio.file.Path;
+
+/**
+ * Produces the ABI jar of a Java library from its sources and the ABI jars of its classpath,
+ * without waiting for the library itself to be compiled.
+ */
+public class CalculateSourceAbi extends AbstractBuildRule
+    implements SupportsInputBasedRuleKey {
+
+  @AddToRuleKey
+  private final ImmutableSortedSet<SourcePath> srcs;
+  @AddToRuleKey
+  private final ImmutableSortedSet<SourcePath> abiClasspath;
+  @AddToRuleKey
+  private final JavacOptions javacOptions;
+  private final SourcePathRuleFinder ruleFinder;
+  private final Path outputPath;
+
+  public CalculateSourceAbi(
+      BuildRuleParams buildRuleParams,
+      SourcePathRuleFinder ruleFinder,
+      ImmutableSortedSet<SourcePath> srcs,
+      ImmutableSortedSet<SourcePath> abiClasspath,
+      JavacOptions javacOptions) {
+    super(buildRuleParams);
+    Preconditions.checkArgument(
+        javacOptions.getJavac() instanceof Jsr199Javac,
+        "Source ABIs can only be calculated with an in-memory javac.");
+    this.ruleFinder = ruleFinder;
+    this.srcs = srcs;
+    this.abiClasspath = abiClasspath;
+    this.javacOptions = javacOptions;
+    this.outputPath = getAbiJarPath();
+  }
+
+  public static CalculateSourceAbi of(
+      BuildTarget target,
+      SourcePathRuleFinder ruleFinder,
+      BuildRuleParams libraryParams,
+      ImmutableSortedSet<SourcePath> srcs,
+      ImmutableSortedSet<SourcePath> abiClasspath,
+      JavacOptions javacOptions) {
+    ImmutableSortedSet<BuildRule> deps = ImmutableSortedSet.<BuildRule>naturalOrder()
+        .addAll(ruleFinder.filterBuildRuleInputs(srcs))
+        .addAll(ruleFinder.filterBuildRuleInputs(abiClasspath))
+        .addAll(ruleFinder.filterBuildRuleInputs(javacOptions.getInputs(ruleFinder)))
+        .build();
+    return new CalculateSourceAbi(
+        libraryParams.copyWithChanges(
+            target,
+            Suppliers.ofInstance(deps),
+            Suppliers.ofInstance(ImmutableSortedSet.of())),
+        ruleFinder,
+        srcs,
+        abiClasspath,
+        javacOptions);
+  }
+
+  private Path getAbiJarPath() {
+    return BuildTargets.getGenPath(getProjectFilesystem(), getBuildTarget(), "%s")
+        .resolve(String.format("%s-abi.jar", getBuildTarget().getShortName()));
+  }
+
+  @Override
+  public ImmutableList<Step> getBuildSteps(
+      BuildContext context,
+      BuildableContext buildableContext) {
+    SourcePathResolver resolver = context.getSourcePathResolver();
+    Jsr199Javac javac = (Jsr199Javac) javacOptions.getJavac();
+    return ImmutableList.of(
+        new MkdirStep(getProjectFilesystem(), getAbiJarPath().getParent()),
+        new RmStep(getProjectFilesystem(), getAbiJarPath()),
+        new CalculateSourceAbiStep(
+            buildableContext,
+            getProjectFilesystem(),
+            resolver,
+            javacOptions,
+            javac,
+            JavacStep.getAbsolutePathsForJavacInputs(javac, ruleFinder, resolver),
+            srcs.stream()
+                .map(resolver::getRelativePath)
+                .collect(MoreCollectors.toImmutableSortedSet()),
+            abiClasspath.stream()
+                .map(resolver::getAbsolutePath)
+                .collect(MoreCollectors.toImmutableSortedSet()),
+            getAbiJarPath().getParent(),
+            getAbiJarPath()));
+  }
+
+  @Override
+  public SourcePath getSourcePathToOutput() {
+    return new ExplicitBuildTargetSourcePath(getBuildTarget(), outputPath);
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.jvm.java;
+
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.jvm.java.abi.SourceBasedAbiStubber;
+import com.facebook.buck.rules.BuildableContext;
+import com.facebook.buck.rules.SourcePathResolver;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.StepExecutionResult;
+import com.facebook.buck.util.MoreCollectors;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+
+/**
+ * Generates an ABI jar directly from source. The library's configured in-memory javac is run with
+ * {@code -proc:only}, so it only parses and enters the sources before a processor writes out stubs
+ * for every top-level type; method bodies are never attributed and no bytecode is generated.
+ */
+public class CalculateSourceAbiStep implements Step {
+
+  private final BuildableContext buildableContext;
+  private final ProjectFilesystem filesystem;
+  private final SourcePathResolver resolver;
+  private final JavacOptions javacOptions;
+  private final Jsr199Javac javac;
+  private final ImmutableList<Path> absolutePathsForJavacInputs;
+  private final ImmutableSortedSet<Path> javaSourceFilePaths;
+  private final ImmutableSortedSet<Path> abiClasspathEntries;
+  private final Path workingDirectory;
+  private final Path abiJar;
+
+  public CalculateSourceAbiStep(
+      BuildableContext buildableContext,
+      ProjectFilesystem filesystem,
+      SourcePathResolver resolver,
+      JavacOptions javacOptions,
+      Jsr199Javac javac,
+      ImmutableList<Path> absolutePathsForJavacInputs,
+      ImmutableSortedSet<Path> javaSourceFilePaths,
+      ImmutableSortedSet<Path> abiClasspathEntries,
+      Path workingDirectory,
+      Path abiJar) {
+    this.buildableContext = buildableContext;
+    this.filesystem = filesystem;
+    this.resolver = resolver;
+    this.javacOptions = javacOptions;
+    this.javac = javac;
+    this.absolutePathsForJavacInputs = absolutePathsForJavacInputs;
+    this.javaSourceFilePaths = javaSourceFilePaths;
+    this.abiClasspathEntries = abiClasspathEntries;
+    this.workingDirectory = workingDirectory;
+    this.abiJar = abiJar;
+  }
+
+  @Override
+  public StepExecutionResult execute(ExecutionContext context) {
+    JavaCompiler compiler = javac.createCompiler(
+        JavacExecutionContext.of(
+            new JavacEventSinkToBuckEventBusBridge(context.getBuckEventBus()),
+            context.getStdErr(),
+            context.getClassLoaderCache(),
+            context.getObjectMapper(),
+            context.getVerbosity(),
+            context.getCellPathResolver(),
+            context.getJavaPackageFinder(),
+            filesystem,
+            NoOpClassUsageFileWriter.instance(),
+            context.getEnvironment(),
+            context.getProcessExecutor(),
+            absolutePathsForJavacInputs,
+            /* directToJarOutputSettings */ Optional.empty()));
+
+    ImmutableList<String> options = ImmutableList.<String>builder()
+        .addAll(
+            JavacStep.getOptions(
+                javacOptions,
+                filesystem,
+                resolver,
+                workingDirectory,
+                context,
+                abiClasspathEntries))
+        .add("-proc:only")
+        .build();
+
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    boolean isSuccess;
+    try (StandardJavaFileManager fileManager =
+             compiler.getStandardFileManager(diagnostics, null, null)) {
+      Iterable<? extends JavaFileObject> compilationUnits =
+          fileManager.getJavaFileObjectsFromFiles(
+              javaSourceFilePaths.stream()
+                  .map(filesystem::resolve)
+                  .map(Path::toFile)
+                  .collect(MoreCollectors.toImmutableList()));
+      JavaCompiler.CompilationTask compilationTask = compiler.getTask(
+          null,
+          fileManager,
+          diagnostics,
+          options,
+          null,
+          compilationUnits);
+      compilationTask.setProcessors(
+          ImmutableList.of(
+              SourceBasedAbiStubber.newStubJarGeneratingProcessor(
+                  filesystem,
+                  abiJar,
+                  getClassFileVersion(javacOptions.getTargetLevel()))));
+      isSuccess = compilationTask.call();
+    } catch (IOException e) {
+      context.logError(e, "Failed to calculate source ABI for %s.", abiJar);
+      return StepExecutionResult.ERROR;
+    }
+
+    if (!isSuccess) {
+      List<Diagnostic<? extends JavaFileObject>> cleanDiagnostics =
+          DiagnosticCleaner.clean(diagnostics.getDiagnostics());
+      for (Diagnostic<? extends JavaFileObject> diagnostic : cleanDiagnostics) {
+        if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+          context.getStdErr().println(DiagnosticPrettyPrinter.format(diagnostic));
+        }
+      }
+      return StepExecutionResult.ERROR;
+    }
+
+    buildableContext.recordArtifact(abiJar);
+    return StepExecutionResult.SUCCESS;
+  }
+
+  /**
+   * @return the {@link SourceVersion} corresponding to a javac {@code -target} value such as
+   *     {@code 7} or {@code 1.7}.
+   */
+  static SourceVersion getClassFileVersion(String targetLevel) {
+    String version = targetLevel.startsWith("1.") ? targetLevel.substring(2) : targetLevel;
+    return SourceVersion.valueOf("RELEASE_" + version);
+  }
+
+  @Override
+  public String getShortName() {
+    return "calculate_source_abi";
+  }
+
+  @Override
+  public String getDescription(ExecutionContext context) {
+    return String.format("%s %s", getShortName(), abiJar);
+  }
+}
@@ -52,10 +52,16 @@ class DefaultClassUsageFileReader {
 
   private static ImmutableMap<Path, SourcePath> buildJarToAbiJarMap(
       SourcePathResolver pathResolver,
-      ImmutableSortedSet<BuildRule> deps) {
+      ImmutableSortedSet<BuildRule> deps,
+      ImmutableSortedSet<SourcePath> abiClasspath) {
     ImmutableMap.Builder<Path, SourcePath> jarAbsolutePathToAbiJarSourcePathBuilder =
         ImmutableMap.builder();
 
+    // Rules that compile against ABI jars record classes as being read from the ABI jars.
+    for (SourcePath abiJar : abiClasspath) {
+      jarAbsolutePathToAbiJarSourcePathBuilder.put(pathResolver.getAbsolutePath(abiJar), abiJar);
+    }
+
     for (BuildRule dep : deps) {
       if (!(dep instanceof HasJavaAbi)) {
         continue;
@@ -90,9 +96,10 @@ class DefaultClassUsageFileReader {
       SourcePathResolver pathResolver,
       ProjectFilesystem projectFilesystem,
       Path classUsageFilePath,
-      ImmutableSortedSet<BuildRule> deps) {
+      ImmutableSortedSet<BuildRule> deps,
+      ImmutableSortedSet<SourcePath> abiClasspath) {
     final ImmutableMap<Path, SourcePath> jarAbsolutePathToAbiJarSourcePath =
-        buildJarToAbiJarMap(pathResolver, deps);
+        buildJarToAbiJarMap(pathResolver, deps, abiClasspath);
     final ImmutableList.Builder<SourcePath> builder = ImmutableList.builder();
     try {
       final ImmutableSet<Map.Entry<String, ImmutableList<String>>> classUsageEntries =
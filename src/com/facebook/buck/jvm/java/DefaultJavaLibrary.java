@@ -130,7 +130,12 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
   @AddToRuleKey
   @SuppressWarnings("PMD.UnusedPrivateField")
   private final JarArchiveDependencySupplier abiClasspath;
+  @AddToRuleKey
+  private final boolean compileAgainstAbis;
   private final ImmutableSortedSet<BuildRule> deps;
+  // When compiling against ABIs, getDeclaredDeps() holds the ABI rules of the declared deps, so
+  // the declared deps themselves are kept here for the classpath and packaging.
+  private final ImmutableSortedSet<BuildRule> classpathDeclaredDeps;
   @Nullable private Path depFileOutputPath;
 
   private final BuildOutputInitializer<Data> buildOutputInitializer;
@@ -193,6 +198,55 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
       Optional<String> mavenCoords,
       ImmutableSortedSet<BuildTarget> tests,
       ImmutableSet<Pattern> classesToRemoveFromJar) {
+    this(
+        params,
+        resolver,
+        ruleFinder,
+        srcs,
+        resources,
+        generatedSourceFolder,
+        proguardConfig,
+        postprocessClassesCommands,
+        exportedDeps,
+        providedDeps,
+        abiInputs,
+        /* compileAgainstAbis */ false,
+        trackClassUsage,
+        additionalClasspathEntries,
+        compileStepFactory,
+        resourcesRoot,
+        manifestFile,
+        mavenCoords,
+        tests,
+        classesToRemoveFromJar);
+  }
+
+  /**
+   * @param compileAgainstAbis when true, {@code abiInputs} must hold exactly the ABI jars of the
+   *     classpath deps, and those are put on the compile classpath in place of the deps' full
+   *     jars. The rules building those ABI jars also replace the deps as build deps.
+   */
+  public DefaultJavaLibrary(
+      final BuildRuleParams params,
+      SourcePathResolver resolver,
+      SourcePathRuleFinder ruleFinder,
+      Set<? extends SourcePath> srcs,
+      Set<? extends SourcePath> resources,
+      Optional<Path> generatedSourceFolder,
+      Optional<SourcePath> proguardConfig,
+      ImmutableList<String> postprocessClassesCommands,
+      ImmutableSortedSet<BuildRule> exportedDeps,
+      ImmutableSortedSet<BuildRule> providedDeps,
+      ImmutableSortedSet<SourcePath> abiInputs,
+      boolean compileAgainstAbis,
+      boolean trackClassUsage,
+      ImmutableSet<Either<SourcePath, Path>> additionalClasspathEntries,
+      CompileToJarStepFactory compileStepFactory,
+      Optional<Path> resourcesRoot,
+      Optional<SourcePath> manifestFile,
+      Optional<String> mavenCoords,
+      ImmutableSortedSet<BuildTarget> tests,
+      ImmutableSet<Pattern> classesToRemoveFromJar) {
     this(
         params,
         resolver,
@@ -206,6 +260,7 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
         providedDeps,
         trackClassUsage,
         new JarArchiveDependencySupplier(abiInputs),
+        compileAgainstAbis,
         additionalClasspathEntries,
         compileStepFactory,
         resourcesRoot,
@@ -228,6 +283,7 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
       ImmutableSortedSet<BuildRule> providedDeps,
       boolean trackClassUsage,
       final JarArchiveDependencySupplier abiClasspath,
+      boolean compileAgainstAbis,
       ImmutableSet<Either<SourcePath, Path>> additionalClasspathEntries,
       CompileToJarStepFactory compileStepFactory,
       Optional<Path> resourcesRoot,
@@ -236,7 +292,9 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
       ImmutableSortedSet<BuildTarget> tests,
       ImmutableSet<Pattern> classesToRemoveFromJar) {
     super(
-        params.appendExtraDeps(() -> ruleFinder.filterBuildRuleInputs(abiClasspath.get())),
+        compileAgainstAbis ?
+            getParamsForCompilingAgainstAbis(params, ruleFinder, abiClasspath) :
+            params.appendExtraDeps(() -> ruleFinder.filterBuildRuleInputs(abiClasspath.get())),
         resolver);
     this.ruleFinder = ruleFinder;
     this.compileStepFactory = compileStepFactory;
@@ -266,7 +324,9 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
 
     this.trackClassUsage = trackClassUsage;
     this.abiClasspath = abiClasspath;
+    this.compileAgainstAbis = compileAgainstAbis;
     this.deps = params.getDeps();
+    this.classpathDeclaredDeps = params.getDeclaredDeps().get();
     if (!srcs.isEmpty() || !resources.isEmpty() || manifestFile.isPresent()) {
       this.outputJar = Optional.of(getOutputJarPath(getBuildTarget(), getProjectFilesystem()));
     } else {
@@ -292,6 +352,40 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
     this.classesToRemoveFromJar = classesToRemoveFromJar;
   }
 
+  /**
+   * javac never reads the full jars of the deps whose ABI jars are on the classpath, so swap those
+   * deps for their ABI rules. This library then builds as soon as the ABIs of its deps are ready,
+   * rather than waiting for the deps to be compiled.
+   */
+  private static BuildRuleParams getParamsForCompilingAgainstAbis(
+      BuildRuleParams params,
+      SourcePathRuleFinder ruleFinder,
+      JarArchiveDependencySupplier abiClasspath) {
+    Supplier<ImmutableSet<BuildRule>> abiClasspathRules =
+        Suppliers.memoize(() -> ruleFinder.filterBuildRuleInputs(abiClasspath.get()));
+    Predicate<BuildRule> isReplacedByItsAbi = dep -> {
+      Optional<BuildTarget> abiJar = dep instanceof HasJavaAbi ?
+          ((HasJavaAbi) dep).getAbiJar() :
+          Optional.empty();
+      return abiJar.isPresent() &&
+          abiClasspathRules.get().stream()
+              .anyMatch(abiRule -> abiRule.getBuildTarget().equals(abiJar.get()));
+    };
+    return params.copyWithDeps(
+        Suppliers.memoize(
+            () -> params.getDeclaredDeps().get().stream()
+                .filter(isReplacedByItsAbi.negate())
+                .collect(MoreCollectors.toImmutableSortedSet())),
+        Suppliers.memoize(
+            () -> ImmutableSortedSet.<BuildRule>naturalOrder()
+                .addAll(
+                    params.getExtraDeps().get().stream()
+                        .filter(isReplacedByItsAbi.negate())
+                        .iterator())
+                .addAll(abiClasspathRules.get())
+                .build()));
+  }
+
   private Path getPathToAbiOutputDir() {
     return BuildTargets.getGenPath(getProjectFilesystem(), getBuildTarget(), "lib__%s__abi");
   }
@@ -346,7 +440,7 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
 
   @Override
   public ImmutableSortedSet<BuildRule> getDepsForTransitiveClasspathEntries() {
-    return ImmutableSortedSet.copyOf(Sets.union(getDeclaredDeps(), exportedDeps));
+    return ImmutableSortedSet.copyOf(Sets.union(classpathDeclaredDeps, exportedDeps));
   }
 
   @Override
@@ -425,17 +519,26 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
                 .build(),
             context.getActionGraph().getNodes());
 
-    // We don't want to add these to the declared or transitive deps, since they're only used at
-    // compile time.
-    Collection<Path> provided = JavaLibraryClasspathProvider.getJavaLibraryDeps(providedDeps)
-        .transformAndConcat(JavaLibrary::getOutputClasspaths)
-        .filter(Objects::nonNull)
-        .transform(context.getSourcePathResolver()::getAbsolutePath)
-        .toSet();
-
-    Iterable<Path> declaredClasspaths = declaredClasspathDeps
-        .transformAndConcat(JavaLibrary::getOutputClasspaths)
-        .transform(context.getSourcePathResolver()::getAbsolutePath);
+    Collection<Path> provided;
+    Iterable<Path> declaredClasspaths;
+    if (compileAgainstAbis) {
+      // The ABI jars already stand in for the declared, exported and provided deps.
+      provided = ImmutableSet.of();
+      declaredClasspaths = abiClasspath.get().stream()
+          .map(context.getSourcePathResolver()::getAbsolutePath)
+          .collect(MoreCollectors.toImmutableSet());
+    } else {
+      // We don't want to add these to the declared or transitive deps, since they're only used
+      // at compile time.
+      provided = JavaLibraryClasspathProvider.getJavaLibraryDeps(providedDeps)
+          .transformAndConcat(JavaLibrary::getOutputClasspaths)
+          .filter(Objects::nonNull)
+          .transform(context.getSourcePathResolver()::getAbsolutePath)
+          .toSet();
+      declaredClasspaths = declaredClasspathDeps
+          .transformAndConcat(JavaLibrary::getOutputClasspaths)
+          .transform(context.getSourcePathResolver()::getAbsolutePath);
+    }
     // Only override the bootclasspath if this rule is supposed to compile Android code.
     ImmutableSortedSet<Path> declared = ImmutableSortedSet.<Path>naturalOrder()
         .addAll(declaredClasspaths)
@@ -594,7 +697,7 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
   public Iterable<AndroidPackageable> getRequiredPackageables() {
     return AndroidPackageableCollector.getPackageableRules(ImmutableSortedSet.copyOf(
             Sets.difference(
-                Sets.union(getDeclaredDeps(), exportedDeps),
+                Sets.union(classpathDeclaredDeps, exportedDeps),
                 providedDeps)));
   }
 
@@ -648,6 +751,7 @@ public class DefaultJavaLibrary extends AbstractBuildRuleWithResolver
         context.getSourcePathResolver(),
         getProjectFilesystem(),
         Preconditions.checkNotNull(depFileOutputPath),
-        deps);
+        deps,
+        abiClasspath.get());
   }
 }
@@ -132,6 +132,12 @@ public class JavaLibraryDescription implements
     }
 
     if (CalculateAbi.isAbiTarget(target)) {
+      Optional<CalculateSourceAbi> sourceAbi =
+          createSourceAbi(params, resolver, ruleFinder, args);
+      if (sourceAbi.isPresent()) {
+        return sourceAbi.get();
+      }
+
       BuildTarget libraryTarget = CalculateAbi.getLibraryTarget(target);
       BuildRule libraryRule = resolver.requireRule(libraryTarget);
       return CalculateAbi.of(
@@ -190,6 +196,10 @@ public class JavaLibraryDescription implements
                         resolver.getAllRules(args.providedDeps))),
                 ruleFinder.filterBuildRuleInputs(
                     javacOptions.getInputs(ruleFinder))));
+    // Dependents read only the ABI of their deps, so when ABIs come from source there is no
+    // reason to give javac the full jars.
+    boolean compileAgainstAbis =
+        javacOptions.getAbiGenerationMode() == JavacOptions.AbiGenerationMode.SOURCE;
     DefaultJavaLibrary defaultJavaLibrary =
         new DefaultJavaLibrary(
             javaLibraryParams,
@@ -205,7 +215,12 @@ public class JavaLibraryDescription implements
             args.postprocessClassesCommands,
             exportedDeps,
             resolver.getAllRules(args.providedDeps),
-            JavaLibraryRules.getAbiInputs(resolver, javaLibraryParams.getDeps()),
+            compileAgainstAbis ?
+                JavaLibraryRules.getAbiClasspath(
+                    resolver,
+                    getClasspathDeps(params, resolver, args)) :
+                JavaLibraryRules.getAbiInputs(resolver, javaLibraryParams.getDeps()),
+            compileAgainstAbis,
             javacOptions.trackClassUsage(),
             /* additionalClasspathEntries */ ImmutableSet.of(),
             new JavacToJarStepFactory(javacOptions, JavacOptionsAmender.IDENTITY),
@@ -227,6 +242,69 @@ public class JavaLibraryDescription implements
     }
   }
 
+  /**
+   * When generating ABIs from source, the ABI jar is built straight from {@code srcs} against the
+   * ABI jars of the classpath, so dependents' ABIs don't wait on this library's compilation.
+   * Libraries that run annotation processors, bundle resources, or are compiled by a javac that
+   * cannot run in memory keep using the ABI calculated from the compiled jar.
+   */
+  private Optional<CalculateSourceAbi> createSourceAbi(
+      BuildRuleParams params,
+      BuildRuleResolver resolver,
+      SourcePathRuleFinder ruleFinder,
+      Arg args) throws NoSuchBuildTargetException {
+    JavacOptions javacOptions = JavacOptionsFactory.create(
+        defaultOptions,
+        params,
+        resolver,
+        ruleFinder,
+        args);
+    if (javacOptions.getAbiGenerationMode() != JavacOptions.AbiGenerationMode.SOURCE ||
+        !(javacOptions.getJavac() instanceof Jsr199Javac) ||
+        !javacOptions.getAnnotationProcessingParams().isEmpty() ||
+        !args.resources.isEmpty() ||
+        args.manifestFile.isPresent()) {
+      return Optional.empty();
+    }
+
+    SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
+    for (SourcePath src : args.srcs) {
+      if (!pathResolver.getRelativePath(src).toString().endsWith(".java")) {
+        return Optional.empty();
+      }
+    }
+
+    return Optional.of(
+        CalculateSourceAbi.of(
+            params.getBuildTarget(),
+            ruleFinder,
+            params,
+            args.srcs,
+            JavaLibraryRules.getAbiClasspath(
+                resolver,
+                getClasspathDeps(params, resolver, args)),
+            javacOptions));
+  }
+
+  /**
+   * @return the rules whose output jars make up the compile classpath of the library: its
+   *     declared, exported and provided deps, plus everything those export.
+   */
+  private static ImmutableSet<BuildRule> getClasspathDeps(
+      BuildRuleParams params,
+      BuildRuleResolver resolver,
+      Arg args) {
+    ImmutableSet<BuildRule> classpathDeps = ImmutableSet.<BuildRule>builder()
+        .addAll(params.getDeclaredDeps().get())
+        .addAll(resolver.getAllRules(args.exportedDeps))
+        .addAll(resolver.getAllRules(args.providedDeps))
+        .build();
+    return ImmutableSet.<BuildRule>builder()
+        .addAll(classpathDeps)
+        .addAll(BuildRules.getExportedRules(classpathDeps))
+        .build();
+  }
+
   @SuppressFieldNotInitialized
   public static class Arg extends JvmLibraryArg implements HasTests {
     public ImmutableSortedSet<SourcePath> srcs = ImmutableSortedSet.of();
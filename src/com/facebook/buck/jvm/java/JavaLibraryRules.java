@@ -37,6 +37,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Sets;
 import com.google.common.hash.HashCode;
 
 import java.io.IOException;
@@ -103,8 +104,14 @@ public class JavaLibraryRules {
           NativeLinkable linkable = (NativeLinkable) rule;
           libraries.putAll(linkable.getSharedLibraries(cxxPlatform));
         }
-        if (rule instanceof NativeLinkable ||
-            rule instanceof JavaLibrary) {
+        if (rule instanceof JavaLibrary) {
+          // Libraries compiled against ABIs depend on the ABI rules of their deps rather than on
+          // the deps themselves.
+          return ImmutableSet.copyOf(
+              Sets.union(
+                  rule.getDeps(),
+                  ((JavaLibrary) rule).getDepsForTransitiveClasspathEntries()));
+        } else if (rule instanceof NativeLinkable) {
           return rule.getDeps();
         } else {
           return ImmutableSet.of();
@@ -132,4 +139,28 @@ public class JavaLibraryRules {
     return abiRules.build();
   }
 
+  /**
+   * @return the ABI jars to put on the compile classpath in place of the output jars of
+   *     {@code classpathDeps}. A dep that contributes to the classpath but has no ABI jar to
+   *     stand in for it (e.g. a {@code java_binary} or a prebuilt jar) contributes its output jar
+   *     instead.
+   */
+  public static ImmutableSortedSet<SourcePath> getAbiClasspath(
+      BuildRuleResolver resolver,
+      Iterable<BuildRule> classpathDeps) throws NoSuchBuildTargetException {
+    ImmutableSortedSet.Builder<SourcePath> abiClasspath = ImmutableSortedSet.naturalOrder();
+    for (BuildRule dep : classpathDeps) {
+      Optional<BuildTarget> abiJarTarget = dep instanceof HasJavaAbi ?
+          ((HasJavaAbi) dep).getAbiJar() :
+          Optional.empty();
+      if (abiJarTarget.isPresent()) {
+        BuildRule abiJarRule = resolver.requireRule(abiJarTarget.get());
+        abiClasspath.add(Preconditions.checkNotNull(abiJarRule.getSourcePathToOutput()));
+      } else if (dep instanceof HasClasspathEntries && dep.getSourcePathToOutput() != null) {
+        abiClasspath.add(dep.getSourcePathToOutput());
+      }
+    }
+    return abiClasspath.build();
+  }
+
 }
@@ -280,6 +280,13 @@ public class JavacStep implements Step {
   }
 
   private ImmutableList<Path> getAbsolutePathsForJavacInputs(Javac javac) {
+    return getAbsolutePathsForJavacInputs(javac, ruleFinder, resolver);
+  }
+
+  static ImmutableList<Path> getAbsolutePathsForJavacInputs(
+      Javac javac,
+      SourcePathRuleFinder ruleFinder,
+      SourcePathResolver resolver) {
     return javac.getInputs().stream().flatMap(input -> {
       Optional<BuildRule> rule = ruleFinder.getRule(input);
       if (rule.isPresent() && rule.get() instanceof JavaLibrary) {
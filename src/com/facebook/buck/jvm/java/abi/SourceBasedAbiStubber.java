@@ -16,13 +16,17 @@
 
 package com.facebook.buck.jvm.java.abi;
 
+import com.facebook.buck.io.ProjectFilesystem;
 import com.facebook.buck.jvm.java.abi.source.api.BootClasspathOracle;
 import com.facebook.buck.jvm.java.plugin.PluginLoader;
 import com.facebook.buck.util.ClassLoaderCache;
 import com.facebook.buck.util.HumanReadableException;
 
 import java.lang.reflect.Constructor;
+import java.nio.file.Path;
 
+import javax.annotation.processing.Processor;
+import javax.lang.model.SourceVersion;
 import javax.tools.Diagnostic;
 import javax.tools.JavaCompiler;
 
@@ -54,6 +58,18 @@ public final class SourceBasedAbiStubber {
     }
   }
 
+  /**
+   * Creates an annotation processor that writes a stub jar for every type entered during
+   * compilation. Running it under {@code -proc:only} yields an ABI jar without javac ever
+   * attributing method bodies or generating code.
+   */
+  public static Processor newStubJarGeneratingProcessor(
+      ProjectFilesystem filesystem,
+      Path stubJarPath,
+      SourceVersion classFileVersion) {
+    return new StubJarGeneratingProcessor(filesystem, stubJarPath, classFileVersion);
+  }
+
   private SourceBasedAbiStubber() {
 
   }
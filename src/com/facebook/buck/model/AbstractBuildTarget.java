@@ -27,6 +27,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Ordering;
 
 import org.immutables.value.Value;
@@ -47,6 +49,13 @@ abstract class AbstractBuildTarget implements Comparable<AbstractBuildTarget> {
   private static final Ordering<Iterable<Flavor>> LEXICOGRAPHICAL_ORDERING =
       Ordering.<Flavor>natural().lexicographical();
 
+  /**
+   * Interner for instances of BuildTarget. Together with the interning of
+   * {@link UnflavoredBuildTarget}s and {@link Flavor}s, this keeps one instance of each target
+   * alive however many build files, target nodes and rules refer to it.
+   */
+  private static final Interner<BuildTarget> interner = Interners.newWeakInterner();
+
   @Value.Parameter
   public abstract UnflavoredBuildTarget getUnflavoredBuildTarget();
 
@@ -55,10 +64,11 @@ abstract class AbstractBuildTarget implements Comparable<AbstractBuildTarget> {
   public abstract SortedSet<Flavor> getFlavors();
 
   @Value.Check
-  protected void check() {
+  protected AbstractBuildTarget check() {
     Preconditions.checkArgument(
         getFlavors().comparator() == Ordering.natural(),
         "Flavors must be ordered using natural ordering.");
+    return interner.intern((BuildTarget) this);
   }
 
   @JsonProperty("cell")
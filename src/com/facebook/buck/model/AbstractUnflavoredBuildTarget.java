@@ -32,7 +32,7 @@ import java.util.Optional;
  * A build target in the form of <pre>cell//path:rule</pre>.
  */
 @BuckStyleImmutable
-@Value.Immutable(copy = false)
+@Value.Immutable(copy = false, prehash = true)
 abstract class AbstractUnflavoredBuildTarget implements Comparable<AbstractUnflavoredBuildTarget> {
 
   /**
@@ -40,6 +40,11 @@ abstract class AbstractUnflavoredBuildTarget implements Comparable<AbstractUnfla
    */
   private static final Interner<UnflavoredBuildTarget> interner = Interners.newWeakInterner();
 
+  /**
+   * Interner for the values of {@link #getBasePath()}, which all the targets of a build file share.
+   */
+  private static final Interner<Path> basePathInterner = Interners.newWeakInterner();
+
   /**
    * Builder for UnflavoredBuildTargets which routes values through BuildTargetInterner.
    */
@@ -102,9 +107,11 @@ abstract class AbstractUnflavoredBuildTarget implements Comparable<AbstractUnfla
    * {@link Path} "third_party/java/guava". This does not contain the "//" prefix so that it can be
    * appended to a file path.
    */
+  @Value.Lazy
   public Path getBasePath() {
-    return getCellPath().getFileSystem().getPath(
-        getBaseName().substring(BUILD_TARGET_PREFIX.length()));
+    return basePathInterner.intern(
+        getCellPath().getFileSystem().getPath(
+            getBaseName().substring(BUILD_TARGET_PREFIX.length())));
   }
 
   public boolean isInCellRoot() {
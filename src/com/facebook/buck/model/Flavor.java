@@ -17,6 +17,8 @@
 package com.facebook.buck.model;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import org.immutables.value.Value;
 
@@ -27,6 +29,12 @@ public abstract class Flavor implements Comparable<Flavor> {
 
   private static final Pattern INVALID_FLAVOR_CHARACTERS = Pattern.compile("[^-a-zA-Z0-9_\\.]");
 
+  /**
+   * Interner for instances of Flavor, so that the flavors of the many targets sharing one are a
+   * single instance.
+   */
+  private static final Interner<Flavor> interner = Interners.newWeakInterner();
+
   public static String replaceInvalidCharacters(String name) {
     return INVALID_FLAVOR_CHARACTERS.matcher(name).replaceAll("_");
   }
@@ -35,13 +43,14 @@ public abstract class Flavor implements Comparable<Flavor> {
   public abstract String getName();
 
   @Value.Check
-  protected void check() {
+  protected Flavor check() {
     Preconditions.checkArgument(
         !getName().isEmpty(),
         "Empty flavor name");
     Preconditions.checkArgument(
         !INVALID_FLAVOR_CHARACTERS.matcher(getName()).find(),
         "Invalid characters in flavor name: " + getName());
+    return interner.intern(this);
   }
 
   @Override
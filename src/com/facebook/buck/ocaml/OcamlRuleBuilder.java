@@ -185,9 +185,11 @@ public class OcamlRuleBuilder {
   }
 
   private static NativeLinkableInput getCLinkableInput(
+      BuildRuleResolver resolver,
       CxxPlatform cxxPlatform,
       Iterable<BuildRule> deps) throws NoSuchBuildTargetException {
     return NativeLinkables.getTransitiveNativeLinkableInput(
+        resolver,
         cxxPlatform,
         deps,
         Linker.LinkableDepType.STATIC,
@@ -226,7 +228,7 @@ public class OcamlRuleBuilder {
     NativeLinkableInput bytecodeLinkableInput =
         getBytecodeLinkableInput(params.getDeps());
     NativeLinkableInput cLinkableInput =
-        getCLinkableInput(ocamlBuckConfig.getCxxPlatform(), params.getDeps());
+        getCLinkableInput(resolver, ocamlBuckConfig.getCxxPlatform(), params.getDeps());
 
     ImmutableList<OcamlLibrary> ocamlInput = OcamlUtil.getTransitiveOcamlInput(params.getDeps());
 
@@ -380,7 +382,7 @@ public class OcamlRuleBuilder {
     NativeLinkableInput bytecodeLinkableInput =
         getBytecodeLinkableInput(params.getDeps());
     NativeLinkableInput cLinkableInput =
-        getCLinkableInput(ocamlBuckConfig.getCxxPlatform(), params.getDeps());
+        getCLinkableInput(resolver, ocamlBuckConfig.getCxxPlatform(), params.getDeps());
 
     ImmutableList<OcamlLibrary> ocamlInput = OcamlUtil.getTransitiveOcamlInput(params.getDeps());
 
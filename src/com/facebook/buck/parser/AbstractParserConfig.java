@@ -53,6 +53,17 @@ abstract class AbstractParserConfig implements ConfigView<BuckConfig> {
     ;
   }
 
+  /**
+   * Controls what evaluates build files: buck.py, Buck itself for the build files it can (falling
+   * back to buck.py for the rest), or both, to check that they agree.
+   */
+  public enum BuildFileEvaluator {
+    PYTHON,
+    JVM,
+    DIFFERENTIAL,
+    ;
+  }
+
   public enum WatchmanGlobSanityCheck {
     NONE,
     STAT,
@@ -151,6 +162,15 @@ abstract class AbstractParserConfig implements ConfigView<BuckConfig> {
             GlobHandler.class).orElse(GlobHandler.PYTHON);
   }
 
+  @Value.Lazy
+  public BuildFileEvaluator getBuildFileEvaluator() {
+    return
+        getDelegate().getEnum(
+            "project",
+            "build_file_evaluator",
+            BuildFileEvaluator.class).orElse(BuildFileEvaluator.PYTHON);
+  }
+
   @Value.Lazy
   public WatchmanGlobSanityCheck getWatchmanGlobSanityCheck() {
     return getDelegate()
@@ -175,6 +195,15 @@ abstract class AbstractParserConfig implements ConfigView<BuckConfig> {
       .orElse(WatchmanWatcher.CursorType.CLOCK_ID);
   }
 
+  /**
+   * @return whether buck.py looks up the results of globs in a cache kept by Buck, which survives
+   *     across parser processes and, in the daemon, across commands.
+   */
+  @Value.Lazy
+  public boolean getEnableDaemonGlobCache() {
+    return getDelegate().getBooleanValue("project", "daemon_glob_cache", false);
+  }
+
   @Value.Lazy
   public boolean getEnableParallelParsing() {
     return getDelegate().getBooleanValue("project", "parallel_parsing", true);
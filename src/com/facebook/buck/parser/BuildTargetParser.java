@@ -24,8 +24,6 @@ import com.facebook.buck.rules.CellPathResolver;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Interner;
-import com.google.common.collect.Interners;
 
 import java.util.HashSet;
 import java.util.List;
@@ -44,8 +42,6 @@ public class BuildTargetParser {
   private static final Splitter BUILD_RULE_SEPARATOR_SPLITTER = Splitter.on(BUILD_RULE_SEPARATOR);
   private static final Set<String> INVALID_BASE_NAME_PARTS = ImmutableSet.of(".", "..");
 
-  private final Interner<BuildTarget> flavoredTargetCache = Interners.newWeakInterner();
-
   private final FlavorParser flavorParser = new FlavorParser();
 
   private BuildTargetParser() {
@@ -126,7 +122,7 @@ public class BuildTargetParser {
     for (String flavor : flavorNames) {
       builder.addFlavors(ImmutableFlavor.of(flavor));
     }
-    return flavoredTargetCache.intern(builder.build());
+    return builder.build();
   }
 
   protected static void checkBaseName(String baseName, String buildTargetName) {
@@ -29,6 +29,7 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Base class for a parse pipeline that converts data one item at a time.
@@ -143,6 +144,13 @@ public abstract class ConvertingPipeline<F, T> extends ParsePipeline<T> {
           pathToCheck);
     }
 
+    // Producing the raw node may have brought back a node computed from an identical raw node
+    // before its build file was invalidated.
+    Optional<T> cachedNode = cache.lookupComputedNode(cell, buildTarget);
+    if (cachedNode.isPresent()) {
+      return Futures.immediateFuture(cachedNode.get());
+    }
+
     return Futures.immediateFuture(
         computeNode(cell, buildTarget, from));
   }
@@ -16,15 +16,18 @@
 
 package com.facebook.buck.parser;
 
+import com.facebook.buck.json.GlobSpec;
 import com.facebook.buck.log.Logger;
 import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.model.BuildTargetException;
 import com.facebook.buck.model.UnflavoredBuildTarget;
 import com.facebook.buck.rules.Cell;
+import com.facebook.buck.rules.TargetNode;
 import com.facebook.buck.util.concurrent.AutoCloseableLock;
 import com.facebook.buck.util.concurrent.AutoCloseableReadWriteUpdateLock;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.MapDifference;
@@ -35,6 +38,7 @@ import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -67,6 +71,7 @@ class DaemonicCellState {
       try (AutoCloseableLock writeLock = rawAndComputedNodesLock.writeLock()) {
         T updatedNode = allComputedNodes.putIfAbsentAndGet(target, targetNode);
         if (updatedNode.equals(targetNode)) {
+          indexInputs(target, targetNode);
           if (cell.getBuckConfig().getView(ParserConfig.class).getTrackCellAgnosticTarget()) {
             targetsCornucopia.put(target.withoutCell().getUnflavoredBuildTarget(), target);
           } else {
@@ -78,6 +83,22 @@ class DaemonicCellState {
     }
   }
 
+  /**
+   * The raw node of a target defined by a build file whose contents changed, along with the nodes
+   * computed from it.
+   */
+  private static class RetainedTarget {
+    private final Map<String, Object> rawNode;
+    private final Map<CacheImpl<?>, Map<BuildTarget, Object>> computedNodes;
+
+    private RetainedTarget(
+        Map<String, Object> rawNode,
+        Map<CacheImpl<?>, Map<BuildTarget, Object>> computedNodes) {
+      this.rawNode = rawNode;
+      this.computedNodes = computedNodes;
+    }
+  }
+
   private final Path cellRoot;
   private AtomicReference<Cell> cell;
 
@@ -94,6 +115,26 @@ class DaemonicCellState {
   private final ConcurrentMapCache<Path, ImmutableSet<Map<String, Object>>> allRawNodes;
   @GuardedBy("rawAndComputedNodesLock")
   private final ConcurrentMap<Class<?>, CacheImpl<?>> typedNodeCaches;
+  /**
+   * Targets of build files invalidated because their contents (or those of their includes)
+   * changed, indexed by build file. Their computed nodes are put back in the caches when the build
+   * file is parsed again, provided their raw nodes didn't change.
+   */
+  @GuardedBy("rawAndComputedNodesLock")
+  private final Map<Path, Map<UnflavoredBuildTarget, RetainedTarget>> retainedTargets;
+  /**
+   * Targets with cached {@link TargetNode}s, indexed by the inputs of their nodes. Kept up to date
+   * as nodes are cached and invalidated, so the owners of a file can be found without going through
+   * every node of its build file.
+   */
+  @GuardedBy("rawAndComputedNodesLock")
+  private final SetMultimap<Path, BuildTarget> inputOwners;
+
+  /**
+   * Results of globs evaluated by build files in this cell, indexed by the directory they were
+   * evaluated in.
+   */
+  private final ConcurrentMap<Path, ConcurrentMap<GlobSpec, ImmutableList<String>>> globs;
 
   private final AutoCloseableReadWriteUpdateLock rawAndComputedNodesLock;
   private final int parsingThreads;
@@ -108,6 +149,9 @@ class DaemonicCellState {
     this.buildFileEnv = new HashMap<>();
     this.allRawNodes = new ConcurrentMapCache<>(parsingThreads);
     this.typedNodeCaches = Maps.newConcurrentMap();
+    this.retainedTargets = new HashMap<>();
+    this.inputOwners = HashMultimap.create();
+    this.globs = new ConcurrentHashMap<>();
     this.rawAndComputedNodesLock = new AutoCloseableReadWriteUpdateLock();
   }
 
@@ -164,26 +208,102 @@ class DaemonicCellState {
         for (Path dependent : dependentsOfEveryNode) {
           buildFileDependents.put(dependent, buildFile);
         }
+        Map<UnflavoredBuildTarget, RetainedTarget> retained = retainedTargets.remove(buildFile);
+        if (retained != null) {
+          restoreUnchangedTargets(buildFile, withoutMetaIncludes, retained);
+        }
       }
       return updated;
     }
   }
 
+  /**
+   * Puts the computed nodes of targets whose raw nodes are the same as when they were retained
+   * back in the caches, so they aren't computed again.
+   */
+  @SuppressWarnings("unchecked")
+  @GuardedBy("rawAndComputedNodesLock")
+  private void restoreUnchangedTargets(
+      Path buildFile,
+      ImmutableSet<Map<String, Object>> rawNodes,
+      Map<UnflavoredBuildTarget, RetainedTarget> retained) {
+    int restoredTargets = 0;
+    for (Map<String, Object> rawNode : rawNodes) {
+      UnflavoredBuildTarget target =
+          RawNodeParsePipeline.parseBuildTargetFromRawRule(cellRoot, rawNode, buildFile);
+      RetainedTarget retainedTarget = retained.get(target);
+      if (retainedTarget == null || !retainedTarget.rawNode.equals(rawNode)) {
+        continue;
+      }
+      for (Map.Entry<CacheImpl<?>, Map<BuildTarget, Object>> entry :
+          retainedTarget.computedNodes.entrySet()) {
+        CacheImpl<Object> cache = (CacheImpl<Object>) entry.getKey();
+        for (Map.Entry<BuildTarget, Object> node : entry.getValue().entrySet()) {
+          cache.allComputedNodes.putIfAbsentAndGet(node.getKey(), node.getValue());
+          indexInputs(node.getKey(), node.getValue());
+          targetsCornucopia.put(target, node.getKey());
+        }
+      }
+      restoredTargets++;
+    }
+    LOG.debug(
+        "Reusing the nodes of %d of the %d targets in %s",
+        restoredTargets,
+        rawNodes.size(),
+        buildFile);
+  }
+
   int invalidatePath(Path path) {
+    return invalidatePath(path, false);
+  }
+
+  /**
+   * Invalidates the targets defined by {@code path}, and by the build files which include it.
+   *
+   * @param retainTargets whether the nodes computed for the targets should be reused for those
+   *     targets whose raw nodes are unchanged once the build files are parsed again. This is only
+   *     safe if {@code path} was modified, rather than added or removed.
+   * @return the number of raw nodes invalidated.
+   */
+  int invalidatePath(Path path, boolean retainTargets) {
     try (AutoCloseableLock writeLock = rawAndComputedNodesLock.writeLock()) {
       int invalidatedRawNodes = 0;
+      if (!retainTargets) {
+        retainedTargets.remove(path);
+      }
       ImmutableSet<Map<String, Object>> rawNodes = allRawNodes.getIfPresent(path);
       if (rawNodes != null) {
         // Increment the counter
         invalidatedRawNodes = rawNodes.size();
+        Map<UnflavoredBuildTarget, RetainedTarget> retained = new HashMap<>();
         for (Map<String, Object> rawNode : rawNodes) {
           UnflavoredBuildTarget target =
               RawNodeParsePipeline.parseBuildTargetFromRawRule(cellRoot, rawNode, path);
           LOG.debug("Invalidating target for path %s: %s", path, target);
+          ImmutableSet<BuildTarget> buildTargets =
+              ImmutableSet.copyOf(targetsCornucopia.get(target));
+          Map<CacheImpl<?>, Map<BuildTarget, Object>> computedNodes = new HashMap<>();
           for (CacheImpl<?> cache : typedNodeCaches.values()) {
-            cache.allComputedNodes.invalidateAll(targetsCornucopia.get(target));
+            Map<BuildTarget, Object> nodes = new HashMap<>();
+            for (BuildTarget buildTarget : buildTargets) {
+              Object node = cache.allComputedNodes.getIfPresent(buildTarget);
+              if (node != null) {
+                nodes.put(buildTarget, node);
+                unindexInputs(buildTarget, node);
+              }
+            }
+            if (retainTargets) {
+              computedNodes.put(cache, nodes);
+            }
+            cache.allComputedNodes.invalidateAll(buildTargets);
           }
           targetsCornucopia.removeAll(target);
+          if (retainTargets) {
+            retained.put(target, new RetainedTarget(rawNode, computedNodes));
+          }
+        }
+        if (retainTargets) {
+          retainedTargets.put(path, retained);
         }
         allRawNodes.invalidate(path);
       }
@@ -195,7 +315,7 @@ class DaemonicCellState {
         if (dependent.equals(path)) {
           continue;
         }
-        invalidatedRawNodes += invalidatePath(dependent);
+        invalidatedRawNodes += invalidatePath(dependent, retainTargets);
       }
       buildFileDependents.removeAll(path);
       buildFileConfigs.remove(path);
@@ -205,6 +325,100 @@ class DaemonicCellState {
     }
   }
 
+  @GuardedBy("rawAndComputedNodesLock")
+  private void indexInputs(BuildTarget target, Object node) {
+    if (node instanceof TargetNode) {
+      for (Path input : ((TargetNode<?, ?>) node).getInputs()) {
+        inputOwners.put(input, target);
+      }
+    }
+  }
+
+  @GuardedBy("rawAndComputedNodesLock")
+  private void unindexInputs(BuildTarget target, Object node) {
+    if (node instanceof TargetNode) {
+      for (Path input : ((TargetNode<?, ?>) node).getInputs()) {
+        inputOwners.remove(input, target);
+      }
+    }
+  }
+
+  /**
+   * @param path a path relative to the root of the cell.
+   * @return the targets with cached {@link TargetNode}s which have {@code path}, or a directory
+   *     containing it, among their inputs.
+   */
+  ImmutableSet<BuildTarget> getTargetsWithInput(Path path) {
+    try (AutoCloseableLock readLock = rawAndComputedNodesLock.readLock()) {
+      ImmutableSet.Builder<BuildTarget> owners = ImmutableSet.builder();
+      for (Path input = path; input != null; input = input.getParent()) {
+        owners.addAll(inputOwners.get(input));
+      }
+      return owners.build();
+    }
+  }
+
+  /**
+   * @param buildFile an absolute path to a build file of the cell.
+   * @param path a path relative to the root of the cell.
+   * @return the cached {@link TargetNode}s of the targets defined by {@code buildFile} which have
+   *     {@code path}, or a directory containing it, among their inputs, or
+   *     {@link Optional#empty()} if any target of {@code buildFile} has no cached node.
+   */
+  Optional<ImmutableSet<TargetNode<?, ?>>> lookupTargetNodesWithInput(Path buildFile, Path path) {
+    try (AutoCloseableLock readLock = rawAndComputedNodesLock.readLock()) {
+      ImmutableSet<Map<String, Object>> rawNodes = allRawNodes.getIfPresent(buildFile);
+      CacheImpl<?> cache = typedNodeCaches.get(TargetNode.class);
+      if (rawNodes == null || cache == null) {
+        return Optional.empty();
+      }
+      ImmutableSet<BuildTarget> owners = getTargetsWithInput(path);
+      ImmutableSet.Builder<TargetNode<?, ?>> nodes = ImmutableSet.builder();
+      for (Map<String, Object> rawNode : rawNodes) {
+        BuildTarget target = BuildTarget.of(
+            RawNodeParsePipeline.parseBuildTargetFromRawRule(cellRoot, rawNode, buildFile));
+        Object node = cache.allComputedNodes.getIfPresent(target);
+        if (node == null) {
+          return Optional.empty();
+        }
+        if (owners.contains(target)) {
+          nodes.add((TargetNode<?, ?>) node);
+        }
+      }
+      return Optional.of(nodes.build());
+    }
+  }
+
+  Optional<ImmutableList<String>> lookupGlob(GlobSpec spec) {
+    Map<GlobSpec, ImmutableList<String>> globsInSearchBase = globs.get(spec.getSearchBase());
+    if (globsInSearchBase == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(globsInSearchBase.get(spec));
+  }
+
+  void putGlob(GlobSpec spec, ImmutableList<String> results) {
+    globs.computeIfAbsent(spec.getSearchBase(), searchBase -> new ConcurrentHashMap<>())
+        .put(spec, results);
+  }
+
+  /**
+   * Drops the results of globs evaluated in {@code path} or any directory above it, which may
+   * change when {@code path} is added or removed.
+   *
+   * @return the number of glob results dropped.
+   */
+  int invalidateGlobsAffectedBy(Path path) {
+    int invalidatedGlobs = 0;
+    for (Path searchBase = path; searchBase != null; searchBase = searchBase.getParent()) {
+      Map<GlobSpec, ImmutableList<String>> removed = globs.remove(searchBase);
+      if (removed != null) {
+        invalidatedGlobs += removed.size();
+      }
+    }
+    return invalidatedGlobs;
+  }
+
   void invalidateIfBuckConfigHasChanged(Cell cell, Path buildFile) {
     // TODO(mzlee): Check whether usedConfigs includes the buildFileName
     ImmutableMap<String, ImmutableMap<String, Optional<String>>> usedConfigs;
@@ -222,7 +436,7 @@ class DaemonicCellState {
         Optional<String> value =
             cell.getBuckConfig().getValue(keyEnt.getKey(), valueEnt.getKey());
         if (!value.equals(valueEnt.getValue())) {
-          invalidatePath(buildFile);
+          invalidatePath(buildFile, /* retainTargets */ true);
           this.cell.set(cell);
           return;
         }
@@ -244,7 +458,7 @@ class DaemonicCellState {
       Optional<String> value =
           Optional.ofNullable(cell.getBuckConfig().getEnvironment().get(ent.getKey()));
       if (!value.equals(ent.getValue())) {
-        invalidatePath(buildFile);
+        invalidatePath(buildFile, /* retainTargets */ true);
         this.cell.set(cell);
         return Optional.of(
             Maps.difference(
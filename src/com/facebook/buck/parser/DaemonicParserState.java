@@ -24,12 +24,15 @@ import com.facebook.buck.event.ParsingEvent;
 import com.facebook.buck.event.listener.BroadcastEventListener;
 import com.facebook.buck.io.WatchEvents;
 import com.facebook.buck.json.BuildFileParseException;
+import com.facebook.buck.json.GlobCache;
+import com.facebook.buck.json.GlobSpec;
 import com.facebook.buck.log.Logger;
 import com.facebook.buck.model.BuildFileTree;
 import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.model.BuildTargetException;
 import com.facebook.buck.model.FilesystemBackedBuildFileTree;
 import com.facebook.buck.rules.Cell;
+import com.facebook.buck.rules.TargetNode;
 import com.facebook.buck.rules.coercer.TypeCoercerFactory;
 import com.facebook.buck.util.OptionalCompat;
 import com.facebook.buck.util.concurrent.AutoCloseableLock;
@@ -152,6 +155,32 @@ class DaemonicParserState {
     }
   }
 
+  /**
+   * Stateless view of the glob results cached for a cell, which conforms to {@link GlobCache}.
+   */
+  private class DaemonicGlobCacheView implements GlobCache {
+
+    private final Cell cell;
+
+    DaemonicGlobCacheView(Cell cell) {
+      this.cell = cell;
+    }
+
+    @Override
+    public Optional<ImmutableList<String>> lookup(GlobSpec spec) {
+      DaemonicCellState state = getCellState(cell);
+      if (state == null) {
+        return Optional.empty();
+      }
+      return state.lookupGlob(spec);
+    }
+
+    @Override
+    public void put(GlobSpec spec, ImmutableList<String> results) {
+      getOrCreateCellState(cell).putGlob(spec, results);
+    }
+  }
+
   /**
    * Stateless view of caches on object that conforms to {@link PipelineNodeCache.Cache}.
    */
@@ -383,6 +412,36 @@ class DaemonicParserState {
     return rawNodeCache;
   }
 
+  /**
+   * @return the results of globs evaluated by build files in {@code cell}, which are kept until a
+   *     file is added or removed under the directory they were evaluated in.
+   */
+  public GlobCache getGlobCache(Cell cell) {
+    return new DaemonicGlobCacheView(cell);
+  }
+
+  /**
+   * @param buildFile an absolute path to a build file of {@code cell}.
+   * @param path a path relative to the root of {@code cell}.
+   * @return the cached nodes of the targets defined by {@code buildFile} which have {@code path},
+   *     or a directory containing it, among their inputs, or {@link Optional#empty()} unless every
+   *     target of {@code buildFile} has a cached node.
+   */
+  public Optional<ImmutableSet<TargetNode<?, ?>>> lookupTargetNodesWithInput(
+      Cell cell,
+      Path buildFile,
+      Path path) {
+    Preconditions.checkState(buildFile.isAbsolute());
+    invalidateIfProjectBuildFileParserStateChanged(cell);
+    invalidateIfBuckConfigOrEnvHasChanged(cell, buildFile);
+
+    DaemonicCellState state = getCellState(cell);
+    if (state == null) {
+      return Optional.empty();
+    }
+    return state.lookupTargetNodesWithInput(buildFile, path);
+  }
+
   @Nullable
   private DaemonicCellState getCellState(Cell cell) {
     try (AutoCloseableLock readLock = cellStateLock.readLock()) {
@@ -435,6 +494,13 @@ class DaemonicParserState {
               buildFileTrees.invalidate(cell);
             }
 
+            // Added or removed files change the results of globs evaluated above them.
+            int invalidatedGlobs =
+                state.invalidateGlobsAffectedBy(state.getCellRoot().resolve(path));
+            if (invalidatedGlobs > 0) {
+              LOG.debug("Invalidated %d glob results affected by %s", invalidatedGlobs, path);
+            }
+
             // Added or removed files can affect globs, so invalidate the package build file
             // "containing" {@code path} unless its filename matches a temp file pattern.
             if (!isTempFile(cell, path)) {
@@ -457,16 +523,22 @@ class DaemonicParserState {
       }
     }
 
-    invalidatePath(path);
+    // A modified file can only change the raw nodes of the build files depending on it, so the
+    // nodes of targets whose raw nodes turn out to be unchanged can be reused.
+    invalidatePath(path, !isPathCreateOrDeleteEvent(event));
   }
 
   public void invalidatePath(Path path) {
+    invalidatePath(path, false);
+  }
+
+  private void invalidatePath(Path path, boolean retainTargets) {
 
     // The paths from watchman are not absolute. Because of this, we adopt a conservative approach
     // to invalidating the caches.
     try (AutoCloseableLock readLock = cellStateLock.readLock()) {
       for (DaemonicCellState state : cellPathToDaemonicState.values()) {
-        invalidatePath(state, path);
+        invalidatePath(state, path, retainTargets);
       }
     }
   }
@@ -514,7 +586,7 @@ class DaemonicParserState {
       DaemonicCellState state = cellPathToDaemonicState.get(cell.getRoot());
       // Invalidate all the packages we found.
       for (Path buildFile : packageBuildFiles) {
-        invalidatePath(state, buildFile.resolve(cell.getBuildFileName()));
+        invalidatePath(state, buildFile.resolve(cell.getBuildFileName()), false);
       }
     }
   }
@@ -523,13 +595,14 @@ class DaemonicParserState {
    * Remove the targets and rules defined by {@code path} from the cache and recursively remove
    * the targets and rules defined by files that transitively include {@code path} from the cache.
    * @param path The File that has changed.
+   * @param retainTargets see {@link DaemonicCellState#invalidatePath(Path, boolean)}.
    */
-  private void invalidatePath(DaemonicCellState state, Path path) {
+  private void invalidatePath(DaemonicCellState state, Path path, boolean retainTargets) {
     LOG.debug("Invalidating path %s for cell %s", path, state.getCellRoot());
 
     // Paths from Watchman are not absolute.
     path = state.getCellRoot().resolve(path);
-    int invalidatedNodes = state.invalidatePath(path);
+    int invalidatedNodes = state.invalidatePath(path, retainTargets);
     rulesInvalidatedByWatchEventsCounter.inc(invalidatedNodes);
   }
 
@@ -32,6 +32,7 @@ import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.model.BuildTargetException;
 import com.facebook.buck.model.Flavor;
 import com.facebook.buck.model.HasDefaultFlavors;
+import com.facebook.buck.model.Pair;
 import com.facebook.buck.rules.Cell;
 import com.facebook.buck.rules.ConstructorArgMarshaller;
 import com.facebook.buck.rules.ImplicitFlavorsInferringDescription;
@@ -56,7 +57,9 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -71,9 +74,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 
@@ -147,6 +156,23 @@ public class Parser {
     }
   }
 
+  /**
+   * Finds the owners of a file among the cached nodes of a build file, which are indexed by their
+   * inputs as they are parsed and invalidated, without parsing anything.
+   *
+   * @param buildFile an absolute path to a build file of {@code cell}.
+   * @param path a path relative to the root of {@code cell}.
+   * @return the nodes of the targets defined by {@code buildFile} which have {@code path}, or a
+   *     directory containing it, among their inputs, or {@link Optional#empty()} if the build file
+   *     has to be parsed to find them.
+   */
+  public Optional<ImmutableSet<TargetNode<?, ?>>> getCachedTargetNodesWithInput(
+      Cell cell,
+      Path buildFile,
+      Path path) {
+    return permState.lookupTargetNodesWithInput(cell, buildFile, path);
+  }
+
   public TargetNode<?, ?> getTargetNode(
       BuckEventBus eventBus,
       Cell cell,
@@ -276,10 +302,7 @@ public class Parser {
       return TargetGraph.EMPTY;
     }
 
-    final Map<BuildTarget, TargetGroup> groups = Maps.newHashMap();
-    for (TargetGroup group : state.getAllGroups()) {
-      groups.put(group.getBuildTarget(), group);
-    }
+    ImmutableSet<TargetGroup> allGroups = state.getAllGroups();
 
     final MutableDirectedGraph<TargetNode<?, ?>> graph = new MutableDirectedGraph<>();
     final Map<BuildTarget, TargetNode<?, ?>> index = new HashMap<>();
@@ -287,58 +310,27 @@ public class Parser {
     ParseEvent.Started parseStart = ParseEvent.started(toExplore);
     eventBus.post(parseStart);
 
-    GraphTraversable<BuildTarget> traversable = target -> {
-      TargetNode<?, ?> node;
-      try {
-        node = state.getTargetNode(target);
-      } catch (BuildFileParseException | BuildTargetException e) {
-        throw new RuntimeException(e);
-      }
+    final Map<BuildTarget, TargetNode<?, ?>> nodes = new ConcurrentHashMap<>();
 
+    // Once discovery has filled in the reachable nodes, the traversal which orders them and finds
+    // cycles only needs map lookups rather than trips through the parse pipeline.
+    GraphTraversable<BuildTarget> traversable = target -> {
       if (ignoreBuckAutodepsFiles) {
         return Collections.emptyIterator();
       }
-
-      // this second lookup loop may *seem* pointless, but it allows us to report which node is
-      // referring to a node we can't find - something that's very difficult in this Traversable
-      // visitor pattern otherwise.
-      // it's also work we need to do anyways. the getTargetNode() result is cached, so that
-      // when we come around and re-visit that node there won't actually be any work performed.
-      for (BuildTarget dep : node.getDeps()) {
-        try {
-          state.getTargetNode(dep);
-        } catch (BuildFileParseException | BuildTargetException | HumanReadableException e) {
-          throw new HumanReadableException(
-              e,
-              "Couldn't get dependency '%s' of target '%s':\n%s",
-              dep,
-              target,
-              e.getMessage());
-        }
-      }
-      return node.getDeps().iterator();
-    };
-
-    GraphTraversable<BuildTarget> groupExpander = target -> {
-      TargetGroup group = Preconditions.checkNotNull(
-          groups.get(target),
-          "SANITY FAILURE: Tried to expand group %s but it doesn't exist.",
-          target);
-      return Iterators.filter(group.iterator(), groups::containsKey);
+      return getDiscoveredNode(nodes, target).getDeps().iterator();
     };
 
-    AcyclicDepthFirstPostOrderTraversal<BuildTarget> targetGroupExpansion =
-        new AcyclicDepthFirstPostOrderTraversal<>(groupExpander);
-
     AcyclicDepthFirstPostOrderTraversal<BuildTarget> targetNodeTraversal =
         new AcyclicDepthFirstPostOrderTraversal<>(traversable);
 
     TargetGraph targetGraph = null;
     try {
+      new TargetNodeDiscovery(state, ignoreBuckAutodepsFiles, nodes).discover(toExplore);
+
       for (BuildTarget target : targetNodeTraversal.traverse(toExplore)) {
-        TargetNode<?, ?> targetNode = state.getTargetNode(target);
+        TargetNode<?, ?> targetNode = getDiscoveredNode(nodes, target);
 
-        Preconditions.checkNotNull(targetNode, "No target node found for %s", target);
         graph.addNode(targetNode);
         MoreMaps.putCheckEquals(index, target, targetNode);
         if (target.isFlavored()) {
@@ -349,33 +341,23 @@ public class Parser {
               state.getTargetNode(unflavoredTarget));
         }
         for (BuildTarget dep : targetNode.getDeps()) {
-          graph.addEdge(targetNode, state.getTargetNode(dep));
-        }
-      }
-
-      for (BuildTarget groupTarget : targetGroupExpansion.traverse(groups.keySet())) {
-        ImmutableMap<BuildTarget, Iterable<BuildTarget>> replacements = Maps.toMap(
-            groupExpander.findChildren(groupTarget),
-            target -> {
-              TargetGroup group = groups.get(target);
-              return Preconditions.checkNotNull(
-                  group,
-                  "SANITY FAILURE: Tried to expand group %s but it doesn't exist.",
-                  target);
-            });
-        if (!replacements.isEmpty()) {
-          // TODO(tophyr): Stop duplicating target lists
-          groups.put(
-              groupTarget,
-              Preconditions.checkNotNull(groups.get(groupTarget))
-                  .withReplacedTargets(replacements));
+          TargetNode<?, ?> depNode = nodes.get(dep);
+          if (depNode == null) {
+            // Deps are not discovered when they are ignored, but the edges to them are kept.
+            Preconditions.checkState(
+                ignoreBuckAutodepsFiles,
+                "No target node found for %s",
+                dep);
+            depNode = state.getTargetNode(dep);
+          }
+          graph.addEdge(targetNode, depNode);
         }
       }
 
       targetGraph = new TargetGraph(
           graph,
           ImmutableMap.copyOf(index),
-          ImmutableSet.copyOf(groups.values()));
+          expandTargetGroups(allGroups));
       state.ensureConcreteFilesExist(eventBus);
       return targetGraph;
     } catch (AcyclicDepthFirstPostOrderTraversal.CycleException e) {
@@ -387,13 +369,182 @@ public class Parser {
     }
   }
 
+  /**
+   * @return {@code allGroups}, with the groups nested in each group replaced by their targets.
+   */
+  public static ImmutableSet<TargetGroup> expandTargetGroups(Iterable<TargetGroup> allGroups)
+      throws AcyclicDepthFirstPostOrderTraversal.CycleException {
+    final Map<BuildTarget, TargetGroup> groups = Maps.newHashMap();
+    for (TargetGroup group : allGroups) {
+      groups.put(group.getBuildTarget(), group);
+    }
+
+    GraphTraversable<BuildTarget> groupExpander = target -> {
+      TargetGroup group = Preconditions.checkNotNull(
+          groups.get(target),
+          "SANITY FAILURE: Tried to expand group %s but it doesn't exist.",
+          target);
+      return Iterators.filter(group.iterator(), groups::containsKey);
+    };
+
+    AcyclicDepthFirstPostOrderTraversal<BuildTarget> targetGroupExpansion =
+        new AcyclicDepthFirstPostOrderTraversal<>(groupExpander);
+
+    for (BuildTarget groupTarget : targetGroupExpansion.traverse(groups.keySet())) {
+      ImmutableMap<BuildTarget, Iterable<BuildTarget>> replacements = Maps.toMap(
+          groupExpander.findChildren(groupTarget),
+          target -> {
+            TargetGroup group = groups.get(target);
+            return Preconditions.checkNotNull(
+                group,
+                "SANITY FAILURE: Tried to expand group %s but it doesn't exist.",
+                target);
+          });
+      if (!replacements.isEmpty()) {
+        // TODO(tophyr): Stop duplicating target lists
+        groups.put(
+            groupTarget,
+            Preconditions.checkNotNull(groups.get(groupTarget))
+                .withReplacedTargets(replacements));
+      }
+    }
+
+    return ImmutableSet.copyOf(groups.values());
+  }
+
+  private static TargetNode<?, ?> getDiscoveredNode(
+      Map<BuildTarget, TargetNode<?, ?>> nodes,
+      BuildTarget target) {
+    return Preconditions.checkNotNull(nodes.get(target), "No target node found for %s", target);
+  }
+
+  /**
+   * Finds the target nodes reachable from a set of targets. The deps of each node are requested as
+   * soon as the node is available, so the pipeline computes nodes from all over the graph at once,
+   * rather than having them waited on one at a time in traversal order.
+   */
+  private static class TargetNodeDiscovery {
+    private final PerBuildState state;
+    private final boolean ignoreBuckAutodepsFiles;
+    private final Map<BuildTarget, TargetNode<?, ?>> nodes;
+    private final Set<BuildTarget> requested = Sets.newConcurrentHashSet();
+    /** Number of targets added to {@link #queue} whose nodes have not been handled yet. */
+    private final AtomicInteger outstanding = new AtomicInteger();
+    /**
+     * Targets whose nodes should be requested, each with the target which depends on it. An empty
+     * entry means that every node has been handled, or that one of them failed.
+     */
+    private final BlockingQueue<Optional<Pair<BuildTarget, Optional<BuildTarget>>>> queue =
+        new LinkedBlockingQueue<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param nodes the map to add the nodes to, which must be safe to update concurrently.
+     */
+    public TargetNodeDiscovery(
+        PerBuildState state,
+        boolean ignoreBuckAutodepsFiles,
+        Map<BuildTarget, TargetNode<?, ?>> nodes) {
+      this.state = state;
+      this.ignoreBuckAutodepsFiles = ignoreBuckAutodepsFiles;
+      this.nodes = nodes;
+    }
+
+    public void discover(Iterable<BuildTarget> toExplore)
+        throws BuildFileParseException, BuildTargetException, InterruptedException {
+      for (BuildTarget target : toExplore) {
+        enqueue(target, Optional.empty());
+      }
+
+      // Requests are made from this thread only, so that nodes completing synchronously (such as
+      // with parallel parsing disabled) queue their deps instead of recursing into them. Nothing
+      // more is requested once a node has failed.
+      Optional<Pair<BuildTarget, Optional<BuildTarget>>> next;
+      while (failure.get() == null && (next = queue.take()).isPresent()) {
+        request(next.get().getFirst(), next.get().getSecond());
+      }
+
+      Throwable t = failure.get();
+      if (t != null) {
+        Throwables.throwIfInstanceOf(t, BuildFileParseException.class);
+        Throwables.throwIfInstanceOf(t, BuildTargetException.class);
+        Throwables.throwIfInstanceOf(t, InterruptedException.class);
+        Throwables.throwIfUnchecked(t);
+        throw new RuntimeException(t);
+      }
+    }
+
+    private void enqueue(BuildTarget target, Optional<BuildTarget> dependent) {
+      if (requested.add(target)) {
+        outstanding.incrementAndGet();
+        queue.add(Optional.of(new Pair<>(target, dependent)));
+      }
+    }
+
+    private void request(final BuildTarget target, final Optional<BuildTarget> dependent) {
+      ListenableFuture<TargetNode<?, ?>> job;
+      try {
+        job = state.getTargetNodeJob(target);
+      } catch (BuildTargetException | RuntimeException e) {
+        fail(target, dependent, e);
+        return;
+      }
+
+      Futures.addCallback(
+          job,
+          new FutureCallback<TargetNode<?, ?>>() {
+            @Override
+            public void onSuccess(TargetNode<?, ?> node) {
+              // Futures swallows anything thrown from here, which would leave discover() waiting
+              // forever, so failures have to be handed over explicitly.
+              try {
+                nodes.put(target, node);
+                if (!ignoreBuckAutodepsFiles) {
+                  for (BuildTarget dep : node.getDeps()) {
+                    enqueue(dep, Optional.of(target));
+                  }
+                }
+              } catch (Throwable t) {
+                fail(target, dependent, t);
+                return;
+              }
+              if (outstanding.decrementAndGet() == 0) {
+                queue.add(Optional.empty());
+              }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              fail(target, dependent, t);
+            }
+          });
+    }
+
+    private void fail(BuildTarget target, Optional<BuildTarget> dependent, Throwable t) {
+      if (dependent.isPresent() &&
+          (t instanceof BuildFileParseException ||
+              t instanceof BuildTargetException ||
+              t instanceof HumanReadableException)) {
+        t = new HumanReadableException(
+            t,
+            "Couldn't get dependency '%s' of target '%s':\n%s",
+            target,
+            dependent.get(),
+            t.getMessage());
+      }
+      if (failure.compareAndSet(null, t)) {
+        queue.add(Optional.empty());
+      }
+    }
+  }
+
   /**
    * @param eventBus used to log events while parsing.
    * @param targetNodeSpecs the specs representing the build targets to generate a target graph for.
    * @param ignoreBuckAutodepsFiles If true, do not load deps from {@code BUCK.autodeps} files.
    * @return the target graph containing the build targets and their related targets.
    */
-  public synchronized TargetGraphAndBuildTargets
+  public TargetGraphAndBuildTargets
   buildTargetGraphForTargetNodeSpecs(
       BuckEventBus eventBus,
       Cell rootCell,
@@ -418,7 +569,7 @@ public class Parser {
    * @param ignoreBuckAutodepsFiles If true, do not load deps from {@code BUCK.autodeps} files.
    * @return the target graph containing the build targets and their related targets.
    */
-  public synchronized TargetGraphAndBuildTargets
+  public TargetGraphAndBuildTargets
   buildTargetGraphForTargetNodeSpecs(
       BuckEventBus eventBus,
       Cell rootCell,
@@ -119,7 +119,8 @@ public class PerBuildState implements AutoCloseable {
     int numParsingThreads = parserConfig.getNumParsingThreads();
     this.projectBuildFileParserPool = new ProjectBuildFileParserPool(
         numParsingThreads, // Max parsers to create per cell.
-        input -> createBuildFileParser(input, PerBuildState.this.ignoreBuckAutodepsFiles));
+        input -> createBuildFileParser(input, PerBuildState.this.ignoreBuckAutodepsFiles),
+        eventBus);
 
     this.rawNodeParsePipeline = new RawNodeParsePipeline(
         parser.getPermState().getRawNodeCache(),
@@ -157,6 +158,13 @@ public class PerBuildState implements AutoCloseable {
     return targetNodeParsePipeline.getNode(owningCell, target);
   }
 
+  public ListenableFuture<TargetNode<?, ?>> getTargetNodeJob(BuildTarget target)
+      throws BuildTargetException {
+    Cell owningCell = getCell(target);
+
+    return targetNodeParsePipeline.getNodeJob(owningCell, target);
+  }
+
   public ImmutableSet<TargetNode<?, ?>> getAllTargetNodes(Cell cell, Path buildFile)
       throws BuildFileParseException {
     Preconditions.checkState(buildFile.startsWith(cell.getRoot()));
@@ -201,6 +209,9 @@ public class PerBuildState implements AutoCloseable {
         eventBus,
         ignoreBuckAutodepsFiles);
     parser.setEnableProfiling(enableProfiling);
+    if (cell.getBuckConfig().getView(ParserConfig.class).getEnableDaemonGlobCache()) {
+      parser.setGlobCache(this.parser.getPermState().getGlobCache(cell));
+    }
     return parser;
   }
 
@@ -344,6 +355,10 @@ public class PerBuildState implements AutoCloseable {
     }
   }
 
+  public void ensureConcreteFilesExist() {
+    ensureConcreteFilesExist(eventBus);
+  }
+
   @Override
   public void close() throws BuildFileParseException {
     stdout.close();
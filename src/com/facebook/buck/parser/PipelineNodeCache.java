@@ -79,6 +79,14 @@ class PipelineNodeCache<K, T> {
     return resultFuture;
   }
 
+  /**
+   * @return the node for {@code key} if it's cached. It may be cached even if it wasn't when the
+   *     job computing it was created, as the caches can reuse nodes once their inputs are known.
+   */
+  protected final Optional<T> lookupComputedNode(Cell cell, K key) throws BuildTargetException {
+    return cache.lookupComputedNode(cell, key);
+  }
+
   protected interface JobSupplier<V> {
     ListenableFuture<V> get() throws BuildTargetException;
   }
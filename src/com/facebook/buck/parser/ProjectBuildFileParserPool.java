@@ -16,7 +16,11 @@
 
 package com.facebook.buck.parser;
 
+import com.facebook.buck.event.BuckEventBus;
+import com.facebook.buck.event.PerfEventId;
+import com.facebook.buck.event.SimplePerfEvent;
 import com.facebook.buck.json.ProjectBuildFileParser;
+import com.facebook.buck.log.Logger;
 import com.facebook.buck.rules.Cell;
 import com.facebook.buck.util.concurrent.ResourcePool;
 import com.google.common.base.Function;
@@ -24,10 +28,12 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.concurrent.GuardedBy;
@@ -37,28 +43,40 @@ import javax.annotation.concurrent.GuardedBy;
  *
  * Parser instances are lazily created up till a fixed maximum. If more than max parser are
  * requested the associated 'requests' are queued up. As soon as a parser is returned it will
- * be used to satisfy the first pending request, otherwise it is "parked".
+ * be used to satisfy the pending request with the highest priority, otherwise it is "parked".
  */
 class ProjectBuildFileParserPool implements AutoCloseable {
+  private static final Logger LOG = Logger.get(ProjectBuildFileParserPool.class);
+
   private final int maxParsersPerCell;
   @GuardedBy("this")
   private final Map<Cell, ResourcePool<ProjectBuildFileParser>> parserResourcePools;
   private final Function<Cell, ProjectBuildFileParser> parserFactory;
+  private final BuckEventBus eventBus;
   private final AtomicBoolean closing;
+  private final SimplePerfEvent.Scope poolLifetimeEventScope;
+  private final long minimumPerfEventTimeMs;
 
   /**
    * @param maxParsersPerCell maximum number of parsers to create for a single cell.
    * @param parserFactory function used to create a new parser.
+   * @param eventBus bus to post the time requests spend waiting for a parser to. Waits shorter
+   *     than the minimum perf event time are only added to the totals of the pool's lifetime event.
    */
   public ProjectBuildFileParserPool(
       int maxParsersPerCell,
-      Function<Cell, ProjectBuildFileParser> parserFactory) {
+      Function<Cell, ProjectBuildFileParser> parserFactory,
+      BuckEventBus eventBus) {
     Preconditions.checkArgument(maxParsersPerCell > 0);
 
     this.maxParsersPerCell = maxParsersPerCell;
     this.parserResourcePools = new HashMap<>();
     this.parserFactory = parserFactory;
+    this.eventBus = eventBus;
     this.closing = new AtomicBoolean(false);
+    this.poolLifetimeEventScope =
+        SimplePerfEvent.scope(eventBus, PerfEventId.of("build_file_parser_pool"));
+    this.minimumPerfEventTimeMs = LOG.isVerboseEnabled() ? 0 : 1;
   }
 
   /**
@@ -72,11 +90,50 @@ class ProjectBuildFileParserPool implements AutoCloseable {
       final Cell cell,
       final Path buildFile,
       final ListeningExecutorService executorService) {
+    return getAllRulesAndMetaRules(cell, buildFile, 0, executorService);
+  }
+
+  /**
+   * @param cell the cell in which we're parsing
+   * @param buildFile the file to parse
+   * @param priority requests with a higher priority get the next free parser first.
+   * @param executorService where to perform the parsing.
+   * @return a {@link ListenableFuture} containing the result of the parsing. The future will be
+   *         cancelled if the {@link ProjectBuildFileParserPool#close()} method is called.
+   */
+  public ListenableFuture<ImmutableSet<Map<String, Object>>> getAllRulesAndMetaRules(
+      final Cell cell,
+      final Path buildFile,
+      final int priority,
+      final ListeningExecutorService executorService) {
     Preconditions.checkState(!closing.get());
 
-    return getResourcePoolForCell(cell).scheduleOperationWithResource(
-        parser -> ImmutableSet.copyOf(parser.getAllRulesAndMetaRules(buildFile)),
-        executorService);
+    SimplePerfEvent.Scope waitScope = SimplePerfEvent.scopeIgnoringShortEvents(
+        eventBus,
+        PerfEventId.of("WaitForBuildFileParser"),
+        "buildFile", buildFile,
+        "priority", priority,
+        poolLifetimeEventScope,
+        minimumPerfEventTimeMs,
+        TimeUnit.MILLISECONDS);
+    AtomicBoolean waitFinished = new AtomicBoolean(false);
+    Runnable finishWait = () -> {
+      if (waitFinished.compareAndSet(false, true)) {
+        waitScope.close();
+      }
+    };
+
+    ListenableFuture<ImmutableSet<Map<String, Object>>> result =
+        getResourcePoolForCell(cell).scheduleOperationWithResource(
+            parser -> {
+              finishWait.run();
+              return ImmutableSet.copyOf(parser.getAllRulesAndMetaRules(buildFile));
+            },
+            executorService,
+            priority);
+    // Requests which never get a parser, because the pool was closed for example, still end.
+    result.addListener(finishWait, MoreExecutors.directExecutor());
+    return result;
   }
 
   private synchronized ResourcePool<ProjectBuildFileParser> getResourcePoolForCell(Cell cell) {
@@ -102,5 +159,6 @@ class ProjectBuildFileParserPool implements AutoCloseable {
       resourcePools = ImmutableSet.copyOf(parserResourcePools.values());
     }
     resourcePools.forEach(ResourcePool::close);
+    poolLifetimeEventScope.close();
   }
 }
@@ -29,6 +29,8 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 public class RawNodeParsePipeline extends ParsePipeline<Map<String, Object>> {
@@ -36,6 +38,16 @@ public class RawNodeParsePipeline extends ParsePipeline<Map<String, Object>> {
   private final PipelineNodeCache<Path, ImmutableSet<Map<String, Object>>> cache;
   private final ListeningExecutorService executorService;
   private final ProjectBuildFileParserPool projectBuildFileParserPool;
+  /**
+   * How many dependency edges away from the requested targets each build file was found, for the
+   * files reached by speculatively following deps. Parsing the deepest files first keeps long
+   * chains of dependencies moving, rather than leaving parsers idle at the end waiting on them.
+   *
+   * This stands in for the depth of the dependency chain still below each file, which is what
+   * decides when the parse finishes but can't be known until the files below have been parsed.
+   * A file found close to the roots that heads a long chain is therefore still parsed late.
+   */
+  private final ConcurrentMap<Path, Integer> discoveryDepths;
 
   public RawNodeParsePipeline(
       Cache<Path, ImmutableSet<Map<String, Object>>> cache,
@@ -45,6 +57,22 @@ public class RawNodeParsePipeline extends ParsePipeline<Map<String, Object>> {
     this.executorService = executorService;
     this.cache = new PipelineNodeCache<>(cache);
     this.projectBuildFileParserPool = projectBuildFileParserPool;
+    this.discoveryDepths = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return how many dependency edges away from the requested targets {@code buildFile} was found.
+   */
+  public int getDiscoveryDepth(Path buildFile) {
+    return discoveryDepths.getOrDefault(buildFile, 0);
+  }
+
+  /**
+   * Records that {@code buildFile} was found {@code depth} dependency edges away from the
+   * requested targets, so it's parsed ahead of files found closer to them.
+   */
+  public void recordDiscoveryDepth(Path buildFile, int depth) {
+    discoveryDepths.merge(buildFile, depth, Math::max);
   }
 
   /**
@@ -99,6 +127,7 @@ public class RawNodeParsePipeline extends ParsePipeline<Map<String, Object>> {
           return projectBuildFileParserPool.getAllRulesAndMetaRules(
               cell,
               buildFile,
+              getDiscoveryDepth(buildFile),
               executorService);
         });
   }
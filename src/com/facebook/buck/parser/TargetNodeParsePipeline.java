@@ -120,6 +120,8 @@ public class TargetNodeParsePipeline
           perfEventScopeFunction);
 
       if (speculativeDepsTraversal) {
+        int depsDiscoveryDepth = rawNodeParsePipeline.getDiscoveryDepth(
+            cell.getAbsolutePathToBuildFileUnsafe(buildTarget)) + 1;
         executorService.submit(() -> {
           for (BuildTarget depTarget : targetNode.getDeps()) {
             Path depCellPath = depTarget.getCellPath();
@@ -127,6 +129,9 @@ public class TargetNodeParsePipeline
             // Currently the cell name->Cell object mapping is held by the PerBuildState in a
             // non-threadsafe way making it inconvenient to access from the pipeline.
             if (depCellPath.equals(cell.getRoot())) {
+              rawNodeParsePipeline.recordDiscoveryDepth(
+                  cell.getAbsolutePathToBuildFileUnsafe(depTarget),
+                  depsDiscoveryDepth);
               try {
                 if (depTarget.isFlavored()) {
                   getNodeJob(cell, BuildTarget.of(depTarget.getUnflavoredBuildTarget()));
@@ -33,6 +33,7 @@ import com.google.common.collect.Iterables;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
@@ -54,6 +55,7 @@ public class BuildRuleResolver {
 
   private final ConcurrentHashMap<BuildTarget, BuildRule> buildRuleIndex;
   private final LoadingCache<Pair<BuildTarget, Class<?>>, Optional<?>> metadataCache;
+  private final ConcurrentHashMap<Class<?>, Object> memos = new ConcurrentHashMap<>();
 
   public BuildRuleResolver(
       TargetGraph targetGraph,
@@ -181,6 +183,15 @@ public class BuildRuleResolver {
     }
   }
 
+  /**
+   * @return this resolver's instance of {@code memoClass}, created by {@code factory} the first
+   *     time it is asked for.  Results memoized across the rules of an action graph belong here
+   *     rather than in static caches: they may hold on to rules, and are dropped along with them.
+   */
+  public <T> T getMemo(Class<T> memoClass, Supplier<T> factory) {
+    return memoClass.cast(memos.computeIfAbsent(memoClass, key -> factory.get()));
+  }
+
   @SuppressWarnings("unchecked")
   public <T> Optional<T> getRuleOptionalWithType(
       BuildTarget buildTarget,
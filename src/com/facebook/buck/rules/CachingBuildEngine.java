@@ -39,6 +39,7 @@ import com.facebook.buck.rules.keys.RuleKeyFactoryManager;
 import com.facebook.buck.rules.keys.SizeLimiter;
 import com.facebook.buck.rules.keys.SupportsDependencyFileRuleKey;
 import com.facebook.buck.rules.keys.SupportsInputBasedRuleKey;
+import com.facebook.buck.rules.keys.SupportsInputPrediction;
 import com.facebook.buck.step.ExecutionContext;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepFailedException;
@@ -53,6 +54,7 @@ import com.facebook.buck.util.cache.DefaultFileHashCache;
 import com.facebook.buck.util.cache.FileHashCache;
 import com.facebook.buck.util.cache.ProjectFileHashCache;
 import com.facebook.buck.util.concurrent.MoreFutures;
+import com.facebook.buck.util.concurrent.MostExecutors;
 import com.facebook.buck.util.concurrent.ResourceAmounts;
 import com.facebook.buck.util.concurrent.WeightedListeningExecutorService;
 import com.facebook.buck.zip.Unzip;
@@ -100,6 +102,11 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
@@ -122,6 +129,18 @@ public class CachingBuildEngine implements BuildEngine {
       0, 0, 1, 0);
   public static final ResourceAmounts SCHEDULING_MORE_WORK_RESOURCE_AMOUNTS = ResourceAmounts.ZERO;
 
+  /**
+   * Input hash prefetches waiting to run. Prefetches beyond this are dropped, as they're only an
+   * optimization and shouldn't pile up behind a slow filesystem.
+   */
+  private static final int MAX_QUEUED_INPUT_PREFETCHES = 64;
+
+  /**
+   * Runs input hash prefetches on a single low-priority thread, so that they don't take slots from
+   * the build's own work.
+   */
+  private static final ExecutorService INPUT_PREFETCH_SERVICE = newInputPrefetchService();
+
   private static final String BUILD_RULE_TYPE_CONTEXT_KEY = "build_rule_type";
   private static final String STEP_TYPE_CONTEXT_KEY = "step_type";
 
@@ -1709,6 +1728,49 @@ public class CachingBuildEngine implements BuildEngine {
     }
   }
 
+  /**
+   * Warms the file hash cache with the inputs the rule predicts it will use, so that a subsequent
+   * manifest lookup doesn't have to hash them serially. Only plain source files are hashed, as
+   * generated inputs may still change.
+   */
+  private void prefetchLikelyInputHashes(final SupportsInputPrediction rule) {
+    final FileHashCache fileHashCache = fileHashCaches.getUnchecked(rule.getProjectFilesystem());
+    try {
+      INPUT_PREFETCH_SERVICE.execute(
+          () -> {
+            try {
+              for (SourcePath input : rule.getLikelyInputsBeforeBuilding(pathResolver)) {
+                if (input instanceof PathSourcePath) {
+                  fileHashCache.get(pathResolver.getAbsolutePath(input));
+                }
+              }
+            } catch (IOException | RuntimeException e) {
+              LOG.warn(e, "Error prefetching input hashes for %s", rule);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      LOG.verbose("Too many queued input hash prefetches, skipping %s", rule);
+    }
+  }
+
+  private static ExecutorService newInputPrefetchService() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        /* corePoolSize */ 1,
+        /* maximumPoolSize */ 1,
+        /* keepAliveTime */ 10L, TimeUnit.SECONDS,
+        /* workQueue */ new LinkedBlockingQueue<>(MAX_QUEUED_INPUT_PREFETCHES),
+        /* threadFactory */ runnable -> {
+          Thread thread =
+              new MostExecutors.NamedThreadFactory("input-hash-prefetch").newThread(runnable);
+          thread.setDaemon(true);
+          thread.setPriority(Thread.MIN_PRIORITY);
+          return thread;
+        });
+    // Don't keep an idle thread around in the daemon between builds.
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   // Fetch an artifact from the cache using manifest-based caching.
   private Optional<BuildResult> performManifestBasedCacheFetch(
       final BuildRule rule,
@@ -1718,6 +1780,11 @@ public class CachingBuildEngine implements BuildEngine {
       throws IOException {
     Preconditions.checkArgument(useManifestCaching(rule));
 
+    // Start hashing the headers we expect the manifest to reference while we fetch it.
+    if (rule instanceof SupportsInputPrediction) {
+      prefetchLikelyInputHashes((SupportsInputPrediction) rule);
+    }
+
     final LazyPath tempFile = new LazyPath() {
       @Override
       protected Path create() throws IOException {
@@ -248,6 +248,7 @@ public class Cell {
         Watchman.Capability.GLOB_GENERATOR);
     boolean useMercurialGlob =
         parserConfig.getGlobHandler() == ParserConfig.GlobHandler.MERCURIAL;
+    ParserConfig.BuildFileEvaluator buildFileEvaluator = parserConfig.getBuildFileEvaluator();
     String pythonInterpreter = parserConfig.getPythonInterpreter(new ExecutableFinder());
     Optional<String> pythonModuleSearchPath = parserConfig.getPythonModuleSearchPath();
 
@@ -269,6 +270,9 @@ public class Cell {
             .setWatchman(watchman)
             .setWatchmanQueryTimeoutMs(parserConfig.getWatchmanQueryTimeoutMs())
             .setUseMercurialGlob(useMercurialGlob)
+            .setUseJvmEvaluator(buildFileEvaluator != ParserConfig.BuildFileEvaluator.PYTHON)
+            .setVerifyJvmEvaluator(
+                buildFileEvaluator == ParserConfig.BuildFileEvaluator.DIFFERENTIAL)
             .setRawConfig(getBuckConfig().getRawConfigForParser())
             .setBuildFileImportWhitelist(parserConfig.getBuildFileImportWhitelist())
             .build());
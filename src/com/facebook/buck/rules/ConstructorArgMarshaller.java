@@ -21,8 +21,6 @@ import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.rules.coercer.TypeCoercerFactory;
 import com.facebook.buck.util.HumanReadableException;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
 
 import java.lang.reflect.Field;
@@ -32,7 +30,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
 
 /**
  * Used to derive information from the constructor args returned by {@link Description} instances.
@@ -43,7 +42,7 @@ import java.util.concurrent.ExecutionException;
 public class ConstructorArgMarshaller {
 
   private final TypeCoercerFactory typeCoercerFactory;
-  private final Cache<Class<?>, ImmutableSet<ParamInfo>> coercedTypes;
+  private final ClassValue<CoercionPlan> coercionPlans;
 
   /**
    * Constructor. {@code pathFromProjectRootToBuildFile} is the path relative to the project root to
@@ -53,7 +52,12 @@ public class ConstructorArgMarshaller {
    */
   public ConstructorArgMarshaller(TypeCoercerFactory typeCoercerFactory) {
     this.typeCoercerFactory = typeCoercerFactory;
-    this.coercedTypes = CacheBuilder.newBuilder().build();
+    this.coercionPlans = new ClassValue<CoercionPlan>() {
+      @Override
+      protected CoercionPlan computeValue(Class<?> argClass) {
+        return new CoercionPlan(ConstructorArgMarshaller.this.typeCoercerFactory, argClass);
+      }
+    };
   }
 
   /**
@@ -86,11 +90,13 @@ public class ConstructorArgMarshaller {
       ImmutableSet.Builder<BuildTarget> declaredDeps,
       ImmutableSet.Builder<VisibilityPattern> visibilityPatterns,
       Map<String, ?> instance) throws ParamInfoException {
-    for (ParamInfo info : getAllParamInfo(dto)) {
-      info.setFromParams(cellRoots, filesystem, buildTarget, dto, instance);
-      if (info.getName().equals("deps")) {
-        populateDeclaredDeps(info, declaredDeps, dto);
-      }
+    CoercionPlan plan = coercionPlans.get(dto.getClass());
+    Path basePath = buildTarget.getBasePath();
+    for (ParamInfo info : plan.params) {
+      info.set(cellRoots, filesystem, basePath, dto, instance.get(info.getName()));
+    }
+    if (plan.deps != null) {
+      populateDeclaredDeps(plan.deps, declaredDeps, dto);
     }
     populateVisibilityPatterns(cellRoots, visibilityPatterns, instance, buildTarget);
   }
@@ -106,9 +112,10 @@ public class ConstructorArgMarshaller {
       ProjectFilesystem filesystem,
       BuildTarget buildTarget,
       Object dto) throws ParamInfoException {
+    Path basePath = buildTarget.getBasePath();
     for (ParamInfo info : getAllParamInfo(dto)) {
       if (info.isOptional()) {
-        info.set(cellRoots, filesystem, buildTarget.getBasePath(), dto, null);
+        info.set(cellRoots, filesystem, basePath, dto, null);
       }
     }
   }
@@ -117,18 +124,14 @@ public class ConstructorArgMarshaller {
       ParamInfo paramInfo,
       final ImmutableSet.Builder<BuildTarget> declaredDeps,
       Object dto) {
-
-    if (paramInfo.isDep()) {
-      paramInfo.traverse(
-          object -> {
-            if (!(object instanceof BuildTarget)) {
-              return;
-            }
-            declaredDeps.add((BuildTarget) object);
-          },
-          dto);
-
-    }
+    paramInfo.traverse(
+        object -> {
+          if (!(object instanceof BuildTarget)) {
+            return;
+          }
+          declaredDeps.add((BuildTarget) object);
+        },
+        dto);
   }
 
   @SuppressWarnings("unchecked")
@@ -164,26 +167,38 @@ public class ConstructorArgMarshaller {
     }
   }
 
-  ImmutableSet<ParamInfo> getAllParamInfo(Object dto) {
-    final Class<?> argClass = dto.getClass();
-    try {
-      return coercedTypes.get(argClass, () -> {
-        ImmutableSet.Builder<ParamInfo> allInfo = ImmutableSet.builder();
+  /**
+   * @return the parameters which can be set on the constructor arg {@code dto} from a build file.
+   */
+  public ImmutableSet<ParamInfo> getAllParamInfo(Object dto) {
+    return coercionPlans.get(dto.getClass()).allParamInfo;
+  }
 
-        for (Field field : argClass.getFields()) {
-          if (Modifier.isFinal(field.getModifiers())) {
-            continue;
-          }
-          allInfo.add(new ParamInfo(typeCoercerFactory, argClass, field));
+  /**
+   * Everything needed to populate a constructor arg class, worked out once per class: the fields
+   * to set, with their coercers and accessors resolved, and which of them holds the declared deps.
+   */
+  private static class CoercionPlan {
+    private final ImmutableSet<ParamInfo> allParamInfo;
+    private final ParamInfo[] params;
+    @Nullable private final ParamInfo deps;
+
+    private CoercionPlan(TypeCoercerFactory typeCoercerFactory, Class<?> argClass) {
+      ImmutableSet.Builder<ParamInfo> allInfo = ImmutableSet.builder();
+      ParamInfo deps = null;
+      for (Field field : argClass.getFields()) {
+        if (Modifier.isFinal(field.getModifiers())) {
+          continue;
         }
-
-        return allInfo.build();
-      });
-    } catch (ExecutionException e) {
-      // This gets thrown if we saw an error when loading the value. Nothing sane to do here, and
-      // we (previously, before using a cache), simply allowed a RuntimeException to bubble up.
-      // Maintain that behaviour.
-      throw new RuntimeException(e);
+        ParamInfo info = new ParamInfo(typeCoercerFactory, argClass, field);
+        allInfo.add(info);
+        if (info.getName().equals("deps") && info.isDep()) {
+          deps = info;
+        }
+      }
+      this.allParamInfo = allInfo.build();
+      this.params = allParamInfo.toArray(new ParamInfo[allParamInfo.size()]);
+      this.deps = deps;
     }
   }
 }
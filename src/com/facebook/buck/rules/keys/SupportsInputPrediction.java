@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.rules.keys;
+
+import com.facebook.buck.rules.BuildContext;
+import com.facebook.buck.rules.SourcePath;
+import com.facebook.buck.rules.SourcePathResolver;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+
+/**
+ * Used to tag a rule using dependency-file rule keys which can guess its inputs before it's built.
+ */
+public interface SupportsInputPrediction extends SupportsDependencyFileRuleKey {
+
+  /**
+   * Returns a best-effort prediction of the source paths that
+   * {@link #getInputsAfterBuildingLocally(BuildContext)} will list, computed without building the
+   * rule. This is only used to warm caches ahead of a manifest lookup, so it may both miss and
+   * over-report inputs.
+   */
+  ImmutableList<SourcePath> getLikelyInputsBeforeBuilding(SourcePathResolver resolver)
+      throws IOException;
+
+}
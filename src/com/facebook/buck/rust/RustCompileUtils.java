@@ -173,6 +173,7 @@ public class RustCompileUtils {
     // also need all dependencies available.
     if (crateType.needAllDeps()) {
       ImmutableList<Arg> nativeArgs = NativeLinkables.getTransitiveNativeLinkableInput(
+          resolver,
           cxxPlatform,
           ruledeps,
           depType,
@@ -55,17 +55,36 @@ public class FileScrubberStep implements Step {
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws InterruptedException {
     Path filePath = filesystem.resolve(input);
+    FileChannel channel = null;
     try {
+      // Consecutive contents scrubbers share a channel, rather than reopening the file for each.
+      // It's closed before any attribute scrubber runs, so that scrubber sees the final contents.
       for (FileScrubber scrubber : scrubbers) {
-        try (FileChannel channel = readWriteChannel(filePath)) {
-          if (scrubber instanceof FileContentsScrubber) {
-            ((FileContentsScrubber) scrubber).scrubFile(channel);
-          } else if (scrubber instanceof FileAttributesScrubber) {
-            ((FileAttributesScrubber) scrubber).scrubFileWithPath(filePath);
+        if (scrubber instanceof FileContentsScrubber) {
+          if (channel == null) {
+            channel = readWriteChannel(filePath);
           }
+          channel.position(0);
+          ((FileContentsScrubber) scrubber).scrubFile(channel);
+        } else if (scrubber instanceof FileAttributesScrubber) {
+          if (channel != null) {
+            channel.close();
+            channel = null;
+          }
+          ((FileAttributesScrubber) scrubber).scrubFileWithPath(filePath);
         }
       }
+      if (channel != null) {
+        channel.close();
+      }
     } catch (IOException | FileContentsScrubber.ScrubException e) {
+      try {
+        if (channel != null) {
+          channel.close();
+        }
+      } catch (IOException closeException) {
+        e.addSuppressed(closeException);
+      }
       context.logError(e, "Error scrubbing non-deterministic metadata from %s", filePath);
       return StepExecutionResult.ERROR;
     }
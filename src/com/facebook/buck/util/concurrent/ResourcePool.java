@@ -27,10 +27,13 @@ import com.google.common.util.concurrent.SettableFuture;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -44,8 +47,8 @@ import javax.annotation.concurrent.GuardedBy;
  *
  * Resources are lazily created up till a fixed maximum. If more than max resources are
  * requested the associated 'requests' are queued up in the resourceRequests field. As soon as
- * a resource is returned it will be used to satisfy the first pending request, otherwise it
- * is stored in the parkedResources queue.
+ * a resource is returned it will be used to satisfy the pending request with the highest
+ * priority (the oldest one among equals), otherwise it is stored in the parkedResources queue.
  *
  * If the resourceSupplier throws a RuntimeException the Future associated with the failed attempt
  * to create the resource will contain the relevant exception. Any subsequent requests the pool
@@ -68,7 +71,9 @@ public class ResourcePool<R extends AutoCloseable> implements AutoCloseable {
   @GuardedBy("this")
   private final Deque<R> parkedResources;
   @GuardedBy("this")
-  private final Deque<SettableFuture<Void>> resourceRequests;
+  private final Queue<ResourceRequest> resourceRequests;
+  @GuardedBy("this")
+  private long resourceRequestsCount;
   private final AtomicBoolean closing;
   @GuardedBy("this")
   private @Nullable ListenableFuture<Void> shutdownFuture;
@@ -92,7 +97,10 @@ public class ResourcePool<R extends AutoCloseable> implements AutoCloseable {
     this.resourceSupplier = resourceSupplier;
     this.createdResources = new ArrayList<>();
     this.parkedResources = new ArrayDeque<>();
-    this.resourceRequests = new ArrayDeque<>();
+    this.resourceRequests = new PriorityQueue<>(
+        Comparator.comparingInt((ResourceRequest request) -> request.priority).reversed()
+            .thenComparingLong(request -> request.sequenceNumber));
+    this.resourceRequestsCount = 0;
     this.closing = new AtomicBoolean(false);
     this.shutdownFuture = null;
     this.pendingWork = new HashSet<>();
@@ -104,17 +112,31 @@ public class ResourcePool<R extends AutoCloseable> implements AutoCloseable {
    * @return a {@link ListenableFuture} containing the result of the processing. The future will be
    *         cancelled if the {@link ResourcePool#close()} method is called.
    */
-  public synchronized <T> ListenableFuture<T> scheduleOperationWithResource(
+  public <T> ListenableFuture<T> scheduleOperationWithResource(
       ThrowingFunction<R, T> withResource,
       final ListeningExecutorService executorService) {
+    return scheduleOperationWithResource(withResource, executorService, 0);
+  }
+
+  /**
+   * @param executorService where to perform the resource processing. Should really be a "real"
+   *                        executor (not a directExecutor).
+   * @param priority operations with a higher priority get the next free resource first.
+   * @return a {@link ListenableFuture} containing the result of the processing. The future will be
+   *         cancelled if the {@link ResourcePool#close()} method is called.
+   */
+  public synchronized <T> ListenableFuture<T> scheduleOperationWithResource(
+      ThrowingFunction<R, T> withResource,
+      final ListeningExecutorService executorService,
+      final int priority) {
     Preconditions.checkState(!closing.get());
 
     final ListenableFuture<T> futureWork = Futures.transformAsync(
-        initialSchedule(),
+        initialSchedule(priority),
         new AsyncFunction<Void, T>() {
           @Override
           public ListenableFuture<T> apply(Void input) throws Exception {
-            Either<R, ListenableFuture<Void>> resourceRequest = requestResource();
+            Either<R, ListenableFuture<Void>> resourceRequest = requestResource(priority);
             if (resourceRequest.isLeft()) {
               R resource = resourceRequest.getLeft();
               boolean resourceIsDefunct = false;
@@ -148,7 +170,7 @@ public class ResourcePool<R extends AutoCloseable> implements AutoCloseable {
     return Futures.nonCancellationPropagating(futureWork);
   }
 
-  private synchronized ListenableFuture<Void> initialSchedule() {
+  private synchronized ListenableFuture<Void> initialSchedule(int priority) {
     // If we'll (potentially) be allowed to create a resource or there are some parked then we'll
     // take the chance and attempt to run immediately.
     if (allowedToCreateResource() || !parkedResources.isEmpty()) {
@@ -157,24 +179,24 @@ public class ResourcePool<R extends AutoCloseable> implements AutoCloseable {
     // All possible resources are currently occupied. Because we're in a synchronized block, even
     // if one becomes available immediately after this call returns it will simply make this future
     // runnable, so we'll be able to progress.
-    return scheduleNewResourceRequest();
+    return scheduleNewResourceRequest(priority);
   }
 
-  private synchronized Either<R, ListenableFuture<Void>> requestResource() {
+  private synchronized Either<R, ListenableFuture<Void>> requestResource(int priority) {
     Optional<R> resource = obtainResource();
     if (resource.isPresent()) {
       return Either.ofLeft(resource.get());
     }
-    return Either.ofRight(scheduleNewResourceRequest());
+    return Either.ofRight(scheduleNewResourceRequest(priority));
   }
 
-  private synchronized ListenableFuture<Void> scheduleNewResourceRequest() {
+  private synchronized ListenableFuture<Void> scheduleNewResourceRequest(int priority) {
     if (closing.get()) {
       return Futures.immediateCancelledFuture();
     }
-    SettableFuture<Void> resourceFuture = SettableFuture.create();
-    resourceRequests.add(resourceFuture);
-    return resourceFuture;
+    ResourceRequest request = new ResourceRequest(priority, resourceRequestsCount++);
+    resourceRequests.add(request);
+    return request.future;
   }
 
   private synchronized Optional<R> obtainResource() {
@@ -204,13 +226,13 @@ public class ResourcePool<R extends AutoCloseable> implements AutoCloseable {
 
   private synchronized void scheduleNextRequest() {
     while (true) {
-      SettableFuture<Void> nextRequest = resourceRequests.pollFirst();
+      ResourceRequest nextRequest = resourceRequests.poll();
       // Queue empty.
       if (nextRequest == null) {
         return;
       }
       // A false return value means the future was failed/cancelled, so we ignore it.
-      if (nextRequest.set(null)) {
+      if (nextRequest.future.set(null)) {
         return;
       }
     }
@@ -243,8 +265,8 @@ public class ResourcePool<R extends AutoCloseable> implements AutoCloseable {
     closing.set(true);
 
     // Unblock all waiting requests.
-    for (SettableFuture<Void> request : resourceRequests) {
-      request.set(null);
+    for (ResourceRequest request : resourceRequests) {
+      request.future.set(null);
     }
     resourceRequests.clear();
 
@@ -290,6 +312,18 @@ public class ResourcePool<R extends AutoCloseable> implements AutoCloseable {
         executorService);
   }
 
+  private static class ResourceRequest {
+    private final int priority;
+    private final long sequenceNumber;
+    private final SettableFuture<Void> future;
+
+    public ResourceRequest(int priority, long sequenceNumber) {
+      this.priority = priority;
+      this.sequenceNumber = sequenceNumber;
+      this.future = SettableFuture.create();
+    }
+  }
+
   /**
    * Describes how to handle errors that take place during resource usage.
    */
@@ -24,6 +24,7 @@ import static org.junit.Assert.assertTrue;
 import com.facebook.buck.testutil.FakeProjectFilesystem;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 
@@ -81,6 +82,27 @@ public class ExopackageInstallerTest {
         toDeleteBuilder.build());
   }
 
+  @Test
+  public void testScanOtherPackages() {
+    String output =
+        "com.example.app.test/secondary-dex/secondary-0fa1f9cfb3c0effa8000d2d86d267985b158df9f" +
+            ".dex.jar\r\n" +
+        "com.example.app/secondary-dex/secondary-2add18058985241f7999eb026868cebb9ef63379" +
+            ".dex.jar\r\n" +
+        "com.example.other/secondary-dex/secondary-0fa1f9cfb3c0effa8000d2d86d267985b158df9f" +
+            ".dex.jar\r\n" +
+        "with space/secondary-dex/secondary-97d21318d1d5dd298f6ee932916c6ee949fe760e" +
+            ".dex.jar\r\n" +
+        "";
+
+    assertEquals(
+        ImmutableMap.of(
+            "secondary-0fa1f9cfb3c0effa8000d2d86d267985b158df9f.dex.jar",
+            "com.example.app.test/secondary-dex/" +
+                "secondary-0fa1f9cfb3c0effa8000d2d86d267985b158df9f.dex.jar"),
+        ExopackageInstaller.processOtherPackagesLsOutput(output, "com.example.app"));
+  }
+
   @Test
   public void testParsePathAndPackageInfo() {
     String lines =
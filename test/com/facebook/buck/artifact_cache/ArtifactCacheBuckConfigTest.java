@@ -183,6 +183,24 @@ public class ArtifactCacheBuckConfigTest {
     assertThat(dirCacheConfig.getMaxSizeBytes(), Matchers.equalTo(Optional.of(1022L)));
   }
 
+  @Test
+  public void testDefaultDirCacheEntryWithoutDirMode() throws IOException {
+    ArtifactCacheBuckConfig config = createFromText(
+        "[cache]",
+        "mode = http",
+        "dir = cache_dir",
+        "dir_max_size = 1022B");
+    DirCacheEntry dirCacheConfig = config.getDefaultDirCacheEntry();
+
+    assertThat(
+        dirCacheConfig.getCacheDir(),
+        Matchers.equalTo(Paths.get("cache_dir").toAbsolutePath()));
+    assertThat(
+        dirCacheConfig.getCacheReadMode(),
+        Matchers.is(ArtifactCacheBuckConfig.CacheReadMode.readwrite));
+    assertThat(dirCacheConfig.getMaxSizeBytes(), Matchers.equalTo(Optional.of(1022L)));
+  }
+
   @Test
   public void testMultipleDirCacheSettings() throws IOException {
     ArtifactCacheBuckConfig config = createFromText(
@@ -350,4 +350,28 @@ public class BserDeserializerTest {
     BserDeserializer deserializer = new BserDeserializer(BserDeserializer.KeyOrdering.UNSORTED);
     deserializer.deserializeBserValue(getByteStream("0001030701030103030323"));
   }
+
+  @Test
+  public void deserializeConsecutiveValuesFromStream() throws IOException {
+    BserDeserializer deserializer = new BserDeserializer(BserDeserializer.KeyOrdering.UNSORTED);
+    InputStream stream = getByteStream(
+        "0001030F000302020303666F6F020303666F6F" +
+        "00010306020303626172");
+    List<Object> first = (List<Object>) deserializer.deserializeBserValue(stream);
+    assertThat(first, contains("foo", "foo"));
+    assertThat(first.get(0), sameInstance(first.get(1)));
+    assertThat(deserializer.deserializeBserValue(stream), equalTo("bar"));
+  }
+
+  @Test
+  public void throwIfLaterValueLengthTooShort() throws IOException {
+    thrown.expect(BserDeserializer.BserEofException.class);
+    thrown.expectMessage("Prematurely reached end of BSER buffer");
+    BserDeserializer deserializer = new BserDeserializer(BserDeserializer.KeyOrdering.UNSORTED);
+    InputStream stream = getByteStream(
+        "0001030F000302020303666F6F020303666F6F" +
+        "0001030600030202030366");
+    deserializer.deserializeBserValue(stream);
+    deserializer.deserializeBserValue(stream);
+  }
 }
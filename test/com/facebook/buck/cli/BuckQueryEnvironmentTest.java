@@ -34,13 +34,18 @@ import com.facebook.buck.query.QueryException;
 import com.facebook.buck.query.QueryTarget;
 import com.facebook.buck.rules.Cell;
 import com.facebook.buck.rules.ConstructorArgMarshaller;
+import com.facebook.buck.rules.TargetNode;
 import com.facebook.buck.rules.TestCellBuilder;
 import com.facebook.buck.rules.coercer.DefaultTypeCoercerFactory;
 import com.facebook.buck.testutil.TestConsole;
+import com.facebook.buck.testutil.WatchEventsForTests;
 import com.facebook.buck.testutil.integration.ProjectWorkspace;
 import com.facebook.buck.testutil.integration.TemporaryPaths;
 import com.facebook.buck.testutil.integration.TestDataHelper;
+import com.facebook.buck.util.HumanReadableException;
+import com.facebook.buck.util.MoreCollectors;
 import com.facebook.buck.util.ObjectMappers;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -50,9 +55,14 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
 import java.util.concurrent.Executors;
 
 public class BuckQueryEnvironmentTest {
@@ -60,7 +70,11 @@ public class BuckQueryEnvironmentTest {
   @Rule
   public TemporaryPaths tmp = new TemporaryPaths();
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   private BuckQueryEnvironment buckQueryEnvironment;
+  private Parser parser;
   private Path cellRoot;
   private ListeningExecutorService executor;
   private PerBuildState parserState;
@@ -71,6 +85,7 @@ public class BuckQueryEnvironmentTest {
 
   @Before
   public void setUp() throws IOException, InterruptedException {
+    executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
     ProjectWorkspace workspace = TestDataHelper.createProjectWorkspaceForScenario(
         this,
         "query_command",
@@ -83,7 +98,7 @@ public class BuckQueryEnvironmentTest {
     TestConsole console = new TestConsole();
     DefaultTypeCoercerFactory typeCoercerFactory = new DefaultTypeCoercerFactory(
         ObjectMappers.newDefaultInstance());
-    Parser parser = new Parser(
+    parser = new Parser(
         new BroadcastEventListener(),
         cell.getBuckConfig().getView(ParserConfig.class),
         typeCoercerFactory, new ConstructorArgMarshaller(typeCoercerFactory));
@@ -106,7 +121,6 @@ public class BuckQueryEnvironmentTest {
     buckQueryEnvironment =
         BuckQueryEnvironment.from(cell, ownersReportBuilder, parserState, targetPatternEvaluator);
     cellRoot = workspace.getDestPath();
-    executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
   }
 
   @After
@@ -147,4 +161,118 @@ public class BuckQueryEnvironmentTest {
         buckQueryEnvironment.getTargetsMatchingPattern("//example:", executor),
         is(equalTo(expectedTargets)));
   }
+
+  @Test
+  public void testBuildTransitiveClosureOnlyLoadsNodesUpToMaxDepth()
+      throws QueryException, InterruptedException {
+    buckQueryEnvironment.buildTransitiveClosure(
+        ImmutableSet.of(createQueryBuildTarget("//example", "one")),
+        1,
+        executor);
+    ImmutableSet<BuildTarget> expectedTargets = ImmutableSet.of(
+        BuildTarget.builder(cellRoot, "//example", "one").build(),
+        BuildTarget.builder(cellRoot, "//example", "two").build(),
+        BuildTarget.builder(cellRoot, "//example", "three").build());
+    assertThat(
+        buckQueryEnvironment.getTargetGraph().getNodes().stream()
+            .map(TargetNode::getBuildTarget)
+            .collect(MoreCollectors.toImmutableSet()),
+        is(equalTo(expectedTargets)));
+  }
+
+  @Test
+  public void testBuildTransitiveClosureReportsCycles() throws Exception {
+    writeBuildFile(
+        "cycle",
+        "java_library(name = 'a', deps = [':b'])\n" +
+            "java_library(name = 'b', deps = [':a'])\n");
+
+    thrown.expect(HumanReadableException.class);
+    thrown.expectMessage("Cycle found: //cycle:a -> //cycle:b -> //cycle:a");
+    buckQueryEnvironment.buildTransitiveClosure(
+        ImmutableSet.of(createQueryBuildTarget("//cycle", "a")),
+        Integer.MAX_VALUE,
+        executor);
+  }
+
+  @Test
+  public void testGetTargetGraphReportsCyclesLoadedOneEdgeAtATime() throws Exception {
+    writeBuildFile(
+        "cycle",
+        "java_library(name = 'a', deps = [':b'])\n" +
+            "java_library(name = 'b', deps = [':a'])\n");
+    buckQueryEnvironment.getFwdDeps(ImmutableSet.of(createQueryBuildTarget("//cycle", "a")));
+    buckQueryEnvironment.getFwdDeps(ImmutableSet.of(createQueryBuildTarget("//cycle", "b")));
+
+    thrown.expect(HumanReadableException.class);
+    thrown.expectMessage("Cycle found");
+    buckQueryEnvironment.getTargetGraph();
+  }
+
+  @Test
+  public void testBuildTransitiveClosureReportsCyclesClosedByALaterCall() throws Exception {
+    writeBuildFile(
+        "cycle",
+        "java_library(name = 'a', deps = [':b'])\n" +
+            "java_library(name = 'b', deps = [':a'])\n");
+    buckQueryEnvironment.buildTransitiveClosure(
+        ImmutableSet.of(createQueryBuildTarget("//cycle", "b")),
+        1,
+        executor);
+
+    thrown.expect(HumanReadableException.class);
+    thrown.expectMessage("Cycle found");
+    buckQueryEnvironment.buildTransitiveClosure(
+        ImmutableSet.of(createQueryBuildTarget("//cycle", "a")),
+        1,
+        executor);
+  }
+
+  @Test
+  public void testBuildTransitiveClosureReportsDepsWhichAreNotVisible() throws Exception {
+    writeBuildFile("hidden", "java_library(name = 'private')\n");
+    writeBuildFile("viewer", "java_library(name = 'viewer', deps = ['//hidden:private'])\n");
+
+    thrown.expect(HumanReadableException.class);
+    thrown.expectMessage("//viewer:viewer depends on //hidden:private, which is not visible");
+    buckQueryEnvironment.buildTransitiveClosure(
+        ImmutableSet.of(createQueryBuildTarget("//viewer", "viewer")),
+        Integer.MAX_VALUE,
+        executor);
+  }
+
+  @Test
+  public void testGetFileOwnersReportsTheOwnersDefinedByTheCurrentBuildFile() throws Exception {
+    writeBuildFile(
+        "owned",
+        "java_library(name = 'a', srcs = ['A.java'])\n" +
+            "java_library(name = 'b', srcs = ['B.java'])\n");
+    Files.createFile(cellRoot.resolve("owned/A.java"));
+    Files.createFile(cellRoot.resolve("owned/B.java"));
+    ImmutableList<String> files = ImmutableList.of("owned/A.java");
+
+    ImmutableSet<QueryTarget> expectedTargets =
+        ImmutableSet.of(createQueryBuildTarget("//owned", "a"));
+    assertThat(buckQueryEnvironment.getFileOwners(files, executor), is(equalTo(expectedTargets)));
+    // The nodes of the build file are cached now, so they are looked up rather than parsed.
+    assertThat(buckQueryEnvironment.getFileOwners(files, executor), is(equalTo(expectedTargets)));
+
+    writeBuildFile(
+        "owned",
+        "java_library(name = 'a', srcs = ['B.java'])\n" +
+            "java_library(name = 'c', srcs = ['A.java'])\n");
+    parser.onFileSystemChange(
+        WatchEventsForTests.createPathEvent(
+            Paths.get("owned/BUCK"),
+            StandardWatchEventKinds.ENTRY_MODIFY));
+    assertThat(
+        buckQueryEnvironment.getFileOwners(files, executor),
+        is(equalTo(ImmutableSet.of(createQueryBuildTarget("//owned", "c")))));
+  }
+
+  private void writeBuildFile(String basePath, String contents) throws IOException {
+    Path buildFile = cellRoot.resolve(basePath).resolve("BUCK");
+    Files.createDirectories(buildFile.getParent());
+    Files.write(buildFile, contents.getBytes(StandardCharsets.UTF_8));
+  }
 }
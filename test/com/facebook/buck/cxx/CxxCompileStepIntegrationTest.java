@@ -34,6 +34,7 @@ import com.facebook.buck.step.ExecutionContext;
 import com.facebook.buck.step.TestExecutionContext;
 import com.facebook.buck.testutil.TestConsole;
 import com.facebook.buck.testutil.integration.TemporaryPaths;
+import com.facebook.buck.util.MoreCollectors;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -48,6 +49,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class CxxCompileStepIntegrationTest {
 
@@ -110,7 +112,8 @@ public class CxxCompileStepIntegrationTest {
             CxxPlatformUtils.DEFAULT_ASSEMBLER_DEBUG_PATH_SANITIZER,
             scratchDir,
             true,
-            compiler);
+            compiler,
+            Optional.empty());
 
     // Execute the archive step and verify it ran successfully.
     ExecutionContext executionContext = TestExecutionContext.newInstance();
@@ -193,7 +196,8 @@ public class CxxCompileStepIntegrationTest {
             CxxPlatformUtils.DEFAULT_ASSEMBLER_DEBUG_PATH_SANITIZER,
             scratchDir,
             true,
-            compiler);
+            compiler,
+            Optional.empty());
 
     // Execute the archive step and verify it ran successfully.
     ExecutionContext executionContext = TestExecutionContext.newInstance();
@@ -213,4 +217,90 @@ public class CxxCompileStepIntegrationTest {
     Files.deleteIfExists(output);
   }
 
+
+  @Test
+  public void reusesObjectsWithTheSamePreprocessedOutput() throws Exception {
+    ProjectFilesystem filesystem = new ProjectFilesystem(tmp.getRoot());
+    Path cacheDir = tmp.newFolder("dir-cache");
+    CxxBuckConfig cxxBuckConfig = new CxxBuckConfig(
+        FakeBuckConfig.builder()
+            .setFilesystem(filesystem)
+            .setSections(
+                "[cxx]",
+                "cache_preprocessed_output = true",
+                "[cache]",
+                "dir = " + cacheDir,
+                "dir_max_size = 10MB")
+            .build());
+    CxxPlatform platform = CxxPlatformUtils.build(cxxBuckConfig);
+
+    BuildRuleResolver resolver =
+        new BuildRuleResolver(TargetGraph.EMPTY, new DefaultTargetNodeToBuildRuleTransformer());
+    SourcePathResolver pathResolver = new SourcePathResolver(new SourcePathRuleFinder(resolver));
+    Compiler compiler = platform.getCc().resolve(resolver);
+    ImmutableList<String> compilerCommandPrefix = compiler.getCommandPrefix(pathResolver);
+    Path output = filesystem.resolve(Paths.get("output.o"));
+    Path depFile = filesystem.resolve(Paths.get("output.dep"));
+    Path relativeInput = Paths.get("input.c");
+    Path scratchDir = filesystem.getPath("scratchDir");
+    filesystem.mkdirs(scratchDir);
+
+    CxxPreprocessAndCompileStep step =
+        new CxxPreprocessAndCompileStep(
+            filesystem,
+            CxxPreprocessAndCompileStep.Operation.PREPROCESS_AND_COMPILE,
+            output,
+            depFile,
+            relativeInput,
+            CxxSource.Type.C,
+            Optional.of(
+                new CxxPreprocessAndCompileStep.ToolCommand(
+                    compilerCommandPrefix,
+                    ImmutableList.of(),
+                    ImmutableMap.of(),
+                    Optional.empty())),
+            Optional.of(
+                new CxxPreprocessAndCompileStep.ToolCommand(
+                    compilerCommandPrefix,
+                    ImmutableList.of(),
+                    ImmutableMap.of(),
+                    Optional.empty())),
+            HeaderPathNormalizer.empty(pathResolver),
+            CxxPlatformUtils.DEFAULT_COMPILER_DEBUG_PATH_SANITIZER,
+            CxxPlatformUtils.DEFAULT_ASSEMBLER_DEBUG_PATH_SANITIZER,
+            scratchDir,
+            false,
+            compiler,
+            cxxBuckConfig.getPreprocessedOutputCache());
+    ExecutionContext executionContext = TestExecutionContext.newInstance();
+
+    // The first compilation stores the object in the dir cache.
+    filesystem.writeContentsToPath("int main() { return 0; } /* first */\n", relativeInput);
+    assertEquals(0, step.execute(executionContext).getExitCode());
+    assertThat(filesystem, pathExists(depFile));
+    ImmutableList<Path> cached;
+    try (Stream<Path> paths = Files.walk(cacheDir)) {
+      cached =
+          paths
+              .filter(Files::isRegularFile)
+              .filter(path -> !path.toString().endsWith(".metadata"))
+              .collect(MoreCollectors.toImmutableList());
+    }
+    assertThat(cached, Matchers.hasSize(1));
+
+    // Replace the cached object, so we can tell whether it's used.
+    Files.write(cached.get(0), "cached".getBytes(StandardCharsets.UTF_8));
+
+    // A comment-only change preprocesses to the same source, so the cached object is used.
+    Files.delete(output);
+    filesystem.writeContentsToPath("int main() { return 0; } /* second */\n", relativeInput);
+    assertEquals(0, step.execute(executionContext).getExitCode());
+    assertEquals("cached", new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+
+    // A change to the code itself compiles the source again.
+    filesystem.writeContentsToPath("int main() { return 1; }\n", relativeInput);
+    assertEquals(0, step.execute(executionContext).getExitCode());
+    assertNotEquals("cached", new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+  }
+
 }
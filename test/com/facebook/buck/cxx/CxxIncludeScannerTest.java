@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.rules.BuildRuleResolver;
+import com.facebook.buck.rules.DefaultTargetNodeToBuildRuleTransformer;
+import com.facebook.buck.rules.PathSourcePath;
+import com.facebook.buck.rules.SourcePath;
+import com.facebook.buck.rules.SourcePathResolver;
+import com.facebook.buck.rules.SourcePathRuleFinder;
+import com.facebook.buck.rules.TargetGraph;
+import com.facebook.buck.testutil.integration.TemporaryPaths;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+public class CxxIncludeScannerTest {
+
+  @Rule
+  public TemporaryPaths tmp = new TemporaryPaths();
+
+  private ProjectFilesystem filesystem;
+  private SourcePathResolver pathResolver;
+
+  @Before
+  public void setUp() {
+    filesystem = new ProjectFilesystem(tmp.getRoot());
+    pathResolver = new SourcePathResolver(new SourcePathRuleFinder(
+        new BuildRuleResolver(TargetGraph.EMPTY, new DefaultTargetNodeToBuildRuleTransformer())
+    ));
+    CxxIncludeScanner.invalidateAll();
+  }
+
+  @Test
+  public void parseIncludeDirective() {
+    assertEquals("\"foo.h", CxxIncludeScanner.parseIncludeDirective("#include \"foo.h\""));
+    assertEquals("<foo/bar.h", CxxIncludeScanner.parseIncludeDirective("  #  import <foo/bar.h>"));
+    assertEquals("<foo.h", CxxIncludeScanner.parseIncludeDirective("#include_next <foo.h>"));
+    assertNull(CxxIncludeScanner.parseIncludeDirective("#include FOO_H"));
+    assertNull(CxxIncludeScanner.parseIncludeDirective("#define FOO \"foo.h\""));
+    assertNull(CxxIncludeScanner.parseIncludeDirective("// #include \"foo.h\""));
+    assertNull(CxxIncludeScanner.parseIncludeDirective("#include <>"));
+  }
+
+  @Test
+  public void followsIncludesThroughSymlinkTreesAndHeaderDirs() throws IOException {
+    filesystem.mkdirs(Paths.get("src"));
+    filesystem.mkdirs(Paths.get("lib"));
+    filesystem.mkdirs(Paths.get("dir"));
+    filesystem.writeContentsToPath(
+        "#include <lib/a.h>\n#include \"local.h\"\n",
+        Paths.get("src/main.cpp"));
+    filesystem.writeContentsToPath("#pragma once\n", Paths.get("src/local.h"));
+    filesystem.writeContentsToPath(
+        "#include \"b.h\"\n#include <dir.h>\n#include <missing.h>\n",
+        Paths.get("lib/a.h"));
+    filesystem.writeContentsToPath("#include <lib/a.h>\n", Paths.get("lib/b.h"));
+    filesystem.writeContentsToPath("", Paths.get("dir/dir.h"));
+
+    SourcePath a = new PathSourcePath(filesystem, Paths.get("lib/a.h"));
+    SourcePath b = new PathSourcePath(filesystem, Paths.get("lib/b.h"));
+    CxxHeaders tree =
+        CxxSymlinkTreeHeaders.builder()
+            .setIncludeType(CxxPreprocessables.IncludeType.LOCAL)
+            .setRoot(new PathSourcePath(filesystem, Paths.get("buck-out/tree")))
+            .putNameToPathMap(Paths.get("lib/a.h"), a)
+            .putNameToPathMap(Paths.get("lib/b.h"), b)
+            .build();
+    CxxHeaders dir =
+        CxxHeadersDir.of(
+            CxxPreprocessables.IncludeType.SYSTEM,
+            new PathSourcePath(filesystem, Paths.get("dir")));
+
+    ImmutableSet<SourcePath> found =
+        CxxIncludeScanner.scan(
+            pathResolver,
+            ImmutableList.of(filesystem.resolve("src/main.cpp")),
+            ImmutableList.of(tree, dir));
+
+    // Headers reached outside the symlink trees are followed but aren't reported.
+    assertThat(found, Matchers.contains(a, b));
+  }
+
+  @Test
+  public void rescansFilesWhichChanged() throws IOException {
+    filesystem.writeContentsToPath("#include \"a.h\"\n", Paths.get("a.cpp"));
+    assertThat(
+        CxxIncludeScanner.getIncludeDirectives(filesystem.resolve("a.cpp")),
+        Matchers.contains("\"a.h"));
+
+    filesystem.writeContentsToPath("#include \"a.h\"\n#include <b.h>\n", Paths.get("a.cpp"));
+    assertThat(
+        CxxIncludeScanner.getIncludeDirectives(filesystem.resolve("a.cpp")),
+        Matchers.contains("\"a.h", "<b.h"));
+  }
+
+}
@@ -36,10 +36,13 @@ import com.facebook.buck.cli.FakeBuckConfig;
 import com.facebook.buck.io.ProjectFilesystem;
 import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.model.BuildTargetFactory;
+import com.facebook.buck.model.FlavorDomain;
 import com.facebook.buck.rules.BuildContext;
 import com.facebook.buck.rules.BuildRule;
 import com.facebook.buck.rules.BuildRuleResolver;
 import com.facebook.buck.rules.BuildableContext;
+import com.facebook.buck.rules.CommandTool;
+import com.facebook.buck.rules.ConstantToolProvider;
 import com.facebook.buck.rules.DefaultBuildTargetSourcePath;
 import com.facebook.buck.rules.DefaultTargetNodeToBuildRuleTransformer;
 import com.facebook.buck.rules.DependencyAggregationTestUtil;
@@ -1491,6 +1494,59 @@ public class CxxLibraryDescriptionTest {
     verifySourcePaths(ruleResolver);
   }
 
+  @Test
+  public void platformCanDisableHeaderSymlinkTreesInFavorOfHeaderMaps() throws Exception {
+    PreprocessorProvider clang =
+        new PreprocessorProvider(
+            new ConstantToolProvider(new CommandTool.Builder().build()),
+            CxxToolProvider.Type.CLANG);
+    CxxPlatform cxxPlatform =
+        CxxPlatform.builder()
+            .from(CxxPlatformUtils.DEFAULT_PLATFORM)
+            .setCpp(clang)
+            .setCxxpp(clang)
+            .setHeadersSymlinksEnabled(false)
+            .build();
+    BuildTarget target = BuildTargetFactory.newInstance("//:rule");
+    CxxLibraryBuilder libraryBuilder =
+        new CxxLibraryBuilder(
+            target,
+            cxxBuckConfig,
+            FlavorDomain.of("C/C++ Platform", cxxPlatform))
+            .setHeaders(ImmutableSortedSet.of(new FakeSourcePath("foo.h")))
+            .setSrcs(ImmutableSortedSet.of(SourceWithFlags.of(new FakeSourcePath("foo.cpp"))));
+    TargetGraph targetGraph = TargetGraphFactory.newInstance(libraryBuilder.build());
+    BuildRuleResolver resolver =
+        new BuildRuleResolver(targetGraph, new DefaultTargetNodeToBuildRuleTransformer());
+
+    BuildRule headers =
+        resolver.requireRule(
+            CxxDescriptionEnhancer.createHeaderSymlinkTreeTarget(
+                target,
+                HeaderVisibility.PRIVATE,
+                cxxPlatform.getFlavor()));
+    assertThat(headers, instanceOf(DirectHeaderMap.class));
+
+    // Rules can still ask for symlinks explicitly.
+    BuildTarget symlinkTarget = BuildTargetFactory.newInstance("//:symlinks");
+    CxxLibraryBuilder symlinkBuilder =
+        new CxxLibraryBuilder(
+            symlinkTarget,
+            cxxBuckConfig,
+            FlavorDomain.of("C/C++ Platform", cxxPlatform))
+            .setHeaders(ImmutableSortedSet.of(new FakeSourcePath("bar.h")))
+            .setXcodePrivateHeadersSymlinks(true);
+    targetGraph = TargetGraphFactory.newInstance(symlinkBuilder.build());
+    resolver = new BuildRuleResolver(targetGraph, new DefaultTargetNodeToBuildRuleTransformer());
+    assertThat(
+        resolver.requireRule(
+            CxxDescriptionEnhancer.createHeaderSymlinkTreeTarget(
+                symlinkTarget,
+                HeaderVisibility.PRIVATE,
+                cxxPlatform.getFlavor())),
+        instanceOf(HeaderSymlinkTreeWithHeaderMap.class));
+  }
+
   /**
    * Verify that all source paths are resolvable, which wouldn't be the case if `cxx_genrule`
    * outputs were not handled correctly.
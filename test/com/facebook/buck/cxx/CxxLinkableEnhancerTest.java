@@ -31,6 +31,7 @@ import com.facebook.buck.cli.FakeBuckConfig;
 import com.facebook.buck.io.ProjectFilesystem;
 import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.model.BuildTargetFactory;
+import com.facebook.buck.model.ImmutableFlavor;
 import com.facebook.buck.rules.BuildRule;
 import com.facebook.buck.rules.BuildRuleParams;
 import com.facebook.buck.rules.BuildRuleResolver;
@@ -38,12 +39,14 @@ import com.facebook.buck.rules.DefaultTargetNodeToBuildRuleTransformer;
 import com.facebook.buck.rules.FakeBuildRule;
 import com.facebook.buck.rules.FakeBuildRuleParamsBuilder;
 import com.facebook.buck.rules.FakeSourcePath;
+import com.facebook.buck.rules.HashedFileTool;
 import com.facebook.buck.rules.PathSourcePath;
 import com.facebook.buck.rules.SourcePath;
 import com.facebook.buck.rules.SourcePathResolver;
 import com.facebook.buck.rules.SourcePathRuleFinder;
 import com.facebook.buck.rules.TargetGraph;
 import com.facebook.buck.rules.args.Arg;
+import com.facebook.buck.rules.args.FileListableLinkerInputArg;
 import com.facebook.buck.rules.args.SourcePathArg;
 import com.facebook.buck.rules.args.StringArg;
 import com.facebook.buck.rules.coercer.FrameworkPath;
@@ -57,6 +60,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 
+import org.hamcrest.Matchers;
 import org.junit.Test;
 
 import java.nio.file.Path;
@@ -524,6 +528,7 @@ public class CxxLinkableEnhancerTest {
     // in the bottom input.
     NativeLinkableInput totalInput =
         NativeLinkables.getTransitiveNativeLinkableInput(
+            new BuildRuleResolver(TargetGraph.EMPTY, new DefaultTargetNodeToBuildRuleTransformer()),
             cxxPlatform,
             ImmutableList.of(top),
             Linker.LinkableDepType.STATIC,
@@ -634,6 +639,96 @@ public class CxxLinkableEnhancerTest {
         hasItem(bundleLoaderRule));
   }
 
+  @Test
+  public void distributedThinLtoLinksObjectsThroughBackends() throws Exception {
+    CxxBuckConfig cxxBuckConfig =
+        new CxxBuckConfig(
+            FakeBuckConfig.builder()
+                .setSections(
+                    ImmutableMap.of("cxx", ImmutableMap.of("distributed_thin_lto", "true")))
+                .build());
+    BuildTarget target = BuildTargetFactory.newInstance("//foo:bar");
+    BuildRuleResolver ruleResolver =
+        new BuildRuleResolver(TargetGraph.EMPTY, new DefaultTargetNodeToBuildRuleTransformer());
+    SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(ruleResolver);
+    SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
+    BuildRuleParams params = new FakeBuildRuleParamsBuilder(target).build();
+
+    CxxPreprocessAndCompile a = createCompileRule(ruleResolver, pathResolver, "a");
+    CxxPreprocessAndCompile b = createCompileRule(ruleResolver, pathResolver, "b");
+    CxxPreprocessAndCompile c = createCompileRule(ruleResolver, pathResolver, "c");
+    Archive archive =
+        ruleResolver.addToIndex(
+            Archive.from(
+                BuildTargetFactory.newInstance("//foo:lib#static"),
+                params,
+                ruleFinder,
+                CxxPlatformUtils.DEFAULT_PLATFORM,
+                Archive.Contents.NORMAL,
+                Paths.get("libfoo.a"),
+                ImmutableList.of(b.getSourcePathToOutput(), c.getSourcePathToOutput())));
+
+    CxxLink link =
+        CxxLinkableEnhancer.createCxxLinkableBuildRule(
+            cxxBuckConfig,
+            CxxPlatformUtils.DEFAULT_PLATFORM,
+            params,
+            ruleResolver,
+            ruleFinder,
+            target,
+            Paths.get("foo"),
+            ImmutableList.of(
+                FileListableLinkerInputArg.withSourcePathArg(
+                    SourcePathArg.of(a.getSourcePathToOutput())),
+                archive.toArg()),
+            Linker.LinkableDepType.STATIC,
+            Optional.empty());
+
+    // The indexing link runs over the original objects, with the archive's members linked lazily.
+    CxxThinLtoIndex index =
+        ruleResolver.getRuleWithType(
+            target.withAppendedFlavors(ImmutableFlavor.of("thinlto-index")),
+            CxxThinLtoIndex.class);
+    assertThat(index.getDeps(), Matchers.hasItems(a, b, c));
+    assertThat(index.getDeps(), not(hasItem(archive)));
+
+    // The final link only uses the objects compiled by each backend.
+    ImmutableList<CxxThinLtoBackend> backends =
+        FluentIterable.from(link.getDeps()).filter(CxxThinLtoBackend.class).toList();
+    assertEquals(3, backends.size());
+    assertThat(link.getDeps(), Matchers.everyItem(Matchers.instanceOf(CxxThinLtoBackend.class)));
+    for (CxxThinLtoBackend backend : backends) {
+      assertThat(backend.getDeps(), Matchers.hasItems(index, a, b, c));
+    }
+    assertThat(
+        Arg.stringify(link.getArgs(), pathResolver),
+        hasConsecutiveItems(
+            "-Wl,--start-lib",
+            pathResolver.getAbsolutePath(backends.get(1).getSourcePathToOutput()).toString(),
+            pathResolver.getAbsolutePath(backends.get(2).getSourcePathToOutput()).toString(),
+            "-Wl,--end-lib"));
+  }
+
+  private static CxxPreprocessAndCompile createCompileRule(
+      BuildRuleResolver ruleResolver,
+      SourcePathResolver pathResolver,
+      String name) {
+    return ruleResolver.addToIndex(
+        CxxPreprocessAndCompile.compile(
+            new FakeBuildRuleParamsBuilder("//foo:" + name + "#compile").build(),
+            new CompilerDelegate(
+                pathResolver,
+                CxxPlatformUtils.DEFAULT_COMPILER_DEBUG_PATH_SANITIZER,
+                new GccCompiler(new HashedFileTool(Paths.get("compiler"))),
+                CxxToolFlags.of()),
+            Paths.get(name + ".o"),
+            new FakeSourcePath(name + ".cpp"),
+            CxxSource.Type.CXX,
+            CxxPlatformUtils.DEFAULT_COMPILER_DEBUG_PATH_SANITIZER,
+            CxxPlatformUtils.DEFAULT_ASSEMBLER_DEBUG_PATH_SANITIZER,
+            Optional.empty()));
+  }
+
   @Test
   public void frameworksToLinkerFlagsTransformer() {
     ProjectFilesystem projectFilesystem = new FakeProjectFilesystem();
@@ -204,6 +204,7 @@ public class CxxPreprocessAndCompileTest {
                 Optional.empty(),
                 CxxPlatformUtils.DEFAULT_COMPILER_DEBUG_PATH_SANITIZER,
                 CxxPlatformUtils.DEFAULT_ASSEMBLER_DEBUG_PATH_SANITIZER,
+                Optional.empty(),
                 Optional.empty()));
     assertNotEquals(defaultRuleKey, operationChange);
 
@@ -318,6 +319,7 @@ public class CxxPreprocessAndCompileTest {
                 Optional.empty(),
                 CxxPlatformUtils.DEFAULT_COMPILER_DEBUG_PATH_SANITIZER,
                 CxxPlatformUtils.DEFAULT_ASSEMBLER_DEBUG_PATH_SANITIZER,
+                Optional.empty(),
                 Optional.empty()));
       }
     }
@@ -429,6 +431,7 @@ public class CxxPreprocessAndCompileTest {
             Optional.empty(),
             CxxPlatformUtils.DEFAULT_COMPILER_DEBUG_PATH_SANITIZER,
             CxxPlatformUtils.DEFAULT_ASSEMBLER_DEBUG_PATH_SANITIZER,
+            Optional.empty(),
             Optional.empty());
     assertThat(
         cxxPreprocess.getInputsAfterBuildingLocally(context),
@@ -535,6 +538,7 @@ public class CxxPreprocessAndCompileTest {
             Optional.empty(),
             CxxPlatformUtils.DEFAULT_COMPILER_DEBUG_PATH_SANITIZER,
             CxxPlatformUtils.DEFAULT_ASSEMBLER_DEBUG_PATH_SANITIZER,
+            Optional.empty(),
             Optional.empty());
 
     ImmutableList<String> command =
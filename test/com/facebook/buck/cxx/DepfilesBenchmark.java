@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static org.junit.Assert.assertEquals;
+
+import com.facebook.buck.event.BuckEventBus;
+import com.facebook.buck.event.BuckEventBusFactory;
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.rules.BuildRuleResolver;
+import com.facebook.buck.rules.DefaultTargetNodeToBuildRuleTransformer;
+import com.facebook.buck.rules.PathSourcePath;
+import com.facebook.buck.rules.SourcePath;
+import com.facebook.buck.rules.SourcePathResolver;
+import com.facebook.buck.rules.SourcePathRuleFinder;
+import com.facebook.buck.rules.TargetGraph;
+import com.facebook.buck.testutil.integration.TemporaryPaths;
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Measures parsing and normalizing a dep file shaped like those of large translation units: most
+ * headers come from dependencies' symlink trees, and the rest from system include directories.
+ */
+public class DepfilesBenchmark {
+
+  @Param({"500", "3000", "10000"})
+  private int headerCount = 3000;
+
+  private TemporaryPaths tempDir = new TemporaryPaths();
+
+  private BuckEventBus eventBus;
+  private ProjectFilesystem filesystem;
+  private HeaderPathNormalizer normalizer;
+  private Path depFile;
+  private Path input;
+  private int trackedHeaderCount;
+
+  @Before
+  public void setUpTest() throws Exception {
+    headerCount = 500;
+    setUpBenchmark();
+  }
+
+  @BeforeExperiment
+  public void setUpBenchmark() throws Exception {
+    tempDir.before();
+    filesystem = new ProjectFilesystem(tempDir.getRoot());
+    eventBus = BuckEventBusFactory.newInstance();
+    SourcePathResolver pathResolver = new SourcePathResolver(new SourcePathRuleFinder(
+        new BuildRuleResolver(TargetGraph.EMPTY, new DefaultTargetNodeToBuildRuleTransformer())
+    ));
+
+    input = Paths.get("foo/bar/source.cpp");
+    depFile = Paths.get("source.o.dep");
+
+    HeaderPathNormalizer.Builder normalizerBuilder = new HeaderPathNormalizer.Builder(pathResolver);
+    StringBuilder contents = new StringBuilder("buck-out/gen/foo/bar/source.o: \\\n");
+    contents.append("  ").append(input).append(" \\\n");
+    trackedHeaderCount = 0;
+    for (int i = 0; i < headerCount; i++) {
+      String header;
+      if (i % 4 == 3) {
+        header = String.format("/usr/include/c++/4.9/bits/header_%d.h", i);
+      } else {
+        int library = i / 50;
+        Path tree = Paths.get(String.format("buck-out/gen/lib%d/lib%d#headers", library, library));
+        Path name = Paths.get(String.format("lib%d/sub/header_%d.h", library, i));
+        ImmutableMap<Path, SourcePath> links =
+            ImmutableMap.of(
+                name,
+                new PathSourcePath(filesystem, Paths.get("lib" + library).resolve(name)));
+        normalizerBuilder.addSymlinkTree(new PathSourcePath(filesystem, tree), links);
+        header = tree.resolve(name).toString();
+        trackedHeaderCount++;
+      }
+      contents.append("  ").append(header).append(" \\\n");
+    }
+    contents.append("  foo/bar/last.h\n");
+    normalizerBuilder.addHeader(new PathSourcePath(filesystem, Paths.get("foo/bar/last.h")));
+    trackedHeaderCount++;
+
+    normalizer = normalizerBuilder.build();
+    filesystem.writeContentsToPath(contents.toString(), depFile);
+  }
+
+  @After
+  @AfterExperiment
+  public void cleanup() {
+    tempDir.after();
+  }
+
+  @Test
+  public void parseAndNormalizeCorrectness() throws Exception {
+    assertEquals(trackedHeaderCount, parseAndNormalize().size());
+  }
+
+  @Benchmark
+  public ImmutableList<Path> parseAndNormalize() throws Exception {
+    return Depfiles.parseAndOutputBuckCompatibleDepfile(
+        eventBus,
+        filesystem,
+        normalizer,
+        HeaderVerification.of(HeaderVerification.Mode.IGNORE),
+        depFile,
+        input,
+        Paths.get("buck-out/gen/foo/bar/source.o"));
+  }
+
+}
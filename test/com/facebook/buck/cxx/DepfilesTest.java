@@ -27,8 +27,10 @@ import org.junit.runners.Parameterized.Parameters;
 import org.junit.runner.RunWith;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -52,6 +54,11 @@ public class DepfilesTest {
               "output",
               ImmutableList.of("input1", "input2")
           },
+          {
+              "output: \u00fcber/input1 input2\n",
+              "output",
+              ImmutableList.of("\u00fcber/input1", "input2")
+          },
           {
               "output: input1\\\n input2\n",
               "output",
@@ -193,4 +200,15 @@ public class DepfilesTest {
           Depfiles.parseDepfile(new StringReader(input)),
           Matchers.equalTo(new Depfiles.Depfile(expectedTarget, expectedPrereqs)));
   }
+
+  @Test
+  public void parseDepfileFromBytes() throws IOException {
+    assertThat(
+          String.format(
+              "[%s] should parse correctly",
+              input),
+          Depfiles.parseDepfile(
+              new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+          Matchers.equalTo(new Depfiles.Depfile(expectedTarget, expectedPrereqs)));
+  }
 }
@@ -26,13 +26,18 @@ import com.facebook.buck.cxx.elf.ElfSection;
 import com.facebook.buck.io.ExecutableFinder;
 import com.facebook.buck.io.ProjectFilesystem;
 import com.facebook.buck.step.TestExecutionContext;
+import com.facebook.buck.testutil.TestConsole;
 import com.facebook.buck.testutil.integration.ProjectWorkspace;
 import com.facebook.buck.testutil.integration.TemporaryPaths;
 import com.facebook.buck.testutil.integration.TestDataHelper;
+import com.facebook.buck.util.DefaultProcessExecutor;
+import com.facebook.buck.util.ProcessExecutor;
+import com.facebook.buck.util.ProcessExecutorParams;
 import com.facebook.buck.util.environment.Platform;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.BaseEncoding;
 
 import org.hamcrest.Matchers;
 import org.junit.Rule;
@@ -45,7 +50,9 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 public class ElfExtractSectionsStepTest {
 
@@ -74,9 +81,6 @@ public class ElfExtractSectionsStepTest {
   @Test
   public void test() throws IOException, InterruptedException {
 
-    // Only run if `objcopy` is available on the system.
-    Path objcopy = assumeObjcopy();
-
     // Run the step.
     ProjectWorkspace workspace =
         TestDataHelper.createProjectWorkspaceForScenario(this, "elf_shared_lib", tmp);
@@ -84,7 +88,6 @@ public class ElfExtractSectionsStepTest {
     ElfExtractSectionsStep step =
         ElfExtractSectionsStep.of(
             new ProjectFilesystem(tmp.getRoot()),
-            ImmutableList.of(objcopy.toString()),
             tmp.getRoot().getFileSystem().getPath("libfoo.so"),
             tmp.getRoot().getFileSystem().getPath("libfoo.extracted.so"),
             ImmutableSet.of(".dynamic"));
@@ -109,4 +112,70 @@ public class ElfExtractSectionsStepTest {
     }
   }
 
+  @Test
+  public void extractedSectionsMatchObjcopy() throws IOException, InterruptedException {
+
+    // Only run if `objcopy` is available on the system.
+    Path objcopy = assumeObjcopy();
+
+    ProjectWorkspace workspace =
+        TestDataHelper.createProjectWorkspaceForScenario(this, "elf_shared_lib", tmp);
+    workspace.setUp();
+    ProjectFilesystem filesystem = new ProjectFilesystem(tmp.getRoot());
+    ImmutableSet<String> sections =
+        ImmutableSet.of(".dynamic", ".dynsym", ".dynstr", ".gnu.version", ".gnu.version_r");
+    ElfExtractSectionsStep.of(
+        filesystem,
+        filesystem.getPath("libfoo.so"),
+        filesystem.getPath("libfoo.extracted.so"),
+        sections)
+        .execute(TestExecutionContext.newInstance());
+
+    ImmutableList.Builder<String> command = ImmutableList.builder();
+    command.add(objcopy.toString());
+    for (String section : sections) {
+      command.add("--only-section", section);
+    }
+    command.add("libfoo.so", "libfoo.objcopy.so");
+    ProcessExecutor.Result result =
+        new DefaultProcessExecutor(new TestConsole()).launchAndExecute(
+            ProcessExecutorParams.builder()
+                .setCommand(command.build())
+                .setDirectory(tmp.getRoot())
+                .build());
+    assertThat(result.getExitCode(), Matchers.equalTo(0));
+
+    // The contents of every requested section, and the sections they link to, should be the same
+    // as those extracted by `objcopy` (which also adds an empty symbol table of its own).
+    assertThat(
+        getSections(filesystem.resolve("libfoo.extracted.so"), sections),
+        Matchers.equalTo(getSections(filesystem.resolve("libfoo.objcopy.so"), sections)));
+  }
+
+  private static Map<String, String> getSections(
+      Path path,
+      ImmutableSet<String> names) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(READ_ONLY, 0, channel.size());
+      Elf elf = new Elf(buffer);
+      Map<String, String> sections = new TreeMap<>();
+      for (int index = 1; index < elf.getNumberOfSections(); index++) {
+        ElfSection section = elf.getSectionByIndex(index);
+        if (!names.contains(elf.getSectionName(section.header))) {
+          continue;
+        }
+        String link =
+            section.header.sh_link == 0 ?
+                "" :
+                elf.getSectionName(elf.getSectionByIndex((int) section.header.sh_link).header);
+        byte[] body = new byte[section.body.remaining()];
+        section.body.duplicate().get(body);
+        sections.put(
+            elf.getSectionName(section.header),
+            link + " " + BaseEncoding.base16().encode(body));
+      }
+      return sections;
+    }
+  }
+
 }
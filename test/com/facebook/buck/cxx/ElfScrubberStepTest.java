@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.TestExecutionContext;
+import com.facebook.buck.testutil.integration.ProjectWorkspace;
+import com.facebook.buck.testutil.integration.TemporaryPaths;
+import com.facebook.buck.testutil.integration.TestDataHelper;
+import com.google.common.collect.ImmutableList;
+
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class ElfScrubberStepTest {
+
+  @Rule
+  public TemporaryPaths tmp = new TemporaryPaths();
+
+  private static ImmutableList<ElfScrubber> scrubbers(ProjectFilesystem filesystem, Path path) {
+    return ImmutableList.of(
+        ElfClearProgramHeadersStep.of(filesystem, path),
+        ElfSymbolTableScrubberStep.of(filesystem, path, ".dynsym", /* allowMissing */ false),
+        ElfSymbolTableScrubberStep.of(filesystem, path, ".symtab", /* allowMissing */ true),
+        ElfDynamicSectionScrubberStep.of(filesystem, path));
+  }
+
+  @Test
+  public void sharedParseMatchesRunningEachScrubberSeparately() throws Exception {
+    ProjectWorkspace workspace =
+        TestDataHelper.createProjectWorkspaceForScenario(this, "elf_shared_lib", tmp);
+    workspace.setUp();
+    ProjectFilesystem filesystem = new ProjectFilesystem(tmp.getRoot());
+    Path separate = Paths.get("libfoo.so");
+    Path combined = Paths.get("libfoo-combined.so");
+    filesystem.copyFile(separate, combined);
+    byte[] original = Files.readAllBytes(filesystem.resolve(separate));
+
+    for (ElfScrubber scrubber : scrubbers(filesystem, separate)) {
+      ((Step) scrubber).execute(TestExecutionContext.newInstance());
+    }
+    ElfScrubberStep.of(filesystem, combined, scrubbers(filesystem, combined))
+        .execute(TestExecutionContext.newInstance());
+
+    byte[] expected = Files.readAllBytes(filesystem.resolve(separate));
+    assertFalse(Arrays.equals(original, expected));
+    assertThat(expected.length, Matchers.equalTo(original.length));
+    assertArrayEquals(expected, Files.readAllBytes(filesystem.resolve(combined)));
+  }
+
+}
@@ -35,10 +35,15 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
 
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 public class NativeLinkablesTest {
 
   private static class FakeNativeLinkable extends FakeBuildRule implements NativeLinkable {
@@ -125,6 +130,7 @@ public class NativeLinkablesTest {
             ImmutableMap.of());
     assertThat(
         NativeLinkables.getNativeLinkables(
+            newResolver(),
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(a),
             Linker.LinkableDepType.SHARED).keySet(),
@@ -155,6 +161,7 @@ public class NativeLinkablesTest {
             ImmutableMap.of());
     assertThat(
         NativeLinkables.getNativeLinkables(
+            newResolver(),
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(a),
             Linker.LinkableDepType.SHARED).keySet(),
@@ -185,6 +192,7 @@ public class NativeLinkablesTest {
             ImmutableMap.of());
     assertThat(
         NativeLinkables.getNativeLinkables(
+            newResolver(),
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(a),
             Linker.LinkableDepType.SHARED).keySet(),
@@ -215,6 +223,7 @@ public class NativeLinkablesTest {
             ImmutableMap.of());
     assertThat(
         NativeLinkables.getNativeLinkables(
+            newResolver(),
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(a),
             Linker.LinkableDepType.STATIC).keySet(),
@@ -294,6 +303,7 @@ public class NativeLinkablesTest {
     assertThat(a.getDeps(), Matchers.hasItem(b));
     assertThat(
         NativeLinkables.getNativeLinkables(
+            resolver,
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(a),
             Linker.LinkableDepType.STATIC).keySet(),
@@ -409,4 +419,133 @@ public class NativeLinkablesTest {
         Matchers.equalTo(ImmutableMap.<BuildTarget, NativeLinkable>of(a.getBuildTarget(), a)));
   }
 
+  @Test
+  public void memoizedTraversalMatchesTopologicalSort() {
+    NativeLinkable.Linkage[] linkages = NativeLinkable.Linkage.values();
+    Random random = new Random(1234);
+    List<FakeNativeLinkable> linkables = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      List<NativeLinkable> deps = new ArrayList<>();
+      List<NativeLinkable> exportedDeps = new ArrayList<>();
+      for (FakeNativeLinkable dep : linkables) {
+        int choice = random.nextInt(10);
+        if (choice == 0) {
+          deps.add(dep);
+        } else if (choice == 1) {
+          exportedDeps.add(dep);
+        }
+      }
+      linkables.add(
+          new FakeNativeLinkable(
+              String.format("//:%c%d", (char) ('a' + random.nextInt(3)), i),
+              deps,
+              exportedDeps,
+              linkages[random.nextInt(linkages.length)],
+              NativeLinkableInput.of(),
+              ImmutableMap.of()));
+    }
+
+    BuildRuleResolver resolver = newResolver();
+    for (Linker.LinkableDepType linkStyle : Linker.LinkableDepType.values()) {
+      for (int i = 0; i < 20; i++) {
+        List<NativeLinkable> roots = new ArrayList<>();
+        for (int j = random.nextInt(3); j >= 0; j--) {
+          roots.add(linkables.get(random.nextInt(linkables.size())));
+        }
+        ImmutableMap<BuildTarget, NativeLinkable> expected =
+            NativeLinkables.getNativeLinkables(
+                CxxPlatformUtils.DEFAULT_PLATFORM,
+                roots,
+                linkStyle,
+                x -> true);
+        assertThat(
+            ImmutableList.copyOf(
+                NativeLinkables.getNativeLinkables(
+                    resolver,
+                    CxxPlatformUtils.DEFAULT_PLATFORM,
+                    roots,
+                    linkStyle).entrySet()),
+            Matchers.equalTo(ImmutableList.copyOf(expected.entrySet())));
+      }
+    }
+  }
+
+  @Test
+  public void deepDependencyChainsDoNotOverflowTheStack() {
+    List<FakeNativeLinkable> chain = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      chain.add(
+          new FakeNativeLinkable(
+              "//:n" + i,
+              i == 0 ? ImmutableList.of() : ImmutableList.of(chain.get(i - 1)),
+              ImmutableList.of(),
+              NativeLinkable.Linkage.ANY,
+              NativeLinkableInput.of(),
+              ImmutableMap.of()));
+    }
+    ImmutableMap<BuildTarget, NativeLinkable> nativeLinkables =
+        NativeLinkables.getNativeLinkables(
+            newResolver(),
+            CxxPlatformUtils.DEFAULT_PLATFORM,
+            ImmutableList.of(chain.get(chain.size() - 1)),
+            Linker.LinkableDepType.STATIC);
+    assertThat(nativeLinkables.size(), Matchers.equalTo(chain.size()));
+    assertThat(
+        Iterables.getLast(nativeLinkables.values()),
+        Matchers.<NativeLinkable>sameInstance(chain.get(0)));
+  }
+
+  @Test
+  public void orderedLinkablesAreMemoizedPerResolver() {
+    FakeNativeLinkable b =
+        new FakeNativeLinkable(
+            "//:b",
+            ImmutableList.of(),
+            ImmutableList.of(),
+            NativeLinkable.Linkage.ANY,
+            NativeLinkableInput.of(),
+            ImmutableMap.of());
+    FakeNativeLinkable a =
+        new FakeNativeLinkable(
+            "//:a",
+            ImmutableList.of(b),
+            ImmutableList.of(),
+            NativeLinkable.Linkage.ANY,
+            NativeLinkableInput.of(),
+            ImmutableMap.of());
+    BuildRuleResolver resolver = newResolver();
+    ImmutableMap<BuildTarget, NativeLinkable> nativeLinkables =
+        NativeLinkables.getNativeLinkables(
+            resolver,
+            CxxPlatformUtils.DEFAULT_PLATFORM,
+            ImmutableList.of(a),
+            Linker.LinkableDepType.STATIC);
+
+    assertThat(
+        NativeLinkables.getNativeLinkables(
+            resolver,
+            CxxPlatformUtils.DEFAULT_PLATFORM,
+            ImmutableList.of(a),
+            Linker.LinkableDepType.STATIC),
+        Matchers.sameInstance(nativeLinkables));
+    assertThat(
+        NativeLinkables.getNativeLinkables(
+            newResolver(),
+            CxxPlatformUtils.DEFAULT_PLATFORM,
+            ImmutableList.of(a),
+            Linker.LinkableDepType.STATIC),
+        Matchers.not(Matchers.sameInstance(nativeLinkables)));
+    assertThat(
+        NativeLinkables.getNativeLinkables(
+            resolver,
+            CxxPlatformUtils.DEFAULT_PLATFORM,
+            ImmutableList.of(a),
+            Linker.LinkableDepType.SHARED).keySet(),
+        Matchers.contains(a.getBuildTarget()));
+  }
+
+  private static BuildRuleResolver newResolver() {
+    return new BuildRuleResolver(TargetGraph.EMPTY, new DefaultTargetNodeToBuildRuleTransformer());
+  }
+
 }
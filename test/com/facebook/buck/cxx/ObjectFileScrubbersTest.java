@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.facebook.buck.io.FileContentsScrubber;
+import com.facebook.buck.testutil.integration.TemporaryPaths;
+import com.google.common.base.Strings;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ObjectFileScrubbersTest {
+
+  @Rule
+  public TemporaryPaths tmp = new TemporaryPaths();
+
+  private static String entry(String name, String mtime, String uid, String mode, String data) {
+    return Strings.padEnd(name, 16, ' ') +
+        Strings.padEnd(mtime, 12, ' ') +
+        Strings.padEnd(uid, 6, ' ') +
+        Strings.padEnd(uid, 6, ' ') +
+        Strings.padEnd(mode, 8, ' ') +
+        Strings.padEnd(Integer.toString(data.length()), 10, ' ') +
+        "`\n" +
+        data +
+        (data.length() % 2 == 1 ? "\n" : "");
+  }
+
+  private static void scrub(FileContentsScrubber scrubber, Path path) throws Exception {
+    try (FileChannel channel =
+             FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      scrubber.scrubFile(channel);
+    }
+  }
+
+  @Test
+  public void scrubsEntryMetadataInPlace() throws Exception {
+    Path archive = tmp.newFile("test.a");
+    Files.write(
+        archive,
+        ("!<arch>\n" +
+            entry("a.o/", "1487000000", "501", "100755", "abc") +
+            entry("b.o/", "0", "0", "100644", "defg")).getBytes(StandardCharsets.US_ASCII));
+
+    FileContentsScrubber scrubber =
+        ObjectFileScrubbers.createDateUidGidScrubber(ObjectFileScrubbers.PaddingStyle.RIGHT);
+    scrub(scrubber, archive);
+
+    String expected =
+        "!<arch>\n" +
+            entry(
+                "a.o/",
+                Integer.toString(ObjectFileCommonModificationDate.COMMON_MODIFICATION_TIME_STAMP),
+                "0",
+                "0100644",
+                "abc") +
+            entry(
+                "b.o/",
+                Integer.toString(ObjectFileCommonModificationDate.COMMON_MODIFICATION_TIME_STAMP),
+                "0",
+                "0100644",
+                "defg");
+    assertEquals(expected, new String(Files.readAllBytes(archive), StandardCharsets.US_ASCII));
+
+    // Scrubbing an already scrubbed archive leaves it unchanged.
+    byte[] scrubbed = Files.readAllBytes(archive);
+    scrub(scrubber, archive);
+    assertArrayEquals(scrubbed, Files.readAllBytes(archive));
+  }
+
+}
@@ -46,9 +46,15 @@ public class OmnibusTest {
     NativeLinkable b = new OmnibusNode("//:b");
     NativeLinkTarget root = new OmnibusRootNode("//:root", ImmutableList.of(a, b));
 
+    BuildRuleResolver resolver =
+        new BuildRuleResolver(
+            TargetGraph.EMPTY,
+            new DefaultTargetNodeToBuildRuleTransformer());
+
     // Verify the spec.
     Omnibus.OmnibusSpec spec =
         Omnibus.buildSpec(
+            resolver,
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(root),
             ImmutableList.of());
@@ -69,10 +75,6 @@ public class OmnibusTest {
         Matchers.empty());
 
     // Verify the libs.
-    BuildRuleResolver resolver =
-        new BuildRuleResolver(
-            TargetGraph.EMPTY,
-            new DefaultTargetNodeToBuildRuleTransformer());
     SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(resolver);
     SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
     ImmutableMap<String, SourcePath> libs =
@@ -110,9 +112,15 @@ public class OmnibusTest {
     NativeLinkable b = new OmnibusSharedOnlyNode("//:b");
     NativeLinkTarget root = new OmnibusRootNode("//:root", ImmutableList.of(a, b));
 
+    BuildRuleResolver resolver =
+        new BuildRuleResolver(
+            TargetGraph.EMPTY,
+            new DefaultTargetNodeToBuildRuleTransformer());
+
     // Verify the spec.
     Omnibus.OmnibusSpec spec =
         Omnibus.buildSpec(
+            resolver,
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(root),
             ImmutableList.of());
@@ -133,10 +141,6 @@ public class OmnibusTest {
         Matchers.containsInAnyOrder(b.getBuildTarget()));
 
     // Verify the libs.
-    BuildRuleResolver resolver =
-        new BuildRuleResolver(
-            TargetGraph.EMPTY,
-            new DefaultTargetNodeToBuildRuleTransformer());
     SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(resolver);
     SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
     ImmutableMap<String, SourcePath> libs =
@@ -179,9 +183,15 @@ public class OmnibusTest {
     NativeLinkable c = new OmnibusSharedOnlyNode("//:c", ImmutableList.of(b));
     NativeLinkTarget root = new OmnibusRootNode("//:root", ImmutableList.of(a, c));
 
+    BuildRuleResolver resolver =
+        new BuildRuleResolver(
+            TargetGraph.EMPTY,
+            new DefaultTargetNodeToBuildRuleTransformer());
+
     // Verify the spec.
     Omnibus.OmnibusSpec spec =
         Omnibus.buildSpec(
+            resolver,
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(root),
             ImmutableList.of());
@@ -202,10 +212,6 @@ public class OmnibusTest {
         Matchers.containsInAnyOrder(b.getBuildTarget(), c.getBuildTarget()));
 
     // Verify the libs.
-    BuildRuleResolver resolver =
-        new BuildRuleResolver(
-            TargetGraph.EMPTY,
-            new DefaultTargetNodeToBuildRuleTransformer());
     SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(resolver);
     SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
     ImmutableMap<String, SourcePath> libs =
@@ -252,9 +258,15 @@ public class OmnibusTest {
     NativeLinkable b = new OmnibusNode("//:b");
     NativeLinkable excludedRoot = new OmnibusNode("//:excluded_root", ImmutableList.of(b));
 
+    BuildRuleResolver resolver =
+        new BuildRuleResolver(
+            TargetGraph.EMPTY,
+            new DefaultTargetNodeToBuildRuleTransformer());
+
     // Verify the spec.
     Omnibus.OmnibusSpec spec =
         Omnibus.buildSpec(
+            resolver,
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(root),
             ImmutableList.of(excludedRoot));
@@ -275,10 +287,6 @@ public class OmnibusTest {
         Matchers.containsInAnyOrder(excludedRoot.getBuildTarget(), b.getBuildTarget()));
 
     // Verify the libs.
-    BuildRuleResolver resolver =
-        new BuildRuleResolver(
-            TargetGraph.EMPTY,
-            new DefaultTargetNodeToBuildRuleTransformer());
     SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(resolver);
     SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
     ImmutableMap<String, SourcePath> libs =
@@ -323,9 +331,15 @@ public class OmnibusTest {
     NativeLinkTarget root = new OmnibusRootNode("//:root", ImmutableList.of(a));
     NativeLinkable excludedRoot = new OmnibusNode("//:excluded_root", ImmutableList.of(a));
 
+    BuildRuleResolver resolver =
+        new BuildRuleResolver(
+            TargetGraph.EMPTY,
+            new DefaultTargetNodeToBuildRuleTransformer());
+
     // Verify the spec.
     Omnibus.OmnibusSpec spec =
         Omnibus.buildSpec(
+            resolver,
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(root),
             ImmutableList.of(excludedRoot));
@@ -346,10 +360,6 @@ public class OmnibusTest {
         Matchers.containsInAnyOrder(excludedRoot.getBuildTarget(), a.getBuildTarget()));
 
     // Verify the libs.
-    BuildRuleResolver resolver =
-        new BuildRuleResolver(
-            TargetGraph.EMPTY,
-            new DefaultTargetNodeToBuildRuleTransformer());
     SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(resolver);
     SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
     ImmutableMap<String, SourcePath> libs =
@@ -392,9 +402,15 @@ public class OmnibusTest {
     NativeLinkable b = new OmnibusNode("//:b");
     NativeLinkTarget root = new OmnibusRootNode("//:root", ImmutableList.of(a, b));
 
+    BuildRuleResolver resolver =
+        new BuildRuleResolver(
+            TargetGraph.EMPTY,
+            new DefaultTargetNodeToBuildRuleTransformer());
+
     // Verify the spec.
     Omnibus.OmnibusSpec spec =
         Omnibus.buildSpec(
+            resolver,
             CxxPlatformUtils.DEFAULT_PLATFORM,
             ImmutableList.of(root),
             ImmutableList.of());
@@ -415,10 +431,6 @@ public class OmnibusTest {
         Matchers.empty());
 
     // Verify the libs.
-    BuildRuleResolver resolver =
-        new BuildRuleResolver(
-            TargetGraph.EMPTY,
-            new DefaultTargetNodeToBuildRuleTransformer());
     SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(resolver);
     SourcePathResolver pathResolver = new SourcePathResolver(ruleFinder);
     ImmutableMap<String, SourcePath> libs =
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.dalvik;
+
+import static org.junit.Assert.assertEquals;
+
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.jvm.java.classes.ClasspathTraversal;
+import com.facebook.buck.jvm.java.classes.DefaultClasspathTraverser;
+import com.facebook.buck.jvm.java.classes.FileLike;
+import com.facebook.buck.testutil.integration.TemporaryPaths;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DalvikStatsCacheTest {
+
+  @Rule
+  public TemporaryPaths tmp = new TemporaryPaths();
+
+  private ProjectFilesystem filesystem;
+  private Path classesDir;
+
+  @Before
+  public void setUp() throws IOException {
+    filesystem = new ProjectFilesystem(tmp.getRoot());
+    classesDir = Paths.get("classes");
+    filesystem.mkdirs(classesDir);
+    for (Class<?> clazz : ImmutableList.of(
+        DalvikStatsTool.class,
+        DalvikStatsCache.class,
+        DalvikAwareZipSplitter.class)) {
+      String classFile = clazz.getSimpleName() + ".class";
+      try (InputStream in = clazz.getResourceAsStream(classFile)) {
+        Files.copy(in, filesystem.resolve(classesDir).resolve(classFile));
+      }
+    }
+  }
+
+  @Test
+  public void precomputedStatsMatchDirectEstimates() throws IOException {
+    final DalvikStatsCache cache = new DalvikStatsCache();
+    cache.precomputeStats(
+        filesystem,
+        ImmutableSet.of(classesDir),
+        MoreExecutors.newDirectExecutorService(),
+        2);
+
+    final AtomicInteger visited = new AtomicInteger();
+    new DefaultClasspathTraverser().traverse(
+        new ClasspathTraversal(ImmutableSet.of(classesDir), filesystem) {
+          @Override
+          public void visit(FileLike entry) throws IOException {
+            DalvikStatsTool.Stats expected;
+            try (InputStream in = entry.getInput()) {
+              expected = DalvikStatsTool.getEstimate(in);
+            }
+            DalvikStatsTool.Stats actual = cache.getStats(entry);
+            assertEquals(expected.estimatedLinearAllocSize, actual.estimatedLinearAllocSize);
+            assertEquals(expected.methodReferences, actual.methodReferences);
+            assertEquals(expected.fieldReferences, actual.fieldReferences);
+            visited.incrementAndGet();
+          }
+        });
+    assertEquals(3, visited.get());
+  }
+}
@@ -203,4 +203,33 @@ public class JsonConcatenateStepTest {
   }
 
 
+  @Test
+  public void testMergeLargeAndNestedArrays() throws IOException {
+    // Large enough to be read in several chunks.
+    StringBuilder large = new StringBuilder("\n [");
+    for (int i = 0; i < 20000; i++) {
+      if (i > 0) {
+        large.append(", ");
+      }
+      large.append("[").append(i).append(", [\"x\"]]");
+    }
+    large.append("  \n]\n");
+    Path report1 = filesystem.resolve("large");
+    Path report2 = filesystem.resolve("empty");
+    Path report3 = filesystem.resolve("nested");
+    filesystem.writeContentsToPath(large.toString(), report1);
+    filesystem.writeContentsToPath(" \n[\n ] ", report2);
+    filesystem.writeContentsToPath("[[[]]]", report3);
+
+    new JsonConcatenator(ImmutableSortedSet.of(report1, report2, report3), mergedReport, filesystem)
+        .concatenate();
+    Object[] records = new GsonBuilder()
+        .create()
+        .fromJson(filesystem.readFileIfItExists(mergedReport).get(), Object[].class);
+    assertThat(records.length, Matchers.equalTo(20001));
+    assertThat(
+        filesystem.readFileIfItExists(mergedReport).get(),
+        Matchers.endsWith("[19999, [\"x\"]]  \n,[[]]]"));
+  }
+
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.buck.cli.FakeBuckConfig;
+import com.facebook.buck.event.BuckEventBusFactory;
+import com.facebook.buck.io.ExecutableFinder;
+import com.facebook.buck.io.PathOrGlobMatcher;
+import com.facebook.buck.python.PythonBuckConfig;
+import com.facebook.buck.rules.ConstructorArgMarshaller;
+import com.facebook.buck.rules.coercer.DefaultTypeCoercerFactory;
+import com.facebook.buck.shell.ExportFileDescription;
+import com.facebook.buck.testutil.TestConsole;
+import com.facebook.buck.testutil.integration.TemporaryPaths;
+import com.facebook.buck.util.ObjectMappers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+public class JvmBuildFileEvaluatorTest {
+
+  @Rule
+  public TemporaryPaths tmp = new TemporaryPaths();
+
+  private ProjectBuildFileParserOptions options;
+  private ConstructorArgMarshaller marshaller;
+  private JvmBuildFileEvaluator evaluator;
+  private Path buildFile;
+
+  @Before
+  public void setUp() throws IOException {
+    PythonBuckConfig pythonBuckConfig =
+        new PythonBuckConfig(FakeBuckConfig.builder().build(), new ExecutableFinder());
+    options = ProjectBuildFileParserOptions.builder()
+        .setProjectRoot(tmp.getRoot())
+        .setPythonInterpreter(pythonBuckConfig.getPythonInterpreter())
+        .setAllowEmptyGlobs(true)
+        .setIgnorePaths(ImmutableSet.of(new PathOrGlobMatcher(Paths.get("foo/ignored"))))
+        .setBuildFileName("BUCK")
+        .setDefaultIncludes(ImmutableList.of())
+        .setDescriptions(ImmutableSet.of(new ExportFileDescription()))
+        .setBuildFileImportWhitelist(ImmutableList.of())
+        .build();
+    marshaller = new ConstructorArgMarshaller(
+        new DefaultTypeCoercerFactory(ObjectMappers.newDefaultInstance()));
+    evaluator = new JvmBuildFileEvaluator(
+        options,
+        marshaller,
+        /* ignoreBuckAutodepsFiles */ false,
+        Optional.empty());
+    buildFile = tmp.newFolder("foo").resolve("BUCK");
+  }
+
+  @Test
+  public void producesTheSameRulesAsBuckPy() throws Exception {
+    for (String file : ImmutableList.of(
+        "a.txt", "b.java", ".hidden.txt", "sub/c.txt", "sub/d.txt", "sub/.e/f.txt",
+        "ignored/g.txt")) {
+      Path path = buildFile.resolveSibling(file);
+      Files.createDirectories(path.getParent());
+      Files.write(path, new byte[0]);
+    }
+
+    for (String source : ImmutableList.of(
+        "export_file(name = 'a')",
+        "NAME = 'file' + \"-\" \\\n" +
+            "    r'a\\b'\n" +
+            "\n" +
+            "# A comment.\n" +
+            "export_file(\n" +
+            "  name = NAME,  # Another comment.\n" +
+            "  src = '''a.txt''',\n" +
+            "  labels = ['x', 1, 300, -70000, 1 + 4000000000, True, None] + " +
+            "[('y',), {'z': []}],\n" +
+            "  visibility = ['PUBLIC'],\n" +
+            ")\n" +
+            "export_file(name = get_base_path())",
+        "export_file(\n" +
+            "  name = 'all',\n" +
+            "  labels = glob(['**/*.txt'], excludes = ['sub/d.txt']),\n" +
+            ")\n" +
+            "export_file(\n" +
+            "  name = 'dotfiles',\n" +
+            "  labels = glob(['*', 'sub/*'], include_dotfiles = True, excludes = ['*.java']),\n" +
+            ")")) {
+      writeBuildFile(source);
+      Optional<ImmutableList<Map<String, Object>>> rules = evaluator.evaluate(buildFile);
+      assertTrue(source, rules.isPresent());
+
+      try (ProjectBuildFileParser buckPy =
+               new DefaultProjectBuildFileParserFactory(options).createParser(
+                   marshaller,
+                   new TestConsole(),
+                   ImmutableMap.of(),
+                   BuckEventBusFactory.newInstance(),
+                   /* ignoreBuckAutodepsFiles */ false)) {
+        assertEquals(source, buckPy.getAllRulesAndMetaRules(buildFile), rules.get());
+      }
+    }
+  }
+
+  @Test
+  public void producesTheExpectedRules() throws IOException {
+    writeBuildFile(
+        "NAME = 'file' + \"-\" \\",
+        "    r'a\\b'",
+        "",
+        "# A comment.",
+        "export_file(",
+        "  name = NAME,  # Another comment.",
+        "  src = '''a.txt''',",
+        "  labels = ['x', 1, 300, -70000, 1 + 4000000000, True, None] + [('y',), {'z': []}],",
+        "  visibility = ['PUBLIC'],",
+        ")",
+        "export_file(name = get_base_path())");
+
+    Map<String, Object> first = new TreeMap<>();
+    first.put("buck.type", "export_file");
+    first.put("buck.base_path", "foo");
+    first.put("name", "file-a\\b");
+    first.put("src", "a.txt");
+    first.put("out", null);
+    first.put("mode", null);
+    first.put("licenses", null);
+    first.put(
+        "labels",
+        Arrays.asList(
+            "x",
+            (byte) 1,
+            (short) 300,
+            -70000,
+            4000000001L,
+            true,
+            null,
+            Arrays.asList("y"),
+            ImmutableMap.of("z", Collections.emptyList())));
+    first.put("autodeps", null);
+    first.put("visibility", Arrays.asList("PUBLIC"));
+    Map<String, Object> second = new TreeMap<>(first);
+    second.put("name", "foo");
+    second.put("src", null);
+    second.put("labels", null);
+    second.put("visibility", null);
+
+    assertEquals(
+        Optional.of(
+            ImmutableList.of(
+                first,
+                second,
+                ImmutableMap.of("__includes", ImmutableList.of(buildFile.toString())),
+                ImmutableMap.of("__configs", ImmutableMap.of()),
+                ImmutableMap.of("__env", ImmutableMap.of()))),
+        evaluator.evaluate(buildFile));
+  }
+
+  @Test
+  public void globsMatchTheExpectedFiles() throws IOException {
+    for (String file : ImmutableList.of(
+        "a.txt", "b.java", ".hidden.txt", "sub/c.txt", "sub/d.txt", "sub/.e/f.txt",
+        "ignored/g.txt")) {
+      Path path = buildFile.resolveSibling(file);
+      Files.createDirectories(path.getParent());
+      Files.write(path, new byte[0]);
+    }
+    writeBuildFile(
+        "export_file(",
+        "  name = 'all',",
+        "  labels = glob(['**/*.txt'], excludes = ['sub/d.txt']),",
+        ")",
+        "export_file(",
+        "  name = 'dotfiles',",
+        "  labels = glob(['*', 'sub/*'], include_dotfiles = True, excludes = ['*.java']),",
+        ")");
+
+    Map<String, Map<String, Object>> rules = new TreeMap<>();
+    for (Map<String, Object> rule : evaluator.evaluate(buildFile).get()) {
+      if (rule.containsKey("name")) {
+        rules.put((String) rule.get("name"), rule);
+      }
+    }
+    assertEquals(Arrays.asList("a.txt", "sub/c.txt"), rules.get("all").get("labels"));
+    assertEquals(
+        Arrays.asList(".hidden.txt", "BUCK", "a.txt", "sub/c.txt", "sub/d.txt"),
+        rules.get("dotfiles").get("labels"));
+  }
+
+  @Test
+  public void leavesUnsupportedBuildFilesToBuckPy() throws IOException {
+    for (String source : ImmutableList.of(
+        "if True:\n  export_file(name = 'a')",
+        "include_defs('//DEFS')",
+        "export_file('a')",
+        "export_file(name = 'a', bogus = 1)",
+        "export_file(name = 'a')\nexport_file(name = 'a')",
+        "export_file(name = 'a', labels = [1][0])",
+        "export_file(name = 'a', labels = os.environ)",
+        "export_file(name = 'a', labels = read_config('a', 'b'))",
+        "export_file(name = 'a', labels = undefined)",
+        "export_file(name = 'a', labels = u'a')",
+        "export_file(name = 'a', labels = 1.5)",
+        "export_file(name = 'a', labels = 'a' + 1)",
+        "export_file(name = 'a', labels = glob(['../*']))",
+        "X = 1; export_file(name = 'a')",
+        "X = 'café'")) {
+      writeBuildFile(source);
+      assertFalse(source, evaluator.evaluate(buildFile).isPresent());
+    }
+  }
+
+  @Test
+  public void leavesBuildFilesWithAutodepsToBuckPy() throws IOException {
+    writeBuildFile("export_file(name = 'a')");
+    Files.write(buildFile.resolveSibling("BUCK.autodeps"), new byte[0]);
+    assertFalse(evaluator.evaluate(buildFile).isPresent());
+  }
+
+  private void writeBuildFile(String... lines) throws IOException {
+    Files.write(buildFile, Arrays.asList(lines), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.jvm.java;
+
+import static com.facebook.buck.jvm.java.JavaCompilationConstants.DEFAULT_JAVAC_OPTIONS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.rules.BuildRuleResolver;
+import com.facebook.buck.rules.DefaultTargetNodeToBuildRuleTransformer;
+import com.facebook.buck.rules.FakeBuildableContext;
+import com.facebook.buck.rules.SourcePathResolver;
+import com.facebook.buck.rules.SourcePathRuleFinder;
+import com.facebook.buck.rules.TargetGraph;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.StepExecutionResult;
+import com.facebook.buck.step.TestExecutionContext;
+import com.facebook.buck.testutil.integration.TemporaryPaths;
+import com.facebook.buck.testutil.integration.ZipInspector;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.lang.model.SourceVersion;
+
+public class CalculateSourceAbiStepTest {
+  @Rule
+  public TemporaryPaths temp = new TemporaryPaths();
+
+  @Test
+  public void shouldWriteStubsForSourcesWithoutCompilingBodies() throws IOException {
+    ProjectFilesystem filesystem = new ProjectFilesystem(temp.getRoot());
+    Path source = Paths.get("com/example/A.java");
+    filesystem.mkdirs(source.getParent());
+    // The method body refers to a class that does not exist. That is fine for an ABI, since
+    // method bodies are never attributed.
+    filesystem.writeContentsToPath(
+        "package com.example;\n" +
+            "public class A {\n" +
+            "  public static final int CONSTANT = 42;\n" +
+            "  public int get() { return DoesNotExist.value(); }\n" +
+            "}\n",
+        source);
+    Path workingDirectory = Paths.get("out");
+    filesystem.mkdirs(workingDirectory);
+    Path abiJar = workingDirectory.resolve("a-abi.jar");
+
+    SourcePathResolver resolver = new SourcePathResolver(
+        new SourcePathRuleFinder(
+            new BuildRuleResolver(
+                TargetGraph.EMPTY,
+                new DefaultTargetNodeToBuildRuleTransformer())));
+    ExecutionContext executionContext = TestExecutionContext.newInstance();
+    FakeBuildableContext buildableContext = new FakeBuildableContext();
+
+    StepExecutionResult result = new CalculateSourceAbiStep(
+        buildableContext,
+        filesystem,
+        resolver,
+        DEFAULT_JAVAC_OPTIONS,
+        (Jsr199Javac) DEFAULT_JAVAC_OPTIONS.getJavac(),
+        /* absolutePathsForJavacInputs */ ImmutableList.of(),
+        ImmutableSortedSet.of(source),
+        ImmutableSortedSet.of(),
+        workingDirectory,
+        abiJar).execute(executionContext);
+
+    assertEquals(StepExecutionResult.SUCCESS, result);
+    ZipInspector inspector = new ZipInspector(filesystem.resolve(abiJar));
+    inspector.assertFileExists("com/example/A.class");
+    assertFalse(Files.exists(filesystem.resolve(workingDirectory).resolve("com")));
+  }
+
+  @Test
+  public void classFileVersionIsDerivedFromTargetLevel() {
+    assertEquals(SourceVersion.RELEASE_7, CalculateSourceAbiStep.getClassFileVersion("7"));
+    assertEquals(SourceVersion.RELEASE_6, CalculateSourceAbiStep.getClassFileVersion("1.6"));
+  }
+}
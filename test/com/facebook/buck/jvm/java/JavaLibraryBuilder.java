@@ -42,8 +42,16 @@ public class JavaLibraryBuilder extends
       BuildTarget target,
       ProjectFilesystem projectFilesystem,
       HashCode hashCode) {
+    this(target, projectFilesystem, hashCode, DEFAULT_JAVAC_OPTIONS);
+  }
+
+  protected JavaLibraryBuilder(
+      BuildTarget target,
+      ProjectFilesystem projectFilesystem,
+      HashCode hashCode,
+      JavacOptions defaultOptions) {
     super(
-        new JavaLibraryDescription(DEFAULT_JAVAC_OPTIONS),
+        new JavaLibraryDescription(defaultOptions),
         target,
         projectFilesystem,
         hashCode);
@@ -68,6 +76,12 @@ public class JavaLibraryBuilder extends
     return new JavaLibraryBuilder(target, new FakeProjectFilesystem(), hashCode);
   }
 
+  public static JavaLibraryBuilder createBuilder(
+      BuildTarget target,
+      JavacOptions defaultOptions) {
+    return new JavaLibraryBuilder(target, new FakeProjectFilesystem(), null, defaultOptions);
+  }
+
   public JavaLibraryBuilder addDep(BuildTarget rule) {
     arg.deps = amend(arg.deps, rule);
     return this;
@@ -17,24 +17,37 @@
 package com.facebook.buck.jvm.java;
 
 import static org.hamcrest.junit.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 
 import com.facebook.buck.rules.DefaultTargetNodeToBuildRuleTransformer;
 import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.model.BuildTargetFactory;
 import com.facebook.buck.rules.BuildRule;
 import com.facebook.buck.rules.BuildRuleResolver;
+import com.facebook.buck.rules.FakeBuildContext;
 import com.facebook.buck.rules.FakeBuildRule;
+import com.facebook.buck.rules.FakeBuildableContext;
 import com.facebook.buck.rules.FakeExportDependenciesRule;
 import com.facebook.buck.rules.SourcePathResolver;
 import com.facebook.buck.rules.SourcePathRuleFinder;
 import com.facebook.buck.rules.TargetGraph;
+import com.facebook.buck.rules.TargetNode;
+import com.facebook.buck.testutil.TargetGraphFactory;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableSortedSet;
 
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.file.Paths;
+
 public class JavaLibraryDescriptionTest {
 
+  private static final JavacOptions SOURCE_ABI_JAVAC_OPTIONS =
+      JavaCompilationConstants.DEFAULT_JAVAC_OPTIONS.withAbiGenerationMode(
+          JavacOptions.AbiGenerationMode.SOURCE);
+
   private FakeExportDependenciesRule exportingRule;
   private BuildRuleResolver resolver;
   private FakeBuildRule exportedRule;
@@ -69,4 +82,124 @@ public class JavaLibraryDescriptionTest {
 
     assertThat(javaLibrary.getDeps(), Matchers.<BuildRule>hasItem(exportedRule));
   }
+
+  @Test
+  public void sourceAbisOnlyDependOnTheAbisOfDeps() throws Exception {
+    TargetNode<?, ?> depNode = JavaLibraryBuilder
+        .createBuilder(BuildTargetFactory.newInstance("//:dep"), SOURCE_ABI_JAVAC_OPTIONS)
+        .addSrc(Paths.get("Dep.java"))
+        .build();
+    TargetNode<?, ?> ruleNode = JavaLibraryBuilder
+        .createBuilder(BuildTargetFactory.newInstance("//:rule"), SOURCE_ABI_JAVAC_OPTIONS)
+        .addSrc(Paths.get("Rule.java"))
+        .addDep(depNode.getBuildTarget())
+        .build();
+    BuildRuleResolver resolver = newResolver(depNode, ruleNode);
+
+    BuildRule abi = resolver.requireRule(getAbiTarget(ruleNode));
+    BuildRule depAbi = resolver.requireRule(getAbiTarget(depNode));
+    BuildRule dep = resolver.requireRule(depNode.getBuildTarget());
+
+    assertThat(abi, Matchers.instanceOf(CalculateSourceAbi.class));
+    assertThat(abi.getDeps(), Matchers.<BuildRule>hasItem(depAbi));
+    assertThat(abi.getDeps(), Matchers.not(Matchers.<BuildRule>hasItem(dep)));
+  }
+
+  @Test
+  public void librariesCompileAgainstTheAbisOfDepsWhenAbisComeFromSource() throws Exception {
+    TargetNode<?, ?> depNode = JavaLibraryBuilder
+        .createBuilder(BuildTargetFactory.newInstance("//:dep"), SOURCE_ABI_JAVAC_OPTIONS)
+        .addSrc(Paths.get("Dep.java"))
+        .build();
+    TargetNode<?, ?> ruleNode = JavaLibraryBuilder
+        .createBuilder(BuildTargetFactory.newInstance("//:rule"), SOURCE_ABI_JAVAC_OPTIONS)
+        .addSrc(Paths.get("Rule.java"))
+        .addDep(depNode.getBuildTarget())
+        .build();
+    BuildRuleResolver resolver = newResolver(depNode, ruleNode);
+    SourcePathResolver pathResolver = new SourcePathResolver(new SourcePathRuleFinder(resolver));
+
+    BuildRule javaLibrary = resolver.requireRule(ruleNode.getBuildTarget());
+    BuildRule depAbi = resolver.requireRule(getAbiTarget(depNode));
+    JavacStep javacStep = FluentIterable
+        .from(
+            javaLibrary.getBuildSteps(
+                FakeBuildContext.withSourcePathResolver(pathResolver),
+                new FakeBuildableContext()))
+        .filter(JavacStep.class)
+        .first()
+        .get();
+
+    assertEquals(
+        ImmutableSortedSet.of(pathResolver.getAbsolutePath(depAbi.getSourcePathToOutput())),
+        javacStep.getClasspathEntries());
+  }
+
+  @Test
+  public void librariesBuildAfterTheAbisOfDepsWhenAbisComeFromSource() throws Exception {
+    TargetNode<?, ?> depNode = JavaLibraryBuilder
+        .createBuilder(BuildTargetFactory.newInstance("//:dep"), SOURCE_ABI_JAVAC_OPTIONS)
+        .addSrc(Paths.get("Dep.java"))
+        .build();
+    TargetNode<?, ?> ruleNode = JavaLibraryBuilder
+        .createBuilder(BuildTargetFactory.newInstance("//:rule"), SOURCE_ABI_JAVAC_OPTIONS)
+        .addSrc(Paths.get("Rule.java"))
+        .addDep(depNode.getBuildTarget())
+        .build();
+    BuildRuleResolver resolver = newResolver(depNode, ruleNode);
+
+    JavaLibrary javaLibrary = (JavaLibrary) resolver.requireRule(ruleNode.getBuildTarget());
+    BuildRule depAbi = resolver.requireRule(getAbiTarget(depNode));
+    BuildRule dep = resolver.requireRule(depNode.getBuildTarget());
+
+    assertThat(javaLibrary.getDeps(), Matchers.<BuildRule>hasItem(depAbi));
+    assertThat(javaLibrary.getDeps(), Matchers.not(Matchers.<BuildRule>hasItem(dep)));
+    assertThat(javaLibrary.getDepsForTransitiveClasspathEntries(), Matchers.contains(dep));
+    assertThat(javaLibrary.getTransitiveClasspathDeps(), Matchers.<JavaLibrary>hasItem(
+        (JavaLibrary) dep));
+  }
+
+  @Test
+  public void classpathDepsWithoutAnAbiContributeTheirOutputWhenAbisComeFromSource()
+      throws Exception {
+    TargetNode<?, ?> binaryNode =
+        new JavaBinaryRuleBuilder(BuildTargetFactory.newInstance("//:binary"))
+            .setDeps(ImmutableSortedSet.of())
+            .build();
+    TargetNode<?, ?> ruleNode = JavaLibraryBuilder
+        .createBuilder(BuildTargetFactory.newInstance("//:rule"), SOURCE_ABI_JAVAC_OPTIONS)
+        .addSrc(Paths.get("Rule.java"))
+        .addDep(binaryNode.getBuildTarget())
+        .build();
+    BuildRuleResolver resolver = newResolver(binaryNode, ruleNode);
+    SourcePathResolver pathResolver = new SourcePathResolver(new SourcePathRuleFinder(resolver));
+
+    BuildRule javaLibrary = resolver.requireRule(ruleNode.getBuildTarget());
+    BuildRule abi = resolver.requireRule(getAbiTarget(ruleNode));
+    BuildRule binary = resolver.requireRule(binaryNode.getBuildTarget());
+    JavacStep javacStep = FluentIterable
+        .from(
+            javaLibrary.getBuildSteps(
+                FakeBuildContext.withSourcePathResolver(pathResolver),
+                new FakeBuildableContext()))
+        .filter(JavacStep.class)
+        .first()
+        .get();
+
+    assertEquals(
+        ImmutableSortedSet.of(pathResolver.getAbsolutePath(binary.getSourcePathToOutput())),
+        javacStep.getClasspathEntries());
+    assertThat(javaLibrary.getDeps(), Matchers.<BuildRule>hasItem(binary));
+    assertThat(abi.getDeps(), Matchers.<BuildRule>hasItem(binary));
+  }
+
+  private static BuildRuleResolver newResolver(TargetNode<?, ?>... nodes) {
+    return new BuildRuleResolver(
+        TargetGraphFactory.newInstance(nodes),
+        new DefaultTargetNodeToBuildRuleTransformer());
+  }
+
+  private static BuildTarget getAbiTarget(TargetNode<?, ?> node) {
+    return node.getBuildTarget().withFlavors(HasJavaAbi.ABI_FLAVOR);
+  }
 }
@@ -196,4 +196,31 @@ public class BuildTargetTest {
         .build();
     assertSame(target1, target2);
   }
+
+  @Test
+  public void flavoredBuildTargetsAreInterned() {
+    Flavor flavor = ImmutableFlavor.of("baz");
+    BuildTarget target = BuildTarget.builder(ROOT, "//foo", "bar").addFlavors(flavor).build();
+    UnflavoredBuildTarget unflavored = target.getUnflavoredBuildTarget();
+    assertSame(target, BuildTarget.of(unflavored, ImmutableSortedSet.of(flavor)));
+    assertSame(target, BuildTarget.of(unflavored).withAppendedFlavors(flavor));
+    assertSame(target, BuildTarget.of(unflavored).withFlavors(ImmutableFlavor.of("baz")));
+    assertSame(
+        BuildTarget.of(unflavored),
+        target.withoutFlavors(ImmutableSet.of(ImmutableFlavor.of("baz"))));
+  }
+
+  @Test
+  public void flavorsAreInterned() {
+    assertSame(ImmutableFlavor.of("baz"), ImmutableFlavor.of(new String("baz")));
+  }
+
+  @Test
+  public void basePathIsSharedByTargetsOfABuildFile() {
+    BuildTarget target1 = BuildTarget.builder(ROOT, "//foo/bar", "baz").build();
+    BuildTarget target2 = BuildTarget.builder(ROOT, "//foo/bar", "qux").build();
+    assertEquals(Paths.get("foo/bar"), target1.getBasePath());
+    assertSame(target1.getBasePath(), target1.getBasePath());
+    assertSame(target1.getBasePath(), target2.getBasePath());
+  }
 }
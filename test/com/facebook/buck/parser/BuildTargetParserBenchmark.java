@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.facebook.buck.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import com.facebook.buck.model.BuildTarget;
+import com.facebook.buck.model.Flavor;
+import com.facebook.buck.rules.CellPathResolver;
+import com.facebook.buck.rules.TestCellBuilder;
+import com.facebook.buck.testutil.FakeProjectFilesystem;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Measures what the targets named by the deps of many build files cost to parse and keep. Each
+ * target is referred to from several build files, as popular libraries are in a large repo. Run
+ * with caliper's allocation instrument ({@code -i allocation}) to see the memory side.
+ */
+public class BuildTargetParserBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  private int targetCount = 10000;
+
+  @Param({"1", "10"})
+  private int referencesPerTarget = 10;
+
+  private CellPathResolver cellRoots;
+  private List<String> names;
+
+  @Before
+  public void setUpTest() throws Exception {
+    targetCount = 1000;
+    setUpBenchmark();
+  }
+
+  @BeforeExperiment
+  public void setUpBenchmark() throws Exception {
+    cellRoots = TestCellBuilder.createCellRoots(new FakeProjectFilesystem());
+    ImmutableList.Builder<String> namesBuilder = ImmutableList.builder();
+    for (int reference = 0; reference < referencesPerTarget; reference++) {
+      for (int i = 0; i < targetCount; i++) {
+        // Build every name afresh, as reading each build file would.
+        String name = String.format("//java/com/example/lib%d:lib%d", i / 10, i);
+        if (i % 3 == 0) {
+          name += "#headers,default";
+        }
+        namesBuilder.add(name);
+      }
+    }
+    names = namesBuilder.build();
+  }
+
+  @Test
+  public void parseTargetsCorrectness() {
+    List<BuildTarget> targets = parseTargets();
+    assertEquals(targetCount * referencesPerTarget, targets.size());
+
+    // Equal targets, and the paths and flavors in them, are all the same instances.
+    Set<BuildTarget> distinctTargets = Sets.newIdentityHashSet();
+    Set<Path> distinctBasePaths = Sets.newIdentityHashSet();
+    Set<Flavor> distinctFlavors = Sets.newIdentityHashSet();
+    for (BuildTarget target : targets) {
+      distinctTargets.add(target);
+      distinctBasePaths.add(target.getBasePath());
+      distinctFlavors.addAll(target.getFlavors());
+    }
+    assertEquals(targetCount, distinctTargets.size());
+    assertEquals(targetCount / 10, distinctBasePaths.size());
+    assertEquals(2, distinctFlavors.size());
+  }
+
+  @Benchmark
+  public List<BuildTarget> parseTargets() {
+    BuildTargetPatternParser<?> patternParser = BuildTargetPatternParser.fullyQualified();
+    ImmutableList.Builder<BuildTarget> targets = ImmutableList.builder();
+    for (String name : names) {
+      BuildTarget target = BuildTargetParser.INSTANCE.parse(name, patternParser, cellRoots);
+      target.getBasePath();
+      targets.add(target);
+    }
+    return targets.build();
+  }
+
+}
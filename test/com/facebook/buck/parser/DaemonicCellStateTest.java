@@ -22,13 +22,17 @@ import static org.junit.Assert.assertFalse;
 import com.facebook.buck.cli.BuckConfig;
 import com.facebook.buck.cli.FakeBuckConfig;
 import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.json.GlobSpec;
+import com.facebook.buck.jvm.java.JavaLibraryBuilder;
 import com.facebook.buck.model.BuildTarget;
 import com.facebook.buck.model.BuildTargetException;
 import com.facebook.buck.model.BuildTargetFactory;
 import com.facebook.buck.parser.PipelineNodeCache.Cache;
 import com.facebook.buck.rules.Cell;
+import com.facebook.buck.rules.TargetNode;
 import com.facebook.buck.rules.TestCellBuilder;
 import com.facebook.buck.testutil.integration.TemporaryPaths;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
@@ -38,6 +42,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Optional;
 
 public class DaemonicCellStateTest {
@@ -155,4 +160,112 @@ public class DaemonicCellStateTest {
         cache.lookupComputedNode(cell, target));
   }
 
+  @Test
+  public void testNodesOfUnchangedTargetsAreReusedAfterModification()
+      throws BuildTargetException, IOException {
+    Cache<BuildTarget, Boolean> cache = state.getOrCreateCache(Boolean.class);
+    Path buildFile = cell.getRoot().resolve("path/to/BUCK");
+    BuildTarget unchanged = BuildTargetFactory.newInstance(filesystem, "//path/to:unchanged");
+    BuildTarget changed = BuildTargetFactory.newInstance(filesystem, "//path/to:changed");
+    ImmutableMap<String, Object> unchangedRawNode =
+        ImmutableMap.of("buck.base_path", "path/to", "name", "unchanged");
+
+    state.putRawNodesIfNotPresentAndStripMetaEntries(
+        buildFile,
+        ImmutableSet.of(
+            unchangedRawNode,
+            ImmutableMap.of("buck.base_path", "path/to", "name", "changed", "out", "a")),
+        ImmutableSet.of(),
+        ImmutableMap.of(),
+        ImmutableMap.of());
+    cache.putComputedNodeIfNotPresent(cell, unchanged, true);
+    cache.putComputedNodeIfNotPresent(cell, changed, true);
+
+    assertEquals(2, state.invalidatePath(buildFile, /* retainTargets */ true));
+    assertEquals(Optional.empty(), cache.lookupComputedNode(cell, unchanged));
+    assertEquals(Optional.empty(), cache.lookupComputedNode(cell, changed));
+
+    state.putRawNodesIfNotPresentAndStripMetaEntries(
+        buildFile,
+        ImmutableSet.of(
+            unchangedRawNode,
+            ImmutableMap.of("buck.base_path", "path/to", "name", "changed", "out", "b")),
+        ImmutableSet.of(),
+        ImmutableMap.of(),
+        ImmutableMap.of());
+    assertEquals(Optional.of(true), cache.lookupComputedNode(cell, unchanged));
+    assertEquals(Optional.empty(), cache.lookupComputedNode(cell, changed));
+
+    // Nodes aren't retained when build files are invalidated because files were added or removed.
+    state.invalidatePath(buildFile);
+    state.putRawNodesIfNotPresentAndStripMetaEntries(
+        buildFile,
+        ImmutableSet.of(unchangedRawNode),
+        ImmutableSet.of(),
+        ImmutableMap.of(),
+        ImmutableMap.of());
+    assertEquals(Optional.empty(), cache.lookupComputedNode(cell, unchanged));
+  }
+
+  @Test
+  public void testGlobsAreInvalidatedByChangesBelowTheirSearchBase() {
+    Path root = cell.getRoot();
+    GlobSpec outer =
+        GlobSpec.of(root.resolve("foo"), ImmutableList.of("**/*.java"), ImmutableList.of(), false);
+    GlobSpec inner =
+        GlobSpec.of(root.resolve("foo/bar"), ImmutableList.of("*.java"), ImmutableList.of(), false);
+    GlobSpec sibling =
+        GlobSpec.of(root.resolve("baz"), ImmutableList.of("*.java"), ImmutableList.of(), false);
+    state.putGlob(outer, ImmutableList.of("bar/A.java"));
+    state.putGlob(inner, ImmutableList.of("A.java"));
+    state.putGlob(sibling, ImmutableList.of("B.java"));
+    assertEquals(Optional.of(ImmutableList.of("A.java")), state.lookupGlob(inner));
+
+    assertEquals(2, state.invalidateGlobsAffectedBy(root.resolve("foo/bar/C.java")));
+    assertEquals(Optional.empty(), state.lookupGlob(outer));
+    assertEquals(Optional.empty(), state.lookupGlob(inner));
+    assertEquals(Optional.of(ImmutableList.of("B.java")), state.lookupGlob(sibling));
+  }
+
+  @Test
+  public void testOwnersOfInputsAreTrackedAsNodesAreCachedAndInvalidated()
+      throws BuildTargetException, IOException {
+    @SuppressWarnings("rawtypes")
+    Cache<BuildTarget, TargetNode> cache = state.getOrCreateCache(TargetNode.class);
+    Path buildFile = cell.getRoot().resolve("path/to/BUCK");
+    BuildTarget target = BuildTargetFactory.newInstance(filesystem, "//path/to:lib");
+    TargetNode<?, ?> node = JavaLibraryBuilder.createBuilder(target)
+        .addSrc(Paths.get("path/to/A.java"))
+        .addSrc(Paths.get("path/to/resources"))
+        .build();
+    ImmutableMap<String, Object> rawNode =
+        ImmutableMap.of("buck.base_path", "path/to", "name", "lib");
+
+    state.putRawNodesIfNotPresentAndStripMetaEntries(
+        buildFile,
+        ImmutableSet.of(rawNode),
+        ImmutableSet.of(),
+        ImmutableMap.of(),
+        ImmutableMap.of());
+    cache.putComputedNodeIfNotPresent(cell, target, node);
+    assertEquals(ImmutableSet.of(target), state.getTargetsWithInput(Paths.get("path/to/A.java")));
+    assertEquals(
+        "Files in directories which are inputs should be owned too",
+        ImmutableSet.of(target),
+        state.getTargetsWithInput(Paths.get("path/to/resources/a.txt")));
+    assertEquals(ImmutableSet.of(), state.getTargetsWithInput(Paths.get("path/to/B.java")));
+
+    state.invalidatePath(buildFile, /* retainTargets */ true);
+    assertEquals(ImmutableSet.of(), state.getTargetsWithInput(Paths.get("path/to/A.java")));
+
+    // Reusing the node of an unchanged target should index its inputs again.
+    state.putRawNodesIfNotPresentAndStripMetaEntries(
+        buildFile,
+        ImmutableSet.of(rawNode),
+        ImmutableSet.of(),
+        ImmutableMap.of(),
+        ImmutableMap.of());
+    assertEquals(ImmutableSet.of(target), state.getTargetsWithInput(Paths.get("path/to/A.java")));
+  }
+
 }
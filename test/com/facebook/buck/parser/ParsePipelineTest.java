@@ -428,7 +428,8 @@ public class ParsePipelineTest {
               projectBuildFileParsers.add(buildFileParser);
             }
             return buildFileParser;
-          });
+          },
+          eventBus);
       final TargetNodeListener<TargetNode<?, ?>> nodeListener =
           (buildFile, node) -> {
           };
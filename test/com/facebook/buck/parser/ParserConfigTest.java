@@ -86,6 +86,24 @@ public class ParserConfigTest {
     }
   }
 
+  @Test
+  public void testGetBuildFileEvaluator() throws IOException {
+    assertThat(
+        FakeBuckConfig.builder().build().getView(ParserConfig.class).getBuildFileEvaluator(),
+        Matchers.equalTo(ParserConfig.BuildFileEvaluator.PYTHON));
+
+    for (ParserConfig.BuildFileEvaluator evaluator : ParserConfig.BuildFileEvaluator.values()) {
+      Reader reader = new StringReader(
+          Joiner.on('\n').join(
+              "[project]",
+              "build_file_evaluator = " + evaluator.toString()));
+      ParserConfig config = BuckConfigTestUtils.createWithDefaultFilesystem(
+          temporaryFolder,
+          reader).getView(ParserConfig.class);
+      assertThat(config.getBuildFileEvaluator(), Matchers.equalTo(evaluator));
+    }
+  }
+
   @Test
   public void testGetWatchCells() throws IOException {
     assertTrue(
@@ -77,6 +77,8 @@ import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 
@@ -96,9 +98,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.SortedMap;
@@ -325,6 +329,44 @@ public class ParserTest {
         buildTargets);
   }
 
+  @Test
+  public void cachedOwnersOfAFileAreFoundWithoutParsingUntilTheirBuildFileChanges()
+      throws IOException, BuildFileParseException, InterruptedException {
+    Path buckFile = cellRoot.resolve("owned/BUCK");
+    Files.createDirectories(buckFile.getParent());
+    Files.write(
+        buckFile,
+        ("java_library(name = 'a', srcs = ['A.java'])\n" +
+            "java_library(name = 'b', srcs = ['B.java'])\n").getBytes(UTF_8));
+    Files.createFile(cellRoot.resolve("owned/A.java"));
+    Files.createFile(cellRoot.resolve("owned/B.java"));
+    Path source = Paths.get("owned/A.java");
+    assertEquals(
+        "The build file should have to be parsed before its nodes are cached",
+        Optional.empty(),
+        parser.getCachedTargetNodesWithInput(cell, buckFile, source));
+
+    parser.getAllTargetNodes(eventBus, cell, false, executorService, buckFile);
+    Optional<ImmutableSet<TargetNode<?, ?>>> owners =
+        parser.getCachedTargetNodesWithInput(cell, buckFile, source);
+    assertTrue(owners.isPresent());
+    assertEquals(
+        ImmutableSet.of(BuildTargetFactory.newInstance(cellRoot, "//owned:a")),
+        owners.get().stream()
+            .map(TargetNode::getBuildTarget)
+            .collect(MoreCollectors.toImmutableSet()));
+    assertEquals(1, counter.calls);
+
+    parser.onFileSystemChange(
+        createPathEvent(
+            MorePaths.relativize(cellRoot, buckFile),
+            StandardWatchEventKinds.ENTRY_MODIFY));
+    assertEquals(
+        "Owners should not be looked up in the nodes of a build file which changed",
+        Optional.empty(),
+        parser.getCachedTargetNodesWithInput(cell, buckFile, source));
+  }
+
   @Test
   public void shouldThrowAnExceptionIfConstructorArgMashallingFails()
       throws IOException, BuildFileParseException, InterruptedException {
@@ -508,6 +550,124 @@ public class ParserTest {
         buildTargets);
   }
 
+  @Test
+  public void testInvalidTransitiveDepNamesTheTargetDependingOnIt() throws Exception {
+    thrown.expect(HumanReadableException.class);
+    thrown.expectMessage(
+        "Couldn't get dependency '//chain/c:missing' of target '//chain/b:b'");
+
+    writeBuildFile("chain/a", "java_library(name = 'a', deps = ['//chain/b:b'])");
+    writeBuildFile(
+        "chain/b",
+        "java_library(name = 'b', deps = ['//chain/c:missing'], visibility = ['PUBLIC'])");
+    writeBuildFile("chain/c", "");
+
+    parser.buildTargetGraph(
+        eventBus,
+        cell,
+        false,
+        executorService,
+        ImmutableList.of(BuildTargetFactory.newInstance(cellRoot, "//chain/a:a")));
+  }
+
+  @Test
+  public void buildTargetGraphReportsCycles() throws Exception {
+    thrown.expect(HumanReadableException.class);
+    thrown.expectMessage("Cycle found: //cycle/a:a -> //cycle/b:b -> //cycle/a:a");
+
+    writeBuildFile(
+        "cycle/a",
+        "java_library(name = 'a', deps = ['//cycle/b:b'], visibility = ['PUBLIC'])");
+    writeBuildFile(
+        "cycle/b",
+        "java_library(name = 'b', deps = ['//cycle/a:a'], visibility = ['PUBLIC'])");
+
+    parser.buildTargetGraph(
+        eventBus,
+        cell,
+        false,
+        executorService,
+        ImmutableList.of(BuildTargetFactory.newInstance(cellRoot, "//cycle/a:a")));
+  }
+
+  @Test
+  public void concurrentCallersBuildTheSameTargetGraph() throws Exception {
+    // Each package depends on the next two, so most nodes are reached along several paths.
+    int packages = 20;
+    for (int i = 0; i < packages; i++) {
+      List<String> deps = new ArrayList<>();
+      for (int dep = i + 1; dep < Math.min(i + 3, packages); dep++) {
+        deps.add("'//pkg" + dep + ":lib'");
+      }
+      writeBuildFile(
+          "pkg" + i,
+          "java_library(name = 'lib', deps = [" + Joiner.on(", ").join(deps) + "], " +
+              "visibility = ['PUBLIC'])");
+    }
+    ImmutableSet<BuildTarget> roots =
+        ImmutableSet.of(BuildTargetFactory.newInstance(cellRoot, "//pkg0:lib"));
+
+    ListeningExecutorService callers =
+        MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+    try {
+      List<ListenableFuture<TargetGraph>> graphs = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        graphs.add(
+            callers.submit(
+                () -> parser.buildTargetGraph(eventBus, cell, false, executorService, roots)));
+      }
+      for (TargetGraph graph : Futures.allAsList(graphs).get()) {
+        assertEquals(packages, graph.getNodes().size());
+        for (int i = 0; i < packages; i++) {
+          TargetNode<?, ?> node =
+              graph.get(BuildTargetFactory.newInstance(cellRoot, "//pkg" + i + ":lib"));
+          assertEquals(
+              node.getDeps(),
+              graph.getOutgoingNodesFor(node).stream()
+                  .map(TargetNode::getBuildTarget)
+                  .collect(MoreCollectors.toImmutableSet()));
+        }
+      }
+    } finally {
+      callers.shutdown();
+    }
+  }
+
+  @Test
+  public void ignoringAutodepsStillAddsEdgesToDepsWhichAreNotExplored() throws Exception {
+    writeBuildFile("app", "java_library(name = 'app', deps = ['//lib:lib'])");
+    writeBuildFile("lib", "java_library(name = 'lib', visibility = ['PUBLIC'])");
+    BuildTarget app = BuildTargetFactory.newInstance(cellRoot, "//app:app");
+    BuildTarget lib = BuildTargetFactory.newInstance(cellRoot, "//lib:lib");
+
+    try (PerBuildState state =
+             new PerBuildState(
+                 parser,
+                 eventBus,
+                 executorService,
+                 cell,
+                 /* enableProfiling */ false,
+                 SpeculativeParsing.of(true),
+                 /* ignoreBuckAutodepsFiles */ true)) {
+      TargetGraph graph = parser.buildTargetGraph(
+          state,
+          eventBus,
+          ImmutableList.of(app),
+          /* ignoreBuckAutodepsFiles */ true);
+      assertEquals(
+          ImmutableSet.of(lib),
+          graph.getOutgoingNodesFor(graph.get(app)).stream()
+              .map(TargetNode::getBuildTarget)
+              .collect(MoreCollectors.toImmutableSet()));
+    }
+  }
+
+  private void writeBuildFile(String basePath, String contents) throws IOException {
+    Path buildFile = cellRoot.resolve(basePath).resolve(DEFAULT_BUILD_FILE_NAME);
+    Files.createDirectories(buildFile.getParent());
+    Files.write(buildFile, (contents + "\n").getBytes(UTF_8));
+  }
+
   @Test
   public void whenAllRulesRequestedWithTrueFilterThenMultipleRulesReturned()
       throws BuildFileParseException, BuildTargetException, IOException, InterruptedException {
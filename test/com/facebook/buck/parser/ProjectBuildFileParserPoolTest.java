@@ -19,6 +19,7 @@ package com.facebook.buck.parser;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
+import com.facebook.buck.event.BuckEventBusFactory;
 import com.facebook.buck.json.ProjectBuildFileParser;
 import com.facebook.buck.rules.Cell;
 import com.facebook.buck.util.concurrent.AssertScopeExclusiveAccess;
@@ -82,7 +83,8 @@ public class ProjectBuildFileParserPoolTest {
                     assertThat(didntTimeout, Matchers.equalTo(true));
                     return ImmutableList.of();
                   });
-            })) {
+            },
+            BuckEventBusFactory.newInstance())) {
 
       Futures.allAsList(scheduleWork(cell, parserPool, executorService, numRequests)).get();
       assertThat(createCount.get(), Matchers.equalTo(expectedCreateCount));
@@ -153,7 +155,8 @@ public class ProjectBuildFileParserPoolTest {
               }
               EasyMock.replay(parser);
               return parser;
-            })) {
+            },
+            BuckEventBusFactory.newInstance())) {
 
       Futures.allAsList(scheduleWork(cell, parserPool, executorService, parsersCount * 2)).get();
       assertThat(parserCount.get(), Matchers.is(4));
@@ -194,7 +197,8 @@ public class ProjectBuildFileParserPoolTest {
                          }
                          return ImmutableList.of();
                        });
-                 })) {
+                 },
+                 BuckEventBusFactory.newInstance())) {
 
       Futures.allAsList(scheduleWork(cell, parserPool, executorService, 142)).get();
     } finally {
@@ -219,7 +223,8 @@ public class ProjectBuildFileParserPoolTest {
                        waitTillCanceled.await();
                        waitTillAllWorkIsDone.countDown();
                        return ImmutableList.of();
-                     }))) {
+                     }),
+                 BuckEventBusFactory.newInstance())) {
 
       ImmutableSet<ListenableFuture<?>> futures =
           scheduleWork(cell, parserPool, executorService, numberOfJobs);
@@ -255,7 +260,8 @@ public class ProjectBuildFileParserPoolTest {
                        firstJobRunning.countDown();
                        waitTillClosed.await();
                        return ImmutableList.of();
-                     }))) {
+                     }),
+                 BuckEventBusFactory.newInstance())) {
 
       futures = scheduleWork(cell, parserPool, executorService, 5);
       for (ListenableFuture<?> future : futures) {
@@ -308,7 +314,8 @@ public class ProjectBuildFileParserPoolTest {
                          throw new Exception(exceptionMessage);
                        }
                        return ImmutableList.of();
-                     }))) {
+                     }),
+                 BuckEventBusFactory.newInstance())) {
 
       ImmutableSet<ListenableFuture<?>> failedWork =
           scheduleWork(cell, parserPool, executorService, 5);
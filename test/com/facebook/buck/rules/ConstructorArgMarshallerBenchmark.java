@@ -0,0 +1,281 @@
+/*
+ * Copyright 2017-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.facebook.buck.rules;
+
+import static com.facebook.buck.rules.TestCellBuilder.createCellRoots;
+import static org.junit.Assert.assertEquals;
+
+import com.facebook.buck.io.ProjectFilesystem;
+import com.facebook.buck.model.BuildTarget;
+import com.facebook.buck.model.BuildTargetFactory;
+import com.facebook.buck.rules.coercer.CoerceFailedException;
+import com.facebook.buck.rules.coercer.DefaultTypeCoercerFactory;
+import com.facebook.buck.rules.coercer.TypeCoercer;
+import com.facebook.buck.rules.coercer.TypeCoercerFactory;
+import com.facebook.buck.testutil.FakeProjectFilesystem;
+import com.facebook.buck.util.ObjectMappers;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Measures populating constructor args for many targets of the same rule type, as the parser does
+ * when converting the raw nodes of a large build file. {@link Implementation#REFLECTIVE} is the
+ * baseline: it populates args the way {@link ConstructorArgMarshaller} did before it precompiled a
+ * coercion plan per class, looking fields up in a Guava cache and setting them through
+ * {@link Field}.
+ */
+public class ConstructorArgMarshallerBenchmark {
+
+  public enum Implementation {
+    PRECOMPILED,
+    REFLECTIVE,
+  }
+
+  @Param({"100", "1000", "10000"})
+  private int targetCount = 1000;
+
+  @Param({"PRECOMPILED", "REFLECTIVE"})
+  private Implementation implementation = Implementation.PRECOMPILED;
+
+  private ConstructorArgMarshaller marshaller;
+  private ReflectiveMarshaller reflectiveMarshaller;
+  private ProjectFilesystem filesystem;
+  private CellPathResolver cellRoots;
+  private List<BuildTarget> targets;
+  private List<Map<String, Object>> instances;
+
+  @Before
+  public void setUpTest() throws Exception {
+    targetCount = 100;
+    setUpBenchmark();
+  }
+
+  @BeforeExperiment
+  public void setUpBenchmark() throws Exception {
+    TypeCoercerFactory typeCoercerFactory =
+        new DefaultTypeCoercerFactory(ObjectMappers.newDefaultInstance());
+    marshaller = new ConstructorArgMarshaller(typeCoercerFactory);
+    reflectiveMarshaller = new ReflectiveMarshaller(typeCoercerFactory);
+    filesystem = new FakeProjectFilesystem();
+    cellRoots = createCellRoots(filesystem);
+
+    ImmutableList.Builder<BuildTarget> targetsBuilder = ImmutableList.builder();
+    ImmutableList.Builder<Map<String, Object>> instancesBuilder = ImmutableList.builder();
+    for (int i = 0; i < targetCount; i++) {
+      targetsBuilder.add(BuildTargetFactory.newInstance("//lib" + i + ":lib" + i));
+      instancesBuilder.add(
+          ImmutableMap.of(
+              "cmd", "cp $SRCS $OUT",
+              "out", "lib" + i + ".out",
+              "deps", ImmutableList.of(":base", "//common:util", "//lib" + (i + 1) + ":lib"),
+              "labels", ImmutableList.of("generated", "lib" + i)));
+    }
+    targets = targetsBuilder.build();
+    instances = instancesBuilder.build();
+  }
+
+  @Test
+  public void populateCorrectness() throws Exception {
+    for (Implementation implementation : Implementation.values()) {
+      this.implementation = implementation;
+      assertEquals(implementation.toString(), targetCount * 3, populate());
+    }
+  }
+
+  @Test
+  public void implementationsPopulateTheSameArgs() throws Exception {
+    for (int i = 0; i < targetCount; i++) {
+      Arg precompiled = new Arg();
+      marshaller.populate(
+          cellRoots,
+          filesystem,
+          targets.get(i),
+          precompiled,
+          ImmutableSet.builder(),
+          ImmutableSet.builder(),
+          instances.get(i));
+      Arg reflective = new Arg();
+      reflectiveMarshaller.populate(
+          cellRoots,
+          filesystem,
+          targets.get(i),
+          reflective,
+          ImmutableSet.builder(),
+          instances.get(i));
+      assertEquals(precompiled.toString(), reflective.toString());
+    }
+  }
+
+  @Benchmark
+  public int populate() throws Exception {
+    int declaredDeps = 0;
+    for (int i = 0; i < targetCount; i++) {
+      ImmutableSet.Builder<BuildTarget> deps = ImmutableSet.builder();
+      switch (implementation) {
+        case PRECOMPILED:
+          marshaller.populate(
+              cellRoots,
+              filesystem,
+              targets.get(i),
+              new Arg(),
+              deps,
+              ImmutableSet.builder(),
+              instances.get(i));
+          break;
+        case REFLECTIVE:
+          reflectiveMarshaller.populate(
+              cellRoots,
+              filesystem,
+              targets.get(i),
+              new Arg(),
+              deps,
+              instances.get(i));
+          break;
+      }
+      declaredDeps += deps.build().size();
+    }
+    return declaredDeps;
+  }
+
+  public static class Arg {
+    public String cmd;
+    public String out;
+    public Optional<String> bash;
+    public ImmutableSortedSet<BuildTarget> deps = ImmutableSortedSet.of();
+    public ImmutableSortedSet<String> labels = ImmutableSortedSet.of();
+    public Optional<Boolean> executable;
+
+    @Override
+    public String toString() {
+      return String.join(
+          ",",
+          cmd,
+          out,
+          String.valueOf(bash),
+          String.valueOf(deps),
+          String.valueOf(labels),
+          String.valueOf(executable));
+    }
+  }
+
+  /**
+   * Populates constructor args through reflection on every call, as the marshaller used to.
+   */
+  private static class ReflectiveMarshaller {
+    private final TypeCoercerFactory typeCoercerFactory;
+    private final Cache<Class<?>, ImmutableList<ReflectiveParam>> params =
+        CacheBuilder.newBuilder().build();
+
+    ReflectiveMarshaller(TypeCoercerFactory typeCoercerFactory) {
+      this.typeCoercerFactory = typeCoercerFactory;
+    }
+
+    void populate(
+        CellPathResolver cellRoots,
+        ProjectFilesystem filesystem,
+        BuildTarget buildTarget,
+        Object dto,
+        ImmutableSet.Builder<BuildTarget> declaredDeps,
+        Map<String, ?> instance) throws Exception {
+      Class<?> argClass = dto.getClass();
+      for (ReflectiveParam param : params.get(argClass, () -> {
+        Object emptyArg = argClass.newInstance();
+        ImmutableList.Builder<ReflectiveParam> allParams = ImmutableList.builder();
+        for (Field field : argClass.getFields()) {
+          if (!Modifier.isFinal(field.getModifiers())) {
+            allParams.add(new ReflectiveParam(typeCoercerFactory, field, emptyArg));
+          }
+        }
+        return allParams.build();
+      })) {
+        param.set(
+            cellRoots,
+            filesystem,
+            buildTarget.getBasePath(),
+            dto,
+            instance.get(param.field.getName()));
+        if (param.field.getName().equals("deps")) {
+          param.traverse(
+              object -> {
+                if (object instanceof BuildTarget) {
+                  declaredDeps.add((BuildTarget) object);
+                }
+              },
+              dto);
+        }
+      }
+    }
+  }
+
+  private static class ReflectiveParam {
+    private final Field field;
+    private final TypeCoercer<?> typeCoercer;
+    private final Object defaultValue;
+
+    ReflectiveParam(TypeCoercerFactory typeCoercerFactory, Field field, Object emptyArg)
+        throws IllegalAccessException {
+      this.field = field;
+      this.typeCoercer = typeCoercerFactory.typeCoercerForType(field.getGenericType());
+      this.defaultValue = field.get(emptyArg);
+    }
+
+    void set(
+        CellPathResolver cellRoots,
+        ProjectFilesystem filesystem,
+        Path pathRelativeToProjectRoot,
+        Object dto,
+        Object value) throws CoerceFailedException, IllegalAccessException {
+      Object result;
+      if (value != null) {
+        result = typeCoercer.coerce(cellRoots, filesystem, pathRelativeToProjectRoot, value);
+      } else if (defaultValue != null) {
+        result = defaultValue;
+      } else {
+        result = Optional.empty();
+      }
+      field.set(dto, result);
+    }
+
+    @SuppressWarnings("unchecked")
+    <U> void traverse(TypeCoercer.Traversal traversal, Object dto)
+        throws IllegalAccessException {
+      Object value = field.get(dto);
+      if (value != null) {
+        ((TypeCoercer<U>) typeCoercer).traverse((U) value, traversal);
+      }
+    }
+  }
+
+}
@@ -31,6 +31,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -153,6 +154,40 @@ public class ResourcePoolTest {
     }
   }
 
+  @Test
+  public void waitingOperationsRunInPriorityOrder() throws Exception {
+    try (Fixture f = new Fixture(/* maxResources */ 1)) {
+      CountDownLatch firstOperationRunning = new CountDownLatch(1);
+      CountDownLatch unblockFirstOperation = new CountDownLatch(1);
+      List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+      List<ListenableFuture<?>> futures = new ArrayList<>();
+      futures.add(
+          f.getPool().scheduleOperationWithResource(
+              r -> {
+                firstOperationRunning.countDown();
+                unblockFirstOperation.await();
+                return r;
+              },
+              f.getExecutorService()));
+      firstOperationRunning.await();
+
+      for (int priority : new int[] {0, 5, 1, 5}) {
+        futures.add(
+            f.getPool().scheduleOperationWithResource(
+                r -> {
+                  order.add(priority);
+                  return r;
+                },
+                f.getExecutorService(),
+                priority));
+      }
+      unblockFirstOperation.countDown();
+
+      Futures.allAsList(futures).get();
+      assertThat(order, Matchers.contains(5, 5, 1, 0));
+    }
+  }
+
   private static class TestResource implements AutoCloseable {
     private final int id;
 